@@ -0,0 +1,230 @@
+package online.madeofmagicandwires.tictac;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.AttributeSet;
+import android.view.MotionEvent;
+import android.view.View;
+
+/**
+ * Draws the whole game board on a single Canvas, as an alternative to the grid of tile Buttons
+ * laid out by {@link GameAdapter}.
+ *
+ * Paints and texts are set up once, and again only when the size of the view changes, so
+ * drawing a frame does not allocate. Touches are mapped to a tile by dividing by the tile size
+ * and handed to the {@link GameController} playing the game.
+ *
+ * @author Joost Bremmer
+ * @version 1.0
+ */
+public class BoardView extends View implements GameController.Renderer {
+
+    /** Height of the X and O relative to the size of a tile **/
+    private static final float TEXT_SCALE = 0.6f;
+    /** Width of the grid lines relative to the size of a tile **/
+    private static final float LINE_SCALE = 0.03f;
+
+    /** game instance drawn by this view **/
+    private Game game;
+    /** plays the tiles touched, or null while the board is only shown **/
+    private GameController controller;
+
+    /** paint of the grid lines **/
+    private final Paint gridPaint;
+    /** paint of the X and O **/
+    private final Paint textPaint;
+    /** text shown for every TileState, by ordinal **/
+    private final String[] texts;
+    /** colour of the tiles in the winning line **/
+    private final int winningColour;
+    /** colour of every other tile **/
+    private final int defaultColour;
+    /** smallest size of a tile in pixels **/
+    private final int minTileSize;
+
+    /** size of a tile in pixels **/
+    private int tileSize;
+    /** left edge of the board within this view **/
+    private int boardLeft;
+    /** top edge of the board within this view **/
+    private int boardTop;
+    /** distance from the centre of a tile to the baseline of its text **/
+    private float textOffset;
+
+    /**
+     * Constructor used when inflating the view from xml
+     * @param context the context the view is running in
+     * @param attrs attribute set containing the View's attributes
+     */
+    public BoardView(@NonNull Context context, @Nullable AttributeSet attrs) {
+        super(context, attrs);
+        this.winningColour = context.getColor(R.color.darkGreen);
+        this.defaultColour = context.getColor(R.color.black);
+        this.minTileSize = context.getResources().getDimensionPixelSize(R.dimen.tile_min_size);
+        String blank = context.getString(R.string.BLANK);
+        this.texts = new String[] {
+                blank, context.getString(R.string.PLAYER_ONE), context.getString(R.string.PLAYER_TWO), blank
+        };
+
+        gridPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        gridPaint.setColor(defaultColour);
+        gridPaint.setStyle(Paint.Style.STROKE);
+        textPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        textPaint.setTextAlign(Paint.Align.CENTER);
+    }
+
+    /**
+     * Constructor used when creating the view from code
+     * @param context the context the view is running in
+     */
+    public BoardView(@NonNull Context context) {
+        this(context, null);
+    }
+
+    /**
+     * Sets the game to draw.
+     * @param game game instance representing the current gamestate
+     */
+    public void setGame(@NonNull Game game) {
+        // a new game gets a new controller
+        this.controller = null;
+        this.game = game;
+        // the whole board is drawn anyway
+        game.getChanges().clear();
+        requestLayout();
+        invalidate();
+    }
+
+    @Override
+    public void attach(@NonNull GameController controller) {
+        this.controller = controller;
+    }
+
+    /**
+     * Takes up as much room as allowed, keeping the tiles square.
+     */
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        if(game == null) {
+            super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+            return;
+        }
+        int columns = game.rules.width;
+        int rows = game.rules.height;
+        int width = (MeasureSpec.getMode(widthMeasureSpec) == MeasureSpec.UNSPECIFIED) ?
+                minTileSize * columns : MeasureSpec.getSize(widthMeasureSpec);
+        int height = (MeasureSpec.getMode(heightMeasureSpec) == MeasureSpec.UNSPECIFIED) ?
+                minTileSize * rows : MeasureSpec.getSize(heightMeasureSpec);
+        int size = Math.min(width / columns, height / rows);
+        setMeasuredDimension(
+                resolveSize(size * columns, widthMeasureSpec),
+                resolveSize(size * rows, heightMeasureSpec));
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        layoutTiles();
+    }
+
+    /**
+     * Fits the tiles into the view, centring the board, and sizes the paints to the tiles.
+     */
+    private void layoutTiles() {
+        if(game == null || getWidth() == 0) {
+            return;
+        }
+        tileSize = Math.min(getWidth() / game.rules.width, getHeight() / game.rules.height);
+        boardLeft = (getWidth() - (tileSize * game.rules.width)) / 2;
+        boardTop = (getHeight() - (tileSize * game.rules.height)) / 2;
+        gridPaint.setStrokeWidth(Math.max(1f, tileSize * LINE_SCALE));
+        textPaint.setTextSize(tileSize * TEXT_SCALE);
+        Paint.FontMetrics metrics = textPaint.getFontMetrics();
+        textOffset = -(metrics.ascent + metrics.descent) / 2;
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        if(game == null || tileSize == 0) {
+            return;
+        }
+        int columns = game.rules.width;
+        int rows = game.rules.height;
+        int right = boardLeft + (tileSize * columns);
+        int bottom = boardTop + (tileSize * rows);
+
+        // the lines between the tiles
+        for(int col=1;col<columns;col++) {
+            float x = boardLeft + (col * tileSize);
+            canvas.drawLine(x, boardTop, x, bottom, gridPaint);
+        }
+        for(int row=1;row<rows;row++) {
+            float y = boardTop + (row * tileSize);
+            canvas.drawLine(boardLeft, y, right, y, gridPaint);
+        }
+
+        // and the claimed tiles
+        float half = tileSize / 2f;
+        for(int row=0;row<rows;row++) {
+            for(int col=0;col<columns;col++) {
+                TileState state = game.getTile(row, col);
+                if(state == TileState.BLANK) {
+                    continue;
+                }
+                textPaint.setColor(game.isWinningTile(row, col) ? winningColour : defaultColour);
+                canvas.drawText(texts[state.ordinal()],
+                        boardLeft + (col * tileSize) + half,
+                        boardTop + (row * tileSize) + half + textOffset,
+                        textPaint);
+            }
+        }
+    }
+
+    /**
+     * Plays the tile under the finger once it is lifted.
+     */
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        if(game == null || tileSize == 0) {
+            return super.onTouchEvent(event);
+        }
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                return true;
+            case MotionEvent.ACTION_UP:
+                int col = ((int) event.getX() - boardLeft) / tileSize;
+                int row = ((int) event.getY() - boardTop) / tileSize;
+                if(event.getX() >= boardLeft && event.getY() >= boardTop
+                        && col < game.rules.width && row < game.rules.height) {
+                    performClick();
+                    if(controller != null) {
+                        controller.playTile(row, col);
+                    }
+                }
+                return true;
+            default:
+                return super.onTouchEvent(event);
+        }
+    }
+
+    @Override
+    public boolean performClick() {
+        return super.performClick();
+    }
+
+    /**
+     * Draws the board again if the game has changed since it was last drawn.
+     */
+    @Override
+    public void showChanges() {
+        BoardChanges changes = game.getChanges();
+        if(changes.size() > 0) {
+            changes.clear();
+            invalidate();
+        }
+    }
+}
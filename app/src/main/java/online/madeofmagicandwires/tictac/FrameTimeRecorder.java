@@ -0,0 +1,117 @@
+package online.madeofmagicandwires.tictac;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.support.annotation.NonNull;
+import android.util.Log;
+import android.view.FrameMetrics;
+import android.view.Window;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Records how long every frame of a window takes to draw and logs the percentiles of every
+ * batch of frames, so the board renderers can be compared on a device:
+ * {@code adb logcat -s FrameTimes}.
+ *
+ * @author Joost Bremmer
+ * @version 1.0
+ */
+class FrameTimeRecorder implements Window.OnFrameMetricsAvailableListener {
+
+    /** Amount of frames logged together **/
+    private static final int BATCH = 120;
+    /** Frames taking longer than this miss the next vsync at 60Hz **/
+    private static final long JANK_NANOS = 16666667L;
+
+    /** name of what is being measured, shown in the log **/
+    private final String label;
+    /** total duration of the frames of the current batch, in nanoseconds **/
+    private final long[] durations = new long[BATCH];
+    /** amount of frames in the current batch **/
+    private int count;
+    /** thread the metrics are delivered on, off the main thread **/
+    private final HandlerThread thread;
+    /** the window being measured, or null when stopped **/
+    private Window window;
+
+    /**
+     * Constructor
+     * @param label name of what is being measured, shown in the log
+     */
+    FrameTimeRecorder(@NonNull String label) {
+        this.label = label;
+        this.thread = new HandlerThread("FrameTimes");
+    }
+
+    /**
+     * Starts recording the frames of a window.
+     * @param window the window to measure
+     */
+    void start(@NonNull Window window) {
+        this.window = window;
+        thread.start();
+        window.addOnFrameMetricsAvailableListener(this, new Handler(thread.getLooper()));
+    }
+
+    /**
+     * Stops recording and logs the frames of the last, unfinished batch.
+     */
+    void stop() {
+        if(window == null) {
+            return;
+        }
+        window.removeOnFrameMetricsAvailableListener(this);
+        window = null;
+        new Handler(thread.getLooper()).post(new Runnable() {
+            @Override
+            public void run() {
+                logBatch();
+            }
+        });
+        thread.quitSafely();
+    }
+
+    @Override
+    public void onFrameMetricsAvailable(Window window, FrameMetrics frameMetrics, int dropCountSinceLastInvocation) {
+        durations[count++] = frameMetrics.getMetric(FrameMetrics.TOTAL_DURATION);
+        if(count == BATCH) {
+            logBatch();
+        }
+    }
+
+    /**
+     * Logs the percentiles of the frames recorded since the last batch, and starts a new batch.
+     */
+    private void logBatch() {
+        if(count == 0) {
+            return;
+        }
+        long[] sorted = Arrays.copyOf(durations, count);
+        Arrays.sort(sorted);
+        int janky = 0;
+        for(long duration : sorted) {
+            if(duration > JANK_NANOS) {
+                janky++;
+            }
+        }
+        Log.i("FrameTimes", String.format(Locale.ROOT,
+                "%s: %d frames, p50 %.2fms, p90 %.2fms, p99 %.2fms, max %.2fms, %d janky",
+                label, count,
+                percentile(sorted, 50), percentile(sorted, 90), percentile(sorted, 99),
+                sorted[count - 1] / 1e6, janky));
+        count = 0;
+    }
+
+    /**
+     * Gets a percentile of sorted frame durations.
+     * @param sorted the durations in nanoseconds, from short to long
+     * @param percentile the percentile to get, from 0 to 100
+     * @return the duration in milliseconds
+     */
+    private static double percentile(long[] sorted, int percentile) {
+        int index = Math.min(sorted.length - 1, (sorted.length * percentile) / 100);
+        return sorted[index] / 1e6;
+    }
+}
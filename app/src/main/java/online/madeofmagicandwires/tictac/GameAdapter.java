@@ -5,12 +5,13 @@ import android.graphics.Point;
 import android.support.annotation.LayoutRes;
 import android.support.annotation.NonNull;
 import android.support.v7.widget.RecyclerView;
-import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 
-public class GameAdapter extends RecyclerView.Adapter<GameViewHolder> {
+import java.util.List;
+
+public class GameAdapter extends RecyclerView.Adapter<GameViewHolder> implements GameController.Renderer {
 
     /**
      * Callback interface to be called when the adapter moves on to the next move
@@ -34,8 +35,10 @@ public class GameAdapter extends RecyclerView.Adapter<GameViewHolder> {
          * @param gs the gamestate containing the conclusion of the game
          * @param movesPlayed the number of moves played before conclusion was reached
          * @param roundsWon the amount of wins for each player
+         * @param redone true if the conclusion was reached again by redoing undone moves,
+         *               rather than for the first time
          */
-        void showWin(GameState gs, int movesPlayed, int[] roundsWon);
+        void showWin(GameState gs, int movesPlayed, int[] roundsWon, boolean redone);
     }
 
     /**
@@ -43,25 +46,25 @@ public class GameAdapter extends RecyclerView.Adapter<GameViewHolder> {
      */
     public static class ResetOnClickListener implements View.OnClickListener {
 
-        private GameAdapter adapter;
+        private GameBoard board;
 
         /**
          * Standard constructor
-         * @param adapter the GameAdapter linked to the current game
+         * @param board the board the current game is played on
          */
-        ResetOnClickListener(GameAdapter adapter) {
-            this.adapter = adapter;
+        ResetOnClickListener(GameBoard board) {
+            this.board = board;
         }
 
 
         /**
-         * Called when a view has been clicked. Resets the board of the Game Adapter
+         * Called when a view has been clicked. Resets the game board
          *
          * @param v The view that was clicked.
          */
         @Override
         public void onClick(View v) {
-            adapter.resetBoard();
+            board.resetBoard();
         }
     }
 
@@ -77,34 +80,15 @@ public class GameAdapter extends RecyclerView.Adapter<GameViewHolder> {
             this.adapter = adapter;
         }
         /**
-         * Plays the tile corresponding view has been clicked and moves on to the next move.
+         * Hands the tile of the view that has been clicked to the controller playing the game.
          *
          * @param v The view that was clicked.
          */
         @Override
         public void onClick(View v) {
             Point coords = (Point) v.getTag(R.id.coordinates);
-            if(coords != null) {
-                TileState move = adapter.requestMove(coords.y, coords.x);
-                if(move != TileState.INVALID) {
-                    Log.d("PlayNextMoveOnClick",
-                            move.toString() + " played move " +
-                                    (coords.y + 1) + "-" + (coords.x + 1));
-                    v.setClickable(false);
-
-                    // check if a win condition has been reached.
-                    GameState hasWon = adapter.checkWinConditionReached(coords.y, coords.x);
-
-                    // Handle results; show the win or move on to the next move.
-                    switch (hasWon) {
-                        case IN_PROGRESS:
-                            // after move admin; increase played moves, next player etc.
-                            adapter.nextMove(move);
-                            break;
-                        default:
-                            break;
-                    }
-                }
+            if(coords != null && adapter.controller != null) {
+                adapter.controller.playTile(coords.y, coords.x);
             }
         }
 
@@ -115,6 +99,14 @@ public class GameAdapter extends RecyclerView.Adapter<GameViewHolder> {
 
 
     private final int TILE_SIZE;
+    /** grid coordinates of every adapter position, computed once **/
+    private final Point[] coordinates;
+    /** text shown for every TileState, by ordinal **/
+    private final CharSequence[] tileTexts;
+    /** colour of the tiles in the winning line **/
+    private final int winningColour;
+    /** colour of every other tile **/
+    private final int defaultColour;
 
     /** game instance used to determine board state **/
     private Game mGame;
@@ -122,10 +114,9 @@ public class GameAdapter extends RecyclerView.Adapter<GameViewHolder> {
     private LayoutInflater inflater;
     /** layout file to be inflated **/
     private @LayoutRes int layout;
-    /** the callback listener to use **/
-    private OnNextMoveListener nextMoveListener;
-    private OnGameOverListener gameOverListener;
     private PlayNextMoveOnClick tileOnClickListener;
+    /** plays the tiles clicked, or null while the board is only shown **/
+    private GameController controller;
 
 
 
@@ -141,6 +132,20 @@ public class GameAdapter extends RecyclerView.Adapter<GameViewHolder> {
         this.inflater = LayoutInflater.from(c);
         this.layout = layoutFile;
         this.TILE_SIZE = (int) Math.floor(parentWidth / (double) game.boardSize);
+
+        // resolve everything a bind needs up front, so binding never allocates
+        this.coordinates = new Point[game.rules.tiles()];
+        for(int pos=0;pos<coordinates.length;pos++) {
+            coordinates[pos] = new Point(pos % game.boardSize, pos / game.boardSize);
+        }
+        CharSequence blank = c.getText(R.string.BLANK);
+        this.tileTexts = new CharSequence[] {
+                blank, c.getText(R.string.PLAYER_ONE), c.getText(R.string.PLAYER_TWO), blank
+        };
+        this.winningColour = c.getColor(R.color.darkGreen);
+        this.defaultColour = c.getColor(R.color.black);
+        // a new adapter binds every tile anyway
+        game.getChanges().clear();
     }
 
     /**
@@ -170,16 +175,20 @@ public class GameAdapter extends RecyclerView.Adapter<GameViewHolder> {
     @Override
     public GameViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int i) {
         View v = inflater.inflate(layout, parent, false);
-        Point coords = getCoordinatesFromAdapterPosition(i);
-        return new GameViewHolder(v, mGame.getTile(coords.x, coords.y));
+        GameViewHolder viewHolder = new GameViewHolder(v, TileState.BLANK, tileTexts, winningColour, defaultColour);
+        // every tile keeps listening; moves on claimed tiles or after the round are refused on click
+        if(tileOnClickListener == null) {
+            tileOnClickListener = new PlayNextMoveOnClick(this);
+        }
+        viewHolder.itemView.setOnClickListener(tileOnClickListener);
+        return viewHolder;
     }
 
     @Override
     public void onBindViewHolder(@NonNull GameViewHolder viewHolder, int i) {
         // set the size of the tile based on how big the board is
         int calculatedTileSize = (TILE_SIZE > viewHolder.tile.getMinWidth()) ? TILE_SIZE : viewHolder.tile.getMinWidth();
-        viewHolder.tile.setHeight(calculatedTileSize);
-        viewHolder.tile.setWidth(calculatedTileSize);
+        viewHolder.setSize(calculatedTileSize);
 
         // retrieve tile coordinates
         Point coords = getCoordinatesFromAdapterPosition(i);
@@ -187,108 +196,71 @@ public class GameAdapter extends RecyclerView.Adapter<GameViewHolder> {
 
         // set data according to tile
         viewHolder.setState(mGame.getTile(coords.y, coords.x));
-        viewHolder.colourTile(mGame.getGameOver());
+        viewHolder.colourTile(mGame.isWinningTile(coords.y, coords.x));
 
         // finally set the coordinates as tag
         viewHolder.tile.setTag(R.id.coordinates, coords);
+    }
 
-        // Set or remove the onclick listener based on whether the tile has been played already
-        if(mGame.getGameOver() == GameState.IN_PROGRESS && mGame.getTile(coords.y, coords.x) == TileState.BLANK) {
-            if(tileOnClickListener == null) {
-                tileOnClickListener = new PlayNextMoveOnClick(this);
-            }
-            viewHolder.itemView.setOnClickListener(tileOnClickListener);
-        } else {
-            viewHolder.tile.setOnClickListener(null);
+    /**
+     * Binds only what changed about a tile, if the update carries the kinds of change
+     * from {@link BoardChanges}; the size and coordinates of the tile stay as they are.
+     * @param viewHolder the tile to update
+     * @param i position of the tile
+     * @param payloads the kinds of change since the tile was last bound, or empty for a full bind
+     */
+    @Override
+    public void onBindViewHolder(@NonNull GameViewHolder viewHolder, int i, @NonNull List<Object> payloads) {
+        if(payloads.isEmpty()) {
+            onBindViewHolder(viewHolder, i);
+            return;
+        }
+        int row = i / mGame.boardSize;
+        int col = i % mGame.boardSize;
+        int kind = 0;
+        for(int p=0;p<payloads.size();p++) {
+            kind |= (Integer) payloads.get(p);
+        }
+        if((kind & (BoardChanges.CLAIMED | BoardChanges.CLEARED)) != 0) {
+            viewHolder.setState(mGame.getTile(row, col));
+        }
+        if((kind & (BoardChanges.WINNING | BoardChanges.CLEARED)) != 0) {
+            viewHolder.colourTile(mGame.isWinningTile(row, col));
         }
     }
 
     @Override
     public int getItemCount() {
-        return (mGame.boardSize * mGame.boardSize);
+        return mGame.rules.tiles();
     }
 
     /**
-     * Retrieves the item's 2D grid coordinates based on its 1D position (assuming the grid has the same boardSize as mGame)
+     * Retrieves the item's 2D grid coordinates based on its 1D position (assuming the grid has as many columns as mGame)
      * @param pos position
      * @see #mGame
-     * @return the item's grid coordinates held in a Point (for convenience's sake)
+     * @return the item's grid coordinates held in a Point (for convenience's sake); x is the column, y the row.
+     *         The Point is shared between binds and must not be modified.
      */
     private Point getCoordinatesFromAdapterPosition(int pos) {
-        int x = (int) Math.floor((pos/(double) mGame.boardSize));
-        int y = (pos % mGame.boardSize);
-        return new Point(x, y);
+        return coordinates[pos];
     }
 
-    public void resetBoard(){
-        mGame.resetBoard();
-        notifyDataSetChanged();
-    }
-
-    /**
-     * Selects a tile for the current player
-     * @param tileRow the row number of the last played tile counting from 0
-     * @param tileCol the col number of the last played tile counting from 0
-     * @return the new state of the tile, represented as a TileState
-     * @see TileState
-     */
-    TileState requestMove(int tileRow, int tileCol) {
-        TileState tileState = mGame.choose(tileRow, tileCol);
-        notifyDataSetChanged();
-        return tileState;
-    }
-
-    /**
-     * Checks if a win condition has been reached for either player or whether the game has ended
-     * @param tileRow the row number of the last played tile counting from 0
-     * @param tileCol the col number of the last played tile counting from 0
-     * @return the current state of the game, as a GameState enum
-     * @see GameState
-     */
-    GameState checkWinConditionReached(int tileRow, int tileCol) {
-        GameState gs =  mGame.checkWinconditionReached(tileRow, tileCol);
-        if(gs != GameState.IN_PROGRESS) {
-            if(gameOverListener != null) {
-                gameOverListener.showWin(gs, mGame.getMovesPlayed(), mGame.getWins());
-            }
-        }
-        return gs;
+    @Override
+    public void attach(@NonNull GameController controller) {
+        this.controller = controller;
     }
 
     /**
-     * Lets the Adapter know to move on to the next player's move
-     * and fires any provided OnNextMoveListener callbacks
-     *
-     * @see OnNextMoveListener
+     * Tells the RecyclerView which tiles the game has changed since the last call,
+     * so only those are bound again; the kind of change is passed on as payload.
+     * @see #onBindViewHolder(GameViewHolder, int, List)
      */
-    void nextMove(TileState previouslyPlayedTile) {
-        mGame.nextMove();
-        if(nextMoveListener != null) {
-            nextMoveListener.onNewMove(
-                    mGame.getGameOver(),
-                    mGame.getPlayerOneTurn(),
-                    previouslyPlayedTile);
+    @Override
+    public void showChanges() {
+        BoardChanges changes = mGame.getChanges();
+        for(int i=0;i<changes.size();i++) {
+            notifyItemChanged(changes.getTile(i), changes.getKind(i));
         }
-        notifyDataSetChanged();
-    }
-
-
-    /**
-     * Links a OnNextMoveListener callback to this instance
-     * @param listener an implementation of the OnNextMoveListener callback interface
-     * @see OnNextMoveListener
-     */
-    public void setOnNextMoveListener(OnNextMoveListener listener) {
-        this.nextMoveListener = listener;
+        changes.clear();
     }
-
-    /**
-     * Links a OnGameOverListener callback to this instance
-     * @param listener an implementation of the OnGameOverListener callback interface
-     * @see OnGameOverListener
-     */
-    public void setOnGameOverListener(OnGameOverListener listener) {
-        this.gameOverListener = listener;
-    }
-
-}
\ No newline at end of file
+}
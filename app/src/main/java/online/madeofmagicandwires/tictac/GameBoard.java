@@ -0,0 +1,58 @@
+package online.madeofmagicandwires.tictac;
+
+/**
+ * The game board the user plays on, drawn either as a grid of tiles or as a single view.
+ *
+ * @see GameController
+ * @see GameAdapter
+ * @see BoardView
+ */
+public interface GameBoard {
+
+    /**
+     * Resets the board of the game for a new round and shows it.
+     */
+    void resetBoard();
+
+    /**
+     * Takes back the last move and shows the board; against the computer, takes back its
+     * answer as well, so it is the user's turn again.
+     */
+    void undoMove();
+
+    /**
+     * Plays the last undone move again and shows the board; against the computer,
+     * replays its answer as well.
+     */
+    void redoMove();
+
+    /**
+     * Links a computer player to this board, which will answer every move of Player One.
+     * @param player the computer player to play as Player Two, or null for two human players
+     */
+    void setComputerPlayer(Player player);
+
+    /**
+     * Lets the computer player search for its moves in the background, leaving the board
+     * responsive; tiles can not be played while it is searching.
+     * @param scheduler the scheduler to search on, or null to search on the UI thread
+     */
+    void setMoveScheduler(MoveScheduler scheduler);
+
+    /**
+     * Lets the computer player claim a tile, if it is playing and it is its turn.
+     */
+    void playComputerMove();
+
+    /**
+     * Tells whether the computer player is searching for its move in the background.
+     * @return true while the computer player is searching
+     */
+    boolean isComputerSearching();
+
+    /**
+     * Links a OnGameOverListener callback to this board
+     * @param listener an implementation of the OnGameOverListener callback interface
+     */
+    void setOnGameOverListener(GameAdapter.OnGameOverListener listener);
+}
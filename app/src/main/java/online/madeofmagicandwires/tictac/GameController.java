@@ -0,0 +1,242 @@
+package online.madeofmagicandwires.tictac;
+
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+/**
+ * Plays a game on behalf of whichever board shows it: takes the moves of the user, lets the
+ * computer player answer, undoes and redoes moves and tells the listener when a round ends.
+ * The board itself only draws the game and hands in the tiles the user plays.
+ *
+ * @author Joost Bremmer
+ * @version 1.0
+ * @see GameAdapter
+ * @see BoardView
+ */
+class GameController implements GameBoard {
+
+    /**
+     * A view drawing the game of a controller.
+     */
+    interface Renderer {
+        /**
+         * Links the controller the tiles played by the user are handed to.
+         * @param controller the controller playing the game drawn
+         */
+        void attach(@NonNull GameController controller);
+
+        /**
+         * Draws the tiles the game has changed since they were last drawn.
+         * @see Game#getChanges()
+         */
+        void showChanges();
+    }
+
+    /** game instance played by this controller **/
+    private final Game game;
+    /** draws the game **/
+    private final Renderer renderer;
+    /** computer player playing as Player Two, or null if two humans are playing **/
+    private Player computerPlayer;
+    /** runs the searches of the computer player, or null to search on the UI thread **/
+    private MoveScheduler moveScheduler;
+    /** true while the computer player is searching in the background **/
+    private boolean computerSearching;
+    /** the callback listeners to use **/
+    private GameAdapter.OnGameOverListener gameOverListener;
+    private GameAdapter.OnNextMoveListener nextMoveListener;
+
+    /**
+     * Constructor
+     * @param game game instance representing the current gamestate
+     * @param renderer the view drawing the game
+     */
+    GameController(@NonNull Game game, @NonNull Renderer renderer) {
+        this.game = game;
+        this.renderer = renderer;
+        renderer.attach(this);
+    }
+
+    /**
+     * Plays a tile for the current player and lets the computer answer, if it is playing.
+     * With gravity, the tile falls down its column.
+     * @param row the row number of the played tile counting from 0
+     * @param col the col number of the played tile counting from 0
+     * @return the new state of the tile, or TileState.INVALID if the move was refused
+     */
+    TileState playTile(int row, int col) {
+        if(game.getGameOver() != GameState.IN_PROGRESS || computerSearching) {
+            return TileState.INVALID;
+        }
+        if(game.rules.gravity) {
+            row = game.dropRow(col);
+            if(row < 0) {
+                return TileState.INVALID;
+            }
+        }
+        TileState move = claim(row, col);
+        if(move != TileState.INVALID) {
+            Log.d("GameController", move.toString() + " played move " + (row + 1) + "-" + (col + 1));
+            playComputerMove();
+        }
+        renderer.showChanges();
+        return move;
+    }
+
+    /**
+     * Claims a tile for the current player, checks whether the round is over and moves on to
+     * the next move if it is not.
+     * @param row the row number of the tile counting from 0
+     * @param col the col number of the tile counting from 0
+     * @return the new state of the tile, or TileState.INVALID if the move was impossible
+     */
+    private TileState claim(int row, int col) {
+        TileState move = game.choose(row, col);
+        if(move == TileState.INVALID) {
+            return move;
+        }
+        GameState gs = game.checkWinconditionReached(row, col);
+        if(gs == GameState.IN_PROGRESS) {
+            game.nextMove();
+            if(nextMoveListener != null) {
+                nextMoveListener.onNewMove(gs, game.getPlayerOneTurn(), move);
+            }
+        } else if(gameOverListener != null) {
+            gameOverListener.showWin(gs, game.getMovesPlayed(), game.getWins(), false);
+        }
+        return move;
+    }
+
+    /**
+     * Lets the computer player claim a tile, if it is playing and it is its turn.
+     * With a MoveScheduler, the move is searched in the background and played once it is chosen.
+     * @see #setComputerPlayer(Player)
+     * @see #setMoveScheduler(MoveScheduler)
+     */
+    @Override
+    public void playComputerMove() {
+        if(computerPlayer == null
+                || computerSearching
+                || game.getPlayerOneTurn()
+                || game.getGameOver() != GameState.IN_PROGRESS) {
+            return;
+        }
+
+        Log.d("playComputerMove", computerPlayer.toString());
+        if(moveScheduler == null) {
+            playComputerTile(computerPlayer.chooseMove(game));
+            return;
+        }
+        computerSearching = true;
+        MoveScheduler.OnMoveChosenListener listener = new MoveScheduler.OnMoveChosenListener() {
+            @Override
+            public void onMoveChosen(int tile) {
+                computerSearching = false;
+                playComputerTile(tile);
+                renderer.showChanges();
+            }
+        };
+        if(!moveScheduler.schedule(game, computerPlayer, listener)) {
+            // the queue is full of searches for positions no longer on the board; drop them rather
+            // than searching on the UI thread, which would freeze it for the whole time budget
+            moveScheduler.cancelAll();
+            if(!moveScheduler.schedule(game, computerPlayer, listener)) {
+                Log.e("playComputerMove", "the move scheduler is shut down");
+                computerSearching = false;
+            }
+        }
+    }
+
+    /**
+     * Plays the move chosen by the computer player the same way a tile played by the user is.
+     * @param tile the tile index (row * boardSize + col) to claim, or -1 if no tile is left
+     */
+    private void playComputerTile(int tile) {
+        if(tile < 0) {
+            return;
+        }
+        int row = tile / game.boardSize;
+        int col = tile % game.boardSize;
+        TileState move = claim(row, col);
+        if(move != TileState.INVALID) {
+            Log.d("playComputerMove", move.toString() + " played move " + (row + 1) + "-" + (col + 1));
+        }
+    }
+
+    @Override
+    public void resetBoard() {
+        cancelComputerMove();
+        game.resetBoard();
+        renderer.showChanges();
+    }
+
+    @Override
+    public void undoMove() {
+        cancelComputerMove();
+        if(game.undo() && computerPlayer != null && !game.getPlayerOneTurn()) {
+            game.undo();
+        }
+        renderer.showChanges();
+    }
+
+    @Override
+    public void redoMove() {
+        cancelComputerMove();
+        boolean inProgress = game.getGameOver() == GameState.IN_PROGRESS;
+        if(game.redo() && computerPlayer != null && !game.getPlayerOneTurn()) {
+            game.redo();
+        }
+        renderer.showChanges();
+        // a redone move may end the round just like the move played the first time, which
+        // already ended it once before being undone
+        GameState gs = game.getGameOver();
+        if(inProgress && gs != GameState.IN_PROGRESS && gameOverListener != null) {
+            gameOverListener.showWin(gs, game.getMovesPlayed(), game.getWins(), true);
+        }
+    }
+
+    /**
+     * Links a computer player to this instance, which will answer every move of Player One.
+     * @param player the computer player to play as Player Two, or null for two human players
+     * @see Player
+     */
+    @Override
+    public void setComputerPlayer(Player player) {
+        this.computerPlayer = player;
+    }
+
+    @Override
+    public boolean isComputerSearching() {
+        return computerSearching;
+    }
+
+    @Override
+    public void setMoveScheduler(MoveScheduler scheduler) {
+        cancelComputerMove();
+        this.moveScheduler = scheduler;
+    }
+
+    /**
+     * Drops the search of the computer player, if it is searching in the background.
+     */
+    private void cancelComputerMove() {
+        if(computerSearching) {
+            moveScheduler.cancelAll();
+            computerSearching = false;
+        }
+    }
+
+    /**
+     * Links a OnNextMoveListener callback to this instance
+     * @param listener an implementation of the OnNextMoveListener callback interface
+     * @see GameAdapter.OnNextMoveListener
+     */
+    public void setOnNextMoveListener(GameAdapter.OnNextMoveListener listener) {
+        this.nextMoveListener = listener;
+    }
+
+    @Override
+    public void setOnGameOverListener(GameAdapter.OnGameOverListener listener) {
+        this.gameOverListener = listener;
+    }
+}
@@ -9,12 +9,36 @@ public class GameViewHolder extends RecyclerView.ViewHolder {
 
     public Button tile;
     private TileState state;
+    /** text shown for every TileState, by ordinal; resolved once by the adapter **/
+    private final CharSequence[] texts;
+    /** colour of a tile in the winning line **/
+    private final int winningColour;
+    /** colour of every other tile **/
+    private final int defaultColour;
+    /** whether the tile currently has the winning colour **/
+    private boolean winning;
+    /** the width and height last applied to the tile, or 0 if none was **/
+    private int size;
 
 
-    public GameViewHolder(@NonNull View itemView, TileState state) {
+    /**
+     * Most specific constructor
+     * @param itemView the tile's Button
+     * @param state the current state of the tile
+     * @param texts text to show for every TileState, by ordinal
+     * @param winningColour colour of a tile in the winning line
+     * @param defaultColour colour of every other tile
+     */
+    public GameViewHolder(@NonNull View itemView, TileState state,
+                          @NonNull CharSequence[] texts, int winningColour, int defaultColour) {
         super(itemView);
         this.tile = (Button) itemView;
+        this.texts = texts;
+        this.winningColour = winningColour;
+        this.defaultColour = defaultColour;
         this.state = state;
+        tile.setText(texts[state.ordinal()]);
+        tile.setTextColor(defaultColour);
     }
 
     public TileState getState() {
@@ -23,38 +47,37 @@ public class GameViewHolder extends RecyclerView.ViewHolder {
 
     /**
      * Sets the TileState of this Tile, as well as representing the new state on the tilegrid.
+     * Leaves the view alone if the state did not change.
      * @param state the new state of this instance
      */
     public void setState(TileState state) {
-        switch (state) {
-            case PLAYER_ONE:
-                tile.setText(R.string.PLAYER_ONE);
-                break;
-            case PLAYER_TWO:
-                tile.setText(R.string.PLAYER_TWO);
-                break;
-            case BLANK:
-                tile.setText(R.string.BLANK);
-                break;
+        if(state != this.state) {
+            tile.setText(texts[state.ordinal()]);
+            this.state = state;
         }
-        this.state = state;
-
     }
 
 
     /**
-     * Colours this tile green if it belongs to the winner, and otherwise black
-     * @param gs   GameState containing the ending state of the round
+     * Colours this tile green if it belongs to the line that won the round, and otherwise black
+     * @param winning true if the tile is part of the winning line
+     */
+    public void colourTile(boolean winning) {
+        if(winning != this.winning) {
+            tile.setTextColor(winning ? winningColour : defaultColour);
+            this.winning = winning;
+        }
+    }
+
+    /**
+     * Sets the width and height of this tile, unless they already are the given size.
+     * @param size the size of the tile in pixels
      */
-    public void colourTile(GameState gs) {
-        if(gs != GameState.DRAW && gs != GameState.IN_PROGRESS) {
-            TileState winner = (gs == GameState.PLAYER_ONE_WIN) ?
-                    TileState.PLAYER_ONE : TileState.PLAYER_TWO;
-            if(state == winner) {
-                    tile.setTextColor(tile.getResources().getColor(R.color.darkGreen, null));
-            } else {
-                tile.setTextColor(tile.getResources().getColor(R.color.black, null));
-            }
+    public void setSize(int size) {
+        if(size != this.size) {
+            tile.setHeight(size);
+            tile.setWidth(size);
+            this.size = size;
         }
     }
 
@@ -2,9 +2,12 @@ package online.madeofmagicandwires.tictac;
 
 import android.content.Intent;
 import android.content.SharedPreferences;
+import android.content.res.AssetFileDescriptor;
 import android.support.design.widget.Snackbar;
 import android.support.v7.app.AppCompatActivity;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.support.v7.preference.PreferenceManager;
 import android.support.v7.widget.GridLayoutManager;
 import android.support.v7.widget.RecyclerView;
@@ -12,9 +15,14 @@ import android.util.Log;
 import android.view.Menu;
 import android.view.MenuInflater;
 import android.view.MenuItem;
+import android.view.View;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.concurrent.Executor;
 
 /**
- * Activity used to play a game of tic-tac-toe or Connect Fours
+ * Activity used to play a game of tic-tac-toe or Connect Four
  */
 public class MainActivity extends AppCompatActivity implements GameAdapter.OnGameOverListener, SharedPreferences.OnSharedPreferenceChangeListener {
 
@@ -26,8 +34,23 @@ public class MainActivity extends AppCompatActivity implements GameAdapter.OnGam
      **/
     private static final String GAME_BUNDLE_KEY = "game";
 
+    /** Largest board size still searched exactly by the computer opponent **/
+    private static final int MAX_EXACT_SEARCH_BOARD_SIZE = 6;
+    /** Time looking for a forced win for a hint may take **/
+    private static final long HINT_TIME_BUDGET_MILLIS = 2000;
+
     /** game instance to use in this activity **/
     private Game game;
+    /** the board the game is played on **/
+    private GameBoard board;
+    /** records the frame times in debug builds, while the activity is resumed **/
+    private FrameTimeRecorder frameTimes;
+    /** searches the moves of the computer player off the UI thread **/
+    private MoveScheduler moveScheduler;
+    /** searches hints in the background, apart from the computer player **/
+    private MoveScheduler hintScheduler;
+    /** true while a hint is being searched **/
+    private boolean hintSearching;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -38,10 +61,23 @@ public class MainActivity extends AppCompatActivity implements GameAdapter.OnGam
         PreferenceManager.setDefaultValues(this, R.xml.tictac_prefs, false);
         PreferenceManager.getDefaultSharedPreferences(this).registerOnSharedPreferenceChangeListener(this);
 
+        // computer moves are searched in the background and played on the UI thread
+        final Handler uiHandler = new Handler(Looper.getMainLooper());
+        Executor uiExecutor = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                uiHandler.post(command);
+            }
+        };
+        moveScheduler = new MoveScheduler(uiExecutor);
+        hintScheduler = new MoveScheduler(1, 1, uiExecutor);
 
         // try to get game from previously saved state
         if(savedInstanceState != null) {
-            game = (Game) savedInstanceState.getSerializable(GAME_BUNDLE_KEY);
+            ParcelableGame saved = savedInstanceState.getParcelable(GAME_BUNDLE_KEY);
+            if(saved != null) {
+                game = saved.getGame();
+            }
         }
 
     }
@@ -58,39 +94,231 @@ public class MainActivity extends AppCompatActivity implements GameAdapter.OnGam
             } else  {
                 boardSize = Game.DEFAULT_BOARD_SIZE;
             }
-            game = new Game(boardSize);
+            game = new Game(getRules(prefs, boardSize));
         }
 
         //draw board
         drawBoard();
+
+        // log how long frames take to draw on the chosen board, to compare the two
+        if(BuildConfig.DEBUG) {
+            BoardView boardView = findViewById(R.id.boardView);
+            frameTimes = new FrameTimeRecorder(boardView != null && boardView.getVisibility() == View.VISIBLE ?
+                    "BoardView " + game.rules : "GameAdapter " + game.rules);
+            frameTimes.start(getWindow());
+        }
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        if(frameTimes != null) {
+            frameTimes.stop();
+            frameTimes = null;
+        }
+        if(BuildConfig.DEBUG && moveScheduler.getLatencies().count() > 0) {
+            Log.i("MoveLatency", moveScheduler.getLatencies().toString());
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        moveScheduler.shutdown();
+        hintScheduler.shutdown();
     }
 
     /**
-     * Draws the new state of the recyclerview game board.
+     * Draws the new state of the game board, on the recyclerview grid of tiles or on the
+     * single BoardView, whichever is chosen in the settings.
      * @see #onCreate(Bundle)
      */
     private void drawBoard(){
         RecyclerView grid = findViewById(R.id.gameBoard);
+        BoardView boardView = findViewById(R.id.boardView);
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(this);
+        // a search for the previous board would play on a board no longer shown
+        moveScheduler.cancelAll();
+        cancelHint();
 
-        if(grid != null) {
+        if(boardView != null && prefs.getBoolean(getString(R.string.prefs_board_view_key), false)) {
+            if(grid != null) {
+                grid.setVisibility(View.GONE);
+                grid.setAdapter(null);
+            }
+            boardView.setVisibility(View.VISIBLE);
+            boardView.setGame(game);
+            board = new GameController(game, boardView);
+        } else if(grid != null) {
+            if(boardView != null) {
+                boardView.setVisibility(View.GONE);
+            }
+            grid.setVisibility(View.VISIBLE);
             // we're using minimum width because the width of the recyclerview is only calculated once the adapter is set.
             GameAdapter adapter = new GameAdapter(this, game, R.layout.gametile, grid.getMinimumWidth());
-            adapter.setOnGameOverListener(this);
-
             grid.setAdapter(adapter);
             // TODO: use FixedGridLayoutManager
             // FixedGridLayoutManager gridManager = new FixedGridLayoutManager();
             // gridManager.setTotalColumnCount(game.boardSize);
             GridLayoutManager gridManager = new GridLayoutManager(this, game.boardSize);
             grid.setLayoutManager(gridManager);
+            board = new GameController(game, adapter);
+        } else {
+            Log.e("BoardGrid",
+                    getString(R.string.no_recyclerview_error_msg));
+            return;
+        }
 
+        board.setOnGameOverListener(this);
+        // let the computer play as Player Two if the user has chosen so
+        if(prefs.getBoolean(getString(R.string.prefs_computer_opponent_key), false)) {
+            board.setComputerPlayer(createComputerPlayer());
+        }
+        board.setMoveScheduler(moveScheduler);
+        // pick up a computer move cancelled when the activity was paused
+        board.playComputerMove();
 
-            // Add onClick
-            findViewById(R.id.resetBtn).setOnClickListener(new GameAdapter.ResetOnClickListener(adapter));
+        // Add onClick
+        findViewById(R.id.resetBtn).setOnClickListener(new GameAdapter.ResetOnClickListener(board));
+    }
+
+    /**
+     * Creates the strongest computer player for the current game that answers in time,
+     * playing from the opening book for as long as the game is in it.
+     * @return the computer player to play as Player Two
+     */
+    private Player createComputerPlayer() {
+        Player computer = createSearchPlayer();
+        OpeningBook book = game.rules.isClassic() ? openOpeningBook(game.boardSize) : null;
+        return (book != null) ? new OpeningBookPlayer(book, computer) : computer;
+    }
 
+    /**
+     * Creates the strongest searching computer player for the current game that answers in time.
+     * @return the computer player to fall back on once the game is out of the opening book
+     */
+    private Player createSearchPlayer() {
+        if(!game.rules.isClassic()) {
+            // only random playouts know about gravity and shorter lines
+            return new MctsPlayer(MinimaxPlayer.DEFAULT_TIME_BUDGET_MILLIS);
+        } else if(game.boardSize <= EndgameDatabase.MAX_BOARD_SIZE) {
+            MinimaxPlayer computer = new MinimaxPlayer(MinimaxPlayer.DEFAULT_TIME_BUDGET_MILLIS);
+            computer.setEndgameDatabase(openEndgameDatabase(game.boardSize));
+            return computer;
+        } else if(game.boardSize <= MAX_EXACT_SEARCH_BOARD_SIZE) {
+            // bigger boards need every core to search deep enough in time
+            return new ParallelSolver(MinimaxPlayer.DEFAULT_TIME_BUDGET_MILLIS);
         } else {
-            Log.e("BoardGrid",
-                    getString(R.string.no_recyclerview_error_msg));
+            // too big to search exactly; play out random games, unless either player can force a win
+            long threatBudget = MinimaxPlayer.DEFAULT_TIME_BUDGET_MILLIS / 4;
+            return new ThreatSpacePlayer(
+                    new MctsPlayer(MinimaxPlayer.DEFAULT_TIME_BUDGET_MILLIS - threatBudget), threatBudget);
+        }
+    }
+
+    /**
+     * Looks for a forced win of the current player in the background and shows where it starts.
+     * Hints are searched on a scheduler of their own, so they never hold up the computer player,
+     * and are only given on the user's turn, one at a time.
+     */
+    private void showHint() {
+        if(game == null || board == null || hintSearching || game.getGameOver() != GameState.IN_PROGRESS) {
+            return;
+        }
+        if(board.isComputerSearching()) {
+            showMessage(getString(R.string.hint_busy));
+            return;
+        }
+        if(game.rules.gravity) {
+            showMessage(getString(R.string.hint_unsupported));
+            return;
+        }
+        final Game hinted = game;
+        final long version = game.getSnapshot().getVersion();
+        final ThreatSpaceSearch search = new ThreatSpaceSearch();
+        hintSearching = hintScheduler.schedule(game, new Player() {
+            @Override
+            public int chooseMove(Game position) {
+                return search.findWin(position, System.nanoTime() + (HINT_TIME_BUDGET_MILLIS * 1000000L));
+            }
+        }, new MoveScheduler.OnMoveChosenListener() {
+            @Override
+            public void onMoveChosen(int tile) {
+                hintSearching = false;
+                // a hint for a position no longer on the board would only mislead
+                if(game != hinted || game.getSnapshot().getVersion() != version) {
+                    return;
+                }
+                showMessage((tile < 0)
+                        ? getString(R.string.hint_none)
+                        : getString(R.string.hint_forced_win, search.getWinDepth(),
+                                (tile / game.boardSize) + 1, (tile % game.boardSize) + 1));
+            }
+        });
+    }
+
+    /**
+     * Drops the hint being searched, if any.
+     */
+    private void cancelHint() {
+        hintScheduler.cancelAll();
+        hintSearching = false;
+    }
+
+    /**
+     * Shows a short message below the board.
+     * @param message the message to show
+     */
+    private void showMessage(String message) {
+        View container = findViewById(R.id.boardContainer);
+        if(container != null) {
+            Snackbar.make(container, message, Snackbar.LENGTH_LONG).show();
+        }
+    }
+
+    /**
+     * Gets the rules chosen in the settings for a board size.
+     * Boards larger than 4 cubic tiles are played as Connect Four if the user has chosen so.
+     * @param prefs the shared preferences holding the chosen rule set
+     * @param boardSize the "cubic" amount of tiles on the board
+     * @return the rules to play by
+     */
+    private Rules getRules(SharedPreferences prefs, int boardSize) {
+        if(boardSize > Rules.CONNECT_FOUR_LENGTH
+                && prefs.getBoolean(getString(R.string.prefs_game_ruleset_key), false)) {
+            return Rules.connectFour(boardSize, boardSize);
+        }
+        return Rules.ticTacToe(boardSize);
+    }
+
+    /**
+     * Reads the opening book bundled for a board size.
+     * @param boardSize the "cubic" amount of tiles on the board
+     * @return the opening book, or null if there is none or it could not be read
+     */
+    private OpeningBook openOpeningBook(int boardSize) {
+        try {
+            return OpeningBook.forSize(boardSize);
+        } catch (IOException e) {
+            Log.e("OpeningBook", "Could not read the opening book of " + boardSize + "x" + boardSize, e);
+            return null;
+        }
+    }
+
+    /**
+     * Memory-maps the endgame database bundled for a board size.
+     * The asset is stored uncompressed, so it can be mapped straight from the apk.
+     * @param boardSize the "cubic" amount of tiles on the board
+     * @return the endgame database, or null if it could not be opened
+     */
+    private EndgameDatabase openEndgameDatabase(int boardSize) {
+        String asset = "endgame/" + EndgameDatabaseGenerator.fileName(boardSize);
+        try(AssetFileDescriptor fd = getAssets().openFd(asset);
+            FileInputStream in = fd.createInputStream()) {
+            return EndgameDatabase.map(in.getChannel(), fd.getStartOffset(), fd.getLength());
+        } catch (IOException e) {
+            Log.e("EndgameDatabase", "Could not open " + asset, e);
+            return null;
         }
     }
 
@@ -116,10 +344,25 @@ public class MainActivity extends AppCompatActivity implements GameAdapter.OnGam
     @Override
     public boolean onOptionsItemSelected(MenuItem item) {
         switch (item.getItemId()) {
+            case R.id.action_undo:
+                if(board != null) {
+                    cancelHint();
+                    board.undoMove();
+                }
+                return true;
+            case R.id.action_redo:
+                if(board != null) {
+                    cancelHint();
+                    board.redoMove();
+                }
+                return true;
+            case R.id.action_hint:
+                showHint();
+                return true;
             case R.id.action_reset:
-                RecyclerView board = findViewById(R.id.gameBoard);
-                if(board != null && board.getAdapter() instanceof GameAdapter) {
-                    ((GameAdapter) board.getAdapter()).resetBoard();
+                if(board != null) {
+                    cancelHint();
+                    board.resetBoard();
                 }
                 return true;
             case R.id.action_settings:
@@ -146,7 +389,9 @@ public class MainActivity extends AppCompatActivity implements GameAdapter.OnGam
     @Override
     protected void onSaveInstanceState(Bundle outState) {
         super.onSaveInstanceState(outState);
-        outState.putSerializable(GAME_BUNDLE_KEY, game);
+        if(game != null) {
+            outState.putParcelable(GAME_BUNDLE_KEY, new ParcelableGame(game));
+        }
     }
 
     /**
@@ -155,20 +400,23 @@ public class MainActivity extends AppCompatActivity implements GameAdapter.OnGam
      * @param gs          the gamestate containing the conclusion of the game
      * @param movesPlayed the number of moves played before conclusion was reached
      * @param roundsWon   the amount of wins for each player
+     * @param redone      true if the conclusion was reached again by redoing undone moves
      */
     @Override
-    public void showWin(GameState gs, int movesPlayed, int[] roundsWon) {
+    public void showWin(GameState gs, int movesPlayed, int[] roundsWon, boolean redone) {
         Log.d("Game Over!", gs.toString());
-        RecyclerView board = findViewById(R.id.gameBoard);
+        // the round was recorded when it ended the first time
+        if(!redone) {
+            MatchHistory.get(this).record(game);
+        }
+        View container = findViewById(R.id.boardContainer);
 
         // If possible, create a snackbar and add an OnClick.
-        if(board != null) {
-            Snackbar snackbar = Snackbar.make(board, gs.toString(), Snackbar.LENGTH_LONG);
-            if(board.getAdapter() instanceof GameAdapter)
+        if(container != null) {
+            Snackbar snackbar = Snackbar.make(container, gs.toString(), Snackbar.LENGTH_LONG);
+            if(board != null)
             snackbar.setAction(R.string.reset_btn,
-                    new GameAdapter.ResetOnClickListener(
-                            ((GameAdapter)board.getAdapter())
-                    )
+                    new GameAdapter.ResetOnClickListener(board)
             );
             // actually show snackbar
             snackbar.show();
@@ -193,9 +441,30 @@ public class MainActivity extends AppCompatActivity implements GameAdapter.OnGam
         if(key.equals(getString(R.string.prefs_board_size_key))) {
             Log.d("onSharedPreferenceChanged", "changed " + key);
             Log.d("onSharedPreferenceChanged", "new value is: " + sharedPreferences.getInt(key, 0));
-            game = new Game(sharedPreferences.getInt(key, 3));
+            moveScheduler.cancelAll();
+            cancelHint();
+            recordAbandoned();
+            game = new Game(getRules(sharedPreferences, sharedPreferences.getInt(key, 3)));
+        }
+        // the same goes for a different rule set
+        if(key.equals(getString(R.string.prefs_game_ruleset_key))) {
+            Log.d("onSharedPreferenceChanged", "changed " + key);
+            int boardSize = sharedPreferences.getInt(getString(R.string.prefs_board_size_key), Game.DEFAULT_BOARD_SIZE);
+            moveScheduler.cancelAll();
+            cancelHint();
+            recordAbandoned();
+            game = new Game(getRules(sharedPreferences, boardSize));
         }
 
 
     }
+
+    /**
+     * Records the current game as abandoned, if it was still being played.
+     */
+    private void recordAbandoned() {
+        if(game != null && game.getGameOver() == GameState.IN_PROGRESS) {
+            MatchHistory.get(this).record(game);
+        }
+    }
 }
@@ -0,0 +1,83 @@
+package online.madeofmagicandwires.tictac;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The match history of the app, opened once for the whole process, so activities recreated
+ * on every rotation share a single {@link MatchHistoryStore} and a single thread writing it.
+ *
+ * The store is opened on first use and stays open until the process ends; every record is
+ * forced to storage as it is appended, so there is nothing left to flush on closing.
+ *
+ * @author Joost Bremmer
+ * @version 1.0
+ */
+final class MatchHistory {
+
+    /** Name of the match history file in the app's files directory **/
+    private static final String MATCH_HISTORY_FILE = "matches.log";
+
+    /** the match history of this process, once opened **/
+    private static MatchHistory instance;
+
+    /** the match history file **/
+    private final File path;
+    /** writes the match history, so the UI thread never waits for storage **/
+    private final ExecutorService writer = Executors.newSingleThreadExecutor();
+    /** the match history; only touched on the writer thread **/
+    private MatchHistoryStore store;
+
+    /**
+     * Constructor
+     * @param path the match history file
+     */
+    private MatchHistory(@NonNull File path) {
+        this.path = path;
+    }
+
+    /**
+     * Gets the match history of this process.
+     * @param context any context of the app
+     * @return the match history, the same for every call
+     */
+    static synchronized MatchHistory get(@NonNull Context context) {
+        if(instance == null) {
+            instance = new MatchHistory(new File(context.getApplicationContext().getFilesDir(), MATCH_HISTORY_FILE));
+        }
+        return instance;
+    }
+
+    /**
+     * Adds a game to the match history on a background thread.
+     * The record is encoded right away, as the game keeps changing on the UI thread.
+     * Games that were not played or whose moves are unknown are left out.
+     * @param game the game to record; played but unfinished games are recorded as abandoned
+     * @see MatchHistoryStore#canStore(Game)
+     */
+    void record(@NonNull Game game) {
+        if(game.getMovesPlayed() == 0 || !MatchHistoryStore.canStore(game)) {
+            return;
+        }
+        final byte[] record = MatchHistoryStore.encode(game, System.currentTimeMillis());
+        writer.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if(store == null) {
+                        store = new MatchHistoryStore(path);
+                    }
+                    store.append(record);
+                } catch (IOException e) {
+                    Log.e("MatchHistory", "could not record the game", e);
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,57 @@
+package online.madeofmagicandwires.tictac;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+import android.support.annotation.NonNull;
+
+/**
+ * Carries a {@link Game} through a Bundle in the packed encoding of {@link GameCodec},
+ * rather than by java.io.Serializable. The game itself lives in tictac-core, which knows nothing
+ * of Android, so it is wrapped rather than made Parcelable.
+ *
+ * @author Joost Bremmer
+ * @version 1.0
+ */
+public class ParcelableGame implements Parcelable {
+
+    public static final Creator<ParcelableGame> CREATOR = new Creator<ParcelableGame>() {
+        @Override
+        public ParcelableGame createFromParcel(Parcel in) {
+            return new ParcelableGame(GameCodec.decode(in.createByteArray()));
+        }
+
+        @Override
+        public ParcelableGame[] newArray(int size) {
+            return new ParcelableGame[size];
+        }
+    };
+
+    /** the wrapped game **/
+    private final Game game;
+
+    /**
+     * Constructor
+     * @param game the game to carry
+     */
+    public ParcelableGame(@NonNull Game game) {
+        this.game = game;
+    }
+
+    /**
+     * Gets the carried game.
+     * @return the game
+     */
+    public Game getGame() {
+        return game;
+    }
+
+    @Override
+    public void writeToParcel(Parcel dest, int flags) {
+        dest.writeByteArray(GameCodec.encode(game));
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+}
@@ -0,0 +1,81 @@
+package online.madeofmagicandwires.tictac;
+
+import android.content.Context;
+import android.widget.FrameLayout;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Counts the bytes allocated while binding every tile of a board again, as the RecyclerView
+ * does when the board is scrolled or redrawn; binding should not allocate at all.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class GameAdapterAllocationTest {
+
+    /** amount of full-board rebinds to measure, and to warm up with **/
+    private static final int REBINDS = 200;
+
+    @Test
+    public void fullBoardRebind_allocatesNothing() {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+
+        // a finished 9x9 game, so bound tiles show both players and the winning colour
+        Game game = new Game(9);
+        for(int col=0;col<9;col++) {
+            game.choose(0, col);
+            if(game.checkWinconditionReached(0, col) == GameState.IN_PROGRESS) {
+                game.nextMove();
+                game.choose(1, col);
+                game.checkWinconditionReached(1, col);
+                game.nextMove();
+            }
+        }
+        assertEquals(GameState.PLAYER_ONE_WIN, game.getGameOver());
+
+        Context context = RuntimeEnvironment.application;
+        GameAdapter adapter = new GameAdapter(context, game);
+        FrameLayout parent = new FrameLayout(context);
+        GameViewHolder[] holders = new GameViewHolder[adapter.getItemCount()];
+        for(int i=0;i<holders.length;i++) {
+            holders[i] = adapter.onCreateViewHolder(parent, 0);
+        }
+        for(int r=0;r<REBINDS;r++) {
+            rebind(adapter, holders);
+        }
+
+        long id = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(id);
+        // reading the counter may allocate itself
+        long overhead = threads.getThreadAllocatedBytes(id) - before;
+        before = threads.getThreadAllocatedBytes(id);
+        for(int r=0;r<REBINDS;r++) {
+            rebind(adapter, holders);
+        }
+        long allocated = threads.getThreadAllocatedBytes(id) - before - overhead;
+
+        assertEquals(0, allocated / REBINDS);
+    }
+
+    /**
+     * Binds every tile of the board to its holder.
+     * @param adapter the adapter to bind with
+     * @param holders a holder for every position
+     */
+    private static void rebind(GameAdapter adapter, GameViewHolder[] holders) {
+        for(int i=0;i<holders.length;i++) {
+            adapter.onBindViewHolder(holders[i], i);
+        }
+    }
+}
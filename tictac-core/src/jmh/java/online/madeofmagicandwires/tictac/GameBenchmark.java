@@ -0,0 +1,152 @@
+package online.madeofmagicandwires.tictac;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+import java.util.Random;
+
+/**
+ * Benchmarks of the hot paths of {@link Game} for every board size the app allows.
+ *
+ * Run with {@code ./gradlew :tictac-core:jmh}; results are reported in ns/op,
+ * and the gc profiler adds the bytes allocated per op (gc.alloc.rate.norm).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class GameBenchmark {
+
+    /** amount of precomputed random move orders to cycle through **/
+    private static final int MOVE_ORDERS = 64;
+
+    @Param({"3", "4", "5", "6", "7", "8", "9"})
+    public int boardSize;
+
+    /** game used by the benchmarks that mutate the board **/
+    private Game game;
+    /** game left in the middle of a round, for the win check **/
+    private Game midGame;
+    /** last tile played on midGame **/
+    private int midGameRow, midGameCol;
+
+    /** random permutations of every tile on the board **/
+    private int[][] moveOrders;
+    /** the move order and move within it that {@link #choose()} plays next **/
+    private int order, move;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(boardSize);
+        int tiles = boardSize * boardSize;
+
+        moveOrders = new int[MOVE_ORDERS][tiles];
+        for(int[] moveOrder : moveOrders) {
+            for(int i=0;i<tiles;i++) {
+                moveOrder[i] = i;
+            }
+            // Fisher-Yates shuffle
+            for(int i=tiles-1;i>0;i--) {
+                int j = random.nextInt(i + 1);
+                int tmp = moveOrder[i];
+                moveOrder[i] = moveOrder[j];
+                moveOrder[j] = tmp;
+            }
+        }
+
+        game = new Game(boardSize);
+        midGame = createMidGame(random);
+    }
+
+    /**
+     * Claims the next blank tile from the current move order and passes the turn.
+     * Once every tile is taken the board is reset, which adds 1/boardSize^2 of a reset per op.
+     */
+    @Benchmark
+    public TileState choose() {
+        int[] moveOrder = moveOrders[order];
+        int tile = moveOrder[move++];
+        TileState result = game.choose(tile / boardSize, tile % boardSize);
+        game.nextMove();
+        if(move == moveOrder.length) {
+            game.resetBoard();
+            move = 0;
+            order = (order + 1) % MOVE_ORDERS;
+        }
+        return result;
+    }
+
+    /**
+     * Checks the win condition on a half-full board on which nobody has won.
+     */
+    @Benchmark
+    public GameState checkWinconditionReached() {
+        return midGame.checkWinconditionReached(midGameRow, midGameCol);
+    }
+
+    @Benchmark
+    public Game resetBoard() {
+        game.resetBoard();
+        return game;
+    }
+
+    @Benchmark
+    public int nextMove() {
+        return game.nextMove();
+    }
+
+    /**
+     * Plays a full round of random moves from an empty board, as a simulation would.
+     */
+    @Benchmark
+    public GameState randomPlayout() {
+        int[] moveOrder = moveOrders[order];
+        order = (order + 1) % MOVE_ORDERS;
+
+        game.resetBoard();
+        GameState state = GameState.IN_PROGRESS;
+        for(int i=0;i<moveOrder.length && state == GameState.IN_PROGRESS;i++) {
+            int row = moveOrder[i] / boardSize;
+            int col = moveOrder[i] % boardSize;
+            game.choose(row, col);
+            state = game.checkWinconditionReached(row, col);
+            if(state == GameState.IN_PROGRESS) {
+                game.nextMove();
+            }
+        }
+        return state;
+    }
+
+    /**
+     * Plays random moves until half the board is taken without anyone winning.
+     * @param random source of randomness
+     * @return a game still in progress
+     */
+    private Game createMidGame(Random random) {
+        while(true) {
+            Game g = new Game(boardSize);
+            int[] moveOrder = moveOrders[random.nextInt(MOVE_ORDERS)];
+            int moves = moveOrder.length / 2;
+            GameState state = GameState.IN_PROGRESS;
+            for(int i=0;i<moves && state == GameState.IN_PROGRESS;i++) {
+                midGameRow = moveOrder[i] / boardSize;
+                midGameCol = moveOrder[i] % boardSize;
+                g.choose(midGameRow, midGameCol);
+                state = g.checkWinconditionReached(midGameRow, midGameCol);
+                // the turn is not passed after the last move, so the benchmark checks as the player who made it
+                if(state == GameState.IN_PROGRESS && i < moves - 1) {
+                    g.nextMove();
+                }
+            }
+            if(state == GameState.IN_PROGRESS) {
+                return g;
+            }
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package online.madeofmagicandwires.tictac;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the {@link GameJournal}: appending a single event, checkpoints included, and
+ * recovering a journal of thousands of games from its snapshot and a full log. The inverse of
+ * the append time is the events per second; recovery replays {@link #GAMES} snapshot images
+ * and {@link #eventsSinceCheckpoint} events, so divide the latter by its time for replay speed.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@State(Scope.Thread)
+public class GameJournalBenchmark {
+
+    /** Games in the journal **/
+    private static final int GAMES = 10000;
+
+    @Param({"100000", "1000000"})
+    public int eventsSinceCheckpoint;
+
+    private File appendDirectory;
+    private File recoverDirectory;
+    private GameJournal journal;
+    private Game[] games;
+    private SplittableRandom random;
+    private RandomPlayer player;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        random = new SplittableRandom(5);
+        player = new RandomPlayer(random.split());
+
+        // a journal checkpointed with every game in it, then played on until the next checkpoint is due
+        recoverDirectory = Files.createTempDirectory("journal-recover").toFile();
+        GameJournal written = new GameJournal(recoverDirectory, Integer.MAX_VALUE);
+        Game[] writtenGames = create(written);
+        written.checkpoint();
+        int events = 0;
+        while(events < eventsSinceCheckpoint) {
+            events += move(writtenGames[random.nextInt(GAMES)]);
+        }
+        written.close();
+
+        appendDirectory = Files.createTempDirectory("journal-append").toFile();
+        journal = new GameJournal(appendDirectory, eventsSinceCheckpoint);
+        games = create(journal);
+    }
+
+    /**
+     * Fills a journal with games.
+     * @param journal the journal
+     * @return the games, by id
+     * @throws IOException if the journal can not be written
+     */
+    private static Game[] create(GameJournal journal) throws IOException {
+        Game[] games = new Game[GAMES];
+        for(int i=0;i<GAMES;i++) {
+            games[i] = journal.create(i, Rules.ticTacToe(3));
+        }
+        return games;
+    }
+
+    /**
+     * Plays a random turn, or starts a new round once the round is over.
+     * @param game the game
+     * @return the amount of events logged
+     */
+    private int move(Game game) {
+        if(game.getGameOver() != GameState.IN_PROGRESS) {
+            game.resetBoard();
+            return 1;
+        }
+        int tile = player.chooseMove(game);
+        game.choose(tile / 3, tile % 3);
+        if(game.checkWinconditionReached(tile / 3, tile % 3) == GameState.IN_PROGRESS) {
+            game.nextMove();
+            return 3;
+        }
+        return 2;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        journal.close();
+        delete(appendDirectory);
+        delete(recoverDirectory);
+    }
+
+    /**
+     * Deletes a directory and the files in it.
+     * @param directory the directory
+     * @throws IOException if a file can not be deleted
+     */
+    private static void delete(File directory) throws IOException {
+        File[] files = directory.listFiles();
+        if(files != null) {
+            for(File file : files) {
+                Files.delete(file.toPath());
+            }
+        }
+        Files.delete(directory.toPath());
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public void appendEvent() {
+        // what the event did to the game does not matter to the log
+        journal.record(games[0], 0, GameJournal.NEXT, 0);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public long recover() throws IOException {
+        GameJournal recovered = new GameJournal(recoverDirectory, Integer.MAX_VALUE);
+        long replayed = recovered.getReplayedEvents();
+        recovered.close();
+        return replayed;
+    }
+}
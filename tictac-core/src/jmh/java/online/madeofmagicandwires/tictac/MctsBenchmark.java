@@ -0,0 +1,58 @@
+package online.madeofmagicandwires.tictac;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the Monte Carlo Tree Search: a bare random playout and a full iteration
+ * (selection, expansion, playout and backpropagation). Both should report 0 B/op for
+ * gc.alloc.rate.norm; the inverse of the iteration time is the playouts per second per thread.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class MctsBenchmark {
+
+    @Param({"3", "5", "7", "9"})
+    public int boardSize;
+
+    /** empty board every playout starts from **/
+    private PlayoutBoard start;
+    /** board the playouts are played on **/
+    private PlayoutBoard scratch;
+    private SplittableRandom random;
+    /** tree grown by {@link #iterate()}; large enough not to fill up during a run **/
+    private MctsTree tree;
+
+    @Setup
+    public void setup() {
+        Game game = new Game(boardSize);
+        start = new PlayoutBoard(game.rules);
+        start.load(game);
+        scratch = new PlayoutBoard(game.rules);
+        random = new SplittableRandom(boardSize);
+        tree = new MctsTree(game.rules, 1 << 20, boardSize);
+        tree.moveTo(game);
+    }
+
+    @Benchmark
+    public GameState playout() {
+        scratch.copyFrom(start);
+        return scratch.playout(random);
+    }
+
+    @Benchmark
+    public int iterate() {
+        tree.iterate();
+        return tree.size();
+    }
+}
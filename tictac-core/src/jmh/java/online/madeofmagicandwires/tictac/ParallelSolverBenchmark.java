@@ -0,0 +1,66 @@
+package online.madeofmagicandwires.tictac;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scaling benchmark of the {@link ParallelSolver}: a fixed-depth search from the empty board
+ * on pools of 1 up to 8 threads. Speedup is the 1-thread time divided by the N-thread time;
+ * pass {@code -p threads=...} to match the amount of cores of the machine.
+ *
+ * The transposition table is cleared before every search, so every op searches from scratch.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+public class ParallelSolverBenchmark {
+
+    /** depth searched for every board size, chosen so a single thread takes around a second **/
+    private static final int[] DEPTHS = {0, 0, 0, 0, 0, 9, 8, 7, 7, 6};
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    @Param({"5", "6", "7"})
+    public int boardSize;
+
+    private ForkJoinPool pool;
+    private SharedTranspositionTable table;
+    private ParallelSolver solver;
+    private Game game;
+
+    @Setup
+    public void setup() {
+        pool = new ForkJoinPool(threads);
+        table = new SharedTranspositionTable(1 << 20);
+        // no time budget; solve() is given a deadline that never passes
+        solver = new ParallelSolver(pool, 0, DEPTHS[boardSize], table);
+        game = new Game(boardSize);
+    }
+
+    @Setup(Level.Invocation)
+    public void clearTable() {
+        table.clear();
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public int solve() {
+        return solver.solve(game, Long.MAX_VALUE);
+    }
+}
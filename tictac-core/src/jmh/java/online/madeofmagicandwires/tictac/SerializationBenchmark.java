@@ -0,0 +1,60 @@
+package online.madeofmagicandwires.tictac;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks a java.io.Serializable round-trip of a {@link Game}, as MainActivity used to do on
+ * every configuration change, against a round-trip through the packed {@link GameCodec}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class SerializationBenchmark {
+
+    @Param({"3", "4", "5", "6", "7", "8", "9"})
+    public int boardSize;
+
+    private Game game;
+
+    @Setup
+    public void setup() {
+        game = new Game(boardSize);
+        // claim every other tile of the first rows so the board is not empty
+        for(int i=0;i<boardSize-1;i+=2) {
+            for(int j=0;j<boardSize;j+=2) {
+                game.choose(i, j);
+                game.nextMove();
+            }
+        }
+    }
+
+    @Benchmark
+    public Game serializableRoundTrip() throws IOException, ClassNotFoundException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try(ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(game);
+        }
+        try(ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            return (Game) in.readObject();
+        }
+    }
+
+    @Benchmark
+    public Game packedRoundTrip() {
+        return GameCodec.decode(GameCodec.encode(game));
+    }
+}
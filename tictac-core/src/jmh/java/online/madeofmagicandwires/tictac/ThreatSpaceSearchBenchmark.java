@@ -0,0 +1,76 @@
+package online.madeofmagicandwires.tictac;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the {@link ThreatSpaceSearch} on gomoku boards: proving a win by continuous
+ * fours, a win that needs a double three, and failing to find a win in a quiet position, which
+ * searches every threat down to the full depth.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class ThreatSpaceSearchBenchmark {
+
+    @Param({"9", "15"})
+    public int boardSize;
+
+    private ThreatSpaceSearch search;
+    /** Player One to move, winning by fours **/
+    private Game fours;
+    /** Player One to move, winning by a double three **/
+    private Game threes;
+    /** Player One to move, scattered tiles of both players and no win **/
+    private Game quiet;
+
+    @Setup
+    public void setup() {
+        search = new ThreatSpaceSearch();
+        int w = boardSize;
+        fours = play(new int[] {(4 * w) + 1, (4 * w) + 2, (4 * w) + 3, (2 * w) + 4, (3 * w) + 4, w + 1, w + 2, w + 3},
+                new int[] {4 * w, 4, w, (w * w) - 1, (w * w) - 4, (w * w) - 7, (w - 2) * w, ((w - 1) * w) - 1});
+        threes = play(new int[] {(4 * w) + 2, (4 * w) + 3, (2 * w) + 4, (3 * w) + 4},
+                new int[] {(w * w) - 1, (w * w) - 4, (w * w) - 7, (w - 2) * w});
+        quiet = play(new int[] {(4 * w) + 4, (2 * w) + 2, (6 * w) + 3, (3 * w) + 6},
+                new int[] {(4 * w) + 5, (3 * w) + 3, (5 * w) + 5, (2 * w) + 6});
+    }
+
+    /**
+     * Sets up a gomoku game.
+     * @param one the tiles of Player One
+     * @param two the tiles of Player Two, as many as those of Player One
+     * @return the game, with Player One to move
+     */
+    private Game play(int[] one, int[] two) {
+        Game game = new Game(Rules.gomoku(boardSize));
+        for(int i=0;i<one.length;i++) {
+            game.play(one[i]);
+            game.play(two[i]);
+        }
+        return game;
+    }
+
+    @Benchmark
+    public int winByFours() {
+        return search.findWin(fours, Long.MAX_VALUE);
+    }
+
+    @Benchmark
+    public int winByThrees() {
+        return search.findWin(threes, Long.MAX_VALUE);
+    }
+
+    @Benchmark
+    public int noWin() {
+        return search.findWin(quiet, Long.MAX_VALUE);
+    }
+}
@@ -0,0 +1,322 @@
+package online.madeofmagicandwires.tictac;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * BitBoard.java
+ * Packed representation of a tic-tac-toe board, keeping one bit per tile for each player.
+ *
+ * Tiles are numbered row by row, so tile (row, col) is bit row*width+col.
+ * Boards of up to 64 tiles fit in a single long per player; bigger boards spill over
+ * into additional longs.
+ *
+ * @author Joost Bremmer
+ * @version 1.0
+ * @see WinLines
+ */
+final class BitBoard implements Serializable {
+
+    /** Amount of columns on the board **/
+    final int width;
+    /** Amount of rows on the board **/
+    final int height;
+    /** the amount of longs needed to hold a bit for every tile **/
+    final int words;
+    /** tiles owned by Player One **/
+    private final long[] playerOne;
+    /** tiles owned by Player Two **/
+    private final long[] playerTwo;
+    /** precomputed winning lines of square boards; shared, so not serialized **/
+    private transient WinLines lines;
+
+    /**
+     * Constructor. Creates an empty board of width*height tiles.
+     * @param width amount of columns on the board
+     * @param height amount of rows on the board
+     */
+    BitBoard(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.words = wordsFor(width * height);
+        this.playerOne = new long[words];
+        this.playerTwo = new long[words];
+    }
+
+    /**
+     * Copy constructor.
+     * @param other the board to copy
+     */
+    BitBoard(BitBoard other) {
+        this.width = other.width;
+        this.height = other.height;
+        this.words = other.words;
+        this.playerOne = other.playerOne.clone();
+        this.playerTwo = other.playerTwo.clone();
+        this.lines = other.lines;
+    }
+
+    /**
+     * Gets the amount of longs needed to hold a bit for every tile of a board.
+     * @param tiles the amount of tiles on the board
+     * @return the amount of words per player
+     */
+    static int wordsFor(int tiles) {
+        return (tiles + 63) >>> 6;
+    }
+
+    /**
+     * Gets the TileState of a specific tile
+     * @param tile the tile index, counting row by row from 0
+     * @return BLANK, PLAYER_ONE or PLAYER_TWO
+     */
+    TileState get(int tile) {
+        int w = tile >>> 6;
+        long bit = 1L << tile;
+        if((playerOne[w] & bit) != 0) {
+            return TileState.PLAYER_ONE;
+        }
+        if((playerTwo[w] & bit) != 0) {
+            return TileState.PLAYER_TWO;
+        }
+        return TileState.BLANK;
+    }
+
+    /**
+     * Checks whether nobody has claimed a tile yet.
+     * @param tile the tile index, counting row by row from 0
+     * @return true if the tile is blank
+     */
+    boolean isBlank(int tile) {
+        int w = tile >>> 6;
+        return ((playerOne[w] | playerTwo[w]) & (1L << tile)) == 0;
+    }
+
+    /**
+     * Claims a tile for a player.
+     * @param tile the tile index, counting row by row from 0
+     * @param playerOne true to claim it for Player One, false for Player Two
+     */
+    void set(int tile, boolean playerOne) {
+        long[] bits = playerOne ? this.playerOne : this.playerTwo;
+        bits[tile >>> 6] |= 1L << tile;
+    }
+
+    /**
+     * Blanks a single tile.
+     * @param tile the tile index, counting row by row from 0
+     */
+    void unset(int tile) {
+        long keep = ~(1L << tile);
+        playerOne[tile >>> 6] &= keep;
+        playerTwo[tile >>> 6] &= keep;
+    }
+
+    /**
+     * Checks whether a player owns every tile of any line running through the given tile.
+     * Only for square boards, on which a line spans the whole board.
+     * @param tile the tile index, counting row by row from 0
+     * @param playerOne true to check Player One's tiles, false for Player Two's
+     * @return true if the player has completed a row, column or diagonal through tile
+     */
+    boolean completesLine(int tile, boolean playerOne) {
+        long[] bits = playerOne ? this.playerOne : this.playerTwo;
+        for(int line : lines().linesThrough(tile)) {
+            if(lines.isComplete(bits, line)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether a player owns a run of at least winLength tiles in a row, column or diagonal
+     * through the given tile. Scans outwards from the tile in each of the four directions,
+     * never looking further than winLength - 1 tiles either way.
+     * @param row row of the tile
+     * @param col column of the tile
+     * @param playerOne true to check Player One's tiles, false for Player Two's
+     * @param winLength amount of tiles in a row needed
+     * @return true if the tile is part of a long enough run
+     */
+    boolean completesRun(int row, int col, boolean playerOne, int winLength) {
+        long[] bits = playerOne ? this.playerOne : this.playerTwo;
+        return runLength(bits, row, col, 0, 1, winLength) >= winLength
+                || runLength(bits, row, col, 1, 0, winLength) >= winLength
+                || runLength(bits, row, col, 1, 1, winLength) >= winLength
+                || runLength(bits, row, col, 1, -1, winLength) >= winLength;
+    }
+
+    /**
+     * Counts the tiles in a row owned by a player through a tile, along one direction.
+     * @param bits the player's tiles
+     * @param row row of the tile, which the player must own
+     * @param col column of the tile
+     * @param dRow step between the rows of consecutive tiles
+     * @param dCol step between the columns of consecutive tiles
+     * @param max amount at which to stop counting
+     * @return the length of the run, up to max
+     */
+    private int runLength(long[] bits, int row, int col, int dRow, int dCol, int max) {
+        int count = 1;
+        // forwards
+        int r = row + dRow;
+        int c = col + dCol;
+        while(count < max && r >= 0 && r < height && c >= 0 && c < width && isSet(bits, (r * width) + c)) {
+            count++;
+            r += dRow;
+            c += dCol;
+        }
+        // and backwards
+        r = row - dRow;
+        c = col - dCol;
+        while(count < max && r >= 0 && r < height && c >= 0 && c < width && isSet(bits, (r * width) + c)) {
+            count++;
+            r -= dRow;
+            c -= dCol;
+        }
+        return count;
+    }
+
+    /**
+     * Marks every tile of the runs of at least winLength tiles through the given tile,
+     * following each run as far as the player's tiles go.
+     * @param row row of the tile, which the player must own
+     * @param col column of the tile
+     * @param playerOne true to follow Player One's tiles, false for Player Two's
+     * @param winLength amount of tiles in a row needed
+     * @param into words to set the bit of every tile of a winning run in
+     */
+    void markRuns(int row, int col, boolean playerOne, int winLength, long[] into) {
+        long[] bits = playerOne ? this.playerOne : this.playerTwo;
+        markRun(bits, row, col, 0, 1, winLength, into);
+        markRun(bits, row, col, 1, 0, winLength, into);
+        markRun(bits, row, col, 1, 1, winLength, into);
+        markRun(bits, row, col, 1, -1, winLength, into);
+    }
+
+    /**
+     * Marks the run through a tile along one direction, if it is long enough.
+     * @param bits the player's tiles
+     * @param row row of the tile
+     * @param col column of the tile
+     * @param dRow step between the rows of consecutive tiles
+     * @param dCol step between the columns of consecutive tiles
+     * @param winLength amount of tiles in a row needed
+     * @param into words to set the bit of every tile of the run in
+     */
+    private void markRun(long[] bits, int row, int col, int dRow, int dCol, int winLength, long[] into) {
+        int forwards = reach(bits, row, col, dRow, dCol);
+        int backwards = reach(bits, row, col, -dRow, -dCol);
+        if(forwards + backwards + 1 < winLength) {
+            return;
+        }
+        for(int i=-backwards;i<=forwards;i++) {
+            int tile = ((row + (i * dRow)) * width) + col + (i * dCol);
+            into[tile >>> 6] |= 1L << tile;
+        }
+    }
+
+    /**
+     * Counts the tiles owned by a player beyond a tile, along one direction only.
+     * @param bits the player's tiles
+     * @param row row of the tile
+     * @param col column of the tile
+     * @param dRow step between the rows of consecutive tiles
+     * @param dCol step between the columns of consecutive tiles
+     * @return the amount of consecutive tiles owned after the tile itself
+     */
+    private int reach(long[] bits, int row, int col, int dRow, int dCol) {
+        int count = 0;
+        int r = row + dRow;
+        int c = col + dCol;
+        while(r >= 0 && r < height && c >= 0 && c < width && isSet(bits, (r * width) + c)) {
+            count++;
+            r += dRow;
+            c += dCol;
+        }
+        return count;
+    }
+
+    /**
+     * Gets the tiles of a player as an array that is never written to, for a snapshot.
+     * @param playerOne true for Player One's tiles, false for Player Two's
+     * @param previous the array of an earlier snapshot, or null
+     * @return previous if the player's tiles are the same, otherwise a copy of them
+     * @see GameSnapshot
+     */
+    long[] share(boolean playerOne, long[] previous) {
+        long[] words = playerOne ? this.playerOne : this.playerTwo;
+        return Arrays.equals(words, previous) ? previous : words.clone();
+    }
+
+    /**
+     * Gets the claimed tiles of one word of the board.
+     * @param word index of the word, below {@link #words}
+     * @return the bits of the tiles claimed by either player
+     */
+    long claimed(int word) {
+        return playerOne[word] | playerTwo[word];
+    }
+
+    /**
+     * Checks a single bit.
+     * @param bits the tiles of a player
+     * @param tile the tile index, counting row by row from 0
+     * @return true if the bit of the tile is set
+     */
+    private static boolean isSet(long[] bits, int tile) {
+        return (bits[tile >>> 6] & (1L << tile)) != 0;
+    }
+
+    /**
+     * Blanks every tile on the board.
+     */
+    void clear() {
+        Arrays.fill(playerOne, 0L);
+        Arrays.fill(playerTwo, 0L);
+    }
+
+    /**
+     * Creates a matrix representation of this board.
+     * @return a new height*width matrix containing every tile and its state, row by row
+     */
+    TileState[][] toMatrix() {
+        TileState[][] matrix = new TileState[height][width];
+        for(int i=0;i<height;i++) {
+            for(int j=0;j<width;j++) {
+                matrix[i][j] = get((i * width) + j);
+            }
+        }
+        return matrix;
+    }
+
+    /**
+     * Replaces the contents of this board with those of a matrix.
+     * Tiles other than PLAYER_ONE or PLAYER_TWO are considered blank.
+     * @param matrix height*width matrix containing every tile and its state, row by row
+     */
+    void load(TileState[][] matrix) {
+        clear();
+        for(int i=0;i<height;i++) {
+            for(int j=0;j<width;j++) {
+                if(matrix[i][j] == TileState.PLAYER_ONE) {
+                    set((i * width) + j, true);
+                } else if(matrix[i][j] == TileState.PLAYER_TWO) {
+                    set((i * width) + j, false);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the shared winning lines, creating them on first use or after deserialization.
+     * @return the winning lines for this board size
+     */
+    private WinLines lines() {
+        if(lines == null) {
+            lines = WinLines.forSize(width);
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,87 @@
+package online.madeofmagicandwires.tictac;
+
+/**
+ * BoardChanges.java
+ * The tiles of a {@link Game} that changed since the changes were last cleared, and how they changed,
+ * so a view can redraw only those tiles instead of the whole board.
+ *
+ * Every tile is listed once, in the order it first changed; further changes to a listed tile
+ * are added to its kind. Recording a change never allocates.
+ *
+ * @author Joost Bremmer
+ * @version 1.0
+ * @see Game#getChanges()
+ */
+public final class BoardChanges {
+
+    /** Kind of change of a tile claimed by a player **/
+    public static final int CLAIMED = 1;
+    /** Kind of change of a tile that became part of the winning line **/
+    public static final int WINNING = 1 << 1;
+    /** Kind of change of a tile blanked by a reset **/
+    public static final int CLEARED = 1 << 2;
+
+    /** the changed tiles, in the order they first changed **/
+    private final int[] tiles;
+    /** kind of change of every tile by tile index; 0 if unchanged **/
+    private final int[] kinds;
+    /** amount of changed tiles **/
+    private int size;
+
+    /**
+     * Constructor. Creates an empty change set.
+     * @param tiles the amount of tiles on the board
+     */
+    BoardChanges(int tiles) {
+        this.tiles = new int[tiles];
+        this.kinds = new int[tiles];
+    }
+
+    /**
+     * Records a change of a tile.
+     * @param tile the tile index, counting row by row from 0
+     * @param kind one or more of {@link #CLAIMED}, {@link #WINNING} and {@link #CLEARED}
+     */
+    void add(int tile, int kind) {
+        if(kinds[tile] == 0) {
+            tiles[size++] = tile;
+        }
+        kinds[tile] |= kind;
+    }
+
+    /**
+     * Gets the amount of changed tiles.
+     * @return the amount of tiles listed
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets a changed tile.
+     * @param i index of the change, below {@link #size()}
+     * @return the tile index, counting row by row from 0
+     */
+    public int getTile(int i) {
+        return tiles[i];
+    }
+
+    /**
+     * Gets how a changed tile changed.
+     * @param i index of the change, below {@link #size()}
+     * @return every kind of change of the tile, or'ed together
+     */
+    public int getKind(int i) {
+        return kinds[tiles[i]];
+    }
+
+    /**
+     * Forgets every change, once they have been handled.
+     */
+    public void clear() {
+        for(int i=0;i<size;i++) {
+            kinds[tiles[i]] = 0;
+        }
+        size = 0;
+    }
+}
@@ -0,0 +1,264 @@
+package online.madeofmagicandwires.tictac;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * EndgameDatabase.java
+ * Table holding the outcome under perfect play of every reachable position of a small board.
+ *
+ * Positions are indexed by reading the board as a base-3 number, tile 0 being the least
+ * significant digit: 0 for a blank tile, 1 for Player One and 2 for Player Two.
+ * Every outcome takes up 2 bits, so the table for a 4x4 board (3^16 positions) fits in 11MB.
+ * The file is memory-mapped rather than read, so opening it is instant and only the pages
+ * actually looked at are loaded.
+ *
+ * Files are created by {@link EndgameDatabaseGenerator} and consist of an 8 byte header
+ * (the magic "TTDB", a format version, the board size and 2 reserved bytes) followed by the
+ * packed outcomes, 4 to a byte.
+ *
+ * @author Joost Bremmer
+ * @version 1.0
+ */
+public final class EndgameDatabase {
+
+    /** Largest board size for which the table of outcomes is small enough to store **/
+    public static final int MAX_BOARD_SIZE = 4;
+
+    /** Outcome of positions not reachable in a regular game **/
+    static final int UNKNOWN = 0;
+    /** Outcome of positions won by Player One under perfect play **/
+    static final int PLAYER_ONE_WIN = 1;
+    /** Outcome of positions won by Player Two under perfect play **/
+    static final int PLAYER_TWO_WIN = 2;
+    /** Outcome of positions drawn under perfect play **/
+    static final int DRAW = 3;
+
+    /** Identifies endgame database files **/
+    private static final int MAGIC = ('T' << 24) | ('T' << 16) | ('D' << 8) | 'B';
+    /** Version of the file format **/
+    private static final byte VERSION = 1;
+    /** Size of the file header, in bytes **/
+    static final int HEADER_BYTES = 8;
+
+    /** Represents the board size used for specific instances **/
+    public final int boardSize;
+    /** header followed by the packed outcomes **/
+    private final ByteBuffer data;
+    /** 3^tile for every tile, to compute position indices **/
+    private final int[] powers;
+
+    /**
+     * Constructor.
+     * @param boardSize the "cubic" amount of tiles on the board
+     * @param data header followed by the packed outcomes
+     */
+    private EndgameDatabase(int boardSize, ByteBuffer data) {
+        this.boardSize = boardSize;
+        this.data = data;
+        this.powers = powersOfThree(boardSize * boardSize);
+    }
+
+    /**
+     * Creates an empty, in-memory table of outcomes to be filled by the generator.
+     * @param boardSize the "cubic" amount of tiles on the board
+     * @return a table holding UNKNOWN for every position
+     */
+    static EndgameDatabase create(int boardSize) {
+        if(boardSize < 1 || boardSize > MAX_BOARD_SIZE) {
+            throw new IllegalArgumentException("No endgame database possible for a board size of " + boardSize);
+        }
+        ByteBuffer data = ByteBuffer.allocate(fileSize(boardSize));
+        data.putInt(0, MAGIC);
+        data.put(4, VERSION);
+        data.put(5, (byte) boardSize);
+        return new EndgameDatabase(boardSize, data);
+    }
+
+    /**
+     * Memory-maps an endgame database file.
+     * @param file the file created by {@link EndgameDatabaseGenerator}
+     * @return the endgame database stored in the file
+     * @throws IOException if the file can not be read or is not an endgame database
+     */
+    public static EndgameDatabase open(File file) throws IOException {
+        try(RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            return map(raf.getChannel(), 0, raf.length());
+        }
+    }
+
+    /**
+     * Memory-maps an endgame database stored in part of a file,
+     * for example an uncompressed Android asset.
+     * The mapping stays valid after the channel is closed.
+     * @param channel channel of the file holding the database
+     * @param offset position of the database within the file, in bytes
+     * @param length size of the database, in bytes
+     * @return the endgame database stored in the file
+     * @throws IOException if the file can not be read or is not an endgame database
+     */
+    public static EndgameDatabase map(FileChannel channel, long offset, long length) throws IOException {
+        ByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+        if(length < HEADER_BYTES || data.getInt(0) != MAGIC || data.get(4) != VERSION) {
+            throw new IOException("Not an endgame database");
+        }
+        int boardSize = data.get(5);
+        if(boardSize < 1 || boardSize > MAX_BOARD_SIZE
+                || length != fileSize(boardSize)) {
+            throw new IOException("Endgame database is corrupt");
+        }
+        return new EndgameDatabase(boardSize, data);
+    }
+
+    /**
+     * Writes this database to a file.
+     * @param file the file to write to; overwritten if it exists
+     * @throws IOException if the file can not be written
+     */
+    void writeTo(File file) throws IOException {
+        try(FileOutputStream out = new FileOutputStream(file)) {
+            ByteBuffer source = data.duplicate();
+            source.clear();
+            FileChannel channel = out.getChannel();
+            while(source.hasRemaining()) {
+                channel.write(source);
+            }
+        }
+    }
+
+    /**
+     * Gets the outcome of a position under perfect play.
+     * @param game the position to look up; must have a board of {@link #boardSize}
+     * @return the outcome of the game if both players play perfectly from here on,
+     *         or null if the position can not be reached in a regular game
+     */
+    public GameState lookup(Game game) {
+        switch (get(index(game))) {
+            case PLAYER_ONE_WIN:
+                return GameState.PLAYER_ONE_WIN;
+            case PLAYER_TWO_WIN:
+                return GameState.PLAYER_TWO_WIN;
+            case DRAW:
+                return GameState.DRAW;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Picks a move for the current player that keeps the best outcome within reach.
+     * @param game the position to pick a move for; must have a board of {@link #boardSize}
+     * @return the tile index (row * boardSize + col) to claim,
+     *         or -1 if the position is not in the database or no tile is left
+     */
+    public int bestMove(Game game) {
+        int index = index(game);
+        if(get(index) == UNKNOWN) {
+            return -1;
+        }
+
+        boolean playerOne = game.getPlayerOneTurn();
+        int win = playerOne ? PLAYER_ONE_WIN : PLAYER_TWO_WIN;
+        int digit = playerOne ? 1 : 2;
+        int bestMove = -1;
+        int bestRank = -1;
+        for(int tile=0;tile<boardSize*boardSize;tile++) {
+            if(!game.isBlank(tile)) {
+                continue;
+            }
+            int outcome = get(index + (digit * powers[tile]));
+            // rank outcomes from the point of view of the current player
+            int rank = (outcome == win) ? 2 : (outcome == DRAW) ? 1 : 0;
+            if(rank > bestRank) {
+                bestRank = rank;
+                bestMove = tile;
+                if(rank == 2) {
+                    break;
+                }
+            }
+        }
+        return bestMove;
+    }
+
+    /**
+     * Computes the index of a position.
+     * @param game the position; must have a board of {@link #boardSize}
+     * @return the board read as a base-3 number
+     */
+    int index(Game game) {
+        if(game.boardSize != boardSize || !game.rules.isClassic()) {
+            throw new IllegalArgumentException("Database is for tic-tac-toe on a board size of " + boardSize +
+                    ", not " + game.rules);
+        }
+        int index = 0;
+        for(int tile=0;tile<boardSize*boardSize;tile++) {
+            TileState state = game.getTile(tile / boardSize, tile % boardSize);
+            if(state == TileState.PLAYER_ONE) {
+                index += powers[tile];
+            } else if(state == TileState.PLAYER_TWO) {
+                index += 2 * powers[tile];
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Gets 3^tile, the amount a tile adds to the index for every step its state goes up.
+     * @param tile the tile index, counting row by row from 0
+     * @return the weight of the tile in a position index
+     */
+    int power(int tile) {
+        return powers[tile];
+    }
+
+    /**
+     * Gets the stored outcome of a position.
+     * @param index index of the position
+     * @return UNKNOWN, PLAYER_ONE_WIN, PLAYER_TWO_WIN or DRAW
+     */
+    int get(int index) {
+        int packed = data.get(HEADER_BYTES + (index >>> 2));
+        return (packed >>> ((index & 3) << 1)) & 3;
+    }
+
+    /**
+     * Stores the outcome of a position.
+     * @param index index of the position
+     * @param outcome UNKNOWN, PLAYER_ONE_WIN, PLAYER_TWO_WIN or DRAW
+     */
+    void set(int index, int outcome) {
+        int offset = HEADER_BYTES + (index >>> 2);
+        int shift = (index & 3) << 1;
+        int packed = data.get(offset);
+        data.put(offset, (byte) ((packed & ~(3 << shift)) | (outcome << shift)));
+    }
+
+    /**
+     * Computes the size of the database for a given board size.
+     * @param boardSize the "cubic" amount of tiles on the board
+     * @return the size of the header and every packed outcome, in bytes
+     */
+    private static int fileSize(int boardSize) {
+        int positions = powersOfThree((boardSize * boardSize) + 1)[boardSize * boardSize];
+        return HEADER_BYTES + ((positions + 3) >>> 2);
+    }
+
+    /**
+     * Computes the powers of three up to a given exponent.
+     * @param count amount of powers to compute
+     * @return 3^0 up to and including 3^(count-1)
+     */
+    private static int[] powersOfThree(int count) {
+        int[] powers = new int[count];
+        int power = 1;
+        for(int i=0;i<count;i++) {
+            powers[i] = power;
+            power *= 3;
+        }
+        return powers;
+    }
+}
@@ -0,0 +1,133 @@
+package online.madeofmagicandwires.tictac;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * EndgameDatabaseGenerator.java
+ * Offline tool solving every reachable position of a small board into an {@link EndgameDatabase}.
+ *
+ * Every position reachable from the empty board is visited once; its outcome is only decided
+ * after the outcomes of all of its successors are known, working back from the positions in which
+ * the game ends. Outcomes are memoized in the database being built, so transpositions are not
+ * solved twice.
+ *
+ * Usage: {@code EndgameDatabaseGenerator <output directory> <board size>...}
+ * writes a file named after {@link #fileName(int)} for every given board size.
+ *
+ * @author Joost Bremmer
+ * @version 1.0
+ */
+public class EndgameDatabaseGenerator {
+
+    /** database being filled **/
+    private final EndgameDatabase database;
+    /** position being solved **/
+    private final Game game;
+    /** amount of positions solved so far **/
+    private long positions;
+
+    /**
+     * Constructor.
+     * @param boardSize the "cubic" amount of tiles on the board
+     */
+    EndgameDatabaseGenerator(int boardSize) {
+        this.database = EndgameDatabase.create(boardSize);
+        this.game = new Game(boardSize);
+    }
+
+    /**
+     * Gets the name of the database file for a given board size.
+     * @param boardSize the "cubic" amount of tiles on the board
+     * @return the file name used by the generator and expected by the app
+     */
+    public static String fileName(int boardSize) {
+        return "endgame-" + boardSize + ".ttdb";
+    }
+
+    /**
+     * Solves every reachable position from the empty board.
+     * @return the filled database
+     */
+    EndgameDatabase generate() {
+        solve(0);
+        return database;
+    }
+
+    /**
+     * Solves a position still in progress and all positions reachable from it.
+     * @param index index of the current position
+     * @return the outcome of the current position under perfect play
+     */
+    private int solve(int index) {
+        int known = database.get(index);
+        if(known != EndgameDatabase.UNKNOWN) {
+            return known;
+        }
+
+        boolean playerOne = game.getPlayerOneTurn();
+        int win = playerOne ? EndgameDatabase.PLAYER_ONE_WIN : EndgameDatabase.PLAYER_TWO_WIN;
+        int loss = playerOne ? EndgameDatabase.PLAYER_TWO_WIN : EndgameDatabase.PLAYER_ONE_WIN;
+        int digit = playerOne ? 1 : 2;
+
+        // every successor is solved, even after a win is found, so that positions reached
+        // through bad moves can be looked up as well.
+        int best = loss;
+        for(int tile=0;tile<game.boardSize*game.boardSize;tile++) {
+            if(!game.isBlank(tile)) {
+                continue;
+            }
+            int childIndex = index + (digit * database.power(tile));
+            GameState gs = game.play(tile);
+            int outcome;
+            if(gs == GameState.IN_PROGRESS) {
+                outcome = solve(childIndex);
+            } else {
+                outcome = (gs == GameState.DRAW) ? EndgameDatabase.DRAW : win;
+                if(database.get(childIndex) == EndgameDatabase.UNKNOWN) {
+                    database.set(childIndex, outcome);
+                    positions++;
+                }
+            }
+            game.unplay();
+
+            if(outcome == win || (outcome == EndgameDatabase.DRAW && best == loss)) {
+                best = outcome;
+            }
+        }
+
+        database.set(index, best);
+        positions++;
+        return best;
+    }
+
+    /**
+     * Generates endgame databases.
+     * @param args the output directory, followed by the board sizes to generate databases for
+     * @throws IOException if a database can not be written
+     */
+    public static void main(String[] args) throws IOException {
+        if(args.length < 2) {
+            System.err.println("Usage: EndgameDatabaseGenerator <output directory> <board size>...");
+            System.exit(1);
+        }
+
+        File outputDir = new File(args[0]);
+        if(!outputDir.isDirectory() && !outputDir.mkdirs()) {
+            throw new IOException("Could not create " + outputDir);
+        }
+
+        for(int i=1;i<args.length;i++) {
+            int boardSize = Integer.parseInt(args[i]);
+            long start = System.nanoTime();
+            EndgameDatabaseGenerator generator = new EndgameDatabaseGenerator(boardSize);
+            EndgameDatabase database = generator.generate();
+
+            File file = new File(outputDir, fileName(boardSize));
+            database.writeTo(file);
+            System.out.println("Solved " + generator.positions + " positions of " + boardSize + "*" + boardSize +
+                    " in " + ((System.nanoTime() - start) / 1000000) + "ms; the empty board is a " +
+                    database.lookup(new Game(boardSize)) + " Wrote " + file);
+        }
+    }
+}
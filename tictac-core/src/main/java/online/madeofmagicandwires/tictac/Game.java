@@ -0,0 +1,916 @@
+package online.madeofmagicandwires.tictac;
+
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+
+
+/**
+ * Game.java
+ * Game class representing a data model for tic-tac-toe and methods for playing.
+ * Other variants of k-in-a-row, such as Connect Four, are played by passing their {@link Rules}.
+ *
+ * @author Joost Bremmer
+ * @version 2.0
+ *
+ */
+public class Game implements Serializable {
+
+    /**
+     * The ways in which {@link #checkWinconditionReached(int, int)} can decide the state of the game
+     * under classic rules. Under any other rules, the state is always decided by scanning at most
+     * winLength tiles in each direction from the last move.
+     * @see Rules#isClassic()
+     */
+    public enum WinDetection {
+        /** Checks the lines through the played tile against the board itself **/
+        SCANNING,
+        /** Keeps per-line tile counters up to date on every move; decides in constant time **/
+        INCREMENTAL
+    }
+
+    /** Default size of a tic-tac-toe board. **/
+    static final public int DEFAULT_BOARD_SIZE = 3;
+
+    /** Represents the board size used for specific instances; the width if the board is not square **/
+    public final int boardSize;
+    /** Represents the variant of k-in-a-row played by specific instances **/
+    public final Rules rules;
+    /** Represents how this instance checks for win conditions **/
+    public final WinDetection winDetection;
+    /** Bitboard representing the state of the board **/
+    private BitBoard board;
+    /** Tiles owned by each player per line, used in INCREMENTAL mode **/
+    private LineCounters counters;
+    /** Keeps track of the sum of moves played **/
+    private int movesPlayed;
+    /**
+     * Array that keeps track of the amount of wins by both players **/
+    private int[] wins;
+    /**
+     * Keeps track of the current state of the game **/
+    private GameState gameOver;
+    /**
+     * Keeps track on whose turn it is **/
+    private Boolean playerOneTurn;
+    /**
+     * Zobrist hash of the board and whose turn it is, updated on every move;
+     * one for each orientation of the board.
+     * @see Symmetry **/
+    private long[] hashes;
+    /** Keys used to compute the hash; shared, so not serialized **/
+    private transient Zobrist zobrist;
+    /** Tiles of the line that won the round, one bit per tile **/
+    private long[] winningTiles;
+    /** Moves of the current round, for undoing and redoing them **/
+    private MoveLog log;
+    /** Tiles changed through the public methods since the changes were last cleared **/
+    private transient BoardChanges changes;
+    /** The state as of the last public change, for readers on other threads **/
+    private transient volatile GameSnapshot snapshot;
+    /** Journal logging every public change, or null **/
+    private transient GameJournal journal;
+    /** Id of this game in its journal **/
+    private transient long journalId;
+    /** True while a journal replays events on this game, which need not be published one by one **/
+    private transient boolean replaying;
+
+    /**
+     * Most specific constructor. Creates an instance playing by the given rules.
+     * @param rules the board size, win length and gravity to play with
+     * @param winDetection how win conditions should be checked under classic rules
+     * @see WinDetection
+     */
+    public Game(Rules rules, WinDetection winDetection) {
+        this.boardSize = rules.width;
+        this.rules = rules;
+        this.winDetection = winDetection;
+        initBoard();
+    }
+
+    /**
+     * Constructor. Creates an instance playing by the given rules,
+     * deciding classic win conditions incrementally.
+     * @param rules the board size, win length and gravity to play with
+     */
+    public Game(Rules rules) {
+        this(rules, WinDetection.INCREMENTAL);
+    }
+
+    /**
+     * Constructor. Creates an instance of tic-tac-toe using a board size of n^n tiles.
+     * @param boardSize the "cubic" amount of tiles created.
+     * @param winDetection how win conditions should be checked
+     * @see WinDetection
+     */
+    public Game(int boardSize, WinDetection winDetection) {
+        this(Rules.ticTacToe(boardSize), winDetection);
+    }
+
+    /**
+     * Constructor. Creates an instance using a board size of n^n tiles,
+     * deciding win conditions incrementally.
+     * @param boardSize the "cubic" amount of tiles created.
+     */
+    public Game(int boardSize) {
+        this(boardSize, WinDetection.INCREMENTAL);
+    }
+
+    /**
+     * Copy constructor. Creates an independent instance in the same state as another game,
+     * for example to search ahead without touching the game being played.
+     * @param other the game to copy
+     */
+    public Game(Game other) {
+        this.boardSize = other.boardSize;
+        this.rules = other.rules;
+        this.winDetection = other.winDetection;
+        this.board = new BitBoard(other.board);
+        this.counters = new LineCounters(other.counters);
+        this.movesPlayed = other.movesPlayed;
+        this.wins = other.wins.clone();
+        this.gameOver = other.gameOver;
+        this.playerOneTurn = other.playerOneTurn;
+        this.hashes = other.hashes.clone();
+        this.zobrist = other.zobrist();
+        this.winningTiles = other.winningTiles.clone();
+        this.log = new MoveLog(other.log);
+        // the copy starts out as of the last turn the original completed
+        this.snapshot = other.snapshot;
+    }
+
+    /**
+     * Constructor. Creates an instance using a board size of
+     * DEFAULT_BOARD_SIZE^DEFAULT_BOARD_SIZE.
+     * @see #DEFAULT_BOARD_SIZE
+     *
+     */
+    public Game() {
+        this(DEFAULT_BOARD_SIZE);
+    }
+
+    /**
+     * Common actions taken for construction of an instance.
+     * Should not be called directly outside constructors.
+     */
+    private void initBoard(){
+        this.movesPlayed = 0;
+        this.gameOver = GameState.IN_PROGRESS;
+        this.wins = new int[] {0,0};
+        this.playerOneTurn = true;
+        this.board = new BitBoard(rules.width, rules.height);
+        this.counters = new LineCounters(rules.width, rules.height);
+        this.hashes = new long[Symmetry.TRANSFORMS];
+        this.zobrist = Zobrist.forRules(rules);
+        this.winningTiles = new long[board.words];
+        this.log = new MoveLog(rules.tiles());
+        publish();
+    }
+
+    /**
+     * Gets the amount moves played so far.
+     * @see #movesPlayed
+     * @return the sum of moves played by both players
+     */
+    public int getMovesPlayed() {
+        return movesPlayed;
+    }
+
+
+    /**
+     * Gets a boolean representing whose turn it is
+     * @return Boolean, true if it's currently Player One's turn; false for Player Two.
+     */
+    public Boolean getPlayerOneTurn() {
+        return playerOneTurn;
+    }
+
+    /**
+     * Gets the state of the game.
+     * @see GameState
+     * @return GameState keeping track of the current state of the game.
+     */
+    public GameState getGameOver() {
+        return gameOver;
+    }
+
+    /**
+     * Gets an array representing the amount of wins by both players.
+     *
+     * First element represents the amount of rounds won by Player One.
+     * Second element represents the amount of rounds won by Player Two.
+     * The array is live; read the wins from {@link #getSnapshot()} on other threads.
+     * @return int[2] the amount of wins by both players.
+     */
+    public int[] getWins() {
+        return wins;
+    }
+
+    /**
+     * Gets a representation of the current board.
+     * Changes to the returned matrix are not reflected on the board; use {@link #setBoard} for that.
+     * @see TileState
+     * @return a copy of the board as a matrix containing every tile and its state, row by row
+     */
+    public TileState[][] getBoard() {
+        return board.toMatrix();
+    }
+
+    /**
+     * Gets the Zobrist hash of the current position: the board and whose turn it is.
+     * Equal positions always have the same hash, however they were reached.
+     * @return a 64-bit hash of the current position
+     */
+    public long getHash() {
+        return hashes[Symmetry.IDENTITY];
+    }
+
+    /**
+     * Gets the Zobrist hash of the current position as if the board were transformed.
+     * @param transform one of the {@link Symmetry} transform constants
+     * @return a 64-bit hash of the transformed position
+     * @see Symmetry#canonicalHash(Game)
+     */
+    long getHash(int transform) {
+        return hashes[transform];
+    }
+
+    /**
+     * Sets the amount of moves played.
+     * @param movesPlayed positive integer representing the total amount
+     *                    of moves played
+     */
+    public void setMovesPlayed(int movesPlayed) {
+        this.movesPlayed = Math.abs(movesPlayed);
+        publish();
+        record(GameJournal.STATE, 0);
+    }
+
+    /**
+     * updates the current state of the board.
+     * @see TileState
+     * @param board new TileState matrix representing the board.
+     */
+    public void setBoard(TileState[][] board) {
+        this.board.load(board);
+
+        // recount every line and rehash for the new board; how it was reached is unknown
+        counters.clear();
+        log.clear();
+        Arrays.fill(hashes, 0L);
+        if(!playerOneTurn) {
+            hashTurn();
+        }
+        for(int i=0;i<rules.height;i++) {
+            for(int j=0;j<rules.width;j++) {
+                if(board[i][j] == TileState.PLAYER_ONE) {
+                    counters.add(i, j, true);
+                    hashTile((i * boardSize) + j, true);
+                } else if(board[i][j] == TileState.PLAYER_TWO) {
+                    counters.add(i, j, false);
+                    hashTile((i * boardSize) + j, false);
+                }
+            }
+        }
+        publish();
+        record(GameJournal.STATE, 0);
+    }
+
+    /**
+     * Updates the current state of the game.
+     * @see GameState
+     * @param gameOver GameState representing the new state of the game.
+     */
+    public void setGameOver(GameState gameOver) {
+        this.gameOver = gameOver;
+        publish();
+        record(GameJournal.STATE, 0);
+    }
+
+    /**
+     * updates whose turn it is.
+     * @param playerOneTurn Boolean keeping track whose turn it is;
+     *                      true for Player One, false for Player Two
+     */
+    public void setPlayerOneTurn(Boolean playerOneTurn) {
+        if(playerOneTurn != this.playerOneTurn.booleanValue()) {
+            hashTurn();
+        }
+        this.playerOneTurn = playerOneTurn;
+        publish();
+        record(GameJournal.STATE, 0);
+    }
+
+    /**
+     * Updates the amount of wins of each player
+     * @param wins int[] containing two elements;
+     *             wins[0] for amount of wins for Player One,
+     *             wins[1] for amount of wins for Player Two
+     */
+    public void setWins(int[] wins) {
+        if(wins.length == 2){
+            this.wins = wins;
+            publish();
+            record(GameJournal.STATE, 0);
+        }
+    }
+
+    /**
+     * Updates the amount of wins for each player
+     * @param winsPlayerOne amount of wins for Player One
+     * @param winsPlayerTwo amount of wins for Player Two
+     */
+    public void setWins(int winsPlayerOne, int winsPlayerTwo) {
+        this.wins[0] = Math.abs(winsPlayerOne);
+        this.wins[1] = Math.abs(winsPlayerTwo);
+        publish();
+        record(GameJournal.STATE, 0);
+    }
+
+    /**
+     * Adds a win for the corresponding winning player based on GameState.
+     * @see GameState
+     * @param gs GameState endstate of the current round.
+     */
+    private void addWin(GameState gs) {
+        if(gs == GameState.PLAYER_ONE_WIN) { this.wins[0]++;}
+        else if (gs == GameState.PLAYER_TWO_WIN) {this.wins[1]++;}
+    }
+
+    /**
+     * Tries to claim a tile for the current player
+     * @param row row of the tile in the gameBoard matrix
+     * @param col column of the tile in the gameBoard matrix
+     * @return the updated TileState of said tile, or TileState.INVALID if the move was impossible.
+     *         With gravity, only the tile returned by {@link #dropRow(int)} can be claimed.
+     * @see TileState
+     */
+    public TileState choose(int row, int col) {
+        TileState claimed = claim(row, col);
+        if(claimed != TileState.INVALID) {
+            changes().add((row * boardSize) + col, BoardChanges.CLAIMED);
+            record(GameJournal.CHOOSE, (row * boardSize) + col);
+        }
+        return claimed;
+    }
+
+    /**
+     * Tries to claim a tile for the current player, without recording it as a change.
+     * @param row row of the tile in the gameBoard matrix
+     * @param col column of the tile in the gameBoard matrix
+     * @return the updated TileState of said tile, or TileState.INVALID if the move was impossible.
+     */
+    private TileState claim(int row, int col) {
+        int tile = (row * boardSize) + col;
+        if(!board.isBlank(tile) || (rules.gravity && row != dropRow(col))) {
+            return TileState.INVALID;
+        }
+
+        board.set(tile, playerOneTurn);
+        counters.add(row, col, playerOneTurn);
+        hashTile(tile, playerOneTurn);
+        log.push(tile, playerOneTurn);
+        return (playerOneTurn) ? TileState.PLAYER_ONE : TileState.PLAYER_TWO;
+    }
+
+
+
+    /**
+     * Checks if any player has reached a win condition.
+     * @see GameState
+     * @return the current state of the game after checking win conditions
+     */
+    public GameState checkWinconditionReached(int row, int col) {
+        GameState gs = decide(row, col);
+        if(gs == GameState.PLAYER_ONE_WIN || gs == GameState.PLAYER_TWO_WIN) {
+            board.markRuns(row, col, playerOneTurn, rules.winLength, winningTiles);
+            addChanges(winningTiles, BoardChanges.WINNING);
+        }
+        // a round going on is published once the turn has passed
+        if(gs != GameState.IN_PROGRESS) {
+            publish();
+        }
+        record(GameJournal.CHECK, (row * boardSize) + col);
+        return gs;
+    }
+
+    /**
+     * Decides the state of the game after a move, without marking the winning line.
+     * @param row row of the last played tile
+     * @param col column of the last played tile
+     * @return the current state of the game after checking win conditions
+     */
+    private GameState decide(int row, int col) {
+        if(!rules.isClassic()) {
+            return checkWinconditionRun(row, col);
+        }
+        if(winDetection == WinDetection.INCREMENTAL) {
+            return checkWinconditionCounted(row, col);
+        }
+
+        // too little moves played, win condition cannot have been reached yet
+        // keep in mind that movesPlayed has not been updated at this point.
+        if(movesPlayed < ((boardSize*2)-2)) {
+            return GameState.IN_PROGRESS;
+        }
+
+        // check if the current player now owns every tile of a line through the played tile.
+        if(board.completesLine((row * boardSize) + col, playerOneTurn)) {
+            gameOver = (playerOneTurn) ? GameState.PLAYER_ONE_WIN : GameState.PLAYER_TWO_WIN;
+            addWin(gameOver);
+            return gameOver;
+        }
+
+        // otherwise check how many moves were played
+        // (note that the move counter will not yet have been updated)
+        // if moves are n+1^n+1 then it's a draw; else, there are still moves possible.
+
+        if (this.movesPlayed+1 == boardSize*boardSize) {
+            gameOver = GameState.DRAW;
+        } else {
+            gameOver = GameState.IN_PROGRESS;
+        }
+
+        return gameOver;
+
+    }
+
+    /**
+     * Decides the state of the game from the per-line counters updated by {@link #choose(int, int)}.
+     * @param row row of the last played tile
+     * @param col column of the last played tile
+     * @return the current state of the game after checking win conditions
+     */
+    private GameState checkWinconditionCounted(int row, int col) {
+        if(counters.completesLine(row, col, playerOneTurn)) {
+            gameOver = (playerOneTurn) ? GameState.PLAYER_ONE_WIN : GameState.PLAYER_TWO_WIN;
+            addWin(gameOver);
+        } else if(counters.isFull()) {
+            gameOver = GameState.DRAW;
+        } else {
+            gameOver = GameState.IN_PROGRESS;
+        }
+        return gameOver;
+    }
+
+    /**
+     * Decides the state of the game by looking for a run of winLength tiles through the last move.
+     * Only scans the four directions through the tile, so the cost does not grow with the board.
+     * @param row row of the last played tile
+     * @param col column of the last played tile
+     * @return the current state of the game after checking win conditions
+     */
+    private GameState checkWinconditionRun(int row, int col) {
+        if(board.completesRun(row, col, playerOneTurn, rules.winLength)) {
+            gameOver = (playerOneTurn) ? GameState.PLAYER_ONE_WIN : GameState.PLAYER_TWO_WIN;
+            addWin(gameOver);
+        } else if(counters.isFull()) {
+            gameOver = GameState.DRAW;
+        } else {
+            gameOver = GameState.IN_PROGRESS;
+        }
+        return gameOver;
+    }
+
+    /**
+     * Gets the row a tile dropped into a column would land on, when playing with gravity.
+     * @param col column of the tile
+     * @return the lowest row of the column that is still blank, or -1 if the column is full
+     */
+    public int dropRow(int col) {
+        for(int row=rules.height-1;row>=0;row--) {
+            if(board.isBlank((row * boardSize) + col)) {
+                return row;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Checks whether the current player may claim a tile.
+     * @param tile the tile index, counting row by row from 0
+     * @return true if the tile is blank, and with gravity, the lowest blank tile of its column
+     */
+    boolean isLegal(int tile) {
+        if(!board.isBlank(tile)) {
+            return false;
+        }
+        if(!rules.gravity) {
+            return true;
+        }
+        int row = tile / boardSize;
+        return row == rules.height - 1 || !board.isBlank(tile + boardSize);
+    }
+
+    /**
+     * Get the TileState of a specific tile
+     * @see TileState
+     * @param row row of the tile
+     * @param col column of the tile
+     * @return current TileState of the specific tile
+     */
+    public TileState getTile(int row, int col) {
+        return board.get((row * boardSize) + col);
+    }
+
+    /**
+     * Claims a tile while restoring a saved game, without checking the rules or recording a change.
+     * @param tile the tile index, counting row by row from 0
+     * @param playerOne true to claim it for Player One, false for Player Two
+     * @param winning true if the tile is part of the line that won the round
+     * @see GameCodec#decode(java.nio.ByteBuffer)
+     */
+    void restoreTile(int tile, boolean playerOne, boolean winning) {
+        board.set(tile, playerOne);
+        counters.add(tile / boardSize, tile % boardSize, playerOne);
+        hashTile(tile, playerOne);
+        if(winning) {
+            winningTiles[tile >>> 6] |= 1L << tile;
+        }
+    }
+
+    /**
+     * Sets the state of a restored game once its tiles are claimed, and publishes it as a whole.
+     * Unlike the setters, nothing is published or journaled in between.
+     * @param movesPlayed sum of moves played
+     * @param playerOneTurn whose turn it is
+     * @param gameOver state of the round
+     * @param winsPlayerOne rounds won by Player One
+     * @param winsPlayerTwo rounds won by Player Two
+     * @see #restoreTile(int, boolean, boolean)
+     */
+    void restoreState(int movesPlayed, boolean playerOneTurn, GameState gameOver,
+                      int winsPlayerOne, int winsPlayerTwo) {
+        this.movesPlayed = movesPlayed;
+        if(playerOneTurn != this.playerOneTurn) {
+            hashTurn();
+        }
+        this.playerOneTurn = playerOneTurn;
+        this.gameOver = gameOver;
+        this.wins[0] = winsPlayerOne;
+        this.wins[1] = winsPlayerTwo;
+        publish();
+    }
+
+    /**
+     * Checks whether a tile is part of the line that won the round.
+     * @param row row of the tile
+     * @param col column of the tile
+     * @return true if the round was won with this tile in the winning line
+     */
+    public boolean isWinningTile(int row, int col) {
+        int tile = (row * boardSize) + col;
+        return (winningTiles[tile >>> 6] & (1L << tile)) != 0;
+    }
+
+    /**
+     * Gets the tiles changed by {@link #choose(int, int)}, {@link #checkWinconditionReached(int, int)}
+     * and {@link #resetBoard()} since the changes were last cleared.
+     * Moves played while searching ahead are not recorded.
+     * @return the live change set; clear it once the changes have been handled
+     */
+    public BoardChanges getChanges() {
+        return changes();
+    }
+
+
+    /**
+     * Updates the various variables keeping track of which turn it is,
+     * signifying the next players move.
+     *
+     * @see #movesPlayed
+     * @see #playerOneTurn
+     *
+     * Should be called BEFORE the next move is played, but AFTER win condition is checked.
+     * @return the sum amount of moves played by both players.
+     */
+    public int nextMove(){
+        passTurn();
+        publish();
+        record(GameJournal.NEXT, 0);
+
+        return movesPlayed;
+
+    }
+
+    /**
+     * Moves on to the next move without publishing a snapshot, for searching ahead.
+     * Undo with {@link #unpassTurn()}.
+     * @see #nextMove()
+     */
+    void passTurn() {
+        this.movesPlayed++;
+        this.playerOneTurn = !playerOneTurn;
+        hashTurn();
+    }
+
+    /**
+     * Gives the turn back to the player who passed it with {@link #passTurn()}.
+     */
+    void unpassTurn() {
+        this.movesPlayed--;
+        this.playerOneTurn = !playerOneTurn;
+        hashTurn();
+    }
+
+    /**
+     * Plays a full turn for the current player on a tile known to be blank:
+     * claims it, checks the win condition and moves on to the next move if the round continues.
+     * Meant for searching ahead; undo with {@link #unplay()}.
+     * @param tile the tile index, counting row by row from 0
+     * @return the state of the game after the move
+     */
+    GameState play(int tile) {
+        int row = tile / boardSize;
+        int col = tile % boardSize;
+        claim(row, col);
+        GameState gs = decide(row, col);
+        if(gs == GameState.IN_PROGRESS) {
+            passTurn();
+        }
+        return gs;
+    }
+
+    /**
+     * Takes back the last turn played by {@link #play(int)}, including any win it scored,
+     * in constant time. The moves that were undone before it can be redone again.
+     * @return the tile index of the move taken back
+     */
+    int unplay() {
+        return unclaim(log.retract());
+    }
+
+    /**
+     * Takes back a turn, including any win it scored, in constant time.
+     * @param move the move taken back from the log
+     * @return the tile index of the move
+     */
+    private int unclaim(int move) {
+        int tile = MoveLog.tile(move);
+        int row = tile / boardSize;
+        int col = tile % boardSize;
+        if(gameOver == GameState.IN_PROGRESS) {
+            // the turn had been passed on; give it back.
+            movesPlayed--;
+            playerOneTurn = !playerOneTurn;
+            hashTurn();
+        } else {
+            if(gameOver == GameState.PLAYER_ONE_WIN) { wins[0]--; }
+            else if(gameOver == GameState.PLAYER_TWO_WIN) { wins[1]--; }
+            gameOver = GameState.IN_PROGRESS;
+        }
+        board.unset(tile);
+        counters.remove(row, col, playerOneTurn);
+        hashTile(tile, playerOneTurn);
+        return tile;
+    }
+
+    /**
+     * Takes back the last turn played, including any win it scored.
+     * Undoing never needs to look at the rest of the board, so it takes constant time.
+     * @return true if a move was taken back, false if none had been played this round
+     * @see #redo()
+     */
+    public boolean undo() {
+        if(!log.canUndo()) {
+            return false;
+        }
+        if(gameOver == GameState.PLAYER_ONE_WIN || gameOver == GameState.PLAYER_TWO_WIN) {
+            addChanges(winningTiles, BoardChanges.WINNING);
+            Arrays.fill(winningTiles, 0L);
+        }
+        // the move stays in the log to be redone
+        changes().add(unclaim(log.pop()), BoardChanges.CLEARED);
+        publish();
+        record(GameJournal.UNDO, 0);
+        return true;
+    }
+
+    /**
+     * Plays the last undone move again, as a full turn.
+     * @return true if a move was played, false if there was nothing to redo
+     *         or a different move was played since
+     * @see #undo()
+     */
+    public boolean redo() {
+        if(!log.canRedo()) {
+            return false;
+        }
+        int tile = MoveLog.tile(log.next());
+        int row = tile / boardSize;
+        int col = tile % boardSize;
+        choose(row, col);
+        if(checkWinconditionReached(row, col) == GameState.IN_PROGRESS) {
+            nextMove();
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether a move of this round can be undone.
+     * @return true if any move has been played since the round started
+     */
+    public boolean canUndo() {
+        return log.canUndo();
+    }
+
+    /**
+     * Checks whether an undone move can be played again.
+     * @return true if a move was undone and no other move has been played since
+     */
+    public boolean canRedo() {
+        return log.canRedo();
+    }
+
+    /**
+     * Checks whether a tile has not been claimed yet.
+     * @param tile the tile index, counting row by row from 0
+     * @return true if the tile is blank
+     */
+    boolean isBlank(int tile) {
+        return board.isBlank(tile);
+    }
+
+    /**
+     * Gets the moves of the current round.
+     * @return the live log; must not be modified
+     */
+    MoveLog getLog() {
+        return log;
+    }
+
+    /**
+     * Gets the per-line tile counters of this game.
+     * @return the live counters; must not be modified
+     */
+    LineCounters getCounters() {
+        return counters;
+    }
+
+    /**
+     * Resets the board and all state tracking variables for a new round.
+     * @see #movesPlayed
+     * @see #playerOneTurn
+     * @see #boardSize
+     * @see #gameOver
+     */
+    public void resetBoard() {
+        for(int w=0;w<board.words;w++) {
+            winningTiles[w] |= board.claimed(w);
+        }
+        addChanges(winningTiles, BoardChanges.CLEARED);
+        Arrays.fill(winningTiles, 0L);
+        board.clear();
+        counters.clear();
+        log.clear();
+        movesPlayed = 0;
+        gameOver = GameState.IN_PROGRESS;
+        playerOneTurn = true;
+        Arrays.fill(hashes, 0L);
+        publish();
+        record(GameJournal.RESET, 0);
+    }
+
+    /**
+     * Gets the state of the game as of the last turn completed through its public methods:
+     * a move is published once the turn has passed or the round has ended, never halfway.
+     * Safe to call from any thread while the game is being played on another; the snapshot
+     * never changes, and is replaced as a whole on every change.
+     * @return the latest snapshot
+     */
+    public GameSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Publishes the current state as the latest snapshot.
+     * Called once per completed turn, and at the end of the other public methods that change
+     * the game, not while searching ahead.
+     */
+    private void publish() {
+        if(replaying) {
+            return;
+        }
+        snapshot = new GameSnapshot(snapshot, rules, winDetection, board, winningTiles,
+                movesPlayed, playerOneTurn, gameOver, wins, hashes[Symmetry.IDENTITY]);
+    }
+
+    /**
+     * Logs every later public change to a journal.
+     * @param journal the journal, or null to stop logging
+     * @param id the id of this game in the journal
+     * @see GameJournal
+     */
+    void setJournal(GameJournal journal, long id) {
+        this.journal = journal;
+        this.journalId = id;
+    }
+
+    /**
+     * Stops or resumes publishing a snapshot on every change, while a journal replays events.
+     * @param replaying true to stop publishing; false to resume, publishing the current state
+     */
+    void setReplaying(boolean replaying) {
+        this.replaying = replaying;
+        if(!replaying) {
+            publish();
+        }
+    }
+
+    /**
+     * Logs a public change to the journal, if any.
+     * @param type the type of event, one of the {@link GameJournal} event constants
+     * @param tile the tile of a CHOOSE or CHECK event
+     */
+    private void record(byte type, int tile) {
+        if(journal != null) {
+            journal.record(this, journalId, type, tile);
+        }
+    }
+
+    /**
+     * Restores a serialized game and publishes its state.
+     * @param in the stream to read the game from
+     * @throws IOException if the stream can not be read
+     * @throws ClassNotFoundException if a class of the game is unknown
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        publish();
+    }
+
+    /**
+     * Toggles a claimed tile in the hash of every orientation of the board.
+     * @param tile the tile index, counting row by row from 0
+     * @param playerOne true for a tile owned by Player One, false for Player Two
+     */
+    private void hashTile(int tile, boolean playerOne) {
+        Zobrist keys = zobrist();
+        for(int t=0;t<Symmetry.TRANSFORMS;t++) {
+            hashes[t] ^= keys.tile(t, tile, playerOne);
+        }
+    }
+
+    /**
+     * Toggles whose turn it is in the hash of every orientation of the board.
+     */
+    private void hashTurn() {
+        long key = zobrist().turn();
+        for(int t=0;t<Symmetry.TRANSFORMS;t++) {
+            hashes[t] ^= key;
+        }
+    }
+
+    /**
+     * Records a change of every tile in a set.
+     * @param tiles the tiles, one bit per tile
+     * @param kind the kind of change
+     */
+    private void addChanges(long[] tiles, int kind) {
+        BoardChanges changes = changes();
+        for(int w=0;w<tiles.length;w++) {
+            long bits = tiles[w];
+            while(bits != 0) {
+                changes.add((w << 6) + Long.numberOfTrailingZeros(bits), kind);
+                bits &= bits - 1;
+            }
+        }
+    }
+
+    /**
+     * Gets the change set, creating it after deserialization.
+     * @return the tiles changed since the changes were last cleared
+     */
+    private BoardChanges changes() {
+        if(changes == null) {
+            changes = new BoardChanges(rules.tiles());
+        }
+        return changes;
+    }
+
+    /**
+     * Gets the keys used to hash positions, restoring them after deserialization.
+     * @return the Zobrist keys for this board size
+     */
+    private Zobrist zobrist() {
+        if(zobrist == null) {
+            zobrist = Zobrist.forRules(rules);
+        }
+        return zobrist;
+    }
+
+
+    /**
+     * Returns a Human readable String representing the state of the current object.
+     * @return Human readable String representing the current instance.
+     */
+    @Override
+    public String toString() {
+        return "Playing " + rules + "." +
+                "We've played " + (wins[0] + wins[1]) + " Rounds." +
+                "X won " + wins[0] + "\t|\t" + "O won " + wins[1];
+    }
+
+}
@@ -0,0 +1,238 @@
+package online.madeofmagicandwires.tictac;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * GameCodec.java
+ * Packs a {@link Game} into a few bytes, as a fast and small alternative to java.io.Serializable
+ * for saving a game across configuration changes.
+ *
+ * The encoding is a 20 byte header followed by 2 bits per tile and the moves of the round:
+ * <pre>
+ *   byte    version
+ *   byte    width, height, winLength
+ *   byte    flags: gravity, Player One's turn, scanning win detection
+ *   byte    GameState ordinal
+ *   short   moves played
+ *   int     wins of Player One, wins of Player Two
+ *   short   moves in the log to undo, moves in the log including those to redo
+ *   byte[]  tiles, 4 per byte from the lowest bits up:
+ *           0 blank, 1 Player One, 2 Player Two, 3 the winner's tile in the winning line
+ *   short[] the logged moves as packed by {@link MoveLog}; int[] on boards of more than 2^15 tiles
+ * </pre>
+ * Counters and hashes are not stored but rebuilt from the tiles.
+ *
+ * @author Joost Bremmer
+ * @version 1.0
+ */
+public final class GameCodec {
+
+    /** Version of the encoding, written first **/
+    static final byte VERSION = 2;
+    /** Size of everything before the tiles, in bytes **/
+    static final int HEADER_BYTES = 20;
+
+    /** Flag set for rules with gravity **/
+    private static final int GRAVITY = 1;
+    /** Flag set when it is Player One's turn **/
+    private static final int PLAYER_ONE_TURN = 1 << 1;
+    /** Flag set for games checking classic wins by scanning **/
+    private static final int SCANNING = 1 << 2;
+
+    /** Code of a blank tile **/
+    private static final int BLANK = 0;
+    /** Code of a tile claimed by Player One **/
+    private static final int PLAYER_ONE = 1;
+    /** Code of a tile claimed by Player Two **/
+    private static final int PLAYER_TWO = 2;
+    /** Code of a tile of the line that won the round **/
+    private static final int WINNING = 3;
+
+    /** every GameState by ordinal; values() returns a new copy on every call **/
+    private static final GameState[] STATES = GameState.values();
+
+    private GameCodec() {
+    }
+
+    /** Most tiles on a board of which the logged moves fit in a short **/
+    private static final int MAX_SHORT_MOVES_TILES = 1 << 15;
+
+    /**
+     * Gets the amount of bytes a game is encoded in.
+     * @param game the game
+     * @return the size of the encoding in bytes
+     */
+    public static int encodedSize(Game game) {
+        int tiles = game.rules.tiles();
+        return HEADER_BYTES + ((tiles + 3) >>> 2) + (game.getLog().end() * moveBytes(tiles));
+    }
+
+    /**
+     * Gets the amount of bytes a logged move is encoded in.
+     * @param tiles the amount of tiles on the board
+     * @return 2, or 4 on boards too big for a short
+     */
+    private static int moveBytes(int tiles) {
+        return (tiles <= MAX_SHORT_MOVES_TILES) ? 2 : 4;
+    }
+
+    /**
+     * Encodes a game into a new array.
+     * @param game the game to encode; boards of up to 255 tiles wide and high
+     * @return the encoded game
+     */
+    public static byte[] encode(Game game) {
+        byte[] bytes = new byte[encodedSize(game)];
+        encode(game, ByteBuffer.wrap(bytes));
+        return bytes;
+    }
+
+    /**
+     * Encodes a game at the position of a buffer, moving it past the encoding.
+     * @param game the game to encode; boards of up to 255 tiles wide and high
+     * @param out the buffer to write to, with at least {@link #encodedSize(Game)} bytes remaining
+     */
+    public static void encode(Game game, ByteBuffer out) {
+        Rules rules = game.rules;
+        if(rules.width > 0xFF || rules.height > 0xFF) {
+            throw new IllegalArgumentException("Cannot encode a board of " + rules.width + "*" + rules.height);
+        }
+        int flags = (rules.gravity ? GRAVITY : 0)
+                | (game.getPlayerOneTurn() ? PLAYER_ONE_TURN : 0)
+                | (game.winDetection == Game.WinDetection.SCANNING ? SCANNING : 0);
+        out.put(VERSION);
+        out.put((byte) rules.width);
+        out.put((byte) rules.height);
+        out.put((byte) rules.winLength);
+        out.put((byte) flags);
+        out.put((byte) game.getGameOver().ordinal());
+        out.putShort((short) game.getMovesPlayed());
+        out.putInt(game.getWins()[0]);
+        out.putInt(game.getWins()[1]);
+        MoveLog log = game.getLog();
+        out.putShort((short) log.size());
+        out.putShort((short) log.end());
+
+        int packed = 0;
+        int tile = 0;
+        for(int row=0;row<rules.height;row++) {
+            for(int col=0;col<rules.width;col++) {
+                int code;
+                if(game.isWinningTile(row, col)) {
+                    code = WINNING;
+                } else {
+                    switch (game.getTile(row, col)) {
+                        case PLAYER_ONE:
+                            code = PLAYER_ONE;
+                            break;
+                        case PLAYER_TWO:
+                            code = PLAYER_TWO;
+                            break;
+                        default:
+                            code = BLANK;
+                            break;
+                    }
+                }
+                packed |= code << ((tile & 3) << 1);
+                if((++tile & 3) == 0) {
+                    out.put((byte) packed);
+                    packed = 0;
+                }
+            }
+        }
+        if((tile & 3) != 0) {
+            out.put((byte) packed);
+        }
+
+        boolean shortMoves = moveBytes(rules.tiles()) == 2;
+        for(int i=0;i<log.end();i++) {
+            if(shortMoves) {
+                out.putShort((short) log.get(i));
+            } else {
+                out.putInt(log.get(i));
+            }
+        }
+    }
+
+    /**
+     * Decodes a game from an array.
+     * @param bytes an encoding made by {@link #encode(Game)}
+     * @return a new game in the encoded state
+     * @throws IllegalArgumentException if the bytes are not a valid encoding
+     */
+    public static Game decode(byte[] bytes) {
+        return decode(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Decodes a game at the position of a buffer, moving it past the encoding.
+     * @param in the buffer to read from
+     * @return a new game in the encoded state
+     * @throws IllegalArgumentException if the bytes are not a valid encoding
+     */
+    public static Game decode(ByteBuffer in) {
+        try {
+            byte version = in.get();
+            if(version != VERSION) {
+                throw new IllegalArgumentException("Unknown encoding version " + version);
+            }
+            int width = in.get() & 0xFF;
+            int height = in.get() & 0xFF;
+            int winLength = in.get() & 0xFF;
+            int flags = in.get();
+            int state = in.get();
+            int movesPlayed = in.getShort() & 0xFFFF;
+            int winsPlayerOne = in.getInt();
+            int winsPlayerTwo = in.getInt();
+            int logSize = in.getShort() & 0xFFFF;
+            int logEnd = in.getShort() & 0xFFFF;
+            if(state < 0 || state >= STATES.length) {
+                throw new IllegalArgumentException("Unknown game state " + state);
+            }
+            GameState gameOver = STATES[state];
+
+            Rules rules = new Rules(width, height, winLength, (flags & GRAVITY) != 0);
+            Game game = new Game(rules,
+                    ((flags & SCANNING) != 0) ? Game.WinDetection.SCANNING : Game.WinDetection.INCREMENTAL);
+            int tiles = rules.tiles();
+            if(logSize > logEnd || logEnd > tiles) {
+                throw new IllegalArgumentException("Log of " + logSize + " of " + logEnd + " moves on " + tiles + " tiles");
+            }
+            int packed = 0;
+            for(int tile=0;tile<tiles;tile++) {
+                if((tile & 3) == 0) {
+                    packed = in.get();
+                }
+                int code = (packed >>> ((tile & 3) << 1)) & 3;
+                if(code == PLAYER_ONE || code == PLAYER_TWO) {
+                    game.restoreTile(tile, code == PLAYER_ONE, false);
+                } else if(code == WINNING) {
+                    if(gameOver != GameState.PLAYER_ONE_WIN && gameOver != GameState.PLAYER_TWO_WIN) {
+                        throw new IllegalArgumentException("Winning tile in a game without a winner");
+                    }
+                    game.restoreTile(tile, gameOver == GameState.PLAYER_ONE_WIN, true);
+                }
+            }
+
+            // undone moves are logged as played, then taken back
+            boolean shortMoves = moveBytes(tiles) == 2;
+            MoveLog log = game.getLog();
+            for(int i=0;i<logEnd;i++) {
+                int move = shortMoves ? (in.getShort() & 0xFFFF) : in.getInt();
+                if(MoveLog.tile(move) >= tiles) {
+                    throw new IllegalArgumentException("Logged move on tile " + MoveLog.tile(move));
+                }
+                log.push(MoveLog.tile(move), MoveLog.playerOne(move));
+            }
+            for(int i=logSize;i<logEnd;i++) {
+                log.pop();
+            }
+
+            game.restoreState(movesPlayed, (flags & PLAYER_ONE_TURN) != 0, gameOver, winsPlayerOne, winsPlayerTwo);
+            return game;
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Encoding ends too soon", e);
+        }
+    }
+}
@@ -0,0 +1,491 @@
+package online.madeofmagicandwires.tictac;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * GameJournal.java
+ * Event-sourced store of any amount of games: every change made to a journaled game through its
+ * public methods is appended to a log as a small event, and the games are rebuilt after a crash
+ * by replaying the log.
+ *
+ * Every event is a record of a few bytes:
+ * <pre>
+ *   int     CRC32 of the rest of the record
+ *   short   length of the payload
+ *   byte    type of event
+ *   long    id of the game
+ *   byte[]  payload: a short tile for CHOOSE and CHECK, an image for STATE, nothing otherwise
+ * </pre>
+ * {@link Game#choose(int, int)}, {@link Game#checkWinconditionReached(int, int)},
+ * {@link Game#nextMove()}, {@link Game#resetBoard()} and {@link Game#undo()} are logged as
+ * themselves and replayed by calling them again; a redo is logged as the moves it plays. The
+ * setters change the game in ways no event describes, so they log an image of the whole game:
+ * its {@link GameCodec} encoding followed by the moves of the current round, for undoing them.
+ *
+ * To bound the time replaying takes, a checkpoint is taken every so many events: an image of
+ * every game is written to a new snapshot file, which is renamed into place once complete, and
+ * the log starts over. Recovering reads the latest snapshot and replays the log written since;
+ * the log ends at the first record that does not check out, which is where a crash tore it.
+ *
+ * Events are gathered in a buffer and written when it is full, on {@link #flush()}, on every
+ * checkpoint and on closing; events still in the buffer when the process dies are lost.
+ * A journal, and the games in it, must only be used by one thread at a time.
+ *
+ * @author Joost Bremmer
+ * @version 1.0
+ */
+public final class GameJournal implements Closeable {
+
+    /** Default amount of events between checkpoints **/
+    public static final int DEFAULT_CHECKPOINT_INTERVAL = 1 << 20;
+
+    /** Event replacing a game, or adding it, with the image in the payload **/
+    static final byte STATE = 1;
+    /** Event of {@link Game#choose(int, int)} **/
+    static final byte CHOOSE = 2;
+    /** Event of {@link Game#checkWinconditionReached(int, int)} **/
+    static final byte CHECK = 3;
+    /** Event of {@link Game#nextMove()} **/
+    static final byte NEXT = 4;
+    /** Event of {@link Game#resetBoard()} **/
+    static final byte RESET = 5;
+    /** Event of {@link Game#undo()} **/
+    static final byte UNDO = 6;
+    /** Event dropping a game from the journal **/
+    static final byte REMOVE = 7;
+
+    /** Size of a record without its payload **/
+    static final int HEADER_BYTES = 4 + 2 + 1 + 8;
+    /** Size of the buffer events are gathered in **/
+    private static final int BUFFER_BYTES = 64 * 1024;
+
+    /** directory holding the snapshot and the log **/
+    private final File directory;
+    /** amount of events between checkpoints **/
+    private final int checkpointInterval;
+    /** every journaled game by id **/
+    private final Map<Long, Game> games = new HashMap<>();
+    /** events not written to the log yet **/
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES);
+    /** checksum calculator, reused for every record **/
+    private final CRC32 crc = new CRC32();
+    /** number of the current snapshot and log **/
+    private long generation;
+    /** the current log **/
+    private FileChannel log;
+    /** events appended since the last checkpoint **/
+    private int sinceCheckpoint;
+    /** events replayed when the journal was opened **/
+    private long replayed;
+
+    /**
+     * Opens a journal with the default checkpoint interval, recovering the games in it.
+     * @param directory directory to keep the journal in; created if it does not exist
+     * @throws IOException if the journal can not be read or written
+     */
+    public GameJournal(File directory) throws IOException {
+        this(directory, DEFAULT_CHECKPOINT_INTERVAL);
+    }
+
+    /**
+     * Opens a journal, recovering the games in it.
+     * @param directory directory to keep the journal in; created if it does not exist
+     * @param checkpointInterval amount of events between checkpoints
+     * @throws IOException if the journal can not be read or written
+     */
+    public GameJournal(File directory, int checkpointInterval) throws IOException {
+        if(checkpointInterval < 1) {
+            throw new IllegalArgumentException("Checkpoint interval must be positive");
+        }
+        if(!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        this.directory = directory;
+        this.checkpointInterval = checkpointInterval;
+        recover();
+        for(Map.Entry<Long, Game> entry : games.entrySet()) {
+            Game game = entry.getValue();
+            game.setReplaying(false);
+            game.getChanges().clear();
+            game.setJournal(this, entry.getKey());
+        }
+    }
+
+    /**
+     * Gets the snapshot file of a generation.
+     * @param generation the number of the snapshot
+     * @return the file
+     */
+    private File snapshotFile(long generation) {
+        return new File(directory, "snapshot-" + generation + ".bin");
+    }
+
+    /**
+     * Gets the log file of a generation.
+     * @param generation the number of the log
+     * @return the file
+     */
+    private File logFile(long generation) {
+        return new File(directory, "journal-" + generation + ".log");
+    }
+
+    /**
+     * Loads the latest snapshot, replays the log written since, cuts off anything torn at its
+     * end, and removes the files of older generations.
+     * @throws IOException if the journal can not be read or written
+     */
+    private void recover() throws IOException {
+        generation = -1;
+        String[] names = directory.list();
+        if(names != null) {
+            for(String name : names) {
+                if(name.startsWith("snapshot-") && name.endsWith(".bin")) {
+                    generation = Math.max(generation,
+                            Long.parseLong(name.substring(9, name.length() - 4)));
+                }
+            }
+        }
+        if(generation < 0) {
+            generation = 0;
+        } else {
+            loadSnapshot(snapshotFile(generation));
+        }
+        if(names != null) {
+            for(String name : names) {
+                boolean current = name.equals(snapshotFile(generation).getName())
+                        || name.equals(logFile(generation).getName());
+                if(!current && (name.startsWith("snapshot-") || name.startsWith("journal-"))) {
+                    Files.delete(new File(directory, name).toPath());
+                }
+            }
+        }
+
+        log = new RandomAccessFile(logFile(generation), "rw").getChannel();
+        ByteBuffer records = ByteBuffer.allocate((int) log.size());
+        while(records.hasRemaining() && log.read(records, records.position()) >= 0) {
+            // read the whole log
+        }
+        records.flip();
+        int end = replay(records);
+        log.truncate(end);
+        log.position(end);
+    }
+
+    /**
+     * Loads every game of a snapshot.
+     * @param file the snapshot
+     * @throws IOException if the snapshot can not be read or is damaged
+     */
+    private void loadSnapshot(File file) throws IOException {
+        ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+        if(in.remaining() < 8) {
+            throw new IOException("Snapshot " + file + " is damaged");
+        }
+        crc.reset();
+        crc.update(in.array(), 0, in.limit() - 4);
+        if(in.getInt(in.limit() - 4) != (int) crc.getValue()) {
+            throw new IOException("Snapshot " + file + " is damaged");
+        }
+        in.limit(in.limit() - 4);
+        int count = in.getInt();
+        for(int i=0;i<count;i++) {
+            long id = in.getLong();
+            games.put(id, readImage(in));
+        }
+    }
+
+    /**
+     * Replays every record of a log that checks out.
+     * @param records the log
+     * @return the position the log ends at: right after the last record that checks out
+     */
+    private int replay(ByteBuffer records) {
+        while(records.remaining() >= HEADER_BYTES) {
+            int start = records.position();
+            int length = records.getShort(start + 4) & 0xFFFF;
+            if(records.remaining() < HEADER_BYTES + length) {
+                break;
+            }
+            crc.reset();
+            crc.update(records.array(), start + 4, HEADER_BYTES - 4 + length);
+            if(records.getInt(start) != (int) crc.getValue()) {
+                break;
+            }
+            byte type = records.get(start + 6);
+            long id = records.getLong(start + 7);
+            records.position(start + HEADER_BYTES);
+            apply(type, id, records);
+            records.position(start + HEADER_BYTES + length);
+            replayed++;
+        }
+        return records.position();
+    }
+
+    /**
+     * Applies an event to the games.
+     * @param type the type of event
+     * @param id the id of the game
+     * @param payload the payload of the event
+     */
+    private void apply(byte type, long id, ByteBuffer payload) {
+        if(type == STATE) {
+            games.put(id, readImage(payload));
+            return;
+        }
+        if(type == REMOVE) {
+            games.remove(id);
+            return;
+        }
+        Game game = games.get(id);
+        if(game == null) {
+            throw new IllegalStateException("Event for unknown game " + id);
+        }
+        switch (type) {
+            case CHOOSE: {
+                int tile = payload.getShort() & 0xFFFF;
+                game.choose(tile / game.boardSize, tile % game.boardSize);
+                break;
+            }
+            case CHECK: {
+                int tile = payload.getShort() & 0xFFFF;
+                game.checkWinconditionReached(tile / game.boardSize, tile % game.boardSize);
+                break;
+            }
+            case NEXT:
+                game.nextMove();
+                break;
+            case RESET:
+                game.resetBoard();
+                break;
+            case UNDO:
+                game.undo();
+                break;
+            default:
+                throw new IllegalStateException("Unknown event " + type);
+        }
+    }
+
+    /**
+     * Gets the size of the image of a game.
+     * @param game the game
+     * @return the size in bytes
+     */
+    private static int imageSize(Game game) {
+        return GameCodec.encodedSize(game);
+    }
+
+    /**
+     * Writes the image of a game: its encoding, which includes the moves of the current round.
+     * @param game the game
+     * @param out the buffer to write to
+     */
+    private static void writeImage(Game game, ByteBuffer out) {
+        GameCodec.encode(game, out);
+    }
+
+    /**
+     * Reads the image of a game.
+     * @param in the buffer to read from
+     * @return a new game in the state of the image, with the moves of its round to undo
+     */
+    private static Game readImage(ByteBuffer in) {
+        Game game = GameCodec.decode(in);
+        // only the state after the last event replayed is published
+        game.setReplaying(true);
+        return game;
+    }
+
+    /**
+     * Adds a new game to the journal.
+     * @param id the id of the game; must not be in the journal yet
+     * @param rules the rules to play by
+     * @return the new game, journaled
+     * @throws IOException if the log can not be written
+     */
+    public Game create(long id, Rules rules) throws IOException {
+        return add(id, new Game(rules));
+    }
+
+    /**
+     * Adds an existing game to the journal, as it is now.
+     * @param id the id of the game; must not be in the journal yet
+     * @param game the game; must not be in another journal
+     * @return the game, journaled
+     * @throws IOException if the log can not be written
+     */
+    public Game add(long id, Game game) throws IOException {
+        if(games.containsKey(id)) {
+            throw new IllegalArgumentException("Game " + id + " is already journaled");
+        }
+        games.put(id, game);
+        game.setJournal(this, id);
+        try {
+            record(game, id, STATE, 0);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return game;
+    }
+
+    /**
+     * Gets a journaled game.
+     * @param id the id of the game
+     * @return the game, or null if it is not in the journal
+     */
+    public Game get(long id) {
+        return games.get(id);
+    }
+
+    /**
+     * Gets every journaled game.
+     * @return unmodifiable view of the games by id
+     */
+    public Map<Long, Game> getGames() {
+        return Collections.unmodifiableMap(games);
+    }
+
+    /**
+     * Drops a game from the journal; later changes to it are not logged.
+     * @param id the id of the game
+     * @throws IOException if the log can not be written
+     */
+    public void remove(long id) throws IOException {
+        Game game = games.remove(id);
+        if(game != null) {
+            game.setJournal(null, 0);
+            try {
+                record(null, id, REMOVE, 0);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    /**
+     * Gets the amount of events replayed when the journal was opened.
+     * @return the amount of events read from the log, not counting the snapshot
+     */
+    public long getReplayedEvents() {
+        return replayed;
+    }
+
+    /**
+     * Appends an event; called by the journaled games.
+     * @param game the game changed
+     * @param id the id of the game
+     * @param type the type of event
+     * @param tile the tile of a CHOOSE or CHECK
+     * @throws UncheckedIOException if the log can not be written, as the games do not throw
+     */
+    void record(Game game, long id, byte type, int tile) {
+        try {
+            int length = (type == CHOOSE || type == CHECK) ? 2 : (type == STATE) ? imageSize(game) : 0;
+            if(buffer.remaining() < HEADER_BYTES + length) {
+                flush();
+                if(buffer.remaining() < HEADER_BYTES + length) {
+                    throw new IOException("Game " + id + " does not fit an event");
+                }
+            }
+            int start = buffer.position();
+            buffer.position(start + 4);
+            buffer.putShort((short) length);
+            buffer.put(type);
+            buffer.putLong(id);
+            if(type == STATE) {
+                writeImage(game, buffer);
+            } else if(length > 0) {
+                buffer.putShort((short) tile);
+            }
+            crc.reset();
+            crc.update(buffer.array(), start + 4, HEADER_BYTES - 4 + length);
+            buffer.putInt(start, (int) crc.getValue());
+
+            if(++sinceCheckpoint >= checkpointInterval) {
+                checkpoint();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes every buffered event to the log.
+     * @throws IOException if the log can not be written
+     */
+    public void flush() throws IOException {
+        buffer.flip();
+        while(buffer.hasRemaining()) {
+            log.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Writes an image of every game to a new snapshot and starts a new, empty log.
+     * Taken automatically every checkpoint interval events.
+     * @throws IOException if the snapshot or the log can not be written
+     */
+    public void checkpoint() throws IOException {
+        flush();
+        int size = 4 + 4;
+        for(Game game : games.values()) {
+            size += 8 + imageSize(game);
+        }
+        ByteBuffer out = ByteBuffer.allocate(size);
+        out.putInt(games.size());
+        for(Map.Entry<Long, Game> entry : games.entrySet()) {
+            out.putLong(entry.getKey());
+            writeImage(entry.getValue(), out);
+        }
+        crc.reset();
+        crc.update(out.array(), 0, out.position());
+        out.putInt((int) crc.getValue());
+        out.flip();
+
+        long next = generation + 1;
+        File temporary = new File(directory, "snapshot-" + next + ".tmp");
+        try (FileChannel snapshot = new RandomAccessFile(temporary, "rw").getChannel()) {
+            snapshot.truncate(0);
+            while(out.hasRemaining()) {
+                snapshot.write(out);
+            }
+            snapshot.force(true);
+        }
+        Files.move(temporary.toPath(), snapshotFile(next).toPath(), StandardCopyOption.ATOMIC_MOVE);
+
+        log.close();
+        log = new RandomAccessFile(logFile(next), "rw").getChannel();
+        log.truncate(0);
+        Files.deleteIfExists(logFile(generation).toPath());
+        Files.deleteIfExists(snapshotFile(generation).toPath());
+        generation = next;
+        sinceCheckpoint = 0;
+    }
+
+    /**
+     * Writes every buffered event and forces the log to storage, then closes it.
+     * The games stay usable, but their changes are no longer logged.
+     * @throws IOException if the log can not be written
+     */
+    @Override
+    public void close() throws IOException {
+        for(Game game : games.values()) {
+            game.setJournal(null, 0);
+        }
+        flush();
+        log.force(true);
+        log.close();
+    }
+}
@@ -0,0 +1,469 @@
+package online.madeofmagicandwires.tictac;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * GameSimulator.java
+ * Command-line tool playing many games between two computer strategies, on every core,
+ * to soak-test the rules and the players and to compare the players with each other.
+ *
+ * Every thread plays whole games on a {@link Game} and players of its own, taking the next
+ * game number from a shared counter, so threads never wait on each other while playing.
+ * Results are collected per thread and added up once all games are played. When an output
+ * file is given, every game is streamed to it, either as a line of CSV or as a record in the
+ * format of {@link MatchHistoryStore}; threads fill a buffer of their own and only lock the
+ * file to write out a full buffer.
+ *
+ * Usage: {@code GameSimulator [options]}, see {@link #USAGE}.
+ *
+ * @author Joost Bremmer
+ * @version 1.0
+ */
+public class GameSimulator {
+
+    /** Command line help **/
+    static final String USAGE =
+            "Usage: GameSimulator [options]\n"
+            + "  --rules tictactoe|connectfour|gomoku  rules to play by (default tictactoe)\n"
+            + "  --sizes 3,4,5            board sizes to play on (default 3)\n"
+            + "  --games N                games to play per board size (default 100000)\n"
+            + "  --p1 STRATEGY            strategy of Player One (default random)\n"
+            + "  --p2 STRATEGY            strategy of Player Two (default random)\n"
+            + "                           one of random, greedy, minimax, mcts\n"
+            + "  --threads N              threads to play on (default: every core)\n"
+            + "  --seed N                 seed of the random moves (default 1)\n"
+            + "  --depth N                search depth of minimax (default 4)\n"
+            + "  --playouts N             playouts per move of mcts (default 1000)\n"
+            + "  --out FILE               stream every game to FILE\n"
+            + "  --format csv|binary      format of FILE (default csv)\n";
+
+    /** Size of the buffer every thread fills before writing it out, in bytes **/
+    private static final int BATCH_BYTES = 1 << 16;
+    /** every GameState by ordinal; values() returns a new copy on every call **/
+    private static final GameState[] STATES = GameState.values();
+
+    /**
+     * Strategies a simulated player can use.
+     */
+    enum Strategy {
+        /** {@link RandomPlayer} **/
+        RANDOM,
+        /** {@link GreedyPlayer} **/
+        GREEDY,
+        /** {@link MinimaxPlayer}, searching to a fixed depth; classic rules only **/
+        MINIMAX,
+        /** {@link MctsPlayer}, playing a fixed amount of playouts on a single tree **/
+        MCTS
+    }
+
+    /**
+     * Formats a game can be streamed in.
+     */
+    enum Format {
+        /** one line per game: width,height,winLength,gravity,result,moves,tiles **/
+        CSV {
+            @Override
+            void header(OutputStream out) throws IOException {
+                out.write("width,height,winLength,gravity,result,moves,tiles\n".getBytes(StandardCharsets.US_ASCII));
+            }
+
+            @Override
+            void write(Game game, ByteArrayOutputStream batch) {
+                Rules rules = game.rules;
+                MoveLog log = game.getLog();
+                StringBuilder line = new StringBuilder(32 + (log.size() * 4));
+                line.append(rules.width).append(',')
+                        .append(rules.height).append(',')
+                        .append(rules.winLength).append(',')
+                        .append(rules.gravity).append(',')
+                        .append(game.getGameOver().name()).append(',')
+                        .append(log.size()).append(',');
+                for(int i=0;i<log.size();i++) {
+                    if(i > 0) {
+                        line.append(' ');
+                    }
+                    line.append(MoveLog.tile(log.get(i)));
+                }
+                line.append('\n');
+                byte[] bytes = line.toString().getBytes(StandardCharsets.US_ASCII);
+                batch.write(bytes, 0, bytes.length);
+            }
+        },
+        /** records of {@link MatchHistoryStore}; the file opens as a match history **/
+        BINARY {
+            @Override
+            void header(OutputStream out) {
+            }
+
+            @Override
+            void write(Game game, ByteArrayOutputStream batch) {
+                byte[] record = MatchHistoryStore.encode(game, System.currentTimeMillis());
+                MatchHistoryStore.seal(record);
+                batch.write(record, 0, record.length);
+            }
+        };
+
+        /**
+         * Writes whatever comes before the first game.
+         * @param out the output file
+         * @throws IOException if the file can not be written
+         */
+        abstract void header(OutputStream out) throws IOException;
+
+        /**
+         * Writes a finished game.
+         * @param game the game, before its board is reset
+         * @param batch the buffer of the current thread
+         */
+        abstract void write(Game game, ByteArrayOutputStream batch);
+    }
+
+    /**
+     * Outcome of simulating the games on one board.
+     */
+    static final class Summary {
+        /** the rules the games were played by **/
+        final Rules rules;
+        /** amount of games ending in every GameState, by ordinal **/
+        final long[] results = new long[STATES.length];
+        /** amount of moves played over every game **/
+        long moves;
+        /** time taken to play every game, in nanoseconds **/
+        long elapsedNanos;
+
+        /**
+         * Constructor.
+         * @param rules the rules the games were played by
+         */
+        Summary(Rules rules) {
+            this.rules = rules;
+        }
+
+        /**
+         * Gets the amount of games played.
+         * @return the sum of every outcome
+         */
+        long games() {
+            long games = 0;
+            for(long result : results) {
+                games += result;
+            }
+            return games;
+        }
+
+        /**
+         * Gets the share of games ending in a state.
+         * @param state the outcome to count
+         * @return percentage of the games played
+         */
+        double percentage(GameState state) {
+            long games = games();
+            return (games == 0) ? 0 : (100.0 * results[state.ordinal()]) / games;
+        }
+
+        @Override
+        public String toString() {
+            long games = games();
+            double seconds = elapsedNanos / 1e9;
+            return String.format(Locale.ROOT,
+                    "%dx%d, %d in a row%s: %d games in %.2fs (%.0f games/s); "
+                            + "Player One %.1f%%, Player Two %.1f%%, draws %.1f%%, %.1f moves per game",
+                    rules.width, rules.height, rules.winLength, rules.gravity ? ", gravity" : "",
+                    games, seconds, games / Math.max(seconds, 1e-9),
+                    percentage(GameState.PLAYER_ONE_WIN), percentage(GameState.PLAYER_TWO_WIN),
+                    percentage(GameState.DRAW), (games == 0) ? 0.0 : (double) moves / games);
+        }
+    }
+
+    /** strategy of Player One **/
+    private final Strategy playerOne;
+    /** strategy of Player Two **/
+    private final Strategy playerTwo;
+    /** amount of threads to play on **/
+    private final int threads;
+    /** seed of the random moves **/
+    private final long seed;
+    /** search depth of minimax players **/
+    private final int depth;
+    /** playouts per move of mcts players **/
+    private final int playouts;
+
+    /**
+     * Constructor.
+     * @param playerOne strategy of Player One
+     * @param playerTwo strategy of Player Two
+     * @param threads amount of threads to play on
+     * @param seed seed of the random moves
+     * @param depth search depth of minimax players
+     * @param playouts playouts per move of mcts players
+     */
+    GameSimulator(Strategy playerOne, Strategy playerTwo, int threads, long seed, int depth, int playouts) {
+        this.playerOne = playerOne;
+        this.playerTwo = playerTwo;
+        this.threads = Math.max(threads, 1);
+        this.seed = seed;
+        this.depth = depth;
+        this.playouts = playouts;
+    }
+
+    /**
+     * Creates a player of a strategy, to be used by a single thread.
+     * @param strategy the strategy to play
+     * @param random source of random moves of the player
+     * @return a new player
+     */
+    private Player createPlayer(Strategy strategy, SplittableRandom random) {
+        switch (strategy) {
+            case GREEDY:
+                return new GreedyPlayer(random);
+            case MINIMAX:
+                return new MinimaxPlayer(MinimaxPlayer.DEFAULT_TIME_BUDGET_MILLIS, depth);
+            case MCTS:
+                final MctsPlayer mcts = new MctsPlayer(null, 1, 0, MctsPlayer.DEFAULT_NODES);
+                return new Player() {
+                    @Override
+                    public int chooseMove(Game game) {
+                        return mcts.search(game, Long.MAX_VALUE, playouts);
+                    }
+                };
+            default:
+                return new RandomPlayer(random);
+        }
+    }
+
+    /**
+     * Plays games on one board on every thread.
+     * @param rules the rules to play by
+     * @param games the amount of games to play
+     * @param format format to stream the games in, or null to not stream them
+     * @param out the file to stream the games to, or null
+     * @return the outcome of all games
+     * @throws IOException if the games can not be streamed
+     * @throws InterruptedException if interrupted while waiting for the threads
+     */
+    Summary run(Rules rules, long games, Format format, OutputStream out)
+            throws IOException, InterruptedException {
+        if((playerOne == Strategy.MINIMAX || playerTwo == Strategy.MINIMAX) && !rules.isClassic()) {
+            throw new IllegalArgumentException("minimax can not play " + rules);
+        }
+        if(format == Format.BINARY && rules.tiles() > MatchHistoryStore.MAX_MOVES) {
+            throw new IllegalArgumentException("binary output can not hold games on " + rules);
+        }
+
+        AtomicLong next = new AtomicLong();
+        SplittableRandom root = new SplittableRandom(seed);
+        List<Worker> workers = new ArrayList<>(threads);
+        for(int i=0;i<threads;i++) {
+            workers.add(new Worker(rules, games, next, root.split(), format, out));
+        }
+
+        long start = System.nanoTime();
+        for(Worker worker : workers) {
+            worker.start();
+        }
+        Summary summary = new Summary(rules);
+        IOException failure = null;
+        for(Worker worker : workers) {
+            worker.join();
+            for(int s=0;s<STATES.length;s++) {
+                summary.results[s] += worker.results[s];
+            }
+            summary.moves += worker.moves;
+            if(worker.failure != null) {
+                failure = worker.failure;
+            }
+        }
+        summary.elapsedNanos = System.nanoTime() - start;
+        if(failure != null) {
+            throw failure;
+        }
+        return summary;
+    }
+
+    /**
+     * Thread playing games until every game has been taken.
+     */
+    private final class Worker extends Thread {
+
+        /** the game played over and over **/
+        private final Game game;
+        /** the players, Player One first **/
+        private final Player[] players;
+        /** amount of games to play over every thread **/
+        private final long games;
+        /** number of the next game to play, shared by every thread **/
+        private final AtomicLong next;
+        /** format to stream the games in, or null **/
+        private final Format format;
+        /** the file to stream the games to, or null; locked while writing **/
+        private final OutputStream out;
+        /** games of this thread not written out yet **/
+        private final ByteArrayOutputStream batch;
+
+        /** amount of games ending in every GameState, by ordinal **/
+        final long[] results = new long[STATES.length];
+        /** amount of moves played over every game of this thread **/
+        long moves;
+        /** the error that stopped this thread, if any **/
+        IOException failure;
+
+        /**
+         * Constructor.
+         * @param rules the rules to play by
+         * @param games amount of games to play over every thread
+         * @param next number of the next game to play, shared by every thread
+         * @param random source of random moves of both players
+         * @param format format to stream the games in, or null
+         * @param out the file to stream the games to, or null
+         */
+        Worker(Rules rules, long games, AtomicLong next, SplittableRandom random, Format format, OutputStream out) {
+            super("simulator-" + rules);
+            this.game = new Game(rules);
+            this.players = new Player[] {
+                    createPlayer(playerOne, random.split()), createPlayer(playerTwo, random.split())
+            };
+            this.games = games;
+            this.next = next;
+            this.format = (out != null) ? format : null;
+            this.out = out;
+            this.batch = (this.format != null) ? new ByteArrayOutputStream(BATCH_BYTES + 1024) : null;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while(next.getAndIncrement() < games) {
+                    while(game.getGameOver() == GameState.IN_PROGRESS) {
+                        Player player = players[game.getPlayerOneTurn() ? 0 : 1];
+                        game.play(player.chooseMove(game));
+                    }
+                    results[game.getGameOver().ordinal()]++;
+                    moves += game.getLog().size();
+                    if(format != null) {
+                        format.write(game, batch);
+                        if(batch.size() >= BATCH_BYTES) {
+                            flush();
+                        }
+                    }
+                    game.resetBoard();
+                    game.getChanges().clear();
+                }
+                if(format != null) {
+                    flush();
+                }
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+
+        /**
+         * Writes out the games of this thread.
+         * @throws IOException if the file can not be written
+         */
+        private void flush() throws IOException {
+            synchronized (out) {
+                batch.writeTo(out);
+            }
+            batch.reset();
+        }
+    }
+
+    /**
+     * Creates the rules of a board size.
+     * @param name the name of the rules, as given on the command line
+     * @param size the board size
+     * @return the rules to play by
+     */
+    static Rules rules(String name, int size) {
+        switch (name) {
+            case "tictactoe":
+                return Rules.ticTacToe(size);
+            case "connectfour":
+                // one more column than rows, like the real thing
+                return Rules.connectFour(size + 1, size);
+            case "gomoku":
+                return Rules.gomoku(size);
+            default:
+                throw new IllegalArgumentException("unknown rules " + name);
+        }
+    }
+
+    /**
+     * Simulates games.
+     * @param args the options, see {@link #USAGE}
+     * @throws IOException if the output file can not be written
+     * @throws InterruptedException if interrupted while simulating
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String ruleName = "tictactoe";
+        String sizes = "3";
+        long games = 100000;
+        Strategy playerOne = Strategy.RANDOM;
+        Strategy playerTwo = Strategy.RANDOM;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long seed = 1;
+        int depth = 4;
+        int playouts = 1000;
+        String outPath = null;
+        Format format = Format.CSV;
+
+        try {
+            for(int i=0;i<args.length;i++) {
+                String option = args[i];
+                if(option.equals("--help")) {
+                    System.out.print(USAGE);
+                    return;
+                }
+                if(i + 1 >= args.length) {
+                    throw new IllegalArgumentException("missing value of " + option);
+                }
+                String value = args[++i];
+                switch (option) {
+                    case "--rules": ruleName = value; break;
+                    case "--sizes": sizes = value; break;
+                    case "--games": games = Long.parseLong(value); break;
+                    case "--p1": playerOne = Strategy.valueOf(value.toUpperCase(Locale.ROOT)); break;
+                    case "--p2": playerTwo = Strategy.valueOf(value.toUpperCase(Locale.ROOT)); break;
+                    case "--threads": threads = Integer.parseInt(value); break;
+                    case "--seed": seed = Long.parseLong(value); break;
+                    case "--depth": depth = Integer.parseInt(value); break;
+                    case "--playouts": playouts = Integer.parseInt(value); break;
+                    case "--out": outPath = value; break;
+                    case "--format": format = Format.valueOf(value.toUpperCase(Locale.ROOT)); break;
+                    default: throw new IllegalArgumentException("unknown option " + option);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.print(USAGE);
+            System.exit(1);
+        }
+
+        GameSimulator simulator = new GameSimulator(playerOne, playerTwo, threads, seed, depth, playouts);
+        System.out.println(playerOne + " against " + playerTwo + " on " + threads + " threads");
+        OutputStream out = (outPath != null) ? new BufferedOutputStream(new FileOutputStream(outPath), BATCH_BYTES) : null;
+        try {
+            if(out != null) {
+                format.header(out);
+            }
+            for(String size : sizes.split(",")) {
+                Rules rules = rules(ruleName, Integer.parseInt(size.trim()));
+                System.out.println(simulator.run(rules, games, format, out));
+            }
+        } finally {
+            if(out != null) {
+                out.close();
+            }
+        }
+    }
+}
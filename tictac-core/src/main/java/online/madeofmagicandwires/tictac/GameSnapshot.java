@@ -0,0 +1,197 @@
+package online.madeofmagicandwires.tictac;
+
+import java.util.Arrays;
+
+/**
+ * GameSnapshot.java
+ * Immutable view of a {@link Game} at one point in time, safe to read from any thread.
+ *
+ * The board is kept as the packed bits of each player, so a snapshot costs a few longs
+ * rather than a matrix of tiles. A snapshot reuses the bits of the snapshot before it for
+ * every player whose tiles did not change, so publishing a move only copies the bits of the
+ * player who moved. The arrays are never written to once a snapshot holds them.
+ *
+ * Games publish a new snapshot once every completed turn, and at the end of every other public
+ * method that changes them, through a volatile field; see {@link Game#getSnapshot()}. A tile
+ * claimed before the turn has passed, and moves played while searching ahead, are not published.
+ *
+ * @author Joost Bremmer
+ * @version 1.0
+ */
+public final class GameSnapshot {
+
+    /** Represents the variant of k-in-a-row played **/
+    public final Rules rules;
+    /** how the game checks win conditions under classic rules **/
+    public final Game.WinDetection winDetection;
+    /** counts the snapshots of a game; a later snapshot always has a higher version **/
+    private final long version;
+    /** tiles owned by Player One **/
+    private final long[] playerOne;
+    /** tiles owned by Player Two **/
+    private final long[] playerTwo;
+    /** tiles of the line that won the round **/
+    private final long[] winning;
+    /** sum of moves played **/
+    private final int movesPlayed;
+    /** whose turn it is **/
+    private final boolean playerOneTurn;
+    /** state of the round **/
+    private final GameState gameOver;
+    /** rounds won by Player One **/
+    private final int winsPlayerOne;
+    /** rounds won by Player Two **/
+    private final int winsPlayerTwo;
+    /** Zobrist hash of the position **/
+    private final long hash;
+
+    /**
+     * Constructor. Takes a snapshot of the live state of a game.
+     * @param previous the last snapshot of the same game, whose unchanged arrays are reused, or null
+     * @param rules the rules of the game
+     * @param winDetection how the game checks win conditions under classic rules
+     * @param board the live board
+     * @param winningTiles the live bits of the winning line
+     * @param movesPlayed sum of moves played
+     * @param playerOneTurn whose turn it is
+     * @param gameOver state of the round
+     * @param wins rounds won by Player One and Player Two
+     * @param hash Zobrist hash of the position
+     */
+    GameSnapshot(GameSnapshot previous, Rules rules, Game.WinDetection winDetection, BitBoard board,
+                 long[] winningTiles, int movesPlayed, boolean playerOneTurn, GameState gameOver,
+                 int[] wins, long hash) {
+        this.rules = rules;
+        this.winDetection = winDetection;
+        this.version = (previous == null) ? 0 : previous.version + 1;
+        this.playerOne = board.share(true, (previous == null) ? null : previous.playerOne);
+        this.playerTwo = board.share(false, (previous == null) ? null : previous.playerTwo);
+        this.winning = (previous != null && Arrays.equals(winningTiles, previous.winning)) ?
+                previous.winning : winningTiles.clone();
+        this.movesPlayed = movesPlayed;
+        this.playerOneTurn = playerOneTurn;
+        this.gameOver = gameOver;
+        this.winsPlayerOne = wins[0];
+        this.winsPlayerTwo = wins[1];
+        this.hash = hash;
+    }
+
+    /**
+     * Gets the version of this snapshot, to tell cheaply whether a game has changed.
+     * @return a number raised by every snapshot of the same game
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Get the TileState of a specific tile
+     * @param row row of the tile
+     * @param col column of the tile
+     * @return BLANK, PLAYER_ONE or PLAYER_TWO
+     */
+    public TileState getTile(int row, int col) {
+        int tile = (row * rules.width) + col;
+        long bit = 1L << tile;
+        if((playerOne[tile >>> 6] & bit) != 0) {
+            return TileState.PLAYER_ONE;
+        }
+        if((playerTwo[tile >>> 6] & bit) != 0) {
+            return TileState.PLAYER_TWO;
+        }
+        return TileState.BLANK;
+    }
+
+    /**
+     * Checks whether a tile is part of the line that won the round.
+     * @param row row of the tile
+     * @param col column of the tile
+     * @return true if the round was won with this tile in the winning line
+     */
+    public boolean isWinningTile(int row, int col) {
+        int tile = (row * rules.width) + col;
+        return (winning[tile >>> 6] & (1L << tile)) != 0;
+    }
+
+    /**
+     * Counts the tiles owned by a player.
+     * @param playerOne true to count Player One's tiles, false for Player Two's
+     * @return the amount of tiles claimed by the player
+     */
+    public int countTiles(boolean playerOne) {
+        long[] words = playerOne ? this.playerOne : this.playerTwo;
+        int count = 0;
+        for(long word : words) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /**
+     * Gets the amount moves played.
+     * @return the sum of moves played by both players
+     */
+    public int getMovesPlayed() {
+        return movesPlayed;
+    }
+
+    /**
+     * Checks whose turn it is.
+     * @return true if it is Player One's turn
+     */
+    public boolean isPlayerOneTurn() {
+        return playerOneTurn;
+    }
+
+    /**
+     * Gets the state of the round.
+     * @return the GameState of the game
+     */
+    public GameState getGameOver() {
+        return gameOver;
+    }
+
+    /**
+     * Gets the amount of rounds won by a player.
+     * @param playerOne true for Player One, false for Player Two
+     * @return the amount of wins
+     */
+    public int getWins(boolean playerOne) {
+        return playerOne ? winsPlayerOne : winsPlayerTwo;
+    }
+
+    /**
+     * Gets the Zobrist hash of the position.
+     * @return the hash {@link Game#getHash()} had when the snapshot was taken
+     */
+    public long getHash() {
+        return hash;
+    }
+
+    /**
+     * Creates a game in the position of this snapshot, for example to search ahead on.
+     * The moves leading up to the position are not known, so they can not be undone.
+     * The game publishes the restored position once, as a single snapshot.
+     * @return a new, independent game, checking wins the same way as the original
+     */
+    public Game toGame() {
+        Game game = new Game(rules, winDetection);
+        for(int tile=0;tile<rules.tiles();tile++) {
+            long bit = 1L << tile;
+            boolean won = (winning[tile >>> 6] & bit) != 0;
+            if((playerOne[tile >>> 6] & bit) != 0) {
+                game.restoreTile(tile, true, won);
+            } else if((playerTwo[tile >>> 6] & bit) != 0) {
+                game.restoreTile(tile, false, won);
+            }
+        }
+        game.restoreState(movesPlayed, playerOneTurn, gameOver, winsPlayerOne, winsPlayerTwo);
+        return game;
+    }
+
+    @Override
+    public String toString() {
+        return "GameSnapshot " + version + " of " + rules + ": " + gameOver + ", "
+                + movesPlayed + " moves, " + (playerOneTurn ? "Player One" : "Player Two") + " to move";
+    }
+}
@@ -1,7 +1,5 @@
 package online.madeofmagicandwires.tictac;
 
-import android.support.annotation.NonNull;
-
 /**
  * GameState
  * enum keeping track of the state of a game.
@@ -0,0 +1,72 @@
+package online.madeofmagicandwires.tictac;
+
+import java.util.SplittableRandom;
+
+/**
+ * GreedyPlayer.java
+ * Computer player looking a single move ahead, by any {@link Rules}: it takes a win if it has
+ * one, otherwise blocks a win of the opponent, and otherwise plays at random.
+ * Not thread-safe; give every thread a player of its own.
+ *
+ * @author Joost Bremmer
+ * @version 1.0
+ */
+public class GreedyPlayer implements Player {
+
+    /** plays when there is nothing to win or block **/
+    private final RandomPlayer fallback;
+
+    /**
+     * Constructor.
+     * @param random source of the moves when there is nothing to win or block
+     */
+    public GreedyPlayer(SplittableRandom random) {
+        this.fallback = new RandomPlayer(random);
+    }
+
+    /**
+     * Picks a winning, blocking or otherwise random move for the current player of a game.
+     * @param game the game to pick a move for; must still be in progress. Moves are tried
+     *             on it and taken back, leaving it as it was
+     * @return the tile index (row * boardSize + col) to claim, or -1 if no tile is left
+     */
+    @Override
+    public int chooseMove(Game game) {
+        int block = -1;
+        for(int tile=0;tile<game.rules.tiles();tile++) {
+            if(!game.isLegal(tile)) {
+                continue;
+            }
+            if(wins(game, tile)) {
+                return tile;
+            }
+            if(block < 0) {
+                // would the opponent win here, if it were their turn?
+                game.passTurn();
+                boolean threat = wins(game, tile);
+                game.unpassTurn();
+                if(threat) {
+                    block = tile;
+                }
+            }
+        }
+        return (block >= 0) ? block : fallback.chooseMove(game);
+    }
+
+    /**
+     * Checks whether claiming a tile wins the round for the current player.
+     * @param position the position to check; left as it was
+     * @param tile a legal tile
+     * @return true if the move wins
+     */
+    private static boolean wins(Game position, int tile) {
+        GameState gs = position.play(tile);
+        position.unplay();
+        return gs == GameState.PLAYER_ONE_WIN || gs == GameState.PLAYER_TWO_WIN;
+    }
+
+    @Override
+    public String toString() {
+        return "GreedyPlayer";
+    }
+}
@@ -0,0 +1,117 @@
+package online.madeofmagicandwires.tictac;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * LatencyHistogram.java
+ * Thread-safe histogram of durations, for percentiles without keeping every sample.
+ *
+ * Durations are counted in log-linear buckets: every power of two of nanoseconds is split into
+ * {@link #SUB_BUCKETS} equal buckets, so a percentile is off by at most 1/{@link #SUB_BUCKETS}
+ * of its value, whether it is a microsecond or a minute. Recording is a single atomic increment.
+ *
+ * @author Joost Bremmer
+ * @version 1.0
+ */
+public final class LatencyHistogram {
+
+    /** Amount of buckets every power of two is split into **/
+    static final int SUB_BUCKETS = 8;
+    /** log2 of SUB_BUCKETS **/
+    private static final int SUB_BUCKET_BITS = 3;
+    /** Durations of 2^MAX_EXPONENT nanoseconds or more, about 18 minutes, share the last bucket **/
+    private static final int MAX_EXPONENT = 40;
+
+    /** amount of samples in every bucket **/
+    private final AtomicLongArray counts = new AtomicLongArray((MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS);
+
+    /**
+     * Gets the bucket of a duration.
+     * @param nanos the duration in nanoseconds
+     * @return index into counts
+     */
+    static int bucket(long nanos) {
+        if(nanos < SUB_BUCKETS) {
+            return (int) Math.max(nanos, 0);
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        if(exponent >= MAX_EXPONENT) {
+            return ((MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS) - 1;
+        }
+        int sub = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return ((exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS) + sub;
+    }
+
+    /**
+     * Gets the longest duration counted in a bucket.
+     * @param bucket index into counts
+     * @return the upper bound of the bucket in nanoseconds
+     */
+    static long upperBound(int bucket) {
+        if(bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = (bucket / SUB_BUCKETS) + SUB_BUCKET_BITS - 1;
+        long sub = bucket % SUB_BUCKETS;
+        long step = 1L << (exponent - SUB_BUCKET_BITS);
+        return (1L << exponent) + ((sub + 1) * step) - 1;
+    }
+
+    /**
+     * Counts a duration.
+     * @param nanos the duration in nanoseconds
+     */
+    public void record(long nanos) {
+        counts.incrementAndGet(bucket(nanos));
+    }
+
+    /**
+     * Gets the amount of durations counted.
+     * @return the amount of samples
+     */
+    public long count() {
+        long count = 0;
+        for(int i=0;i<counts.length();i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * Gets a percentile of the counted durations.
+     * @param percentile the percentile to get, from 0 to 100
+     * @return the duration in nanoseconds that the given share of samples did not exceed,
+     *         rounded up to its bucket; 0 if nothing was counted
+     */
+    public long percentile(double percentile) {
+        long count = count();
+        if(count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil((count * percentile) / 100.0));
+        long seen = 0;
+        for(int i=0;i<counts.length();i++) {
+            seen += counts.get(i);
+            if(seen >= rank) {
+                return upperBound(i);
+            }
+        }
+        return upperBound(counts.length() - 1);
+    }
+
+    /**
+     * Forgets every counted duration.
+     */
+    public void reset() {
+        for(int i=0;i<counts.length();i++) {
+            counts.set(i, 0);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "%d samples, p50 %.2fms, p90 %.2fms, p99 %.2fms, max %.2fms",
+                count(), percentile(50) / 1e6, percentile(90) / 1e6, percentile(99) / 1e6, percentile(100) / 1e6);
+    }
+}
@@ -0,0 +1,178 @@
+package online.madeofmagicandwires.tictac;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * LineCounters.java
+ * Keeps count of how many tiles each player owns on every row, column and both diagonals,
+ * so that a win or draw can be decided in constant time after each move.
+ *
+ * Lines are indexed the same way as {@link WinLines}: rows first, then columns,
+ * then the diagonal and the reverse diagonal. Boards that are not square have no diagonals
+ * running from corner to corner, so only their rows and columns are counted.
+ *
+ * @author Joost Bremmer
+ * @version 1.0
+ */
+final class LineCounters implements Serializable {
+
+    /** Amount of columns on the board **/
+    final int width;
+    /** Amount of rows on the board **/
+    final int height;
+    /** whether the board is square and its diagonals are counted **/
+    private final boolean square;
+    /** tiles owned by Player One on every line **/
+    private final int[] playerOne;
+    /** tiles owned by Player Two on every line **/
+    private final int[] playerTwo;
+    /** the amount of tiles claimed by either player **/
+    private int tilesPlayed;
+
+    /**
+     * Constructor. Creates counters for an empty board of width*height tiles.
+     * @param width amount of columns on the board
+     * @param height amount of rows on the board
+     */
+    LineCounters(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.square = width == height;
+        int lines = height + width + (square ? 2 : 0);
+        this.playerOne = new int[lines];
+        this.playerTwo = new int[lines];
+    }
+
+    /**
+     * Constructor. Creates counters for an empty board of boardSize^boardSize tiles.
+     * @param boardSize the "cubic" amount of tiles on the board
+     */
+    LineCounters(int boardSize) {
+        this(boardSize, boardSize);
+    }
+
+    /**
+     * Copy constructor.
+     * @param other the counters to copy
+     */
+    LineCounters(LineCounters other) {
+        this.width = other.width;
+        this.height = other.height;
+        this.square = other.square;
+        this.playerOne = other.playerOne.clone();
+        this.playerTwo = other.playerTwo.clone();
+        this.tilesPlayed = other.tilesPlayed;
+    }
+
+    /**
+     * Overwrites these counters with those of another instance of the same board size,
+     * without allocating.
+     * @param other the counters to copy
+     */
+    void copyFrom(LineCounters other) {
+        System.arraycopy(other.playerOne, 0, playerOne, 0, playerOne.length);
+        System.arraycopy(other.playerTwo, 0, playerTwo, 0, playerTwo.length);
+        this.tilesPlayed = other.tilesPlayed;
+    }
+
+    /**
+     * Gets the amount of lines kept count of.
+     * @return the amount of rows, columns and diagonals on the board
+     */
+    int lineCount() {
+        return playerOne.length;
+    }
+
+    /**
+     * Gets the amount of tiles a player owns on a line.
+     * @param line index of the line
+     * @param playerOne true for Player One's tiles, false for Player Two's
+     * @return the amount of tiles owned on that line
+     */
+    int count(int line, boolean playerOne) {
+        return playerOne ? this.playerOne[line] : this.playerTwo[line];
+    }
+
+    /**
+     * Gets the amount of tiles claimed by either player.
+     * @return the amount of non-blank tiles
+     */
+    int tilesPlayed() {
+        return tilesPlayed;
+    }
+
+    /**
+     * Counts a newly claimed tile.
+     * @param row row of the tile in the gameBoard matrix
+     * @param col column of the tile in the gameBoard matrix
+     * @param playerOne true if the tile was claimed by Player One, false for Player Two
+     */
+    void add(int row, int col, boolean playerOne) {
+        int[] counts = playerOne ? this.playerOne : this.playerTwo;
+        counts[row]++;
+        counts[height + col]++;
+        if(square) {
+            if(row == col) {
+                counts[height + width]++;
+            }
+            if(row + col == width - 1) {
+                counts[height + width + 1]++;
+            }
+        }
+        tilesPlayed++;
+    }
+
+    /**
+     * Stops counting a tile that has been blanked again.
+     * @param row row of the tile in the gameBoard matrix
+     * @param col column of the tile in the gameBoard matrix
+     * @param playerOne true if the tile was owned by Player One, false for Player Two
+     */
+    void remove(int row, int col, boolean playerOne) {
+        int[] counts = playerOne ? this.playerOne : this.playerTwo;
+        counts[row]--;
+        counts[height + col]--;
+        if(square) {
+            if(row == col) {
+                counts[height + width]--;
+            }
+            if(row + col == width - 1) {
+                counts[height + width + 1]--;
+            }
+        }
+        tilesPlayed--;
+    }
+
+    /**
+     * Checks whether a player owns every tile of any line running through the given tile.
+     * @param row row of the tile in the gameBoard matrix
+     * @param col column of the tile in the gameBoard matrix
+     * @param playerOne true to check Player One's lines, false for Player Two's
+     * @return true if the player has completed a row, column or diagonal through the tile
+     */
+    boolean completesLine(int row, int col, boolean playerOne) {
+        int[] counts = playerOne ? this.playerOne : this.playerTwo;
+        return counts[row] == width
+                || counts[height + col] == height
+                || (square && row == col && counts[height + width] == width)
+                || (square && row + col == width - 1 && counts[height + width + 1] == width);
+    }
+
+    /**
+     * Checks whether every tile on the board has been claimed.
+     * @return true if no blank tiles are left
+     */
+    boolean isFull() {
+        return tilesPlayed == width * height;
+    }
+
+    /**
+     * Resets every counter for an empty board.
+     */
+    void clear() {
+        Arrays.fill(playerOne, 0);
+        Arrays.fill(playerTwo, 0);
+        tilesPlayed = 0;
+    }
+}
@@ -0,0 +1,350 @@
+package online.madeofmagicandwires.tictac;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/**
+ * MatchHistoryStore.java
+ * Append-only log of played games, kept in a memory-mapped file so the history survives the
+ * process, and scanned sequentially for statistics.
+ *
+ * Every game is a fixed-width record of {@link #RECORD_BYTES} bytes:
+ * <pre>
+ *   int     CRC32 of the rest of the record, written last
+ *   long    time the game ended, in milliseconds since the epoch
+ *   byte    width, height, winLength, flags (gravity)
+ *   byte    GameState ordinal; IN_PROGRESS for a game abandoned halfway
+ *   byte    version of the record layout
+ *   short   amount of moves
+ *   byte[]  tile index of every move, alternating from Player One
+ * </pre>
+ * The file grows by whole segments of {@link #SEGMENT_BYTES}. Since the checksum is written
+ * after the rest of a record, a record torn by a crash never checks out. On opening, the log
+ * ends at the first record that does not check out, and everything after it is zeroed.
+ *
+ * Writing a record forces it to storage, so appends belong on a background thread.
+ *
+ * @author Joost Bremmer
+ * @version 1.0
+ */
+public final class MatchHistoryStore implements Closeable {
+
+    /** Size of a single record in bytes **/
+    public static final int RECORD_BYTES = 128;
+    /** Most moves a record holds; games on boards with more tiles cannot be stored **/
+    public static final int MAX_MOVES = RECORD_BYTES - 20;
+    /** Size by which the file grows, in bytes **/
+    static final int SEGMENT_BYTES = RECORD_BYTES * 512;
+
+    /** Version of the record layout **/
+    private static final byte VERSION = 1;
+    /** Flag set for rules with gravity **/
+    private static final int GRAVITY = 1;
+    /** every GameState by ordinal; values() returns a new copy on every call **/
+    private static final GameState[] STATES = GameState.values();
+
+    /**
+     * Callback for every record of a scan.
+     */
+    public interface Visitor {
+        /**
+         * Called for every stored game, oldest first.
+         * @param record view of the record; only valid during the call
+         */
+        void visit(Record record);
+    }
+
+    /** the log file **/
+    private final RandomAccessFile file;
+    /** channel of the log file **/
+    private final FileChannel channel;
+    /** mapping of the whole file **/
+    private MappedByteBuffer buffer;
+    /** amount of records stored **/
+    private int count;
+    /** checksum calculator, reused for every record **/
+    private final CRC32 crc = new CRC32();
+
+    /**
+     * Opens a log, creating it if it does not exist, and drops any torn records at its end.
+     * @param path the log file
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    public MatchHistoryStore(File path) throws IOException {
+        this.file = new RandomAccessFile(path, "rw");
+        this.channel = file.getChannel();
+        long size = channel.size();
+        long segments = Math.max(1, (size + SEGMENT_BYTES - 1) / SEGMENT_BYTES);
+        map(segments * SEGMENT_BYTES);
+        recover();
+    }
+
+    /**
+     * Counts the valid records and zeroes everything after the last of them.
+     */
+    private void recover() {
+        int capacity = buffer.capacity() / RECORD_BYTES;
+        count = 0;
+        while(count < capacity && checksOut(count * RECORD_BYTES)) {
+            count++;
+        }
+        for(int i=count*RECORD_BYTES;i<buffer.capacity();i++) {
+            if(buffer.get(i) != 0) {
+                buffer.put(i, (byte) 0);
+            }
+        }
+        buffer.force();
+    }
+
+    /**
+     * Maps the file, growing it if needed.
+     * @param size the size to map, in bytes
+     * @throws IOException if the file cannot be mapped
+     */
+    private void map(long size) throws IOException {
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+
+    /**
+     * Checks the checksum of a record.
+     * @param offset the position of the record in the file
+     * @return true if the record was written completely
+     */
+    private boolean checksOut(int offset) {
+        return buffer.getInt(offset) == checksum(buffer, offset) && buffer.get(offset + 17) == VERSION;
+    }
+
+    /**
+     * Calculates the checksum of a record.
+     * @param records buffer holding the record
+     * @param offset the position of the record in the buffer
+     * @return CRC32 of everything in the record after the checksum
+     */
+    private int checksum(ByteBuffer records, int offset) {
+        crc.reset();
+        for(int i=offset+4;i<offset+RECORD_BYTES;i++) {
+            crc.update(records.get(i));
+        }
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Checks whether a game can be stored: its board must fit in a record, and the moves of its
+     * round must be known. A board set as a whole, rather than played move by move, has tiles
+     * that no logged move claimed.
+     * @param game the game to store
+     * @return true if every claimed tile of the game is in its log of moves
+     */
+    public static boolean canStore(Game game) {
+        return game.rules.tiles() <= MAX_MOVES && game.getLog().size() == game.getCounters().tilesPlayed();
+    }
+
+    /**
+     * Encodes a game as a record, for appending later, for example on another thread.
+     * @param game the game to store; the moves of its current round are stored
+     * @param endedMillis time the game ended, in milliseconds since the epoch
+     * @return the record, without its checksum
+     * @throws IllegalArgumentException if the game can not be stored
+     * @see #canStore(Game)
+     */
+    public static byte[] encode(Game game, long endedMillis) {
+        Rules rules = game.rules;
+        if(rules.tiles() > MAX_MOVES) {
+            throw new IllegalArgumentException("Cannot store a game on a board of " + rules.width + "*" + rules.height);
+        }
+        MoveLog log = game.getLog();
+        if(log.size() != game.getCounters().tilesPlayed()) {
+            throw new IllegalArgumentException("Cannot store a game of " + game.getCounters().tilesPlayed() +
+                    " tiles claimed with only " + log.size() + " moves known");
+        }
+        ByteBuffer record = ByteBuffer.allocate(RECORD_BYTES);
+        record.putInt(0);
+        record.putLong(endedMillis);
+        record.put((byte) rules.width);
+        record.put((byte) rules.height);
+        record.put((byte) rules.winLength);
+        record.put((byte) (rules.gravity ? GRAVITY : 0));
+        record.put((byte) game.getGameOver().ordinal());
+        record.put(VERSION);
+        record.putShort((short) log.size());
+        for(int i=0;i<log.size();i++) {
+            record.put((byte) MoveLog.tile(log.get(i)));
+        }
+        return record.array();
+    }
+
+    /**
+     * Fills in the checksum of a record, for writing records to a stream rather than through
+     * a store. A file of sealed records, one after another, opens as a log.
+     * @param record a record made by {@link #encode(Game, long)}
+     */
+    static void seal(byte[] record) {
+        CRC32 crc = new CRC32();
+        crc.update(record, 4, RECORD_BYTES - 4);
+        ByteBuffer.wrap(record).putInt(0, (int) crc.getValue());
+    }
+
+    /**
+     * Appends a game to the log and forces it to storage.
+     * @param game the game to store; the moves of its current round are stored
+     * @param endedMillis time the game ended, in milliseconds since the epoch
+     * @throws IOException if the file cannot grow
+     */
+    public void append(Game game, long endedMillis) throws IOException {
+        append(encode(game, endedMillis));
+    }
+
+    /**
+     * Appends a record made by {@link #encode(Game, long)} to the log and forces it to storage.
+     * @param record the record to append
+     * @throws IOException if the file cannot grow
+     */
+    public synchronized void append(byte[] record) throws IOException {
+        if(record.length != RECORD_BYTES) {
+            throw new IllegalArgumentException("Records are " + RECORD_BYTES + " bytes, not " + record.length);
+        }
+        int offset = count * RECORD_BYTES;
+        if(offset + RECORD_BYTES > buffer.capacity()) {
+            map((long) buffer.capacity() + SEGMENT_BYTES);
+        }
+        // everything but the checksum first, so a torn record never checks out
+        for(int i=4;i<RECORD_BYTES;i++) {
+            buffer.put(offset + i, record[i]);
+        }
+        buffer.putInt(offset, checksum(buffer, offset));
+        buffer.force();
+        count++;
+    }
+
+    /**
+     * Gets the amount of stored games.
+     * @return the amount of records in the log
+     */
+    public synchronized int size() {
+        return count;
+    }
+
+    /**
+     * Visits every stored game, oldest first, without allocating per record.
+     * @param visitor the callback to call for every record
+     */
+    public synchronized void scan(Visitor visitor) {
+        Record record = new Record(buffer);
+        for(int i=0;i<count;i++) {
+            record.offset = i * RECORD_BYTES;
+            visitor.visit(record);
+        }
+    }
+
+    /**
+     * Counts the outcomes of the stored games played by some rules.
+     * @param rules the rules to count the games of
+     * @return the amount of games for every GameState, by ordinal
+     */
+    public long[] countResults(final Rules rules) {
+        final long[] results = new long[STATES.length];
+        scan(new Visitor() {
+            @Override
+            public void visit(Record record) {
+                if(record.width() == rules.width && record.height() == rules.height
+                        && record.winLength() == rules.winLength && record.gravity() == rules.gravity) {
+                    results[record.result().ordinal()]++;
+                }
+            }
+        });
+        return results;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        buffer.force();
+        channel.close();
+        file.close();
+    }
+
+    /**
+     * View of a single stored game, moved along the log by a scan.
+     */
+    public static final class Record {
+
+        /** the mapped log **/
+        private final ByteBuffer buffer;
+        /** position of the record in the log **/
+        int offset;
+
+        Record(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        /**
+         * Gets the time the game ended.
+         * @return milliseconds since the epoch
+         */
+        public long endedMillis() {
+            return buffer.getLong(offset + 4);
+        }
+
+        /**
+         * Gets the width of the board.
+         * @return the amount of columns on the board
+         */
+        public int width() {
+            return buffer.get(offset + 12) & 0xFF;
+        }
+
+        /**
+         * Gets the height of the board.
+         * @return the amount of rows on the board
+         */
+        public int height() {
+            return buffer.get(offset + 13) & 0xFF;
+        }
+
+        /**
+         * Gets the win length.
+         * @return the amount of tiles in a row needed to win
+         */
+        public int winLength() {
+            return buffer.get(offset + 14) & 0xFF;
+        }
+
+        /**
+         * Checks whether the game was played with gravity.
+         * @return true if tiles fell down their column
+         */
+        public boolean gravity() {
+            return (buffer.get(offset + 15) & GRAVITY) != 0;
+        }
+
+        /**
+         * Gets the outcome of the game.
+         * @return the GameState the game ended in; IN_PROGRESS if it was abandoned
+         */
+        public GameState result() {
+            return STATES[buffer.get(offset + 16)];
+        }
+
+        /**
+         * Gets the length of the game.
+         * @return the amount of moves played
+         */
+        public int moveCount() {
+            return buffer.getShort(offset + 18);
+        }
+
+        /**
+         * Gets a move of the game; even moves were Player One's.
+         * @param i index of the move, below {@link #moveCount()}
+         * @return the tile index of the move, counting row by row from 0
+         */
+        public int move(int i) {
+            return buffer.get(offset + 20 + i) & 0xFF;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package online.madeofmagicandwires.tictac;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * MctsPlayer.java
+ * Computer player using Monte Carlo Tree Search (UCT), for boards too big to search exactly.
+ * Plays by any {@link Rules}, including gravity and win lengths shorter than the board.
+ *
+ * Rather than searching every move to a fixed depth, the player plays many random games and
+ * grows a tree towards the moves that win most often. Playouts run on a reusable
+ * {@link PlayoutBoard}, so a search allocates nothing once its trees exist.
+ *
+ * Searches are spread over the threads of a {@link ForkJoinPool} by root parallelization:
+ * every thread grows a tree of its own, and the visits of the moves at the root are added up
+ * over all trees to pick the move. Trees are kept between moves; when the game has continued
+ * along moves already in a tree, the subtree of the new position is reused.
+ *
+ * @author Joost Bremmer
+ * @version 1.0
+ * @see MctsTree
+ */
+public class MctsPlayer implements Player {
+
+    /** Default amount of nodes a single tree can hold; 2^16 nodes take up about 2.6MB **/
+    public static final int DEFAULT_NODES = 1 << 16;
+
+    /** pool the trees are searched on **/
+    private final ForkJoinPool pool;
+    /** amount of trees searched in parallel **/
+    private final int treeCount;
+    /** amount of nodes each tree can hold **/
+    private final int nodesPerTree;
+    /** time a single move may take, in nanoseconds **/
+    private final long timeBudgetNanos;
+    /** the trees, created for the rules of the last search **/
+    private MctsTree[] trees;
+
+    /** playouts of the last search, over every tree **/
+    private long playouts;
+    /** duration of the last search, in nanoseconds **/
+    private long elapsedNanos;
+    /** amount of trees reused by the last search **/
+    private int treesReused;
+
+    /**
+     * Most specific constructor
+     * @param pool pool to search the trees on
+     * @param treeCount amount of trees to search in parallel; usually the parallelism of the pool
+     * @param timeBudgetMillis time a single move may take, in milliseconds
+     * @param nodesPerTree amount of nodes each tree can hold
+     */
+    public MctsPlayer(ForkJoinPool pool, int treeCount, long timeBudgetMillis, int nodesPerTree) {
+        this.pool = pool;
+        this.treeCount = Math.max(treeCount, 1);
+        this.timeBudgetNanos = timeBudgetMillis * 1000000L;
+        this.nodesPerTree = nodesPerTree;
+    }
+
+    /**
+     * Constructor searching a tree of {@link #DEFAULT_NODES} for every thread of the common pool.
+     * @param timeBudgetMillis time a single move may take, in milliseconds
+     */
+    public MctsPlayer(long timeBudgetMillis) {
+        this(ForkJoinPool.commonPool(), ForkJoinPool.commonPool().getParallelism(), timeBudgetMillis, DEFAULT_NODES);
+    }
+
+    /**
+     * Searches for the best move for the current player of a game, within the time budget.
+     * @param game the game to pick a move for; must still be in progress
+     * @return the tile index (row * boardSize + col) to claim, or -1 if no tile is left
+     */
+    @Override
+    public int chooseMove(Game game) {
+        return search(game, System.nanoTime() + timeBudgetNanos, Long.MAX_VALUE);
+    }
+
+    /**
+     * Searches for the best move for the current player of a game until either the deadline
+     * passes, the given amount of playouts has been played or the calling thread is interrupted.
+     * @param game the game to pick a move for; must still be in progress
+     * @param deadlineNanos value of {@link System#nanoTime()} after which the search stops
+     * @param maxPlayouts maximum amount of playouts, over every tree
+     * @return the most visited move, or -1 if no tile is left
+     */
+    public int search(Game game, long deadlineNanos, final long maxPlayouts) {
+        int tiles = game.rules.tiles();
+        if(game.getCounters().tilesPlayed() == tiles) {
+            return -1;
+        }
+
+        long start = System.nanoTime();
+        if(trees == null || !trees[0].rules.equals(game.rules)) {
+            trees = new MctsTree[treeCount];
+            for(int i=0;i<treeCount;i++) {
+                trees[i] = new MctsTree(game.rules, nodesPerTree, start + i);
+            }
+        }
+        treesReused = 0;
+        for(MctsTree tree : trees) {
+            if(tree.moveTo(game)) {
+                treesReused++;
+            }
+        }
+
+        long perTree = Math.max(maxPlayouts / treeCount, 1);
+        Thread caller = Thread.currentThread();
+        playouts = 0;
+        if(treeCount == 1) {
+            playouts = trees[0].search(deadlineNanos, perTree, caller);
+        } else {
+            List<TreeTask> tasks = new ArrayList<>(treeCount);
+            for(MctsTree tree : trees) {
+                tasks.add(new TreeTask(tree, deadlineNanos, perTree, caller));
+            }
+            pool.invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    ForkJoinTask.invokeAll(tasks);
+                }
+            });
+            for(TreeTask task : tasks) {
+                playouts += task.playouts;
+            }
+        }
+        elapsedNanos = System.nanoTime() - start;
+
+        // the most visited move is the most reliable one
+        long[] visits = new long[tiles];
+        for(MctsTree tree : trees) {
+            tree.addRootVisits(visits);
+        }
+        int bestMove = -1;
+        for(int tile=0;tile<tiles;tile++) {
+            if(game.isLegal(tile) && (bestMove < 0 || visits[tile] > visits[bestMove])) {
+                bestMove = tile;
+            }
+        }
+        return bestMove;
+    }
+
+    /**
+     * Gets the amount of playouts of the last search, over every tree.
+     * @return the amount of playouts
+     */
+    public long getPlayouts() {
+        return playouts;
+    }
+
+    /**
+     * Gets the speed of the last search.
+     * @return playouts per second over every tree, or 0 if nothing was searched yet
+     */
+    public double getPlayoutsPerSecond() {
+        return (elapsedNanos == 0) ? 0 : playouts * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * Returns a Human readable String representing the state of the current object.
+     * @return Human readable String containing the search metrics of the last move
+     */
+    @Override
+    public String toString() {
+        int nodes = 0;
+        if(trees != null) {
+            for(MctsTree tree : trees) {
+                nodes += tree.size();
+            }
+        }
+        return "MctsPlayer played " + playouts + " playouts on " + treeCount + " trees (" +
+                String.format(Locale.ROOT, "%.0f", getPlayoutsPerSecond()) + "/s), " +
+                nodes + " nodes, " + treesReused + " trees reused";
+    }
+
+    /**
+     * Searches a single tree.
+     */
+    private static final class TreeTask extends RecursiveAction {
+
+        private final MctsTree tree;
+        private final long deadlineNanos;
+        private final long maxPlayouts;
+        /** the thread waiting for the move, stopping every tree once interrupted **/
+        private final Thread caller;
+        /** playouts run, read after the task has been joined **/
+        long playouts;
+
+        TreeTask(MctsTree tree, long deadlineNanos, long maxPlayouts, Thread caller) {
+            this.tree = tree;
+            this.deadlineNanos = deadlineNanos;
+            this.maxPlayouts = maxPlayouts;
+            this.caller = caller;
+        }
+
+        @Override
+        protected void compute() {
+            playouts = tree.search(deadlineNanos, maxPlayouts, caller);
+        }
+    }
+}
@@ -0,0 +1,366 @@
+package online.madeofmagicandwires.tictac;
+
+import java.util.SplittableRandom;
+
+/**
+ * MctsTree.java
+ * Search tree of a Monte Carlo Tree Search, searched by a single thread.
+ *
+ * Nodes live in a fixed-size arena of parallel primitive arrays rather than in node objects,
+ * so growing the tree never allocates and the garbage collector has nothing to trace.
+ * The children of a node are allocated together in one consecutive block when it is expanded.
+ * Once the arena is full, leaves are no longer expanded but still played out from.
+ *
+ * Every iteration descends from the root by the UCT formula, expands the leaf it ends up in,
+ * plays a random game from there on a {@link PlayoutBoard} and adds the outcome to every node
+ * on the way back up. Each node scores the outcome for the player who made the move leading to it.
+ *
+ * When the game continues along moves already in the tree, the subtree of the new position is
+ * copied into a spare arena and becomes the new tree, so its statistics are kept.
+ *
+ * @author Joost Bremmer
+ * @version 1.0
+ * @see MctsPlayer
+ */
+final class MctsTree {
+
+    /** Balance between exploiting good moves and exploring little visited ones **/
+    private static final double EXPLORATION = Math.sqrt(2);
+    /** Score of a win for the player who made the move; a draw scores 1 and a loss 0 **/
+    private static final int WIN = 2;
+    /** every GameState by ordinal; values() returns a new copy on every call **/
+    private static final GameState[] OUTCOMES = GameState.values();
+
+    /** Represents the variant of k-in-a-row played by specific instances **/
+    final Rules rules;
+    /** amount of columns on the board **/
+    private final int width;
+    /** the arena holding the tree **/
+    private Nodes nodes;
+    /** arena the tree is copied into when it is reused **/
+    private Nodes spare;
+    /** index in the old arena of every node copied into the new one **/
+    private final int[] copied;
+
+    /** position at the root **/
+    private final PlayoutBoard rootBoard;
+    /** board every iteration is played on **/
+    private final PlayoutBoard scratch;
+    /** nodes visited by the current iteration **/
+    private final int[] path;
+    /** source of the random playouts **/
+    private final SplittableRandom random;
+    /** iterations since the tree was created **/
+    private long playouts;
+
+    /**
+     * Constructor.
+     * @param rules the board size, win length and gravity to play with
+     * @param capacity the amount of nodes the tree can hold
+     * @param seed seed of the random playouts
+     */
+    MctsTree(Rules rules, int capacity, long seed) {
+        int tiles = rules.tiles();
+        this.rules = rules;
+        this.width = rules.width;
+        // a tree always holds at least the root and its children
+        capacity = Math.max(capacity, tiles + 1);
+        this.nodes = new Nodes(capacity);
+        this.spare = new Nodes(capacity);
+        this.copied = new int[capacity];
+        this.rootBoard = new PlayoutBoard(rules);
+        this.scratch = new PlayoutBoard(rules);
+        this.path = new int[tiles + 1];
+        this.random = new SplittableRandom(seed);
+    }
+
+    /**
+     * Makes a game the root of the tree, keeping the subtree of its position if the game
+     * continued along moves in the tree since the last search.
+     * @param game the position to search; must be in progress
+     * @return true if the old tree was reused, false if a new tree was started
+     */
+    boolean moveTo(Game game) {
+        int node = (nodes.size > 0) ? findPosition(game) : -1;
+        rootBoard.load(game);
+        if(node < 0) {
+            nodes.clearRoot();
+            return false;
+        }
+        if(node != 0) {
+            compact(node);
+        }
+        return true;
+    }
+
+    /**
+     * Looks for the node holding a position, starting from the root.
+     * @param game the position to look for
+     * @return the index of the node, or -1 if the position is not in the tree
+     */
+    private int findPosition(Game game) {
+        // every tile claimed at the root must still be claimed by the same player
+        int tiles = rules.tiles();
+        int played = 0;
+        for(int tile=0;tile<tiles;tile++) {
+            TileState root = rootBoard.getTile(tile);
+            TileState now = game.getTile(tile / width, tile % width);
+            if(root != TileState.BLANK && root != now) {
+                return -1;
+            }
+            if(root == TileState.BLANK && now != TileState.BLANK) {
+                played++;
+            }
+        }
+
+        // follow the moves played since, alternating between the players
+        int node = 0;
+        boolean playerOne = rootBoard.isPlayerOneTurn();
+        for(int i=0;i<played;i++) {
+            TileState mover = playerOne ? TileState.PLAYER_ONE : TileState.PLAYER_TWO;
+            int next = -1;
+            int first = nodes.firstChild[node];
+            for(int c=first;c<first+nodes.childCount[node];c++) {
+                int tile = nodes.move[c];
+                if(rootBoard.getTile(tile) == TileState.BLANK
+                        && game.getTile(tile / width, tile % width) == mover) {
+                    next = c;
+                    break;
+                }
+            }
+            if(next < 0) {
+                return -1;
+            }
+            node = next;
+            playerOne = !playerOne;
+        }
+        return (playerOne == game.getPlayerOneTurn()) ? node : -1;
+    }
+
+    /**
+     * Copies the subtree of a node into the spare arena and makes it the tree.
+     * Copies breadth first, so the children of every node stay in one block.
+     * @param node the node to become the root
+     */
+    private void compact(int node) {
+        Nodes from = nodes;
+        Nodes to = spare;
+        to.size = 1;
+        copied[0] = node;
+        for(int i=0;i<to.size;i++) {
+            int old = copied[i];
+            to.move[i] = from.move[old];
+            to.visits[i] = from.visits[old];
+            to.score[i] = from.score[old];
+            to.outcome[i] = from.outcome[old];
+            int count = from.childCount[old];
+            to.childCount[i] = count;
+            to.firstChild[i] = to.size;
+            for(int c=0;c<count;c++) {
+                copied[to.size++] = from.firstChild[old] + c;
+            }
+        }
+        nodes = to;
+        spare = from;
+    }
+
+    /**
+     * Runs iterations until either the deadline passes, the given amount is reached or the
+     * thread that asked for the move is interrupted.
+     * @param deadlineNanos value of {@link System#nanoTime()} after which to stop
+     * @param maxPlayouts maximum amount of iterations to run
+     * @param caller the thread waiting for the move; may be another thread than the one searching
+     * @return the amount of iterations run
+     */
+    long search(long deadlineNanos, long maxPlayouts, Thread caller) {
+        long count = 0;
+        while(count < maxPlayouts) {
+            iterate();
+            // a playout takes microseconds, so the clock need not be read after every one
+            if((++count & 15) == 0 && (System.nanoTime() > deadlineNanos || caller.isInterrupted())) {
+                break;
+            }
+        }
+        playouts += count;
+        return count;
+    }
+
+    /**
+     * Runs a single iteration: selection, expansion, playout and backpropagation.
+     */
+    void iterate() {
+        Nodes tree = nodes;
+        scratch.copyFrom(rootBoard);
+        int node = 0;
+        int depth = 0;
+        path[depth++] = node;
+        GameState gs = GameState.IN_PROGRESS;
+
+        while(true) {
+            if(tree.outcome[node] != 0) {
+                gs = OUTCOMES[tree.outcome[node]];
+                break;
+            }
+            if(tree.childCount[node] == 0) {
+                // expand leaves from their second visit on, so single visits cost no nodes
+                if((tree.visits[node] == 0 && node != 0) || !expand(node)) {
+                    break;
+                }
+            }
+            node = select(node);
+            path[depth++] = node;
+            gs = scratch.play(tree.move[node]);
+            if(gs != GameState.IN_PROGRESS) {
+                tree.outcome[node] = (byte) gs.ordinal();
+                break;
+            }
+        }
+
+        if(gs == GameState.IN_PROGRESS) {
+            gs = scratch.playout(random);
+        }
+
+        // score the outcome for the player who moved into every node, root down
+        boolean playerOne = !rootBoard.isPlayerOneTurn();
+        int score;
+        for(int i=0;i<depth;i++) {
+            int n = path[i];
+            if(gs == GameState.DRAW) {
+                score = 1;
+            } else {
+                score = ((gs == GameState.PLAYER_ONE_WIN) == playerOne) ? WIN : 0;
+            }
+            tree.visits[n]++;
+            tree.score[n] += score;
+            playerOne = !playerOne;
+        }
+    }
+
+    /**
+     * Gives a leaf a child for every move, if the arena has room for them.
+     * @param node the leaf to expand
+     * @return true if the node was expanded
+     */
+    private boolean expand(int node) {
+        Nodes tree = nodes;
+        int count = scratch.moveCount();
+        if(count == 0 || tree.size + count > tree.capacity) {
+            return false;
+        }
+        int first = tree.size;
+        for(int i=0;i<count;i++) {
+            int c = first + i;
+            tree.move[c] = scratch.move(i);
+            tree.visits[c] = 0;
+            tree.score[c] = 0;
+            tree.outcome[c] = 0;
+            tree.childCount[c] = 0;
+            tree.firstChild[c] = 0;
+        }
+        tree.firstChild[node] = first;
+        tree.childCount[node] = count;
+        tree.size += count;
+        return true;
+    }
+
+    /**
+     * Picks the child to descend into by the UCT formula; unvisited children first.
+     * @param node an expanded node
+     * @return the index of the child
+     */
+    private int select(int node) {
+        Nodes tree = nodes;
+        int first = tree.firstChild[node];
+        int end = first + tree.childCount[node];
+        double logVisits = Math.log(Math.max(tree.visits[node], 1));
+        int best = first;
+        double bestValue = Double.NEGATIVE_INFINITY;
+        for(int c=first;c<end;c++) {
+            int visits = tree.visits[c];
+            if(visits == 0) {
+                return c;
+            }
+            double value = tree.score[c] / (double) (WIN * visits)
+                    + EXPLORATION * Math.sqrt(logVisits / visits);
+            if(value > bestValue) {
+                bestValue = value;
+                best = c;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Adds the visits of every move at the root to a per-tile total.
+     * @param totals amount of visits for every tile index, added to
+     */
+    void addRootVisits(long[] totals) {
+        Nodes tree = nodes;
+        int first = tree.firstChild[0];
+        for(int c=first;c<first+tree.childCount[0];c++) {
+            totals[tree.move[c]] += tree.visits[c];
+        }
+    }
+
+    /**
+     * Gets the amount of nodes in use.
+     * @return the size of the tree
+     */
+    int size() {
+        return nodes.size;
+    }
+
+    /**
+     * Gets the amount of iterations run since the tree was created.
+     * @return the amount of playouts
+     */
+    long getPlayouts() {
+        return playouts;
+    }
+
+    /**
+     * Arena of tree nodes, as parallel arrays indexed by node. Node 0 is the root.
+     */
+    private static final class Nodes {
+
+        /** amount of nodes the arena can hold **/
+        final int capacity;
+        /** tile index of the move leading to every node **/
+        final int[] move;
+        /** index of the first child of every node **/
+        final int[] firstChild;
+        /** amount of children of every node; 0 if not expanded **/
+        final int[] childCount;
+        /** amount of iterations through every node **/
+        final int[] visits;
+        /** total score of every node for the player who moved into it **/
+        final int[] score;
+        /** ordinal of the GameState a node ends the game in, or 0 if it does not **/
+        final byte[] outcome;
+        /** amount of nodes in use **/
+        int size;
+
+        Nodes(int capacity) {
+            this.capacity = capacity;
+            this.move = new int[capacity];
+            this.firstChild = new int[capacity];
+            this.childCount = new int[capacity];
+            this.visits = new int[capacity];
+            this.score = new int[capacity];
+            this.outcome = new byte[capacity];
+        }
+
+        /**
+         * Empties the arena, leaving only an unvisited root.
+         */
+        void clearRoot() {
+            move[0] = -1;
+            firstChild[0] = 0;
+            childCount[0] = 0;
+            visits[0] = 0;
+            score[0] = 0;
+            outcome[0] = 0;
+            size = 1;
+        }
+    }
+}
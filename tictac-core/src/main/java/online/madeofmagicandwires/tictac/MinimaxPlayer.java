@@ -0,0 +1,417 @@
+package online.madeofmagicandwires.tictac;
+
+/**
+ * MinimaxPlayer.java
+ * Computer player searching the game tree with alpha-beta pruned minimax (in negamax form).
+ *
+ * The search deepens iteratively until it either solves the position or runs out of its
+ * time budget, in which case the best move of the deepest finished iteration is played.
+ * Moves are ordered so that winning moves, blocking moves and tiles close to the centre are
+ * searched first, which makes the pruning far more effective on big boards.
+ * Results are memoized in a {@link TranspositionTable} that is kept between moves, so positions
+ * reached through different move orders are only searched once. The table is keyed on the
+ * canonical orientation of every position, so symmetric positions share a single entry.
+ * If an {@link EndgameDatabase} for the board size is available, moves are looked up instead.
+ *
+ * @author Joost Bremmer
+ * @version 1.0
+ */
+public class MinimaxPlayer implements Player {
+
+    /** Default time a single move may take, in milliseconds **/
+    public static final long DEFAULT_TIME_BUDGET_MILLIS = 500;
+
+    /** Score of a position won by the side to move; reduced by the amount of plies it takes **/
+    static final int WIN_SCORE = 1000000;
+    /** Larger than any score the search can return **/
+    static final int INFINITY = WIN_SCORE + 1;
+    /** Scores beyond this are wins or losses, whose distance to the root must be kept **/
+    private static final int WIN_THRESHOLD = WIN_SCORE - 1000;
+    /** Amount of nodes searched between checks of the clock **/
+    private static final int CLOCK_CHECK_INTERVAL = 1024;
+
+    /** Ordering bonus for a move that completes a line **/
+    private static final int ORDER_WIN = 1 << 18;
+    /** Ordering bonus for a move that stops the opponent from completing a line **/
+    private static final int ORDER_BLOCK = 1 << 17;
+    /** Ordering bonus for the best move of the previous iteration or the transposition table **/
+    private static final int ORDER_PREVIOUS_BEST = 1 << 28;
+
+    /** time a single move may take, in nanoseconds **/
+    private final long timeBudgetNanos;
+    /** maximum depth to search to, in plies **/
+    private final int maxDepth;
+    /** memoized search results, kept between moves **/
+    private final TranspositionTable table;
+    /** perfect play for small boards, or null if not available **/
+    private EndgameDatabase endgameDatabase;
+
+    /** scratch copy of the game being searched **/
+    private Game position;
+    /** symmetry tables for the board size being searched **/
+    private Symmetry symmetry;
+    /** candidate moves for every ply, reused between nodes **/
+    private int[][] moves;
+    /** ordering scores of the candidate moves for every ply **/
+    private int[][] moveScores;
+    /** nanoTime after which the search gives up **/
+    private long deadline;
+    /** set once the deadline has passed; unwinds the search **/
+    private boolean timeUp;
+    /** nodes visited in the current search **/
+    private long nodes;
+    /** best move found at the root by the current iteration **/
+    private int rootBestMove;
+    /** best move found at the root by the previous iteration **/
+    private int previousBestMove;
+
+    /**
+     * Most specific constructor
+     * @param timeBudgetMillis time a single move may take, in milliseconds
+     * @param maxDepth maximum depth to search to, in plies
+     * @param table transposition table to memoize results in
+     */
+    public MinimaxPlayer(long timeBudgetMillis, int maxDepth, TranspositionTable table) {
+        this.timeBudgetNanos = timeBudgetMillis * 1000000L;
+        this.maxDepth = maxDepth;
+        this.table = table;
+    }
+
+    /**
+     * Constructor using a transposition table of {@link TranspositionTable#DEFAULT_ENTRIES}.
+     * @param timeBudgetMillis time a single move may take, in milliseconds
+     * @param maxDepth maximum depth to search to, in plies
+     */
+    public MinimaxPlayer(long timeBudgetMillis, int maxDepth) {
+        this(timeBudgetMillis, maxDepth, new TranspositionTable());
+    }
+
+    /**
+     * Constructor searching as deep as the time budget allows.
+     * @param timeBudgetMillis time a single move may take, in milliseconds
+     */
+    public MinimaxPlayer(long timeBudgetMillis) {
+        this(timeBudgetMillis, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Constructor using {@link #DEFAULT_TIME_BUDGET_MILLIS} as time budget.
+     */
+    public MinimaxPlayer() {
+        this(DEFAULT_TIME_BUDGET_MILLIS);
+    }
+
+    /**
+     * Searches for the best move for the current player of a game.
+     * @param game the game to pick a move for; must still be in progress and use classic rules
+     * @return the tile index (row * boardSize + col) to claim, or -1 if no tile is left
+     */
+    @Override
+    public int chooseMove(Game game) {
+        if(!game.rules.isClassic()) {
+            throw new IllegalArgumentException("MinimaxPlayer can not play " + game.rules);
+        }
+        if(endgameDatabase != null && endgameDatabase.boardSize == game.boardSize) {
+            int move = endgameDatabase.bestMove(game);
+            if(move >= 0) {
+                return move;
+            }
+        }
+
+        deadline = System.nanoTime() + timeBudgetNanos;
+        timeUp = false;
+        nodes = 0;
+        prepare(game);
+
+        int blanks = (game.boardSize * game.boardSize) - position.getCounters().tilesPlayed();
+        if(blanks == 0) {
+            return -1;
+        }
+
+        // fall back on the move ordering alone if not even a single iteration finishes in time
+        previousBestMove = -1;
+        generateMoves(position, moves[0], moveScores[0], -1, -1);
+        int bestMove = moves[0][0];
+
+        for(int depth=1;depth<=Math.min(blanks, maxDepth);depth++) {
+            int score = search(depth, 0, -INFINITY, INFINITY);
+            if(timeUp) {
+                break;
+            }
+            bestMove = rootBestMove;
+            previousBestMove = rootBestMove;
+            if(Math.abs(score) >= WIN_SCORE - blanks) {
+                // the outcome is forced; searching deeper will not change it
+                break;
+            }
+        }
+        return bestMove;
+    }
+
+    /**
+     * Gets the amount of positions visited by the last search.
+     * @return the amount of nodes searched
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Lets this player look up moves in an endgame database rather than searching,
+     * for games on a board of the same size.
+     * @param database the endgame database to use, or null to always search
+     */
+    public void setEndgameDatabase(EndgameDatabase database) {
+        this.endgameDatabase = database;
+    }
+
+    /**
+     * Gets the transposition table used by this player, for its hit rate and memory use.
+     * @return the transposition table results are memoized in
+     */
+    public TranspositionTable getTranspositionTable() {
+        return table;
+    }
+
+    /**
+     * Returns a Human readable String representing the state of the current object.
+     * @return Human readable String containing the search metrics of the last move
+     */
+    @Override
+    public String toString() {
+        return "MinimaxPlayer searched " + nodes + " nodes; " + table;
+    }
+
+    /**
+     * Sets up the scratch copy and move buffers for a search of the given game.
+     * @param game the game to search
+     */
+    private void prepare(Game game) {
+        position = new Game(game);
+        symmetry = Symmetry.forSize(game.boardSize);
+        int tiles = game.boardSize * game.boardSize;
+        if(moves == null || moves[0].length != tiles) {
+            moves = new int[tiles + 1][tiles];
+            moveScores = new int[tiles + 1][tiles];
+        }
+    }
+
+    /**
+     * Alpha-beta search in negamax form.
+     * @param depth remaining depth, in plies
+     * @param ply distance from the root, in plies
+     * @param alpha lower bound of interesting scores
+     * @param beta upper bound of interesting scores
+     * @return the score of the position for the side to move
+     */
+    private int search(int depth, int ply, int alpha, int beta) {
+        // a search dropped by its scheduler is interrupted; the move it returns is not used
+        if((++nodes % CLOCK_CHECK_INTERVAL) == 0
+                && (System.nanoTime() > deadline || Thread.currentThread().isInterrupted())) {
+            timeUp = true;
+        }
+        if(timeUp) {
+            return 0;
+        }
+        if(depth == 0) {
+            return evaluate(position);
+        }
+
+        // look for a result of this position, or a symmetric one, searched through another move order
+        int originalAlpha = alpha;
+        int transform = Symmetry.canonicalTransform(position);
+        long hash = position.getHash(transform);
+        long entry = table.probe(hash);
+        int tableMove = -1;
+        if(entry != 0) {
+            tableMove = TranspositionTable.bestMove(entry);
+            if(tableMove >= 0) {
+                tableMove = symmetry.untransformTile(transform, tableMove);
+            }
+            if(ply > 0 && TranspositionTable.depth(entry) >= depth) {
+                int tableScore = fromTable(TranspositionTable.score(entry), ply);
+                switch(TranspositionTable.bound(entry)) {
+                    case TranspositionTable.EXACT:
+                        return tableScore;
+                    case TranspositionTable.LOWER_BOUND:
+                        alpha = Math.max(alpha, tableScore);
+                        break;
+                    case TranspositionTable.UPPER_BOUND:
+                        beta = Math.min(beta, tableScore);
+                        break;
+                }
+                if(alpha >= beta) {
+                    return tableScore;
+                }
+            }
+        }
+
+        int count = generateMoves(position, moves[ply], moveScores[ply], tableMove,
+                (ply == 0) ? previousBestMove : -1);
+        int[] plyMoves = moves[ply];
+        int best = -INFINITY;
+        int bestTile = -1;
+        for(int i=0;i<count;i++) {
+            int tile = plyMoves[i];
+            GameState gs = position.play(tile);
+            int score;
+            if(gs == GameState.IN_PROGRESS) {
+                score = -search(depth - 1, ply + 1, -beta, -alpha);
+            } else if(gs == GameState.DRAW) {
+                score = 0;
+            } else {
+                // the side to move just won; prefer the quickest win
+                score = WIN_SCORE - ply;
+            }
+            position.unplay();
+
+            if(timeUp) {
+                return 0;
+            }
+            if(score > best) {
+                best = score;
+                bestTile = tile;
+                if(ply == 0) {
+                    rootBestMove = tile;
+                }
+            }
+            if(best > alpha) {
+                alpha = best;
+            }
+            if(alpha >= beta) {
+                break;
+            }
+        }
+
+        int bound = (best <= originalAlpha) ? TranspositionTable.UPPER_BOUND
+                : (best >= beta) ? TranspositionTable.LOWER_BOUND
+                : TranspositionTable.EXACT;
+        table.store(hash, depth, bound, toTable(best, ply),
+                (bestTile >= 0) ? symmetry.transformTile(transform, bestTile) : -1);
+        return best;
+    }
+
+    /**
+     * Converts a score to store in the transposition table. Wins and losses are stored as
+     * their distance from the stored position rather than from the root.
+     * @param score the score as returned by the search
+     * @param ply distance of the position from the root, in plies
+     * @return the score relative to the position
+     */
+    static int toTable(int score, int ply) {
+        if(score > WIN_THRESHOLD) { return score + ply; }
+        if(score < -WIN_THRESHOLD) { return score - ply; }
+        return score;
+    }
+
+    /**
+     * Converts a score from the transposition table back into a score relative to the root.
+     * @param score the score as stored in the table
+     * @param ply distance of the position from the root, in plies
+     * @return the score as the search would have returned it
+     * @see #toTable(int, int)
+     */
+    static int fromTable(int score, int ply) {
+        if(score > WIN_THRESHOLD) { return score - ply; }
+        if(score < -WIN_THRESHOLD) { return score + ply; }
+        return score;
+    }
+
+    /**
+     * Static evaluation of a position for the side to move.
+     * Every line that is still open to a player counts in their favour,
+     * the more so the more tiles they already own on it.
+     * @param position the position to evaluate
+     * @return the heuristic score of the position
+     */
+    static int evaluate(Game position) {
+        LineCounters counters = position.getCounters();
+        boolean playerOne = position.getPlayerOneTurn();
+        int score = 0;
+        for(int line=0;line<counters.lineCount();line++) {
+            int own = counters.count(line, playerOne);
+            int other = counters.count(line, !playerOne);
+            if(other == 0) {
+                score += own * own;
+            } else if(own == 0) {
+                score -= other * other;
+            }
+        }
+        return score;
+    }
+
+    /**
+     * Fills a move buffer with every blank tile of a position, best candidates first.
+     * @param position the position to generate moves for
+     * @param plyMoves buffer to fill with tile indices; at least as long as the amount of tiles
+     * @param scores buffer for the ordering scores of the moves; as long as plyMoves
+     * @param hintMove best move found for this position before, searched first; -1 if none
+     * @param previousBestMove best move of the previous iteration, searched first; -1 if none
+     * @return the amount of moves generated
+     */
+    static int generateMoves(Game position, int[] plyMoves, int[] scores, int hintMove, int previousBestMove) {
+        int boardSize = position.boardSize;
+        int count = 0;
+        for(int tile=0;tile<boardSize*boardSize;tile++) {
+            if(!position.isBlank(tile)) {
+                continue;
+            }
+            int score = scoreMove(position, tile);
+            if(tile == hintMove || tile == previousBestMove) {
+                score += ORDER_PREVIOUS_BEST;
+            }
+
+            // insertion sort, highest score first
+            int i = count++;
+            while(i > 0 && scores[i - 1] < score) {
+                plyMoves[i] = plyMoves[i - 1];
+                scores[i] = scores[i - 1];
+                i--;
+            }
+            plyMoves[i] = tile;
+            scores[i] = score;
+        }
+        return count;
+    }
+
+    /**
+     * Scores a candidate move for move ordering: immediate wins first, then blocks of the
+     * opponent's wins, then moves on lines with the most potential, closer to the centre first.
+     * @param position the position the move is played in
+     * @param tile the tile index of a blank tile
+     * @return the ordering score of the move; higher is searched earlier
+     */
+    static int scoreMove(Game position, int tile) {
+        int boardSize = position.boardSize;
+        int row = tile / boardSize;
+        int col = tile % boardSize;
+        boolean playerOne = position.getPlayerOneTurn();
+        LineCounters counters = position.getCounters();
+
+        int score = 0;
+        for(int l=0;l<4;l++) {
+            int line;
+            if(l == 0) { line = row; }
+            else if(l == 1) { line = boardSize + col; }
+            else if(l == 2 && row == col) { line = boardSize * 2; }
+            else if(l == 3 && row + col == boardSize - 1) { line = (boardSize * 2) + 1; }
+            else { continue; }
+
+            int own = counters.count(line, playerOne);
+            int other = counters.count(line, !playerOne);
+            if(other == 0 && own == boardSize - 1) {
+                score += ORDER_WIN;
+            } else if(own == 0 && other == boardSize - 1) {
+                score += ORDER_BLOCK;
+            } else if(other == 0) {
+                score += (own + 1) * (own + 1);
+            } else if(own == 0) {
+                score += other * other;
+            }
+        }
+
+        // break ties by the distance from the centre, doubled to stay in integers
+        int distance = Math.abs((2 * row) - (boardSize - 1)) + Math.abs((2 * col) - (boardSize - 1));
+        return (score << 5) - distance;
+    }
+}
@@ -0,0 +1,182 @@
+package online.madeofmagicandwires.tictac;
+
+import java.io.Serializable;
+
+/**
+ * MoveLog.java
+ * The moves of the current round, in the order they were played, for undoing and redoing them.
+ *
+ * Every move is a single int: the tile index shifted left by one, with the lowest bit set for
+ * Player One. Undone moves stay in the log after the last played one until a different move
+ * is played, so they can be redone; playing the same move again keeps them. Moves played while
+ * searching ahead are taken back with {@link #retract()}, which brings back the undone moves
+ * they replaced, so searching on a game never costs it its moves to redo.
+ *
+ * @author Joost Bremmer
+ * @version 1.0
+ * @see Game#undo()
+ * @see Game#redo()
+ */
+final class MoveLog implements Serializable {
+
+    /** the moves, packed; the first size are played, the ones up to end were undone **/
+    private final int[] moves;
+    /** amount of moves played **/
+    private int size;
+    /** amount of moves played and undone **/
+    private int end;
+    /** for every move played, what was logged at its index before it: the move it replaced **/
+    private final int[] replaced;
+    /** for every move played, the end of the log before it **/
+    private final int[] ends;
+
+    /**
+     * Constructor. Creates an empty log.
+     * @param tiles the amount of tiles on the board, and so the most moves a round can have
+     */
+    MoveLog(int tiles) {
+        this.moves = new int[tiles];
+        this.replaced = new int[tiles];
+        this.ends = new int[tiles];
+    }
+
+    /**
+     * Copy constructor.
+     * @param other the log to copy
+     */
+    MoveLog(MoveLog other) {
+        this.moves = other.moves.clone();
+        this.replaced = other.replaced.clone();
+        this.ends = other.ends.clone();
+        this.size = other.size;
+        this.end = other.end;
+    }
+
+    /**
+     * Packs a move.
+     * @param tile the tile index, counting row by row from 0
+     * @param playerOne true for a move of Player One
+     * @return the move as logged
+     */
+    static int pack(int tile, boolean playerOne) {
+        return (tile << 1) | (playerOne ? 1 : 0);
+    }
+
+    /**
+     * Gets the tile of a logged move.
+     * @param move the move as logged
+     * @return the tile index
+     */
+    static int tile(int move) {
+        return move >>> 1;
+    }
+
+    /**
+     * Gets the player of a logged move.
+     * @param move the move as logged
+     * @return true for a move of Player One
+     */
+    static boolean playerOne(int move) {
+        return (move & 1) != 0;
+    }
+
+    /**
+     * Adds a played move. Forgets the undone moves, unless it is the next of them.
+     * @param tile the tile index, counting row by row from 0
+     * @param playerOne true for a move of Player One
+     */
+    void push(int tile, boolean playerOne) {
+        int move = pack(tile, playerOne);
+        replaced[size] = moves[size];
+        ends[size] = end;
+        if(size == end || moves[size] != move) {
+            end = size + 1;
+        }
+        moves[size++] = move;
+    }
+
+    /**
+     * Takes back the last played move, keeping it to be redone.
+     * @return the move as logged
+     */
+    int pop() {
+        return moves[--size];
+    }
+
+    /**
+     * Takes back the last played move as if it had never been played, bringing back the
+     * undone moves it made the log forget.
+     * @return the move as logged
+     */
+    int retract() {
+        int move = moves[--size];
+        moves[size] = replaced[size];
+        end = ends[size];
+        return move;
+    }
+
+    /**
+     * Gets the move that would be redone next.
+     * @return the move as logged; only valid if {@link #canRedo()}
+     */
+    int next() {
+        return moves[size];
+    }
+
+    /**
+     * Gets the last played move.
+     * @return the move as logged; only valid if {@link #canUndo()}
+     */
+    int last() {
+        return moves[size - 1];
+    }
+
+    /**
+     * Gets a logged move.
+     * @param i index of the move, below {@link #size()}, or below {@link #end()} for undone moves
+     * @return the move as logged
+     */
+    int get(int i) {
+        return moves[i];
+    }
+
+    /**
+     * Checks whether any move was played.
+     * @return true if a move can be undone
+     */
+    boolean canUndo() {
+        return size > 0;
+    }
+
+    /**
+     * Checks whether any move was undone since the last different move was played.
+     * @return true if a move can be redone
+     */
+    boolean canRedo() {
+        return size < end;
+    }
+
+    /**
+     * Gets the amount of moves played.
+     * @return the amount of moves in the log that can be undone
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Gets the amount of moves played and undone.
+     * @return the amount of moves in the log, including those that can be redone
+     */
+    int end() {
+        return end;
+    }
+
+    /**
+     * Forgets every move.
+     */
+    void clear() {
+        size = 0;
+        end = 0;
+    }
+}
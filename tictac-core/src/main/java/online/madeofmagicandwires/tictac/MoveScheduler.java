@@ -0,0 +1,193 @@
+package online.madeofmagicandwires.tictac;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MoveScheduler.java
+ * Runs the searches of computer players on background threads, so the thread the game is
+ * played on never waits for a move to be chosen.
+ *
+ * Every search works on its own game, restored on the search thread from the snapshot the
+ * game had when the search was scheduled, so scheduling never copies the game. Searches run
+ * on a pool of at most a fixed amount of threads with a bounded queue; when the queue is full
+ * a new search is refused rather than dropping one already waiting, whose caller would never
+ * hear back. The chosen move is handed back on the callback executor, usually the UI thread.
+ *
+ * {@link #cancelAll()} drops every search scheduled before it: waiting searches never start,
+ * running searches are interrupted and their moves are thrown away. Only players that check
+ * for interruption stop early; every player here stops within its own time budget anyway.
+ *
+ * A player throwing an exception hands back -1, as if no tile were left, so its caller still
+ * hears back.
+ *
+ * The time from scheduling a search to handing back its move is recorded in a histogram.
+ *
+ * @author Joost Bremmer
+ * @version 1.0
+ */
+public class MoveScheduler {
+
+    /**
+     * Callback for a move chosen by a background search.
+     */
+    public interface OnMoveChosenListener {
+        /**
+         * Called on the callback executor when a search has chosen a move,
+         * unless it was cancelled in the meantime.
+         * @param tile the tile index (row * boardSize + col) to claim, or -1 if no tile is left
+         *             or the player failed to choose a move
+         */
+        void onMoveChosen(int tile);
+    }
+
+    /** Default amount of searches that may wait for a thread **/
+    public static final int DEFAULT_QUEUE_CAPACITY = 4;
+
+    /** threads the searches run on **/
+    private final ThreadPoolExecutor executor;
+    /** executor the moves are handed back on **/
+    private final Executor callbacks;
+    /** time from scheduling a search to handing back its move **/
+    private final LatencyHistogram latencies = new LatencyHistogram();
+    /** raised by every cancellation; searches scheduled before it are dropped **/
+    private volatile int generation;
+    /** threads running a search; guards cancellation **/
+    private final Set<Thread> running = new HashSet<>();
+
+    /**
+     * Most specific constructor
+     * @param threads most searches to run at once
+     * @param queueCapacity most searches waiting for a thread
+     * @param callbacks executor the moves are handed back on, e.g. one posting to the UI thread
+     */
+    public MoveScheduler(int threads, int queueCapacity, Executor callbacks) {
+        this.callbacks = callbacks;
+        this.executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(queueCapacity),
+                new ThreadFactory() {
+                    private int count;
+
+                    @Override
+                    public synchronized Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "move-search-" + (++count));
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Constructor using a single thread, since the players spread a search over every core themselves.
+     * @param callbacks executor the moves are handed back on, e.g. one posting to the UI thread
+     */
+    public MoveScheduler(Executor callbacks) {
+        this(1, DEFAULT_QUEUE_CAPACITY, callbacks);
+    }
+
+    /**
+     * Lets a player choose a move for the current player of a game in the background.
+     * @param game the game to pick a move for; only its current snapshot is read,
+     *             so the game may change right after this call
+     * @param player the player to search with; only used by one search at a time
+     * @param listener the callback to hand the move to
+     * @return true if the search was scheduled, false if too many searches are waiting already
+     *         or the scheduler is shut down; the listener is not called then
+     */
+    public boolean schedule(Game game, final Player player, final OnMoveChosenListener listener) {
+        final GameSnapshot position = game.getSnapshot();
+        final int scheduled = generation;
+        final long start = System.nanoTime();
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    search(position, scheduled, start, player, listener);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Runs a scheduled search on the current thread and hands its move back, unless it was cancelled.
+     * @param position the position to search
+     * @param scheduled the generation the search was scheduled in
+     * @param start time the search was scheduled, in nanoseconds
+     * @param player the player to search with
+     * @param listener the callback to hand the move to
+     */
+    private void search(GameSnapshot position, final int scheduled, long start,
+                        Player player, final OnMoveChosenListener listener) {
+        Thread thread = Thread.currentThread();
+        synchronized (running) {
+            if(scheduled != generation) {
+                return;
+            }
+            running.add(thread);
+        }
+        int chosen;
+        try {
+            chosen = player.chooseMove(position.toGame());
+        } catch (RuntimeException e) {
+            // the caller is waiting to hear back, and would never learn a move is not coming
+            chosen = -1;
+        } finally {
+            synchronized (running) {
+                running.remove(thread);
+                // an interrupt meant for this search must not reach the next one
+                Thread.interrupted();
+            }
+        }
+        final int tile = chosen;
+        latencies.record(System.nanoTime() - start);
+        callbacks.execute(new Runnable() {
+            @Override
+            public void run() {
+                if(scheduled == generation) {
+                    listener.onMoveChosen(tile);
+                }
+            }
+        });
+    }
+
+    /**
+     * Drops every search scheduled so far; none of their moves will be handed back.
+     * Must be called on the callback thread, so no dropped move is handed back after it.
+     */
+    public void cancelAll() {
+        synchronized (running) {
+            generation++;
+            for(Thread thread : running) {
+                thread.interrupt();
+            }
+        }
+        executor.getQueue().clear();
+    }
+
+    /**
+     * Gets the time from scheduling searches to handing back their moves.
+     * @return the live histogram of latencies
+     */
+    public LatencyHistogram getLatencies() {
+        return latencies;
+    }
+
+    /**
+     * Cancels every search and stops the threads once the running searches are done.
+     */
+    public void shutdown() {
+        cancelAll();
+        executor.shutdown();
+    }
+}
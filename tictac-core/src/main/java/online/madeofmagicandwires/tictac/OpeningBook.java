@@ -0,0 +1,387 @@
+package online.madeofmagicandwires.tictac;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * OpeningBook.java
+ * Table of the move to play in every position of the first few plies of a classic board,
+ * analysed offline by {@link OpeningBookGenerator}, so looking a move up takes no search at all.
+ *
+ * Positions are keyed by their tiles rather than by the moves that led to them, so a position
+ * restored from a {@link GameSnapshot} is found as well, whatever order it was played in.
+ * The key of a position lists the tiles of Player One and of Player Two, each in ascending
+ * order, taking turns: one of Player One, one of Player Two, and so on. Of the eight
+ * orientations of the board (see {@link Symmetry}), the one with the smallest key is used,
+ * so symmetric positions share a single entry; the book move is stored in that orientation.
+ *
+ * The keys are stored as a trie, flattened into an int array in preorder. A node is a header
+ * (the book move plus one in the upper bits, 0 if the key ending there is no book position,
+ * and the amount of children in the lowest 8 bits), followed by one int for every child: the
+ * tile leading to it in the upper 8 bits and its index in the lower 24, ordered by tile.
+ * Looking a position up walks down one node per tile on the board.
+ *
+ * Files consist of an 8 byte header (the magic "TTOB", a format version, the board size, the
+ * amount of plies in the book and a reserved byte), the amount of ints in the trie and the ints.
+ * The books for every board size of the app are bundled as resources named after
+ * {@link #fileName(int)} in {@link #RESOURCE_DIRECTORY}.
+ *
+ * @author Joost Bremmer
+ * @version 1.0
+ */
+public final class OpeningBook {
+
+    /** Smallest board size a book is bundled for **/
+    public static final int MIN_BOARD_SIZE = 3;
+    /** Largest board size a book is bundled for **/
+    public static final int MAX_BOARD_SIZE = 9;
+    /** Class path directory holding the bundled books **/
+    public static final String RESOURCE_DIRECTORY = "/openings/";
+
+    /** Identifies opening book files **/
+    private static final int MAGIC = ('T' << 24) | ('T' << 16) | ('O' << 8) | 'B';
+    /** Version of the file format **/
+    private static final byte VERSION = 1;
+    /** Bits of a child entry holding the index of the child **/
+    private static final int INDEX_BITS = 24;
+    /** Bits of a node header holding the amount of children **/
+    private static final int COUNT_BITS = 8;
+
+    /** Orders keys like words in a dictionary, shorter keys first **/
+    static final Comparator<int[]> KEY_ORDER = new Comparator<int[]>() {
+        @Override
+        public int compare(int[] a, int[] b) {
+            for(int i=0;i<Math.min(a.length, b.length);i++) {
+                if(a[i] != b[i]) {
+                    return (a[i] < b[i]) ? -1 : 1;
+                }
+            }
+            return a.length - b.length;
+        }
+    };
+
+    /** Represents the board size used for specific instances **/
+    public final int boardSize;
+    /** Amount of tiles on the board up to which every position is in the book **/
+    public final int plies;
+    /** the trie, flattened in preorder **/
+    private final int[] trie;
+    /** orientations of the board **/
+    private final Symmetry symmetry;
+
+    /**
+     * Constructor.
+     * @param boardSize the "cubic" amount of tiles on the board
+     * @param plies amount of tiles on the board up to which every position is in the book
+     * @param trie the trie, flattened in preorder
+     */
+    private OpeningBook(int boardSize, int plies, int[] trie) {
+        this.boardSize = boardSize;
+        this.plies = plies;
+        this.trie = trie;
+        this.symmetry = Symmetry.forSize(boardSize);
+    }
+
+    /**
+     * Gets the name of the book file for a given board size.
+     * @param boardSize the "cubic" amount of tiles on the board
+     * @return the file name used by the generator and expected by {@link #forSize(int)}
+     */
+    public static String fileName(int boardSize) {
+        return "opening-" + boardSize + ".ttob";
+    }
+
+    /**
+     * Reads the book bundled for a board size from the class path.
+     * @param boardSize the "cubic" amount of tiles on the board
+     * @return the book, or null if none is bundled for the board size
+     * @throws IOException if the book can not be read or is corrupt
+     */
+    public static OpeningBook forSize(int boardSize) throws IOException {
+        InputStream in = OpeningBook.class.getResourceAsStream(RESOURCE_DIRECTORY + fileName(boardSize));
+        if(in == null) {
+            return null;
+        }
+        try {
+            return read(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Reads a book.
+     * @param in stream holding a book written by {@link #writeTo(File)}; left open
+     * @return the book
+     * @throws IOException if the book can not be read or is corrupt
+     */
+    public static OpeningBook read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+        if(data.readInt() != MAGIC || data.readByte() != VERSION) {
+            throw new IOException("Not an opening book");
+        }
+        int boardSize = data.readByte();
+        int plies = data.readByte();
+        data.readByte();
+        int length = data.readInt();
+        if(boardSize < 1 || boardSize > 15 || plies < 0 || length < 1 || length > (1 << INDEX_BITS)) {
+            throw new IOException("Opening book is corrupt");
+        }
+        int[] trie = new int[length];
+        for(int i=0;i<length;i++) {
+            trie[i] = data.readInt();
+        }
+        return new OpeningBook(boardSize, plies, trie);
+    }
+
+    /**
+     * Builds a book out of the keys of its positions and their book moves.
+     * @param boardSize the "cubic" amount of tiles on the board
+     * @param plies amount of tiles on the board up to which every position is in the book
+     * @param keys the key of every position, see {@link #key(Symmetry, Game, int[])}
+     * @param moves the book move of every position, in the orientation of its key
+     * @return the book
+     */
+    static OpeningBook build(int boardSize, int plies, final List<int[]> keys, List<Integer> moves) {
+        Integer[] order = new Integer[keys.size()];
+        for(int i=0;i<order.length;i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return KEY_ORDER.compare(keys.get(a), keys.get(b));
+            }
+        });
+        int[][] sortedKeys = new int[order.length][];
+        int[] sortedMoves = new int[order.length];
+        for(int i=0;i<order.length;i++) {
+            sortedKeys[i] = keys.get(order[i]);
+            sortedMoves[i] = moves.get(order[i]);
+        }
+
+        int[] trie = new int[16];
+        int[] size = {0};
+        trie = append(trie, size, sortedKeys, sortedMoves, 0, sortedKeys.length, 0);
+        return new OpeningBook(boardSize, plies, Arrays.copyOf(trie, size[0]));
+    }
+
+    /**
+     * Appends the node of a prefix, and every node below it, to a flattened trie.
+     * @param trie the trie so far
+     * @param size amount of ints of the trie in use; updated
+     * @param keys every key, sorted
+     * @param moves the book move of every key
+     * @param from first key starting with the prefix
+     * @param to the key after the last one starting with the prefix
+     * @param depth length of the prefix
+     * @return the trie, grown if needed
+     */
+    private static int[] append(int[] trie, int[] size, int[][] keys, int[] moves, int from, int to, int depth) {
+        int move = -1;
+        if(from < to && keys[from].length == depth) {
+            // shorter keys sort first, so the key ending here is the first one
+            move = moves[from];
+            from++;
+        }
+        int children = 0;
+        for(int i=from;i<to;i++) {
+            if(i == from || keys[i][depth] != keys[i - 1][depth]) {
+                children++;
+            }
+        }
+        int node = size[0];
+        trie = reserve(trie, node + 1 + children);
+        trie[node] = ((move + 1) << COUNT_BITS) | children;
+        size[0] = node + 1 + children;
+
+        int child = 0;
+        int start = from;
+        for(int i=from+1;i<=to;i++) {
+            if(i == to || keys[i][depth] != keys[start][depth]) {
+                trie[node + 1 + child] = (keys[start][depth] << INDEX_BITS) | size[0];
+                trie = append(trie, size, keys, moves, start, i, depth + 1);
+                child++;
+                start = i;
+            }
+        }
+        return trie;
+    }
+
+    /**
+     * Makes sure a flattened trie can hold a given amount of ints.
+     * @param trie the trie
+     * @param capacity the amount of ints needed
+     * @return the trie, or a larger copy of it
+     */
+    private static int[] reserve(int[] trie, int capacity) {
+        if(capacity <= trie.length) {
+            return trie;
+        }
+        return Arrays.copyOf(trie, Math.max(capacity, trie.length * 2));
+    }
+
+    /**
+     * Writes this book to a file.
+     * @param file the file to write to; overwritten if it exists
+     * @throws IOException if the file can not be written
+     */
+    void writeTo(File file) throws IOException {
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeByte(boardSize);
+            out.writeByte(plies);
+            out.writeByte(0);
+            out.writeInt(trie.length);
+            for(int value : trie) {
+                out.writeInt(value);
+            }
+        }
+    }
+
+    /**
+     * Gets the key of a position in its orientation with the smallest key.
+     * @param symmetry the orientations of the board of the position
+     * @param game the position; a classic board with Player One to move first
+     * @param key array of the amount of tiles on the board to write the key to
+     * @return the transform turning the board into the orientation of the key,
+     *         or -1 if the position can not be reached in a game started by Player One
+     */
+    static int key(Symmetry symmetry, Game game, int[] key) {
+        int tiles = game.boardSize * game.boardSize;
+        int ones = 0;
+        int twos = 0;
+        int[] one = new int[key.length];
+        int[] two = new int[key.length];
+        for(int tile=0;tile<tiles;tile++) {
+            TileState state = game.getTile(tile / game.boardSize, tile % game.boardSize);
+            if(state == TileState.PLAYER_ONE) {
+                if(ones + twos == key.length) {
+                    return -1;
+                }
+                one[ones++] = tile;
+            } else if(state == TileState.PLAYER_TWO) {
+                if(ones + twos == key.length) {
+                    return -1;
+                }
+                two[twos++] = tile;
+            }
+        }
+        if(ones + twos != key.length || ones - twos != (game.getPlayerOneTurn() ? 0 : 1)) {
+            return -1;
+        }
+
+        int best = -1;
+        int[] candidate = new int[key.length];
+        int[] oneT = new int[ones];
+        int[] twoT = new int[twos];
+        for(int transform=0;transform<Symmetry.TRANSFORMS;transform++) {
+            for(int i=0;i<ones;i++) {
+                oneT[i] = symmetry.transformTile(transform, one[i]);
+            }
+            for(int i=0;i<twos;i++) {
+                twoT[i] = symmetry.transformTile(transform, two[i]);
+            }
+            Arrays.sort(oneT);
+            Arrays.sort(twoT);
+            for(int i=0;i<key.length;i++) {
+                candidate[i] = (i % 2 == 0) ? oneT[i / 2] : twoT[i / 2];
+            }
+            if(best < 0 || KEY_ORDER.compare(candidate, key) < 0) {
+                System.arraycopy(candidate, 0, key, 0, key.length);
+                best = transform;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Looks up the book move for the current player of a game.
+     * @param game the game; must still be in progress
+     * @return the tile index (row * boardSize + col) to claim,
+     *         or -1 if the position is not in the book
+     */
+    public int lookup(Game game) {
+        if(game.boardSize != boardSize || !game.rules.isClassic()
+                || game.getGameOver() != GameState.IN_PROGRESS) {
+            return -1;
+        }
+        int stones = 0;
+        for(int tile=0;tile<boardSize*boardSize && stones<=plies;tile++) {
+            if(!game.isBlank(tile)) {
+                stones++;
+            }
+        }
+        if(stones > plies) {
+            return -1;
+        }
+        int[] key = new int[stones];
+        int transform = key(symmetry, game, key);
+        if(transform < 0) {
+            return -1;
+        }
+
+        int node = 0;
+        for(int tile : key) {
+            node = child(node, tile);
+            if(node < 0) {
+                return -1;
+            }
+        }
+        int move = (trie[node] >>> COUNT_BITS) - 1;
+        if(move < 0) {
+            return -1;
+        }
+        move = symmetry.untransformTile(transform, move);
+        return game.isBlank(move) ? move : -1;
+    }
+
+    /**
+     * Finds the child of a trie node reached by a tile.
+     * @param node index of the node
+     * @param tile the tile
+     * @return index of the child, or -1 if there is none
+     */
+    private int child(int node, int tile) {
+        int low = node + 1;
+        int high = node + (trie[node] & ((1 << COUNT_BITS) - 1));
+        while(low <= high) {
+            int mid = (low + high) >>> 1;
+            int midTile = trie[mid] >>> INDEX_BITS;
+            if(midTile < tile) {
+                low = mid + 1;
+            } else if(midTile > tile) {
+                high = mid - 1;
+            } else {
+                return trie[mid] & ((1 << INDEX_BITS) - 1);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Gets the amount of positions in this book.
+     * @return the amount of positions that have a book move
+     */
+    public int size() {
+        int count = 0;
+        int node = 0;
+        while(node < trie.length) {
+            if((trie[node] >>> COUNT_BITS) != 0) {
+                count++;
+            }
+            node += 1 + (trie[node] & ((1 << COUNT_BITS) - 1));
+        }
+        return count;
+    }
+}
@@ -0,0 +1,177 @@
+package online.madeofmagicandwires.tictac;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * OpeningBookGenerator.java
+ * Offline tool analysing every position of the first few plies of a classic board
+ * into an {@link OpeningBook}.
+ *
+ * Positions are visited ply by ply from the empty board; of the positions symmetric to each
+ * other, only the first one reached is analysed. Each position gets the full time budget of
+ * the strongest computer player for its board size: the endgame database on boards up to
+ * {@link EndgameDatabase#MAX_BOARD_SIZE}, the {@link ParallelSolver} on boards the app still
+ * searches exactly, and the {@link MctsPlayer} on bigger boards.
+ *
+ * Usage: {@code OpeningBookGenerator <output directory> <milliseconds per position> <board size>...}
+ * writes a file named after {@link OpeningBook#fileName(int)} for every given board size.
+ *
+ * @author Joost Bremmer
+ * @version 1.0
+ */
+public class OpeningBookGenerator {
+
+    /** Largest board size analysed by an exact search **/
+    private static final int MAX_EXACT_SEARCH_BOARD_SIZE = 6;
+
+    /** the "cubic" amount of tiles on the board **/
+    private final int boardSize;
+    /** amount of tiles on the board up to which every position is analysed **/
+    private final int plies;
+    /** picks the book move of every position **/
+    private final Player analyst;
+    /** amount of positions analysed so far **/
+    private int positions;
+
+    /**
+     * Constructor.
+     * @param boardSize the "cubic" amount of tiles on the board
+     * @param plies amount of tiles on the board up to which every position is analysed
+     * @param analyst picks the book move of every position
+     */
+    OpeningBookGenerator(int boardSize, int plies, Player analyst) {
+        this.boardSize = boardSize;
+        this.plies = plies;
+        this.analyst = analyst;
+    }
+
+    /**
+     * Gets the amount of plies a book covers for a given board size, keeping the amount of
+     * positions to analyse in the hundreds on boards that can not be searched exactly.
+     * @param boardSize the "cubic" amount of tiles on the board
+     * @return amount of tiles on the board up to which every position is in the book
+     */
+    static int defaultPlies(int boardSize) {
+        if(boardSize <= 3) {
+            return boardSize * boardSize;
+        } else if(boardSize <= 4) {
+            return 4;
+        } else if(boardSize <= 5) {
+            return 3;
+        }
+        return 2;
+    }
+
+    /**
+     * Creates the strongest computer player for a board size.
+     * @param boardSize the "cubic" amount of tiles on the board
+     * @param millis time a single move may take, in milliseconds
+     * @return the player to analyse positions with
+     */
+    static Player analyst(int boardSize, long millis) {
+        if(boardSize <= EndgameDatabase.MAX_BOARD_SIZE) {
+            MinimaxPlayer player = new MinimaxPlayer(millis);
+            player.setEndgameDatabase(new EndgameDatabaseGenerator(boardSize).generate());
+            return player;
+        } else if(boardSize <= MAX_EXACT_SEARCH_BOARD_SIZE) {
+            return new ParallelSolver(millis);
+        }
+        return new MctsPlayer(millis);
+    }
+
+    /**
+     * Analyses every position of the book.
+     * @return the book
+     */
+    OpeningBook generate() {
+        Symmetry symmetry = Symmetry.forSize(boardSize);
+        Set<Long> seen = new HashSet<>();
+        List<int[]> keys = new ArrayList<>();
+        List<Integer> moves = new ArrayList<>();
+
+        List<Game> level = new ArrayList<>();
+        level.add(new Game(boardSize));
+        for(int ply=0;ply<=plies && !level.isEmpty();ply++) {
+            List<Game> next = new ArrayList<>();
+            for(Game position : level) {
+                int[] key = new int[ply];
+                int transform = OpeningBook.key(symmetry, position, key);
+                if(!seen.add(pack(key))) {
+                    continue;
+                }
+                int move = analyst.chooseMove(position);
+                keys.add(key);
+                moves.add(symmetry.transformTile(transform, move));
+                positions++;
+
+                if(ply < plies) {
+                    for(int tile=0;tile<boardSize*boardSize;tile++) {
+                        if(!position.isBlank(tile)) {
+                            continue;
+                        }
+                        Game child = new Game(position);
+                        if(child.play(tile) == GameState.IN_PROGRESS) {
+                            next.add(child);
+                        }
+                    }
+                }
+            }
+            level = next;
+        }
+        return OpeningBook.build(boardSize, plies, keys, moves);
+    }
+
+    /**
+     * Packs a key into a single number, to tell keys apart.
+     * @param key the key; at most 9 tiles of a board up to 9x9
+     * @return a number unique to the key
+     */
+    private static long pack(int[] key) {
+        long packed = 0;
+        for(int tile : key) {
+            packed = (packed << 7) | (tile + 1);
+        }
+        return packed;
+    }
+
+    /**
+     * Generates opening books.
+     * @param args the output directory and the time per position in milliseconds,
+     *             followed by the board sizes to generate books for
+     * @throws IOException if a book can not be written
+     */
+    public static void main(String[] args) throws IOException {
+        if(args.length < 3) {
+            System.err.println("Usage: OpeningBookGenerator <output directory> <milliseconds per position> <board size>...");
+            System.exit(1);
+        }
+
+        File outputDir = new File(args[0]);
+        if(!outputDir.isDirectory() && !outputDir.mkdirs()) {
+            throw new IOException("Could not create " + outputDir);
+        }
+        long millis = Long.parseLong(args[1]);
+
+        for(int i=2;i<args.length;i++) {
+            int boardSize = Integer.parseInt(args[i]);
+            if(boardSize < OpeningBook.MIN_BOARD_SIZE || boardSize > OpeningBook.MAX_BOARD_SIZE) {
+                throw new IllegalArgumentException("No opening book possible for a board size of " + boardSize);
+            }
+            long start = System.nanoTime();
+            OpeningBookGenerator generator = new OpeningBookGenerator(
+                    boardSize, defaultPlies(boardSize), analyst(boardSize, millis));
+            OpeningBook book = generator.generate();
+
+            File file = new File(outputDir, OpeningBook.fileName(boardSize));
+            book.writeTo(file);
+            System.out.println("Analysed " + generator.positions + " positions of " + boardSize + "*" + boardSize +
+                    " up to " + generator.plies + " plies in " + ((System.nanoTime() - start) / 1000000) +
+                    "ms; the first move is " + book.lookup(new Game(boardSize)) + ". Wrote " + file);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package online.madeofmagicandwires.tictac;
+
+/**
+ * OpeningBookPlayer.java
+ * Computer player that plays the move of an {@link OpeningBook} while the game is still in it,
+ * and leaves the move to another player once it is not.
+ *
+ * @author Joost Bremmer
+ * @version 1.0
+ */
+public class OpeningBookPlayer implements Player {
+
+    /** the book to look moves up in **/
+    private final OpeningBook book;
+    /** plays positions that are not in the book **/
+    private final Player fallback;
+
+    /**
+     * Constructor.
+     * @param book the book to look moves up in
+     * @param fallback plays positions that are not in the book
+     */
+    public OpeningBookPlayer(OpeningBook book, Player fallback) {
+        this.book = book;
+        this.fallback = fallback;
+    }
+
+    /**
+     * Plays the book move, or asks the fallback for a move.
+     * @param game the game to pick a move for; must still be in progress
+     * @return the tile index (row * boardSize + col) to claim, or -1 if no tile is left
+     */
+    @Override
+    public int chooseMove(Game game) {
+        int move = book.lookup(game);
+        if(move >= 0) {
+            return move;
+        }
+        return fallback.chooseMove(game);
+    }
+}
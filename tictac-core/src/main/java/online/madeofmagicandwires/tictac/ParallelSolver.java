@@ -0,0 +1,472 @@
+package online.madeofmagicandwires.tictac;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ParallelSolver.java
+ * Computer player spreading an alpha-beta search over the threads of a {@link ForkJoinPool},
+ * meant for boards too big for the single-threaded {@link MinimaxPlayer} to search in time.
+ *
+ * The search follows the "young brothers wait" scheme: at every node with enough depth left,
+ * the first (eldest) move is searched on its own, as it is most likely the best one and sets the
+ * bounds for the rest. Only if it does not cause a cutoff are its younger brothers forked off
+ * as separate tasks, which idle threads steal. Brothers share a {@link SplitPoint} through which
+ * improvements of alpha reach the brothers still searching, and which stops all of them as soon as
+ * one causes a cutoff. Results are shared between threads through a lock-free
+ * {@link SharedTranspositionTable}.
+ *
+ * Like the MinimaxPlayer, the search deepens iteratively, so the best move of the deepest finished
+ * iteration can be returned once the deadline passes. Move ordering and evaluation are shared
+ * with the MinimaxPlayer.
+ *
+ * @author Joost Bremmer
+ * @version 1.0
+ */
+public class ParallelSolver implements Player {
+
+    /** Remaining depth from which the younger brothers of a node are searched in parallel;
+     *  below this, forking costs more than searching the subtree **/
+    static final int MIN_SPLIT_DEPTH = 4;
+    /** Amount of nodes a thread searches between checks of the clock and of cutoffs **/
+    private static final int CHECK_INTERVAL = 256;
+
+    /** pool the search is run on **/
+    private final ForkJoinPool pool;
+    /** memoized search results, shared by every thread and kept between moves **/
+    private final SharedTranspositionTable table;
+    /** time a single move may take, in nanoseconds **/
+    private final long timeBudgetNanos;
+    /** maximum depth to search to, in plies **/
+    private final int maxDepth;
+
+    /** nanoTime after which the search gives up **/
+    private volatile long deadline;
+    /** the thread waiting for the move; the search gives up once it is interrupted **/
+    private volatile Thread caller;
+    /** set once the deadline has passed; unwinds the search on every thread **/
+    private volatile boolean timeUp;
+    /** best move found at the root by the previous iteration **/
+    private int previousBestMove;
+    /** nodes visited in the current search, over every thread **/
+    private final LongAdder nodes = new LongAdder();
+
+    /**
+     * Most specific constructor
+     * @param pool pool to run the search on
+     * @param timeBudgetMillis time a single move may take, in milliseconds
+     * @param maxDepth maximum depth to search to, in plies
+     * @param table transposition table to share between the threads
+     */
+    public ParallelSolver(ForkJoinPool pool, long timeBudgetMillis, int maxDepth, SharedTranspositionTable table) {
+        this.pool = pool;
+        this.timeBudgetNanos = timeBudgetMillis * 1000000L;
+        this.maxDepth = maxDepth;
+        this.table = table;
+    }
+
+    /**
+     * Constructor searching as deep as the time budget allows, using a transposition table of
+     * {@link TranspositionTable#DEFAULT_ENTRIES}.
+     * @param pool pool to run the search on
+     * @param timeBudgetMillis time a single move may take, in milliseconds
+     */
+    public ParallelSolver(ForkJoinPool pool, long timeBudgetMillis) {
+        this(pool, timeBudgetMillis, Integer.MAX_VALUE, new SharedTranspositionTable());
+    }
+
+    /**
+     * Constructor running on the common pool, which has a thread for every core but one.
+     * @param timeBudgetMillis time a single move may take, in milliseconds
+     */
+    public ParallelSolver(long timeBudgetMillis) {
+        this(ForkJoinPool.commonPool(), timeBudgetMillis);
+    }
+
+    /**
+     * Searches for the best move for the current player of a game, within the time budget.
+     * @param game the game to pick a move for; must still be in progress
+     * @return the tile index (row * boardSize + col) to claim, or -1 if no tile is left
+     */
+    @Override
+    public int chooseMove(Game game) {
+        return solve(game, System.nanoTime() + timeBudgetNanos);
+    }
+
+    /**
+     * Searches for the best move for the current player of a game until it is either solved,
+     * searched to the maximum depth, the deadline passes or the calling thread is interrupted.
+     * @param game the game to pick a move for; must still be in progress and use classic rules
+     * @param deadlineNanos value of {@link System#nanoTime()} after which the search gives up
+     * @return the best move of the deepest finished iteration, or -1 if no tile is left
+     */
+    public int solve(Game game, long deadlineNanos) {
+        if(!game.rules.isClassic()) {
+            throw new IllegalArgumentException("ParallelSolver can not play " + game.rules);
+        }
+        deadline = deadlineNanos;
+        caller = Thread.currentThread();
+        timeUp = false;
+        nodes.reset();
+
+        int blanks = (game.boardSize * game.boardSize) - game.getCounters().tilesPlayed();
+        if(blanks == 0) {
+            return -1;
+        }
+
+        // fall back on the move ordering alone if not even a single iteration finishes in time
+        Searcher root = new Searcher(game, null);
+        previousBestMove = -1;
+        MinimaxPlayer.generateMoves(root.position, root.moves(0), root.moveScores[0], -1, -1);
+        int bestMove = root.moves[0][0];
+
+        for(int depth=1;depth<=Math.min(blanks, maxDepth);depth++) {
+            int score = pool.invoke(new RootTask(root, depth));
+            if(timeUp) {
+                break;
+            }
+            bestMove = root.rootBestMove;
+            previousBestMove = root.rootBestMove;
+            if(Math.abs(score) >= MinimaxPlayer.WIN_SCORE - blanks) {
+                // the outcome is forced; searching deeper will not change it
+                break;
+            }
+        }
+        return bestMove;
+    }
+
+    /**
+     * Gets the amount of positions visited by the last search, over every thread.
+     * @return the amount of nodes searched
+     */
+    public long getNodes() {
+        return nodes.sum();
+    }
+
+    /**
+     * Gets the transposition table shared by the threads of this solver.
+     * @return the transposition table results are memoized in
+     */
+    public SharedTranspositionTable getTranspositionTable() {
+        return table;
+    }
+
+    /**
+     * Returns a Human readable String representing the state of the current object.
+     * @return Human readable String containing the search metrics of the last move
+     */
+    @Override
+    public String toString() {
+        return "ParallelSolver on " + pool.getParallelism() + " threads searched " + getNodes() + " nodes; " + table;
+    }
+
+    /**
+     * State shared by the younger brothers of a node searched in parallel.
+     */
+    private static final class SplitPoint {
+
+        /** split point of an ancestor node, or null below the root **/
+        final SplitPoint parent;
+        /** upper bound of interesting scores **/
+        final int beta;
+        /** best score found so far by any brother; raises the window of brothers still to start **/
+        volatile int alpha;
+        /** set once a brother's score reaches beta; stops every other brother **/
+        volatile boolean cutoff;
+        /** best score found by any brother **/
+        private int best;
+        /** tile of the best score **/
+        private int bestTile;
+
+        SplitPoint(SplitPoint parent, int alpha, int beta, int best, int bestTile) {
+            this.parent = parent;
+            this.alpha = alpha;
+            this.beta = beta;
+            this.best = best;
+            this.bestTile = bestTile;
+        }
+
+        /**
+         * Records the score of a brother.
+         * @param score score of the move for the side to move at the split node
+         * @param tile the move
+         */
+        synchronized void update(int score, int tile) {
+            if(score > best) {
+                best = score;
+                bestTile = tile;
+                if(score > alpha) {
+                    alpha = score;
+                }
+                if(score >= beta) {
+                    cutoff = true;
+                }
+            }
+        }
+
+        synchronized int best() {
+            return best;
+        }
+
+        synchronized int bestTile() {
+            return bestTile;
+        }
+    }
+
+    /**
+     * Runs an iteration of the search from the root, so that the forks of the root node
+     * end up in the pool.
+     */
+    private final class RootTask extends RecursiveTask<Integer> {
+
+        private final Searcher root;
+        private final int depth;
+
+        RootTask(Searcher root, int depth) {
+            this.root = root;
+            this.depth = depth;
+        }
+
+        @Override
+        protected Integer compute() {
+            root.stopped = false;
+            int score = root.search(depth, 0, -MinimaxPlayer.INFINITY, MinimaxPlayer.INFINITY);
+            root.flushNodes();
+            return score;
+        }
+    }
+
+    /**
+     * Searches one of the younger brothers of a split node.
+     */
+    private final class BrotherTask extends RecursiveAction {
+
+        /** split node, left untouched while its brothers are searched **/
+        private final Game parentPosition;
+        private final SplitPoint split;
+        private final int tile;
+        /** remaining depth at the split node **/
+        private final int depth;
+        /** distance of the split node from the root **/
+        private final int ply;
+
+        BrotherTask(Game parentPosition, SplitPoint split, int tile, int depth, int ply) {
+            this.parentPosition = parentPosition;
+            this.split = split;
+            this.tile = tile;
+            this.depth = depth;
+            this.ply = ply;
+        }
+
+        @Override
+        protected void compute() {
+            if(split.cutoff || timeUp) {
+                return;
+            }
+            Searcher searcher = new Searcher(parentPosition, split);
+            GameState gs = searcher.position.play(tile);
+            int score;
+            if(gs == GameState.IN_PROGRESS) {
+                int alpha = split.alpha;
+                score = -searcher.search(depth - 1, ply + 1, -split.beta, -alpha);
+            } else if(gs == GameState.DRAW) {
+                score = 0;
+            } else {
+                score = MinimaxPlayer.WIN_SCORE - ply;
+            }
+            searcher.flushNodes();
+            if(!searcher.stopped) {
+                split.update(score, tile);
+            }
+        }
+    }
+
+    /**
+     * Sequential alpha-beta search on a private copy of a position, owned by a single task.
+     * Splits off tasks for the younger brothers of nodes with enough depth left.
+     */
+    private final class Searcher {
+
+        /** private copy of the position being searched **/
+        final Game position;
+        /** split point this searcher searches a brother of, or null for the root **/
+        final SplitPoint split;
+        /** symmetry tables for the board size being searched **/
+        final Symmetry symmetry;
+        /** candidate moves for every ply, allocated as plies are reached **/
+        final int[][] moves;
+        /** ordering scores of the candidate moves for every ply **/
+        final int[][] moveScores;
+        /** nodes visited since they were last added to the total **/
+        long nodesSearched;
+        /** set once the deadline has passed or a split point above has been cut off **/
+        boolean stopped;
+        /** best move found at the root by the current iteration **/
+        int rootBestMove;
+
+        Searcher(Game game, SplitPoint split) {
+            this.position = new Game(game);
+            this.split = split;
+            this.symmetry = Symmetry.forSize(game.boardSize);
+            int tiles = game.boardSize * game.boardSize;
+            this.moves = new int[tiles + 1][];
+            this.moveScores = new int[tiles + 1][];
+        }
+
+        /**
+         * Gets the move buffer of a ply, allocating it on first use.
+         * @param ply distance from the root, in plies
+         * @return the move buffer of the ply
+         */
+        int[] moves(int ply) {
+            if(moves[ply] == null) {
+                int tiles = position.boardSize * position.boardSize;
+                moves[ply] = new int[tiles];
+                moveScores[ply] = new int[tiles];
+            }
+            return moves[ply];
+        }
+
+        /**
+         * Adds the nodes visited by this searcher to the total of the solver.
+         */
+        void flushNodes() {
+            nodes.add(nodesSearched);
+            nodesSearched = 0;
+        }
+
+        /**
+         * Checks whether the search this searcher is part of should stop.
+         * @return true if the deadline has passed or a split point above this searcher was cut off
+         */
+        boolean aborted() {
+            if(timeUp) {
+                return true;
+            }
+            for(SplitPoint s=split;s!=null;s=s.parent) {
+                if(s.cutoff) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Alpha-beta search in negamax form.
+         * @param depth remaining depth, in plies
+         * @param ply distance from the root, in plies
+         * @param alpha lower bound of interesting scores
+         * @param beta upper bound of interesting scores
+         * @return the score of the position for the side to move; meaningless once stopped
+         */
+        int search(int depth, int ply, int alpha, int beta) {
+            if((++nodesSearched % CHECK_INTERVAL) == 0) {
+                if(System.nanoTime() > deadline || caller.isInterrupted()) {
+                    timeUp = true;
+                }
+                stopped |= aborted();
+            }
+            if(stopped) {
+                return 0;
+            }
+            if(depth == 0) {
+                return MinimaxPlayer.evaluate(position);
+            }
+
+            // look for a result of this position, or a symmetric one, found by any thread
+            int originalAlpha = alpha;
+            int transform = Symmetry.canonicalTransform(position);
+            long hash = position.getHash(transform);
+            long entry = table.probe(hash);
+            int tableMove = -1;
+            if(entry != 0) {
+                tableMove = TranspositionTable.bestMove(entry);
+                if(tableMove >= 0) {
+                    tableMove = symmetry.untransformTile(transform, tableMove);
+                }
+                if(ply > 0 && TranspositionTable.depth(entry) >= depth) {
+                    int tableScore = MinimaxPlayer.fromTable(TranspositionTable.score(entry), ply);
+                    switch(TranspositionTable.bound(entry)) {
+                        case TranspositionTable.EXACT:
+                            return tableScore;
+                        case TranspositionTable.LOWER_BOUND:
+                            alpha = Math.max(alpha, tableScore);
+                            break;
+                        case TranspositionTable.UPPER_BOUND:
+                            beta = Math.min(beta, tableScore);
+                            break;
+                    }
+                    if(alpha >= beta) {
+                        return tableScore;
+                    }
+                }
+            }
+
+            int[] plyMoves = moves(ply);
+            int count = MinimaxPlayer.generateMoves(position, plyMoves, moveScores[ply], tableMove,
+                    (ply == 0) ? previousBestMove : -1);
+            int best = -MinimaxPlayer.INFINITY;
+            int bestTile = -1;
+            for(int i=0;i<count;i++) {
+                if(i == 1 && depth >= MIN_SPLIT_DEPTH && count > 2) {
+                    // the eldest brother did not cause a cutoff; search the rest in parallel
+                    SplitPoint splitPoint = new SplitPoint(split, alpha, beta, best, bestTile);
+                    List<BrotherTask> brothers = new ArrayList<>(count - 1);
+                    for(int j=1;j<count;j++) {
+                        brothers.add(new BrotherTask(position, splitPoint, plyMoves[j], depth, ply));
+                    }
+                    ForkJoinTask.invokeAll(brothers);
+                    if(aborted()) {
+                        stopped = true;
+                        return 0;
+                    }
+                    best = splitPoint.best();
+                    bestTile = splitPoint.bestTile();
+                    break;
+                }
+
+                int tile = plyMoves[i];
+                GameState gs = position.play(tile);
+                int score;
+                if(gs == GameState.IN_PROGRESS) {
+                    score = -search(depth - 1, ply + 1, -beta, -alpha);
+                } else if(gs == GameState.DRAW) {
+                    score = 0;
+                } else {
+                    // the side to move just won; prefer the quickest win
+                    score = MinimaxPlayer.WIN_SCORE - ply;
+                }
+                position.unplay();
+
+                if(stopped) {
+                    return 0;
+                }
+                if(score > best) {
+                    best = score;
+                    bestTile = tile;
+                }
+                if(best > alpha) {
+                    alpha = best;
+                }
+                if(alpha >= beta) {
+                    break;
+                }
+            }
+
+            if(ply == 0) {
+                rootBestMove = bestTile;
+            }
+            int bound = (best <= originalAlpha) ? TranspositionTable.UPPER_BOUND
+                    : (best >= beta) ? TranspositionTable.LOWER_BOUND
+                    : TranspositionTable.EXACT;
+            table.store(hash, depth, bound, MinimaxPlayer.toTable(best, ply),
+                    (bestTile >= 0) ? symmetry.transformTile(transform, bestTile) : -1);
+            return best;
+        }
+    }
+}
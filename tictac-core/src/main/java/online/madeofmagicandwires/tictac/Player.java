@@ -0,0 +1,19 @@
+package online.madeofmagicandwires.tictac;
+
+/**
+ * Player.java
+ * Interface for anything that can decide on a move for the current player of a {@link Game}.
+ *
+ * @author Joost Bremmer
+ * @version 1.0
+ */
+public interface Player {
+
+    /**
+     * Decides which tile the current player of a game should claim.
+     * Implementations must leave the given game untouched.
+     * @param game the game to pick a move for; must still be in progress
+     * @return the tile index (row * boardSize + col) to claim, or -1 if no tile is left
+     */
+    int chooseMove(Game game);
+}
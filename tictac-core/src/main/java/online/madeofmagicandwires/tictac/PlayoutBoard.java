@@ -0,0 +1,269 @@
+package online.madeofmagicandwires.tictac;
+
+import java.util.SplittableRandom;
+
+/**
+ * PlayoutBoard.java
+ * Mutable scratch board for random playouts, reused for every playout of a search.
+ *
+ * Holds only what a playout needs: the owner of every tile, the per-line counters to spot a win
+ * in constant time and a list of the blank tiles, so a random move is picked in constant time
+ * as well. Loading, copying and playing never allocate, and the turn is a plain boolean.
+ *
+ * Under rules other than classic tic-tac-toe, wins are spotted by scanning at most winLength
+ * tiles in each direction from the last move instead, and with gravity moves are picked from
+ * a list of the columns that are not full yet.
+ *
+ * @author Joost Bremmer
+ * @version 1.0
+ * @see MctsPlayer
+ */
+final class PlayoutBoard {
+
+    /** Owner of a blank tile **/
+    private static final byte BLANK = 0;
+    /** Owner of a tile claimed by Player One **/
+    private static final byte PLAYER_ONE = 1;
+    /** Owner of a tile claimed by Player Two **/
+    private static final byte PLAYER_TWO = 2;
+
+    /** Represents the variant of k-in-a-row played by specific instances **/
+    final Rules rules;
+    /** amount of columns on the board **/
+    private final int width;
+    /** whether wins can be decided by the line counters **/
+    private final boolean classic;
+    /** owner of every tile **/
+    private final byte[] owners;
+    /** tiles owned by either player on every line **/
+    private final LineCounters counters;
+    /** the blank tiles, in no particular order; the first blankCount are valid **/
+    private final int[] blanks;
+    /** index of every blank tile in blanks **/
+    private final int[] blankSlots;
+    /** amount of blank tiles **/
+    private int blankCount;
+    /** with gravity, the columns that are not full yet, in no particular order **/
+    private final int[] openColumns;
+    /** index of every open column in openColumns **/
+    private final int[] columnSlots;
+    /** amount of open columns **/
+    private int openCount;
+    /** with gravity, the amount of claimed tiles in every column **/
+    private final int[] columnFill;
+    /** whose turn it is **/
+    private boolean playerOneTurn;
+
+    /**
+     * Constructor. Creates an empty board for the given rules.
+     * @param rules the board size, win length and gravity to play with
+     */
+    PlayoutBoard(Rules rules) {
+        int tiles = rules.tiles();
+        this.rules = rules;
+        this.width = rules.width;
+        this.classic = rules.isClassic();
+        this.owners = new byte[tiles];
+        this.counters = new LineCounters(rules.width, rules.height);
+        this.blanks = new int[tiles];
+        this.blankSlots = new int[tiles];
+        this.openColumns = new int[width];
+        this.columnSlots = new int[width];
+        this.columnFill = new int[width];
+    }
+
+    /**
+     * Loads the position of a game.
+     * @param game the game to copy; must have the same rules and still be in progress
+     */
+    void load(Game game) {
+        counters.copyFrom(game.getCounters());
+        blankCount = 0;
+        for(int tile=0;tile<owners.length;tile++) {
+            TileState state = game.getTile(tile / width, tile % width);
+            if(state == TileState.BLANK) {
+                owners[tile] = BLANK;
+                blankSlots[tile] = blankCount;
+                blanks[blankCount++] = tile;
+            } else {
+                owners[tile] = (state == TileState.PLAYER_ONE) ? PLAYER_ONE : PLAYER_TWO;
+            }
+        }
+        openCount = 0;
+        for(int col=0;col<width;col++) {
+            int row = game.dropRow(col);
+            columnFill[col] = rules.height - 1 - row;
+            if(row >= 0) {
+                columnSlots[col] = openCount;
+                openColumns[openCount++] = col;
+            }
+        }
+        playerOneTurn = game.getPlayerOneTurn();
+    }
+
+    /**
+     * Overwrites this board with another of the same size, without allocating.
+     * @param other the board to copy
+     */
+    void copyFrom(PlayoutBoard other) {
+        System.arraycopy(other.owners, 0, owners, 0, owners.length);
+        counters.copyFrom(other.counters);
+        System.arraycopy(other.blanks, 0, blanks, 0, other.blankCount);
+        System.arraycopy(other.blankSlots, 0, blankSlots, 0, blankSlots.length);
+        blankCount = other.blankCount;
+        if(rules.gravity) {
+            System.arraycopy(other.openColumns, 0, openColumns, 0, other.openCount);
+            System.arraycopy(other.columnSlots, 0, columnSlots, 0, width);
+            System.arraycopy(other.columnFill, 0, columnFill, 0, width);
+            openCount = other.openCount;
+        }
+        playerOneTurn = other.playerOneTurn;
+    }
+
+    /**
+     * Checks whose turn it is.
+     * @return true if it is Player One's turn
+     */
+    boolean isPlayerOneTurn() {
+        return playerOneTurn;
+    }
+
+    /**
+     * Gets the amount of moves the current player can choose from.
+     * @return the amount of blank tiles, or with gravity, of columns that are not full
+     */
+    int moveCount() {
+        return rules.gravity ? openCount : blankCount;
+    }
+
+    /**
+     * Gets one of the moves the current player can choose from.
+     * @param i index of the move, below {@link #moveCount()}
+     * @return the tile index of the move
+     */
+    int move(int i) {
+        if(rules.gravity) {
+            int col = openColumns[i];
+            return ((rules.height - 1 - columnFill[col]) * width) + col;
+        }
+        return blanks[i];
+    }
+
+    /**
+     * Checks whether a tile has not been claimed yet.
+     * @param tile the tile index, counting row by row from 0
+     * @return true if the tile is blank
+     */
+    boolean isBlank(int tile) {
+        return owners[tile] == BLANK;
+    }
+
+    /**
+     * Gets the state of a tile.
+     * @param tile the tile index, counting row by row from 0
+     * @return the TileState of the tile
+     */
+    TileState getTile(int tile) {
+        switch (owners[tile]) {
+            case PLAYER_ONE:
+                return TileState.PLAYER_ONE;
+            case PLAYER_TWO:
+                return TileState.PLAYER_TWO;
+            default:
+                return TileState.BLANK;
+        }
+    }
+
+    /**
+     * Claims a blank tile for the current player and passes the turn, unless the game ends.
+     * @param tile the tile index of a blank tile
+     * @return the GameState after the move
+     */
+    GameState play(int tile) {
+        int row = tile / width;
+        int col = tile % width;
+        owners[tile] = playerOneTurn ? PLAYER_ONE : PLAYER_TWO;
+        counters.add(row, col, playerOneTurn);
+
+        // move the last blank into the slot of the claimed tile
+        int last = blanks[--blankCount];
+        int slot = blankSlots[tile];
+        blanks[slot] = last;
+        blankSlots[last] = slot;
+
+        if(rules.gravity && ++columnFill[col] == rules.height) {
+            // the column is full; move the last open column into its slot
+            int lastColumn = openColumns[--openCount];
+            int columnSlot = columnSlots[col];
+            openColumns[columnSlot] = lastColumn;
+            columnSlots[lastColumn] = columnSlot;
+        }
+
+        if(classic ? counters.completesLine(row, col, playerOneTurn) : completesRun(row, col)) {
+            return playerOneTurn ? GameState.PLAYER_ONE_WIN : GameState.PLAYER_TWO_WIN;
+        }
+        if(blankCount == 0) {
+            return GameState.DRAW;
+        }
+        playerOneTurn = !playerOneTurn;
+        return GameState.IN_PROGRESS;
+    }
+
+    /**
+     * Plays random moves for both players until the game ends.
+     * @param random source of the random moves
+     * @return the outcome of the game; never IN_PROGRESS
+     */
+    GameState playout(SplittableRandom random) {
+        GameState gs = GameState.IN_PROGRESS;
+        while(gs == GameState.IN_PROGRESS) {
+            gs = play(move(random.nextInt(moveCount())));
+        }
+        return gs;
+    }
+
+    /**
+     * Checks whether the current player owns a run of winLength tiles through a tile.
+     * @param row row of the tile
+     * @param col column of the tile
+     * @return true if the tile is part of a long enough run in any direction
+     * @see BitBoard#completesRun(int, int, boolean, int)
+     */
+    private boolean completesRun(int row, int col) {
+        byte owner = owners[(row * width) + col];
+        return runLength(owner, row, col, 0, 1) >= rules.winLength
+                || runLength(owner, row, col, 1, 0) >= rules.winLength
+                || runLength(owner, row, col, 1, 1) >= rules.winLength
+                || runLength(owner, row, col, 1, -1) >= rules.winLength;
+    }
+
+    /**
+     * Counts the tiles in a row owned by a player through a tile, along one direction.
+     * @param owner the owner of the tile
+     * @param row row of the tile
+     * @param col column of the tile
+     * @param dRow step between the rows of consecutive tiles
+     * @param dCol step between the columns of consecutive tiles
+     * @return the length of the run, up to the win length
+     */
+    private int runLength(byte owner, int row, int col, int dRow, int dCol) {
+        int max = rules.winLength;
+        int height = rules.height;
+        int count = 1;
+        int r = row + dRow;
+        int c = col + dCol;
+        while(count < max && r >= 0 && r < height && c >= 0 && c < width && owners[(r * width) + c] == owner) {
+            count++;
+            r += dRow;
+            c += dCol;
+        }
+        r = row - dRow;
+        c = col - dCol;
+        while(count < max && r >= 0 && r < height && c >= 0 && c < width && owners[(r * width) + c] == owner) {
+            count++;
+            r -= dRow;
+            c -= dCol;
+        }
+        return count;
+    }
+}
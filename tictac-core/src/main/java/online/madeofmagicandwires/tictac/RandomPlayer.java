@@ -0,0 +1,60 @@
+package online.madeofmagicandwires.tictac;
+
+import java.util.SplittableRandom;
+
+/**
+ * RandomPlayer.java
+ * Computer player claiming a random legal tile, by any {@link Rules}.
+ * Not thread-safe; give every thread a player of its own.
+ *
+ * @author Joost Bremmer
+ * @version 1.0
+ */
+public class RandomPlayer implements Player {
+
+    /** source of the moves **/
+    private final SplittableRandom random;
+
+    /**
+     * Constructor.
+     * @param random source of the moves
+     */
+    public RandomPlayer(SplittableRandom random) {
+        this.random = random;
+    }
+
+    /**
+     * Picks a random legal move for the current player of a game.
+     * @param game the game to pick a move for; must still be in progress
+     * @return the tile index (row * boardSize + col) to claim, or -1 if no tile is left
+     */
+    @Override
+    public int chooseMove(Game game) {
+        int tiles = game.rules.tiles();
+        int legal = tiles - game.getCounters().tilesPlayed();
+        if(game.rules.gravity) {
+            legal = 0;
+            for(int col=0;col<game.rules.width;col++) {
+                if(game.dropRow(col) >= 0) {
+                    legal++;
+                }
+            }
+        }
+        if(legal == 0) {
+            return -1;
+        }
+        // the n-th legal tile, counting row by row
+        int n = random.nextInt(legal);
+        for(int tile=0;tile<tiles;tile++) {
+            if(game.isLegal(tile) && n-- == 0) {
+                return tile;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public String toString() {
+        return "RandomPlayer";
+    }
+}
@@ -0,0 +1,126 @@
+package online.madeofmagicandwires.tictac;
+
+import java.io.Serializable;
+
+/**
+ * Rules.java
+ * Describes the variant of k-in-a-row being played: the size of the board, how many tiles in a
+ * row win, and whether tiles fall down their column as in Connect Four.
+ *
+ * Classic tic-tac-toe rules (a square board, a line must span the whole board and no gravity)
+ * are decided in constant time by per-line counters and can be searched by every computer player.
+ * Any other rules are decided by scanning at most k tiles in each direction from the last move,
+ * and are played by the {@link MctsPlayer} only.
+ *
+ * @author Joost Bremmer
+ * @version 1.0
+ */
+public final class Rules implements Serializable {
+
+    /** Win length of Connect Four **/
+    public static final int CONNECT_FOUR_LENGTH = 4;
+    /** Win length of gomoku **/
+    public static final int GOMOKU_LENGTH = 5;
+
+    /** Amount of columns on the board **/
+    public final int width;
+    /** Amount of rows on the board **/
+    public final int height;
+    /** Amount of tiles a player needs in a row, column or diagonal to win **/
+    public final int winLength;
+    /** Whether tiles fall to the lowest blank tile of their column **/
+    public final boolean gravity;
+
+    /**
+     * Most specific constructor
+     * @param width amount of columns on the board
+     * @param height amount of rows on the board
+     * @param winLength amount of tiles in a row needed to win
+     * @param gravity true if tiles fall to the lowest blank tile of their column
+     */
+    public Rules(int width, int height, int winLength, boolean gravity) {
+        if(width < 1 || height < 1) {
+            throw new IllegalArgumentException("Invalid board of " + width + "*" + height);
+        }
+        if(winLength < 1 || winLength > Math.max(width, height)) {
+            throw new IllegalArgumentException("A line of " + winLength + " does not fit on a board of " +
+                    width + "*" + height);
+        }
+        this.width = width;
+        this.height = height;
+        this.winLength = winLength;
+        this.gravity = gravity;
+    }
+
+    /**
+     * Creates the rules of tic-tac-toe on a board of a given size.
+     * @param boardSize the "cubic" amount of tiles on the board
+     * @return rules for a square board, won by claiming a whole row, column or diagonal
+     */
+    public static Rules ticTacToe(int boardSize) {
+        return new Rules(boardSize, boardSize, boardSize, false);
+    }
+
+    /**
+     * Creates the rules of Connect Four on a board of a given size.
+     * @param width amount of columns on the board
+     * @param height amount of rows on the board
+     * @return rules with gravity, won by 4 tiles in a row
+     */
+    public static Rules connectFour(int width, int height) {
+        return new Rules(width, height, CONNECT_FOUR_LENGTH, true);
+    }
+
+    /**
+     * Creates the rules of gomoku (five in a row, without gravity) on a square board.
+     * @param boardSize the "cubic" amount of tiles on the board; traditionally 15
+     * @return rules for a square board, won by 5 tiles in a row
+     */
+    public static Rules gomoku(int boardSize) {
+        return new Rules(boardSize, boardSize, GOMOKU_LENGTH, false);
+    }
+
+    /**
+     * Gets the amount of tiles on the board.
+     * @return width * height
+     */
+    public int tiles() {
+        return width * height;
+    }
+
+    /**
+     * Checks whether these are the rules of classic tic-tac-toe, for which wins can be counted
+     * per line and the board may be rotated and mirrored.
+     * @return true for a square board without gravity, won by filling a whole line
+     */
+    public boolean isClassic() {
+        return width == height && winLength == width && !gravity;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if(this == o) {
+            return true;
+        }
+        if(!(o instanceof Rules)) {
+            return false;
+        }
+        Rules other = (Rules) o;
+        return width == other.width && height == other.height
+                && winLength == other.winLength && gravity == other.gravity;
+    }
+
+    @Override
+    public int hashCode() {
+        return (((((width * 31) + height) * 31) + winLength) * 2) + (gravity ? 1 : 0);
+    }
+
+    /**
+     * Returns a Human readable String representing the state of the current object.
+     * @return Human readable String describing these rules
+     */
+    @Override
+    public String toString() {
+        return winLength + " in a row on a board of " + width + "*" + height + (gravity ? " with gravity" : "");
+    }
+}
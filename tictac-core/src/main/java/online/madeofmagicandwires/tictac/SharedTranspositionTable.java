@@ -0,0 +1,141 @@
+package online.madeofmagicandwires.tictac;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * SharedTranspositionTable.java
+ * Lock-free variant of the {@link TranspositionTable}, shared by every thread of a parallel search.
+ *
+ * Every slot holds two longs: the packed entry, and the hash of its position XORed with that entry.
+ * Threads store and probe slots without locking; when two threads write the same slot at once,
+ * a reader may see the key of one entry with the data of another, but then the key no longer
+ * XORs back into the hash being looked up and the torn slot is treated as empty.
+ * Entries are packed the same way as in the {@link TranspositionTable}.
+ *
+ * @author Joost Bremmer
+ * @version 1.0
+ * @see ParallelSolver
+ */
+public class SharedTranspositionTable {
+
+    /** Memory used by a single entry, in bytes **/
+    private static final int ENTRY_BYTES = 2 * Long.SIZE / Byte.SIZE;
+
+    /** for every slot, the hash XORed with the entry followed by the entry itself **/
+    private final AtomicLongArray slots;
+    /** mask turning a hash into a slot index **/
+    private final int mask;
+
+    /** amount of lookups; striped, as every thread counts its own **/
+    private final LongAdder probes = new LongAdder();
+    /** amount of lookups that found their position **/
+    private final LongAdder hits = new LongAdder();
+    /** amount of results stored **/
+    private final LongAdder stores = new LongAdder();
+
+    /**
+     * Constructor.
+     * @param entries the amount of entries; rounded down to a power of two
+     */
+    public SharedTranspositionTable(int entries) {
+        int size = Integer.highestOneBit(Math.max(entries, 1));
+        this.slots = new AtomicLongArray(size * 2);
+        this.mask = size - 1;
+    }
+
+    /**
+     * Constructor using {@link TranspositionTable#DEFAULT_ENTRIES} entries.
+     */
+    public SharedTranspositionTable() {
+        this(TranspositionTable.DEFAULT_ENTRIES);
+    }
+
+    /**
+     * Looks up the stored result of a position.
+     * @param hash Zobrist hash of the position
+     * @return the packed entry, or 0 if the position is not stored or its slot is being written
+     * @see TranspositionTable#probe(long)
+     */
+    long probe(long hash) {
+        probes.increment();
+        int slot = ((int) hash & mask) << 1;
+        long entry = slots.get(slot + 1);
+        if(entry != 0 && (slots.get(slot) ^ entry) == hash) {
+            hits.increment();
+            return entry;
+        }
+        return 0;
+    }
+
+    /**
+     * Stores the result of a search, unless its slot holds a result searched more deeply.
+     * @param hash Zobrist hash of the position
+     * @param depth remaining depth the position was searched to, in plies
+     * @param bound EXACT, LOWER_BOUND or UPPER_BOUND
+     * @param score the score found
+     * @param bestMove the tile index of the best move found, or -1 if none
+     * @see TranspositionTable#store(long, int, int, int, int)
+     */
+    void store(long hash, int depth, int bound, int score, int bestMove) {
+        int slot = ((int) hash & mask) << 1;
+        long entry = slots.get(slot + 1);
+        if(entry != 0 && (slots.get(slot) ^ entry) != hash && TranspositionTable.depth(entry) > depth) {
+            return;
+        }
+        long packed = TranspositionTable.pack(depth, bound, score, bestMove);
+        slots.lazySet(slot, hash ^ packed);
+        slots.lazySet(slot + 1, packed);
+        stores.increment();
+    }
+
+    /**
+     * Removes every entry and resets the statistics.
+     * Must not be called while a search is using this table.
+     */
+    public void clear() {
+        for(int i=0;i<slots.length();i++) {
+            slots.lazySet(i, 0L);
+        }
+        probes.reset();
+        hits.reset();
+        stores.reset();
+    }
+
+    /**
+     * Gets the amount of entries this table can hold.
+     * @return the amount of slots
+     */
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Gets the memory taken up by the entries of this table.
+     * @return the size of the entry array, in bytes
+     */
+    public long getMemoryBytes() {
+        return (long) getCapacity() * ENTRY_BYTES;
+    }
+
+    /**
+     * Gets the fraction of lookups that found their position.
+     * @return hits divided by lookups, or 0 if nothing was looked up yet
+     */
+    public double getHitRate() {
+        long probed = probes.sum();
+        return (probed == 0) ? 0 : hits.sum() / (double) probed;
+    }
+
+    /**
+     * Returns a Human readable String representing the state of the current object.
+     * @return Human readable String containing the table's metrics.
+     */
+    @Override
+    public String toString() {
+        return "SharedTranspositionTable of " + getCapacity() + " entries (" + (getMemoryBytes() / 1024) + "KB), " +
+                "hit rate " + String.format(Locale.ROOT, "%.1f%%", getHitRate() * 100) +
+                " over " + probes.sum() + " probes, " + stores.sum() + " stores";
+    }
+}
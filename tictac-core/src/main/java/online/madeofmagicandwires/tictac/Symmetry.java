@@ -0,0 +1,191 @@
+package online.madeofmagicandwires.tictac;
+
+/**
+ * Symmetry.java
+ * Maps positions onto one of their 8 symmetric orientations (rotations and reflections).
+ *
+ * A square board looks the same after rotating it by a quarter turn or mirroring it, so every
+ * position has up to 8 equivalent orientations which share the same outcome. Caches and solvers
+ * keyed on the canonical orientation therefore need up to 8 times fewer entries.
+ *
+ * The canonical orientation of a position is the one with the smallest Zobrist hash.
+ * {@link Game} keeps the hash of all 8 orientations up to date on every move, so finding it takes
+ * 8 comparisons and no allocations. Moves are mapped between orientations with lookup tables.
+ *
+ * @author Joost Bremmer
+ * @version 1.0
+ * @see Game#getHash()
+ */
+public final class Symmetry {
+
+    /** Amount of orientations of a square board **/
+    public static final int TRANSFORMS = 8;
+
+    /** Leaves the board as is **/
+    public static final int IDENTITY = 0;
+    /** Rotates the board a quarter turn clockwise **/
+    public static final int ROTATE_90 = 1;
+    /** Rotates the board half a turn **/
+    public static final int ROTATE_180 = 2;
+    /** Rotates the board a quarter turn counter clockwise **/
+    public static final int ROTATE_270 = 3;
+    /** Mirrors the board left to right **/
+    public static final int MIRROR_COLUMNS = 4;
+    /** Mirrors the board top to bottom **/
+    public static final int MIRROR_ROWS = 5;
+    /** Mirrors the board along the diagonal from the top left **/
+    public static final int TRANSPOSE = 6;
+    /** Mirrors the board along the diagonal from the top right **/
+    public static final int ANTI_TRANSPOSE = 7;
+
+    /** Largest board size for which instances are cached **/
+    private static final int CACHE_SIZE = 16;
+    /** Shared instances, indexed by board size **/
+    private static final Symmetry[] cache = new Symmetry[CACHE_SIZE + 1];
+
+    /** Represents the board size used for specific instances **/
+    public final int boardSize;
+    /** for every transform, the tile every tile ends up on **/
+    private final int[][] permutations;
+
+    /**
+     * Constructor. Computes the permutation tables for a board of boardSize^boardSize tiles.
+     * Use {@link #forSize(int)} to get a shared instance instead.
+     * @param boardSize the "cubic" amount of tiles on the board
+     */
+    private Symmetry(int boardSize) {
+        this.boardSize = boardSize;
+        this.permutations = new int[TRANSFORMS][boardSize * boardSize];
+        int last = boardSize - 1;
+        for(int row=0;row<boardSize;row++) {
+            for(int col=0;col<boardSize;col++) {
+                int tile = (row * boardSize) + col;
+                permutations[IDENTITY][tile] = tile;
+                permutations[ROTATE_90][tile] = (col * boardSize) + (last - row);
+                permutations[ROTATE_180][tile] = ((last - row) * boardSize) + (last - col);
+                permutations[ROTATE_270][tile] = ((last - col) * boardSize) + row;
+                permutations[MIRROR_COLUMNS][tile] = (row * boardSize) + (last - col);
+                permutations[MIRROR_ROWS][tile] = ((last - row) * boardSize) + col;
+                permutations[TRANSPOSE][tile] = (col * boardSize) + row;
+                permutations[ANTI_TRANSPOSE][tile] = ((last - col) * boardSize) + (last - row);
+            }
+        }
+    }
+
+    /**
+     * Gets the shared symmetry tables for a given board size.
+     * @param boardSize the "cubic" amount of tiles on the board
+     * @return the symmetry tables for a board of boardSize^boardSize tiles
+     */
+    public static Symmetry forSize(int boardSize) {
+        if(boardSize > CACHE_SIZE) {
+            return new Symmetry(boardSize);
+        }
+        synchronized (cache) {
+            if(cache[boardSize] == null) {
+                cache[boardSize] = new Symmetry(boardSize);
+            }
+            return cache[boardSize];
+        }
+    }
+
+    /**
+     * Gets the transform undoing another transform.
+     * @param transform one of the transform constants
+     * @return the transform that maps the board back onto its original orientation
+     */
+    public static int inverse(int transform) {
+        switch (transform) {
+            case ROTATE_90:
+                return ROTATE_270;
+            case ROTATE_270:
+                return ROTATE_90;
+            default:
+                // every other transform is its own inverse
+                return transform;
+        }
+    }
+
+    /**
+     * Finds the transform mapping a position onto its canonical orientation.
+     * @param game the position to canonicalize
+     * @return the transform to apply to the position; its inverse maps moves back
+     */
+    public static int canonicalTransform(Game game) {
+        int best = IDENTITY;
+        long bestHash = game.getHash(IDENTITY);
+        for(int t=1;t<TRANSFORMS;t++) {
+            long hash = game.getHash(t);
+            if(hash < bestHash) {
+                best = t;
+                bestHash = hash;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Gets the Zobrist hash of the canonical orientation of a position, which is equal
+     * for all symmetric positions.
+     * @param game the position to hash
+     * @return the smallest hash of the 8 orientations of the position
+     */
+    public static long canonicalHash(Game game) {
+        long bestHash = game.getHash(IDENTITY);
+        for(int t=1;t<TRANSFORMS;t++) {
+            bestHash = Math.min(bestHash, game.getHash(t));
+        }
+        return bestHash;
+    }
+
+    /**
+     * Maps a tile onto its place in a transformed orientation.
+     * @param transform one of the transform constants
+     * @param tile the tile index, counting row by row from 0
+     * @return the index of the tile after transforming the board
+     */
+    public int transformTile(int transform, int tile) {
+        return permutations[transform][tile];
+    }
+
+    /**
+     * Maps a tile of a transformed orientation back onto its place on the original board.
+     * @param transform the transform that was applied
+     * @param tile the tile index on the transformed board
+     * @return the index of the tile on the original board
+     */
+    public int untransformTile(int transform, int tile) {
+        return permutations[inverse(transform)][tile];
+    }
+
+    /**
+     * Creates the canonical representative of a position.
+     * @param game the position to canonicalize
+     * @return a new game holding the canonical orientation of the board, with the same turn
+     */
+    public Game canonicalize(Game game) {
+        return transform(game, canonicalTransform(game));
+    }
+
+    /**
+     * Creates a transformed copy of a position.
+     * @param game the position to transform
+     * @param transform one of the transform constants
+     * @return a new game holding the transformed board, with the same turn
+     */
+    public Game transform(Game game, int transform) {
+        TileState[][] board = game.getBoard();
+        TileState[][] transformed = new TileState[boardSize][boardSize];
+        for(int row=0;row<boardSize;row++) {
+            for(int col=0;col<boardSize;col++) {
+                int tile = permutations[transform][(row * boardSize) + col];
+                transformed[tile / boardSize][tile % boardSize] = board[row][col];
+            }
+        }
+        Game result = new Game(boardSize, game.winDetection);
+        result.setPlayerOneTurn(game.getPlayerOneTurn());
+        result.setBoard(transformed);
+        result.setMovesPlayed(game.getMovesPlayed());
+        return result;
+    }
+}
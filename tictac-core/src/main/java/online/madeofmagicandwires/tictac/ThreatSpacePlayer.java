@@ -0,0 +1,61 @@
+package online.madeofmagicandwires.tictac;
+
+/**
+ * ThreatSpacePlayer.java
+ * Computer player for big boards that first runs a {@link ThreatSpaceSearch}: it plays a forced
+ * win when it has one, spoils one of the opponent by claiming its first threat, and otherwise
+ * leaves the move to another player, usually an {@link MctsPlayer}.
+ * Not thread-safe; give every thread a player of its own.
+ *
+ * @author Joost Bremmer
+ * @version 1.0
+ */
+public class ThreatSpacePlayer implements Player {
+
+    /** looks for forced wins of either player **/
+    private final ThreatSpaceSearch search;
+    /** plays when neither player has a forced win **/
+    private final Player fallback;
+    /** time each of the two searches may take, in nanoseconds **/
+    private final long searchBudgetNanos;
+
+    /**
+     * Most specific constructor
+     * @param search the search to look for forced wins with
+     * @param fallback plays when neither player has a forced win
+     * @param searchBudgetMillis time looking for forced wins may take, in milliseconds, on top of the fallback's
+     */
+    public ThreatSpacePlayer(ThreatSpaceSearch search, Player fallback, long searchBudgetMillis) {
+        this.search = search;
+        this.fallback = fallback;
+        this.searchBudgetNanos = (searchBudgetMillis * 1000000L) / 2;
+    }
+
+    /**
+     * Constructor with a default {@link ThreatSpaceSearch}.
+     * @param fallback plays when neither player has a forced win
+     * @param searchBudgetMillis time looking for forced wins may take, in milliseconds, on top of the fallback's
+     */
+    public ThreatSpacePlayer(Player fallback, long searchBudgetMillis) {
+        this(new ThreatSpaceSearch(), fallback, searchBudgetMillis);
+    }
+
+    /**
+     * Plays a forced win, blocks one of the opponent, or asks the fallback for a move.
+     * @param game the game to pick a move for; must still be in progress
+     * @return the tile index (row * boardSize + col) to claim, or -1 if no tile is left
+     */
+    @Override
+    public int chooseMove(Game game) {
+        boolean playerOne = game.getPlayerOneTurn();
+        int win = search.findWin(game, playerOne, System.nanoTime() + searchBudgetNanos);
+        if(win >= 0) {
+            return win;
+        }
+        int threat = search.findWin(game, !playerOne, System.nanoTime() + searchBudgetNanos);
+        if(threat >= 0 && game.isLegal(threat)) {
+            return threat;
+        }
+        return fallback.chooseMove(game);
+    }
+}
@@ -0,0 +1,597 @@
+package online.madeofmagicandwires.tictac;
+
+import java.util.Arrays;
+
+/**
+ * ThreatSpaceSearch.java
+ * Looks for forced wins on boards far too big to search full-width, by only ever playing
+ * threats: moves the opponent has to answer right away.
+ *
+ * The board is seen as every window of winLength tiles in a row, along the same four directions
+ * {@link Game#checkWinconditionReached(int, int)} scans for a run; a count of each player's tiles
+ * is kept per window. A window holding no opponent tile is alive, and its blank tiles are the
+ * only ones that matter to it:
+ * <ul>
+ *   <li>a <b>four</b> is a move leaving a live window one tile short of winLength. The defender
+ *   has to claim that gap, and loses if the move leaves two gaps at once;</li>
+ *   <li>a <b>three</b> is a move after which the attacker could make two gaps with one more
+ *   move. The defender may answer on any blank tile of the attacker's live windows that are two
+ *   tiles short, or with a four of its own.</li>
+ * </ul>
+ * The attacker only plays fours and, if enabled, threes, and has to block the defender's fours.
+ * The search deepens iteratively, so the win found is the shortest one in attacker moves.
+ *
+ * As in threat-space search in general, a defender answer that is no threat and does not
+ * touch the attacker's windows is not searched; it is assumed to be too slow. Rules with
+ * gravity are not searched, as a gap can only be claimed once its column has filled up to it.
+ *
+ * @author Joost Bremmer
+ * @version 1.0
+ */
+public class ThreatSpaceSearch {
+
+    /** Default most moves of the attacker in a forced win, counting the winning move **/
+    public static final int DEFAULT_MAX_DEPTH = 12;
+    /** Amount of nodes searched between checks of the clock **/
+    private static final int CHECK_INTERVAL = 1024;
+    /** Entries of the table of positions already searched; 2^16 entries take up 1MB **/
+    private static final int TABLE_ENTRIES = 1 << 16;
+    /** Depth stored for a position proven won, so it is never replaced by one searched in vain **/
+    private static final int WON = 0xFF;
+
+    /** most moves of the attacker in a forced win **/
+    private final int maxDepth;
+    /** true to play threes as well as fours **/
+    private final boolean threes;
+
+    /** the rules the windows were computed for **/
+    private Rules rules;
+    /** amount of tiles in a row needed to win **/
+    private int winLength;
+    /** amount of windows **/
+    private int windowCount;
+    /** the tiles of every window; window w occupies [w*winLength, (w+1)*winLength) **/
+    private int[] windowTiles;
+    /** for every tile, the windows it is part of **/
+    private int[][] windowsThrough;
+    /** keys for hashing positions **/
+    private Zobrist zobrist;
+
+    /** tiles of the attacker in every window **/
+    private int[] attackerCount;
+    /** tiles of the defender in every window **/
+    private int[] defenderCount;
+    /** windows one tile short of a win for the attacker, and for the defender **/
+    private int attackerGapWindows, defenderGapWindows;
+    /** true for every tile claimed by either player **/
+    private boolean[] claimed;
+    /** hash of the tiles claimed since the root **/
+    private long hash;
+
+    /** moves to search at every ply **/
+    private int[][] moveLists;
+    /** marks tiles already added to a move list **/
+    private int[] listed;
+    /** marks gaps already counted **/
+    private int[] counted;
+    /** marks tiles already tried as the move after a three **/
+    private int[] tried;
+    /** current mark of each of the arrays above **/
+    private int listStamp, countStamp, tryStamp;
+
+    /** positions already searched: depth WON if proven won, else the depth they were searched to in vain **/
+    private final TranspositionTable table = new TranspositionTable(TABLE_ENTRIES);
+    /** nanoTime after which the search gives up **/
+    private long deadline;
+    /** set once the deadline has passed **/
+    private boolean timeUp;
+    /** nodes searched by the last search **/
+    private long nodes;
+    /** first move of the win found by the last search **/
+    private int winningMove;
+    /** moves of the attacker in the win found by the last search, counting the winning move **/
+    private int winDepth;
+
+    /**
+     * Most specific constructor
+     * @param maxDepth most moves of the attacker in a forced win, counting the winning move
+     * @param threes true to play threes as well as fours; without, only wins by continuous fours are found
+     */
+    public ThreatSpaceSearch(int maxDepth, boolean threes) {
+        this.maxDepth = Math.max(maxDepth, 1);
+        this.threes = threes;
+    }
+
+    /**
+     * Constructor searching fours and threes up to {@link #DEFAULT_MAX_DEPTH} attacker moves deep.
+     */
+    public ThreatSpaceSearch() {
+        this(DEFAULT_MAX_DEPTH, true);
+    }
+
+    /**
+     * Looks for a forced win of the current player of a game.
+     * @param game the game; left untouched
+     * @param deadlineNanos value of {@link System#nanoTime()} after which the search gives up
+     * @return the tile index (row * boardSize + col) of the first move of the win, or -1 if none was found
+     */
+    public int findWin(Game game, long deadlineNanos) {
+        return findWin(game, game.getPlayerOneTurn(), deadlineNanos);
+    }
+
+    /**
+     * Looks for a forced win of either player of a game, as if it were that player's turn;
+     * for the player who is not to move, this tells what it threatens.
+     * @param game the game; left untouched
+     * @param playerOne true to search for a win of Player One, false for Player Two
+     * @param deadlineNanos value of {@link System#nanoTime()} after which the search gives up;
+     *                      it also gives up once the searching thread is interrupted
+     * @return the tile index (row * boardSize + col) of the first move of the win, or -1 if none was found
+     */
+    public int findWin(Game game, boolean playerOne, long deadlineNanos) {
+        nodes = 0;
+        winningMove = -1;
+        winDepth = 0;
+        if(game.rules.gravity || game.getGameOver() != GameState.IN_PROGRESS) {
+            return -1;
+        }
+        load(game, playerOne);
+        deadline = deadlineNanos;
+        timeUp = false;
+        table.clear();
+        for(int depth=0;depth<maxDepth && !timeUp;depth++) {
+            if(attack(depth, 0)) {
+                winDepth = depth + 1;
+                return winningMove;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Gets the length of the win found by the last search.
+     * @return the moves of the attacker in the win, counting the winning move, or 0 if none was found
+     */
+    public int getWinDepth() {
+        return winDepth;
+    }
+
+    /**
+     * Gets the amount of positions the last search looked at.
+     * @return the amount of nodes searched
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Sets up the windows of a game's rules, if needed, and counts the tiles in every window.
+     * @param game the game to search
+     * @param playerOne true if Player One attacks
+     */
+    private void load(Game game, boolean playerOne) {
+        if(!game.rules.equals(rules)) {
+            prepare(game.rules);
+        }
+        Arrays.fill(attackerCount, 0);
+        Arrays.fill(defenderCount, 0);
+        attackerGapWindows = 0;
+        defenderGapWindows = 0;
+        Arrays.fill(claimed, false);
+        hash = 0;
+        TileState attacker = playerOne ? TileState.PLAYER_ONE : TileState.PLAYER_TWO;
+        for(int tile=0;tile<rules.tiles();tile++) {
+            TileState state = game.getTile(tile / rules.width, tile % rules.width);
+            if(state == TileState.PLAYER_ONE || state == TileState.PLAYER_TWO) {
+                place(tile, state == attacker);
+            }
+        }
+        hash = 0;
+    }
+
+    /**
+     * Computes every window of a set of rules and the scratch space to search them.
+     * @param rules the rules to search by
+     */
+    private void prepare(Rules rules) {
+        this.rules = rules;
+        this.winLength = rules.winLength;
+        this.zobrist = Zobrist.forRules(rules);
+        int tiles = rules.tiles();
+        int[][] directions = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+
+        int[] through = new int[tiles];
+        int count = 0;
+        int[] starts = new int[tiles * directions.length * 2];
+        for(int[] d : directions) {
+            for(int row=0;row<rules.height;row++) {
+                for(int col=0;col<rules.width;col++) {
+                    int endRow = row + (d[0] * (winLength - 1));
+                    int endCol = col + (d[1] * (winLength - 1));
+                    if(endRow < rules.height && endCol >= 0 && endCol < rules.width) {
+                        starts[count * 2] = (row * rules.width) + col;
+                        starts[(count * 2) + 1] = (d[0] * rules.width) + d[1];
+                        count++;
+                    }
+                }
+            }
+        }
+        windowCount = count;
+        windowTiles = new int[count * winLength];
+        for(int w=0;w<count;w++) {
+            for(int i=0;i<winLength;i++) {
+                int tile = starts[w * 2] + (i * starts[(w * 2) + 1]);
+                windowTiles[(w * winLength) + i] = tile;
+                through[tile]++;
+            }
+        }
+        windowsThrough = new int[tiles][];
+        for(int tile=0;tile<tiles;tile++) {
+            windowsThrough[tile] = new int[through[tile]];
+            through[tile] = 0;
+        }
+        for(int w=0;w<count;w++) {
+            for(int i=0;i<winLength;i++) {
+                int tile = windowTiles[(w * winLength) + i];
+                windowsThrough[tile][through[tile]++] = w;
+            }
+        }
+
+        attackerCount = new int[count];
+        defenderCount = new int[count];
+        claimed = new boolean[tiles];
+        moveLists = new int[(maxDepth * 2) + 2][tiles];
+        listed = new int[tiles];
+        counted = new int[tiles];
+        tried = new int[tiles];
+    }
+
+    /**
+     * Claims a tile.
+     * @param tile the tile index
+     * @param attacker true for the attacker, false for the defender
+     */
+    private void place(int tile, boolean attacker) {
+        int[] counts = attacker ? attackerCount : defenderCount;
+        for(int w : windowsThrough[tile]) {
+            countGapWindow(w, -1);
+            counts[w]++;
+            countGapWindow(w, 1);
+        }
+        claimed[tile] = true;
+        hash ^= zobrist.tile(tile, attacker);
+    }
+
+    /**
+     * Takes back a claimed tile.
+     * @param tile the tile index
+     * @param attacker true for the attacker, false for the defender
+     */
+    private void remove(int tile, boolean attacker) {
+        int[] counts = attacker ? attackerCount : defenderCount;
+        for(int w : windowsThrough[tile]) {
+            countGapWindow(w, -1);
+            counts[w]--;
+            countGapWindow(w, 1);
+        }
+        claimed[tile] = false;
+        hash ^= zobrist.tile(tile, attacker);
+    }
+
+    /**
+     * Adds a window to, or takes it from, the windows one tile short, if it is one.
+     * @param w the window
+     * @param sign 1 to add, -1 to take
+     */
+    private void countGapWindow(int w, int sign) {
+        if(attackerCount[w] == winLength - 1 && defenderCount[w] == 0) {
+            attackerGapWindows += sign;
+        } else if(defenderCount[w] == winLength - 1 && attackerCount[w] == 0) {
+            defenderGapWindows += sign;
+        }
+    }
+
+    /**
+     * Looks up how far a position has been searched.
+     * @param hash hash of the position, with the turn hashed in for the defender to move
+     * @return WON if the position is proven won, the depth it was searched to in vain, or -1
+     */
+    private int known(long hash) {
+        long entry = table.probe(hash);
+        return (entry == 0) ? -1 : TranspositionTable.depth(entry);
+    }
+
+    /**
+     * Stores how far a position has been searched.
+     * @param hash hash of the position, with the turn hashed in for the defender to move
+     * @param depth WON if the position is proven won, else the depth it was searched to in vain
+     */
+    private void store(long hash, int depth) {
+        table.store(hash, depth, TranspositionTable.EXACT, 0, -1);
+    }
+
+    /**
+     * Checks the clock, and whether the searching thread was interrupted, every so many nodes.
+     * @return true if the search must give up
+     */
+    private boolean outOfTime() {
+        if((++nodes & (CHECK_INTERVAL - 1)) == 0
+                && (System.nanoTime() > deadline || Thread.currentThread().isInterrupted())) {
+            timeUp = true;
+        }
+        return timeUp;
+    }
+
+    /**
+     * Searches a position with the attacker to move.
+     * @param depth attacker moves left after the next one
+     * @param ply distance from the root, for the move lists
+     * @return true if the attacker wins by force
+     */
+    private boolean attack(int depth, int ply) {
+        if(outOfTime()) {
+            return false;
+        }
+        int[] moves = moveLists[ply];
+        if(gaps(true, moves, 1) > 0) {
+            if(ply == 0) {
+                winningMove = moves[0];
+            }
+            return true;
+        }
+        if(depth == 0) {
+            return false;
+        }
+        int known = known(hash);
+        if(known == WON || known >= depth) {
+            return known == WON && ply > 0;
+        }
+
+        int blocks = gaps(false, moves, 2);
+        int count;
+        if(blocks >= 2) {
+            return false;
+        } else if(blocks == 1) {
+            // the defender threatens to win; the block is the only move, and must be a threat itself
+            count = 1;
+        } else {
+            count = threats(moves);
+        }
+        for(int i=0;i<count;i++) {
+            int move = moves[i];
+            place(move, true);
+            boolean won = defend(move, depth, ply + 1);
+            remove(move, true);
+            if(won) {
+                if(ply == 0) {
+                    winningMove = move;
+                }
+                store(hash, WON);
+                return true;
+            }
+            if(timeUp) {
+                return false;
+            }
+        }
+        store(hash, depth);
+        return false;
+    }
+
+    /**
+     * Searches a position with the defender to move, right after a move of the attacker.
+     * @param last the move of the attacker
+     * @param depth attacker moves left
+     * @param ply distance from the root, for the move lists
+     * @return true if the attacker wins whatever the defender answers
+     */
+    private boolean defend(int last, int depth, int ply) {
+        if(outOfTime()) {
+            return false;
+        }
+        int[] replies = moveLists[ply];
+        if(gaps(false, replies, 1) > 0) {
+            // the defender wins first
+            return false;
+        }
+        int gaps = gaps(true, replies, 2);
+        if(gaps >= 2) {
+            return true;
+        }
+        int count;
+        if(gaps == 1) {
+            count = 1;
+        } else if(threes && hasThree(last)) {
+            count = threeReplies(replies);
+        } else {
+            // no threat; the defender gets a free move
+            return false;
+        }
+
+        long key = hash ^ zobrist.turn();
+        int known = known(key);
+        if(known == WON || known >= depth) {
+            return known == WON;
+        }
+        for(int i=0;i<count;i++) {
+            int reply = replies[i];
+            place(reply, false);
+            boolean won = attack(depth - 1, ply + 1);
+            remove(reply, false);
+            if(!won) {
+                if(!timeUp) {
+                    store(key, depth);
+                }
+                return false;
+            }
+        }
+        store(key, WON);
+        return true;
+    }
+
+    /**
+     * Lists the blank tiles that would complete a window for a player.
+     * @param attacker true for the gaps of the attacker, false for those of the defender
+     * @param out the list to fill
+     * @param max amount of gaps after which to stop looking
+     * @return the amount of distinct gaps listed, up to max
+     */
+    private int gaps(boolean attacker, int[] out, int max) {
+        int[] own = attacker ? attackerCount : defenderCount;
+        int[] other = attacker ? defenderCount : attackerCount;
+        int count = 0;
+        if((attacker ? attackerGapWindows : defenderGapWindows) == 0) {
+            return count;
+        }
+        countStamp++;
+        for(int w=0;w<windowCount && count<max;w++) {
+            if(own[w] == winLength - 1 && other[w] == 0) {
+                int gap = blankOf(w);
+                if(counted[gap] != countStamp) {
+                    counted[gap] = countStamp;
+                    out[count++] = gap;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Counts the distinct gaps of the attacker in the windows through a tile, up to two.
+     * Only called while the attacker had no gap before claiming that tile, so these are all of them.
+     * @param tile the tile the attacker claimed last
+     * @return the amount of gaps, up to 2
+     */
+    private int attackerGaps(int tile) {
+        int count = 0;
+        int first = -1;
+        for(int w : windowsThrough[tile]) {
+            if(attackerCount[w] == winLength - 1 && defenderCount[w] == 0) {
+                int gap = blankOf(w);
+                if(first < 0) {
+                    first = gap;
+                    count = 1;
+                } else if(gap != first) {
+                    return 2;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Gets the only blank tile of a window one tile short.
+     * @param w the window
+     * @return the tile index of the gap
+     */
+    private int blankOf(int w) {
+        int base = w * winLength;
+        for(int i=0;i<winLength;i++) {
+            if(!claimed[windowTiles[base + i]]) {
+                return windowTiles[base + i];
+            }
+        }
+        throw new IllegalStateException("Window " + w + " is full");
+    }
+
+    /**
+     * Lists the threats of the attacker: every four, then every three.
+     * @param out the list to fill
+     * @return the amount of moves listed
+     */
+    private int threats(int[] out) {
+        int count = 0;
+        listStamp++;
+        for(int w=0;w<windowCount;w++) {
+            if(attackerCount[w] == winLength - 2 && defenderCount[w] == 0) {
+                count = listBlanks(w, out, count);
+            }
+        }
+        if(!threes || winLength < 3) {
+            return count;
+        }
+        int fours = count;
+        for(int w=0;w<windowCount;w++) {
+            if(attackerCount[w] == winLength - 3 && defenderCount[w] == 0) {
+                count = listBlanks(w, out, count);
+            }
+        }
+        // keep only the moves that really are threes
+        int kept = fours;
+        for(int i=fours;i<count;i++) {
+            int move = out[i];
+            place(move, true);
+            if(hasThree(move)) {
+                out[kept++] = move;
+            }
+            remove(move, true);
+        }
+        return kept;
+    }
+
+    /**
+     * Adds the blank tiles of a window to a move list, skipping tiles listed before.
+     * @param w the window
+     * @param out the list
+     * @param count the amount of moves in the list
+     * @return the new amount of moves in the list
+     */
+    private int listBlanks(int w, int[] out, int count) {
+        int base = w * winLength;
+        for(int i=0;i<winLength;i++) {
+            int tile = windowTiles[base + i];
+            if(!claimed[tile] && listed[tile] != listStamp) {
+                listed[tile] = listStamp;
+                out[count++] = tile;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Checks whether a move of the attacker is a three: whether, through the windows of that
+     * move, the attacker could now make two gaps at once with a single move.
+     * @param move the move of the attacker, already claimed
+     * @return true if the attacker threatens to win in two moves
+     */
+    private boolean hasThree(int move) {
+        tryStamp++;
+        for(int w : windowsThrough[move]) {
+            if(attackerCount[w] != winLength - 2 || defenderCount[w] != 0) {
+                continue;
+            }
+            int base = w * winLength;
+            for(int i=0;i<winLength;i++) {
+                int tile = windowTiles[base + i];
+                if(claimed[tile] || tried[tile] == tryStamp) {
+                    continue;
+                }
+                tried[tile] = tryStamp;
+                place(tile, true);
+                int gaps = attackerGaps(tile);
+                remove(tile, true);
+                if(gaps >= 2) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Lists the answers of the defender to a three: every blank tile of the attacker's live
+     * windows two tiles short, and every four of the defender.
+     * @param out the list to fill
+     * @return the amount of moves listed
+     */
+    private int threeReplies(int[] out) {
+        int count = 0;
+        listStamp++;
+        for(int w=0;w<windowCount;w++) {
+            if((attackerCount[w] == winLength - 2 && defenderCount[w] == 0)
+                    || (defenderCount[w] == winLength - 2 && attackerCount[w] == 0)) {
+                count = listBlanks(w, out, count);
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,193 @@
+package online.madeofmagicandwires.tictac;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * TranspositionTable.java
+ * Fixed-size hash table of search results, keyed on the Zobrist hash of a position.
+ *
+ * Entries are packed into two parallel long arrays, so storing a result never allocates.
+ * Every hash maps to a single slot; when two positions collide the result searched to the
+ * greater depth is kept (depth-preferred replacement).
+ *
+ * @author Joost Bremmer
+ * @version 1.0
+ * @see Game#getHash()
+ */
+public class TranspositionTable {
+
+    /** Score is exact **/
+    static final int EXACT = 1;
+    /** Score is a lower bound; the search failed high **/
+    static final int LOWER_BOUND = 2;
+    /** Score is an upper bound; the search failed low **/
+    static final int UPPER_BOUND = 3;
+
+    /** Default amount of entries; 2^18 entries take up 4MB **/
+    public static final int DEFAULT_ENTRIES = 1 << 18;
+    /** Memory used by a single entry, in bytes **/
+    private static final int ENTRY_BYTES = 2 * Long.SIZE / Byte.SIZE;
+
+    /** hash of the position stored in each slot **/
+    private final long[] keys;
+    /** packed score, depth, bound and best move of each slot; 0 for an empty slot **/
+    private final long[] data;
+    /** mask turning a hash into a slot index **/
+    private final int mask;
+
+    /** amount of lookups **/
+    private long probes;
+    /** amount of lookups that found their position **/
+    private long hits;
+    /** amount of results stored **/
+    private long stores;
+
+    /**
+     * Constructor.
+     * @param entries the amount of entries; rounded down to a power of two
+     */
+    public TranspositionTable(int entries) {
+        int size = Integer.highestOneBit(Math.max(entries, 1));
+        this.keys = new long[size];
+        this.data = new long[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * Constructor using {@link #DEFAULT_ENTRIES} entries.
+     */
+    public TranspositionTable() {
+        this(DEFAULT_ENTRIES);
+    }
+
+    /**
+     * Looks up the stored result of a position.
+     * @param hash Zobrist hash of the position
+     * @return the packed entry, or 0 if the position is not stored.
+     *         Unpack with {@link #score(long)}, {@link #depth(long)}, {@link #bound(long)}
+     *         and {@link #bestMove(long)}.
+     */
+    long probe(long hash) {
+        probes++;
+        int slot = (int) hash & mask;
+        long entry = data[slot];
+        if(entry != 0 && keys[slot] == hash) {
+            hits++;
+            return entry;
+        }
+        return 0;
+    }
+
+    /**
+     * Stores the result of a search, unless its slot holds a result searched more deeply.
+     * @param hash Zobrist hash of the position
+     * @param depth remaining depth the position was searched to, in plies
+     * @param bound EXACT, LOWER_BOUND or UPPER_BOUND
+     * @param score the score found
+     * @param bestMove the tile index of the best move found, or -1 if none
+     */
+    void store(long hash, int depth, int bound, int score, int bestMove) {
+        int slot = (int) hash & mask;
+        long entry = data[slot];
+        if(entry != 0 && keys[slot] != hash && depth(entry) > depth) {
+            return;
+        }
+        keys[slot] = hash;
+        data[slot] = pack(depth, bound, score, bestMove);
+        stores++;
+    }
+
+    /**
+     * Packs a search result into a single, non-zero long.
+     * @return score in bits 0-31, depth in bits 32-39, bound in bits 40-41
+     *         and the best move + 1 in bits 42-51
+     */
+    static long pack(int depth, int bound, int score, int bestMove) {
+        return (score & 0xFFFFFFFFL)
+                | ((long) (depth & 0xFF) << 32)
+                | ((long) (bound & 0x3) << 40)
+                | ((long) ((bestMove + 1) & 0x3FF) << 42);
+    }
+
+    /** @return the score of a packed entry **/
+    static int score(long entry) {
+        return (int) entry;
+    }
+
+    /** @return the depth of a packed entry **/
+    static int depth(long entry) {
+        return (int) (entry >>> 32) & 0xFF;
+    }
+
+    /** @return the bound of a packed entry **/
+    static int bound(long entry) {
+        return (int) (entry >>> 40) & 0x3;
+    }
+
+    /** @return the best move of a packed entry, or -1 if none **/
+    static int bestMove(long entry) {
+        return ((int) (entry >>> 42) & 0x3FF) - 1;
+    }
+
+    /**
+     * Removes every entry and resets the statistics.
+     */
+    public void clear() {
+        Arrays.fill(keys, 0L);
+        Arrays.fill(data, 0L);
+        probes = 0;
+        hits = 0;
+        stores = 0;
+    }
+
+    /**
+     * Gets the amount of entries this table can hold.
+     * @return the amount of slots
+     */
+    public int getCapacity() {
+        return keys.length;
+    }
+
+    /**
+     * Gets the memory taken up by the entries of this table.
+     * @return the size of the entry arrays, in bytes
+     */
+    public long getMemoryBytes() {
+        return (long) keys.length * ENTRY_BYTES;
+    }
+
+    /**
+     * Gets the fraction of lookups that found their position.
+     * @return hits divided by lookups, or 0 if nothing was looked up yet
+     */
+    public double getHitRate() {
+        return (probes == 0) ? 0 : hits / (double) probes;
+    }
+
+    /** @return the amount of lookups since the last {@link #clear()} **/
+    public long getProbes() {
+        return probes;
+    }
+
+    /** @return the amount of lookups that found their position since the last {@link #clear()} **/
+    public long getHits() {
+        return hits;
+    }
+
+    /** @return the amount of results stored since the last {@link #clear()} **/
+    public long getStores() {
+        return stores;
+    }
+
+    /**
+     * Returns a Human readable String representing the state of the current object.
+     * @return Human readable String containing the table's metrics.
+     */
+    @Override
+    public String toString() {
+        return "TranspositionTable of " + getCapacity() + " entries (" + (getMemoryBytes() / 1024) + "KB), " +
+                "hit rate " + String.format(Locale.ROOT, "%.1f%%", getHitRate() * 100) +
+                " over " + probes + " probes, " + stores + " stores";
+    }
+}
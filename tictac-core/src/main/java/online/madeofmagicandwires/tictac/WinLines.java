@@ -0,0 +1,147 @@
+package online.madeofmagicandwires.tictac;
+
+/**
+ * WinLines.java
+ * Precomputed bitmasks for every line that wins a game of tic-tac-toe on a board of a given size.
+ *
+ * A board of n^n tiles has n rows, n columns and two diagonals, which are stored in that order.
+ * Every mask is laid out in the same words as a {@link BitBoard} of the same size, so that
+ * a win check comes down to a handful of AND/compare operations.
+ * Instances are immutable and shared between all boards of the same size.
+ *
+ * @author Joost Bremmer
+ * @version 1.0
+ * @see BitBoard
+ */
+final class WinLines {
+
+    /** Largest board size for which instances are cached **/
+    private static final int CACHE_SIZE = 16;
+    /** Shared instances, indexed by board size **/
+    private static final WinLines[] cache = new WinLines[CACHE_SIZE + 1];
+
+    /** the board size these lines were computed for **/
+    final int boardSize;
+    /** the amount of longs needed to hold a single mask **/
+    final int words;
+    /** the amount of winning lines on the board **/
+    final int lineCount;
+    /** all line masks, flattened; line i occupies words [i*words, (i+1)*words) **/
+    private final long[] masks;
+    /** for every tile, the indices of the lines running through it **/
+    private final int[][] linesThrough;
+
+    /**
+     * Constructor. Computes every winning line for a board of boardSize^boardSize tiles.
+     * Use {@link #forSize(int)} to get a shared instance instead.
+     * @param boardSize the "cubic" amount of tiles on the board
+     */
+    private WinLines(int boardSize) {
+        this.boardSize = boardSize;
+        this.words = BitBoard.wordsFor(boardSize * boardSize);
+        this.lineCount = (boardSize * 2) + 2;
+        this.masks = new long[lineCount * words];
+        this.linesThrough = new int[boardSize * boardSize][];
+
+        for(int i=0;i<boardSize;i++) {
+            for(int j=0;j<boardSize;j++) {
+                int tile = (i * boardSize) + j;
+                setBit(row(i), tile);
+                setBit(column(j), tile);
+                if(i == j) {
+                    setBit(diagonal(), tile);
+                }
+                if(i + j == boardSize - 1) {
+                    setBit(antiDiagonal(), tile);
+                }
+            }
+        }
+
+        for(int i=0;i<boardSize;i++) {
+            for(int j=0;j<boardSize;j++) {
+                boolean onDiagonal = (i == j);
+                boolean onAntiDiagonal = (i + j == boardSize - 1);
+                int[] lines = new int[2 + (onDiagonal ? 1 : 0) + (onAntiDiagonal ? 1 : 0)];
+                int n = 0;
+                lines[n++] = row(i);
+                lines[n++] = column(j);
+                if(onDiagonal) { lines[n++] = diagonal(); }
+                if(onAntiDiagonal) { lines[n] = antiDiagonal(); }
+                linesThrough[(i * boardSize) + j] = lines;
+            }
+        }
+    }
+
+    /**
+     * Gets the shared set of winning lines for a given board size.
+     * @param boardSize the "cubic" amount of tiles on the board
+     * @return the winning lines for a board of boardSize^boardSize tiles
+     */
+    static WinLines forSize(int boardSize) {
+        if(boardSize > CACHE_SIZE) {
+            return new WinLines(boardSize);
+        }
+        synchronized (cache) {
+            if(cache[boardSize] == null) {
+                cache[boardSize] = new WinLines(boardSize);
+            }
+            return cache[boardSize];
+        }
+    }
+
+    /** @return the index of the line representing row i **/
+    int row(int i) {
+        return i;
+    }
+
+    /** @return the index of the line representing column j **/
+    int column(int j) {
+        return boardSize + j;
+    }
+
+    /** @return the index of the line running from the top left to the bottom right **/
+    int diagonal() {
+        return boardSize * 2;
+    }
+
+    /** @return the index of the line running from the top right to the bottom left **/
+    int antiDiagonal() {
+        return (boardSize * 2) + 1;
+    }
+
+    /**
+     * Gets the indices of the lines running through a tile.
+     * @param tile the tile index, counting row by row from 0
+     * @return the row and column of the tile, followed by any diagonals it is on.
+     *         Must not be modified.
+     */
+    int[] linesThrough(int tile) {
+        return linesThrough[tile];
+    }
+
+    /**
+     * Checks whether a set of tiles fully covers a line.
+     * @param bits tiles owned by a single player, laid out like a {@link BitBoard}
+     * @param line index of the line to check
+     * @return true if every tile of the line is in bits
+     */
+    boolean isComplete(long[] bits, int line) {
+        int offset = line * words;
+        for(int w=0;w<words;w++) {
+            long mask = masks[offset + w];
+            if((bits[w] & mask) != mask) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Marks a tile as part of a line.
+     * @param line index of the line
+     * @param tile the tile index, counting row by row from 0
+     */
+    private void setBit(int line, int tile) {
+        masks[(line * words) + (tile >>> 6)] |= 1L << tile;
+    }
+}
@@ -0,0 +1,139 @@
+package online.madeofmagicandwires.tictac;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Zobrist.java
+ * Random keys used to hash a game position into a single long.
+ *
+ * The hash of a position is the XOR of the key of every claimed tile for its owner,
+ * plus the turn key while it is Player Two's turn. Because XOR is its own inverse, the hash
+ * can be updated in constant time on every move and on every move taken back.
+ * Keys are generated from a fixed seed, so hashes are the same across runs and devices.
+ *
+ * Keys are also provided for each of the 8 orientations of the board, so that the hashes of
+ * all symmetric positions can be kept up to date alongside the hash of the position itself.
+ * Boards that are not square can not be rotated; every orientation of those uses the keys of
+ * the board as is, so the hash of every orientation is the hash of the position itself.
+ *
+ * @author Joost Bremmer
+ * @version 1.0
+ * @see Symmetry
+ */
+final class Zobrist {
+
+    /** Seed all keys are generated from **/
+    private static final long SEED = 0x5EED7AC7AC7AC7L;
+    /** Largest board size for which instances are cached **/
+    private static final int CACHE_SIZE = 16;
+    /** Shared instances, indexed by board size **/
+    private static final Zobrist[] cache = new Zobrist[CACHE_SIZE + 1];
+    /** Shared instances for boards that are not square, by width and height **/
+    private static final Map<Integer, Zobrist> rectangles = new HashMap<>();
+
+    /** keys of tiles owned by Player One, for every orientation **/
+    private final long[][] playerOne;
+    /** keys of tiles owned by Player Two, for every orientation **/
+    private final long[][] playerTwo;
+    /** key included while it is Player Two's turn **/
+    private final long playerTwoTurn;
+
+    /**
+     * Constructor. Generates keys for every tile of a board of width*height tiles.
+     * Use {@link #forSize(int)} to get a shared instance for square boards instead.
+     * @param width amount of columns on the board
+     * @param height amount of rows on the board
+     */
+    private Zobrist(int width, int height) {
+        SplittableRandom random = new SplittableRandom(SEED + width + ((long) (height - width) << 32));
+        int tiles = width * height;
+        this.playerOne = new long[Symmetry.TRANSFORMS][tiles];
+        this.playerTwo = new long[Symmetry.TRANSFORMS][tiles];
+        for(int i=0;i<tiles;i++) {
+            playerOne[Symmetry.IDENTITY][i] = random.nextLong();
+            playerTwo[Symmetry.IDENTITY][i] = random.nextLong();
+        }
+        this.playerTwoTurn = random.nextLong();
+
+        // a tile's key in a transformed orientation is the key of the tile it is moved to
+        Symmetry symmetry = (width == height) ? Symmetry.forSize(width) : null;
+        for(int t=1;t<Symmetry.TRANSFORMS;t++) {
+            for(int i=0;i<tiles;i++) {
+                int moved = (symmetry != null) ? symmetry.transformTile(t, i) : i;
+                playerOne[t][i] = playerOne[Symmetry.IDENTITY][moved];
+                playerTwo[t][i] = playerTwo[Symmetry.IDENTITY][moved];
+            }
+        }
+    }
+
+    /**
+     * Gets the shared keys for a given board size.
+     * @param boardSize the "cubic" amount of tiles on the board
+     * @return the keys for a board of boardSize^boardSize tiles
+     */
+    static Zobrist forSize(int boardSize) {
+        if(boardSize > CACHE_SIZE) {
+            return new Zobrist(boardSize, boardSize);
+        }
+        synchronized (cache) {
+            if(cache[boardSize] == null) {
+                cache[boardSize] = new Zobrist(boardSize, boardSize);
+            }
+            return cache[boardSize];
+        }
+    }
+
+    /**
+     * Gets the keys for the board of a given set of rules.
+     * @param rules the rules of the game to hash
+     * @return shared keys, unless the board is bigger than {@link #CACHE_SIZE} either way
+     */
+    static Zobrist forRules(Rules rules) {
+        if(rules.width == rules.height) {
+            return forSize(rules.width);
+        }
+        if(rules.width > CACHE_SIZE || rules.height > CACHE_SIZE) {
+            return new Zobrist(rules.width, rules.height);
+        }
+        Integer key = (rules.width << 8) | rules.height;
+        synchronized (rectangles) {
+            Zobrist keys = rectangles.get(key);
+            if(keys == null) {
+                keys = new Zobrist(rules.width, rules.height);
+                rectangles.put(key, keys);
+            }
+            return keys;
+        }
+    }
+
+    /**
+     * Gets the key of a claimed tile.
+     * @param tile the tile index, counting row by row from 0
+     * @param playerOne true for a tile owned by Player One, false for Player Two
+     * @return the key to XOR into the hash
+     */
+    long tile(int tile, boolean playerOne) {
+        return playerOne ? this.playerOne[Symmetry.IDENTITY][tile] : this.playerTwo[Symmetry.IDENTITY][tile];
+    }
+
+    /**
+     * Gets the key of a claimed tile in a transformed orientation of the board.
+     * @param transform one of the {@link Symmetry} transform constants
+     * @param tile the tile index on the original board
+     * @param playerOne true for a tile owned by Player One, false for Player Two
+     * @return the key to XOR into the hash of the transformed position
+     */
+    long tile(int transform, int tile, boolean playerOne) {
+        return playerOne ? this.playerOne[transform][tile] : this.playerTwo[transform][tile];
+    }
+
+    /**
+     * Gets the key included in the hash while it is Player Two's turn.
+     * @return the key to XOR into the hash whenever the turn changes
+     */
+    long turn() {
+        return playerTwoTurn;
+    }
+}
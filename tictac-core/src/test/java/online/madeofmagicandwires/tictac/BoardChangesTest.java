@@ -0,0 +1,88 @@
+package online.madeofmagicandwires.tictac;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the change set a {@link Game} records for its views.
+ */
+public class BoardChangesTest {
+
+    @Test
+    public void changes_listOnlyTouchedTiles() {
+        Game game = new Game(5);
+        // X takes the top row, O the row below it
+        int[][] moves = {{0,0},{1,0},{0,1},{1,1},{0,2},{1,2},{0,3},{1,3},{0,4}};
+        GameState gs = GameState.IN_PROGRESS;
+        for(int[] move : moves) {
+            game.getChanges().clear();
+            game.choose(move[0], move[1]);
+            assertEquals(1, game.getChanges().size());
+            assertEquals((move[0] * 5) + move[1], game.getChanges().getTile(0));
+            assertEquals(BoardChanges.CLAIMED, game.getChanges().getKind(0));
+            gs = game.checkWinconditionReached(move[0], move[1]);
+            if(gs == GameState.IN_PROGRESS) {
+                game.nextMove();
+            }
+        }
+        assertEquals(GameState.PLAYER_ONE_WIN, gs);
+
+        // the winning move was claimed, then every tile of the top row was marked
+        Map<Integer, Integer> changed = changes(game);
+        assertEquals(5, changed.size());
+        for(int col=0;col<5;col++) {
+            assertTrue(game.isWinningTile(0, col));
+            assertFalse(game.isWinningTile(1, col));
+            assertEquals(Integer.valueOf(col == 4 ? BoardChanges.CLAIMED | BoardChanges.WINNING : BoardChanges.WINNING),
+                    changed.get(col));
+        }
+
+        // a reset clears the claimed tiles only
+        game.getChanges().clear();
+        game.resetBoard();
+        changed = changes(game);
+        assertEquals(moves.length, changed.size());
+        for(int[] move : moves) {
+            assertEquals(Integer.valueOf(BoardChanges.CLEARED), changed.get((move[0] * 5) + move[1]));
+        }
+        assertFalse(game.isWinningTile(0, 0));
+    }
+
+    @Test
+    public void winningTiles_followWholeRun_withGravity() {
+        Game game = new Game(Rules.connectFour(7, 6));
+        // X drops into columns 0, 1, 3 and 4 while O stacks up column 6, then X fills the gap
+        int[] columns = {0, 6, 1, 6, 3, 6, 4, 5, 2};
+        GameState gs = GameState.IN_PROGRESS;
+        for(int col : columns) {
+            int row = game.dropRow(col);
+            game.choose(row, col);
+            gs = game.checkWinconditionReached(row, col);
+            if(gs == GameState.IN_PROGRESS) {
+                game.nextMove();
+            }
+        }
+        assertEquals(GameState.PLAYER_ONE_WIN, gs);
+        for(int col=0;col<7;col++) {
+            assertEquals("column " + col, col <= 4, game.isWinningTile(5, col));
+        }
+    }
+
+    /**
+     * Collects the recorded changes by tile.
+     * @param game the game to get the changes of
+     * @return the kind of change of every changed tile
+     */
+    private static Map<Integer, Integer> changes(Game game) {
+        Map<Integer, Integer> changed = new HashMap<>();
+        BoardChanges changes = game.getChanges();
+        for(int i=0;i<changes.size();i++) {
+            assertNull("tile listed twice", changed.put(changes.getTile(i), changes.getKind(i)));
+        }
+        return changed;
+    }
+}
@@ -0,0 +1,59 @@
+package online.madeofmagicandwires.tictac;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the 3x3 {@link EndgameDatabase} against known outcomes, and that it survives
+ * being written to and mapped from a file.
+ */
+public class EndgameDatabaseTest {
+
+    @Test
+    public void generate_solvesEmptyBoardAsDraw() {
+        EndgameDatabase database = new EndgameDatabaseGenerator(3).generate();
+        assertEquals(GameState.DRAW, database.lookup(new Game(3)));
+
+        // Player One to move with two in a row on top and nothing to block
+        Game game = new Game(3);
+        game.play(0);
+        game.play(4);
+        game.play(1);
+        game.play(8);
+        assertEquals(GameState.PLAYER_ONE_WIN, database.lookup(game));
+        assertEquals(2, database.bestMove(game));
+    }
+
+    @Test
+    public void bestMove_neverLosesFromTheStart() throws Exception {
+        File file = File.createTempFile("endgame", ".ttdb");
+        try {
+            new EndgameDatabaseGenerator(3).generate().writeTo(file);
+            EndgameDatabase database = EndgameDatabase.open(file);
+
+            // the database plays Player Two against random moves
+            Random random = new Random(8);
+            for(int round=0;round<200;round++) {
+                Game game = new Game(3);
+                while(game.getGameOver() == GameState.IN_PROGRESS) {
+                    int tile;
+                    if(game.getPlayerOneTurn()) {
+                        do {
+                            tile = random.nextInt(9);
+                        } while(!game.isBlank(tile));
+                    } else {
+                        tile = database.bestMove(game);
+                    }
+                    game.play(tile);
+                }
+                assertNotEquals(GameState.PLAYER_ONE_WIN, game.getGameOver());
+            }
+        } finally {
+            assertTrue(file.delete());
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package online.madeofmagicandwires.tictac;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the packed encoding of a {@link Game} restores every part of its state.
+ */
+public class GameCodecTest {
+
+    @Test
+    public void roundTrip_restoresGame_atEveryMove() {
+        Random random = new Random(3);
+        Rules[] variants = {
+                Rules.ticTacToe(3), Rules.ticTacToe(4), Rules.ticTacToe(5), Rules.ticTacToe(9),
+                Rules.connectFour(7, 6), new Rules(5, 5, 3, false)
+        };
+        for(Rules rules : variants) {
+            for(int round=0;round<20;round++) {
+                Game game = new Game(rules);
+                game.setWins(round, round * 3);
+                while(true) {
+                    assertRestored(game, GameCodec.decode(GameCodec.encode(game)));
+                    if(game.getGameOver() != GameState.IN_PROGRESS) {
+                        break;
+                    }
+                    int tile;
+                    do {
+                        tile = random.nextInt(rules.tiles());
+                    } while(!game.isLegal(tile));
+                    int row = tile / rules.width;
+                    int col = tile % rules.width;
+                    game.choose(row, col);
+                    if(game.checkWinconditionReached(row, col) == GameState.IN_PROGRESS) {
+                        game.nextMove();
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void roundTrip_keepsMovesToUndoAndRedo() {
+        Random random = new Random(17);
+        Rules[] variants = {Rules.ticTacToe(3), Rules.ticTacToe(6), Rules.connectFour(7, 6)};
+        for(Rules rules : variants) {
+            for(int round=0;round<20;round++) {
+                Game game = new Game(rules);
+                while(game.getGameOver() == GameState.IN_PROGRESS) {
+                    int tile;
+                    do {
+                        tile = random.nextInt(rules.tiles());
+                    } while(!game.isLegal(tile));
+                    game.choose(tile / rules.width, tile % rules.width);
+                    if(game.checkWinconditionReached(tile / rules.width, tile % rules.width) == GameState.IN_PROGRESS) {
+                        game.nextMove();
+                    }
+                }
+                int undone = random.nextInt(game.getLog().size() + 1);
+                for(int i=0;i<undone;i++) {
+                    game.undo();
+                }
+
+                // the decoded game takes back and replays the same moves as the original
+                Game decoded = GameCodec.decode(GameCodec.encode(game));
+                assertRestored(game, decoded);
+                while(game.canUndo()) {
+                    assertTrue(decoded.undo());
+                    game.undo();
+                    assertRestored(game, decoded);
+                }
+                assertFalse(decoded.canUndo());
+                while(game.canRedo()) {
+                    assertTrue(decoded.redo());
+                    game.redo();
+                    assertRestored(game, decoded);
+                }
+                assertFalse(decoded.canRedo());
+            }
+        }
+    }
+
+    @Test
+    public void encoding_isMuchSmallerThanSerializable() throws IOException {
+        for(int boardSize=3;boardSize<=9;boardSize++) {
+            Game game = new Game(boardSize);
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try(ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                out.writeObject(game);
+            }
+            int packed = GameCodec.encode(game).length;
+            assertEquals(GameCodec.encodedSize(game), packed);
+            assertTrue(boardSize + "x" + boardSize + ": " + packed + " vs " + bytes.size() + " bytes",
+                    packed * 10 < bytes.size());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void decode_rejectsTruncatedEncoding() {
+        byte[] bytes = GameCodec.encode(new Game(4));
+        GameCodec.decode(Arrays.copyOf(bytes, bytes.length - 1));
+    }
+
+    /**
+     * Checks that a decoded game is in the same state as the original, and plays on the same.
+     * @param expected the encoded game
+     * @param actual the decoded game
+     */
+    private static void assertRestored(Game expected, Game actual) {
+        assertEquals(expected.rules, actual.rules);
+        assertEquals(expected.winDetection, actual.winDetection);
+        assertArrayEquals(expected.getBoard(), actual.getBoard());
+        assertEquals(expected.getPlayerOneTurn(), actual.getPlayerOneTurn());
+        assertEquals(expected.getMovesPlayed(), actual.getMovesPlayed());
+        assertEquals(expected.getGameOver(), actual.getGameOver());
+        assertArrayEquals(expected.getWins(), actual.getWins());
+        assertEquals(expected.getHash(), actual.getHash());
+        for(int t=0;t<Symmetry.TRANSFORMS;t++) {
+            assertEquals(expected.getHash(t), actual.getHash(t));
+        }
+        for(int row=0;row<expected.rules.height;row++) {
+            for(int col=0;col<expected.rules.width;col++) {
+                assertEquals(expected.isWinningTile(row, col), actual.isWinningTile(row, col));
+            }
+        }
+        assertEquals(expected.getCounters().tilesPlayed(), actual.getCounters().tilesPlayed());
+        assertEquals(expected.getLog().size(), actual.getLog().size());
+        assertEquals(expected.getLog().end(), actual.getLog().end());
+        for(int i=0;i<expected.getLog().end();i++) {
+            assertEquals(expected.getLog().get(i), actual.getLog().get(i));
+        }
+    }
+}
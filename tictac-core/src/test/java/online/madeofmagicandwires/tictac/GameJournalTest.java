@@ -0,0 +1,113 @@
+package online.madeofmagicandwires.tictac;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that journaled games are rebuilt exactly, across checkpoints and torn logs.
+ */
+public class GameJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void games_areRebuiltAfterCrash_acrossCheckpoints() throws IOException {
+        File directory = folder.newFolder("journal");
+        SplittableRandom random = new SplittableRandom(23);
+        RandomPlayer player = new RandomPlayer(random.split());
+        Map<Long, byte[]> expected = new HashMap<>();
+
+        // a small interval, so the games cross several checkpoints
+        GameJournal journal = new GameJournal(directory, 500);
+        for(long id=0;id<40;id++) {
+            journal.create(id, (id % 2 == 0) ? Rules.ticTacToe(3) : Rules.connectFour(7, 6));
+        }
+        for(int step=0;step<3000;step++) {
+            Game game = journal.get(random.nextInt(40));
+            if(game.getGameOver() != GameState.IN_PROGRESS) {
+                game.resetBoard();
+            } else if(random.nextInt(10) == 0 && game.canUndo()) {
+                game.undo();
+            } else if(random.nextInt(20) == 0 && game.canRedo()) {
+                game.redo();
+            } else {
+                int tile = player.chooseMove(game);
+                int row = tile / game.boardSize;
+                int col = tile % game.boardSize;
+                game.choose(row, col);
+                if(game.checkWinconditionReached(row, col) == GameState.IN_PROGRESS) {
+                    game.nextMove();
+                }
+            }
+        }
+        journal.get(3).setWins(7, 9);
+        journal.remove(5);
+        for(Map.Entry<Long, Game> entry : journal.getGames().entrySet()) {
+            expected.put(entry.getKey(), GameCodec.encode(entry.getValue()));
+        }
+        // crash: written out, but never closed
+        journal.flush();
+
+        GameJournal recovered = new GameJournal(directory, 500);
+        assertTrue(recovered.getReplayedEvents() < 500);
+        assertEquals(expected.size(), recovered.getGames().size());
+        assertNull(recovered.get(5));
+        for(Map.Entry<Long, byte[]> entry : expected.entrySet()) {
+            Game game = recovered.get(entry.getKey());
+            assertArrayEquals(entry.getValue(), GameCodec.encode(game));
+            assertEquals(journal.get(entry.getKey()).getLog().size(), game.getLog().size());
+            assertEquals(journal.get(entry.getKey()).getHash(), game.getHash());
+        }
+        assertEquals(7, recovered.get(3).getWins()[0]);
+
+        // the moves of the round can still be undone, and undoing is journaled as well
+        Game game = recovered.get(0);
+        int played = game.getLog().size();
+        if(game.canUndo()) {
+            game.undo();
+            played--;
+        }
+        recovered.close();
+        journal.close();
+        GameJournal reopened = new GameJournal(directory, 500);
+        assertEquals(played, reopened.get(0).getLog().size());
+        reopened.close();
+    }
+
+    @Test
+    public void tornEvent_isDroppedOnRecovery() throws IOException {
+        File directory = folder.newFolder("journal");
+        GameJournal journal = new GameJournal(directory);
+        Game game = journal.create(1, Rules.ticTacToe(3));
+        game.choose(1, 1);
+        game.checkWinconditionReached(1, 1);
+        game.nextMove();
+        journal.close();
+
+        File log = new File(directory, "journal-0.log");
+        long length = log.length();
+        try(RandomAccessFile file = new RandomAccessFile(log, "rw")) {
+            // half an event
+            file.seek(length);
+            file.write(new byte[] {1, 2, 3, 4, 0, 2, GameJournal.CHOOSE});
+        }
+
+        GameJournal recovered = new GameJournal(directory);
+        assertEquals(4, recovered.getReplayedEvents());
+        assertEquals(TileState.PLAYER_ONE, recovered.get(1).getTile(1, 1));
+        assertFalse(recovered.get(1).getPlayerOneTurn());
+        assertEquals(length, log.length());
+        recovered.close();
+    }
+}
@@ -0,0 +1,48 @@
+package online.madeofmagicandwires.tictac;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that simulated games are all played, counted and streamed.
+ */
+public class GameSimulatorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void binaryOutput_opensAsMatchHistory() throws IOException, InterruptedException {
+        File path = folder.newFile("simulated.log");
+        GameSimulator simulator = new GameSimulator(
+                GameSimulator.Strategy.GREEDY, GameSimulator.Strategy.RANDOM, 3, 5, 4, 100);
+        GameSimulator.Summary summary;
+        try(OutputStream out = new FileOutputStream(path)) {
+            summary = simulator.run(Rules.connectFour(5, 4), 1000, GameSimulator.Format.BINARY, out);
+        }
+        assertEquals(1000, summary.games());
+        assertEquals(0, summary.results[GameState.IN_PROGRESS.ordinal()]);
+
+        try(MatchHistoryStore store = new MatchHistoryStore(path)) {
+            assertEquals(1000, store.size());
+            assertArrayEquals(summary.results, store.countResults(Rules.connectFour(5, 4)));
+        }
+    }
+
+    @Test
+    public void perfectPlayer_neverLosesToGreedy() throws IOException, InterruptedException {
+        GameSimulator simulator = new GameSimulator(
+                GameSimulator.Strategy.MINIMAX, GameSimulator.Strategy.GREEDY, 2, 9, 9, 100);
+        GameSimulator.Summary summary = simulator.run(Rules.ticTacToe(3), 200, null, null);
+        assertEquals(200, summary.games());
+        assertEquals(0, summary.results[GameState.PLAYER_TWO_WIN.ordinal()]);
+    }
+}
@@ -0,0 +1,118 @@
+package online.madeofmagicandwires.tictac;
+
+import org.junit.Test;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that snapshots keep the position they were taken of, and that readers on another
+ * thread only ever see consistent positions.
+ */
+public class GameSnapshotTest {
+
+    @Test
+    public void snapshot_keepsItsPosition_andRestoresIt() {
+        Game game = new Game(Rules.connectFour(7, 6));
+        game.choose(5, 3);
+        game.checkWinconditionReached(5, 3);
+        game.nextMove();
+        GameSnapshot first = game.getSnapshot();
+
+        game.choose(5, 2);
+        game.checkWinconditionReached(5, 2);
+        game.nextMove();
+        GameSnapshot second = game.getSnapshot();
+
+        assertTrue(second.getVersion() > first.getVersion());
+        assertEquals(TileState.BLANK, first.getTile(5, 2));
+        assertEquals(TileState.PLAYER_TWO, second.getTile(5, 2));
+        assertEquals(1, first.getMovesPlayed());
+        assertFalse(first.isPlayerOneTurn());
+
+        Game restored = second.toGame();
+        assertEquals(game.getHash(), restored.getHash());
+        assertEquals(TileState.PLAYER_ONE, restored.getTile(5, 3));
+        assertEquals(second.getMovesPlayed(), restored.getMovesPlayed());
+        assertEquals(second.isPlayerOneTurn(), restored.getPlayerOneTurn());
+
+        // searching ahead does not publish
+        game.play(game.dropRow(0) * 7);
+        game.unplay();
+        assertSame(second, game.getSnapshot());
+    }
+
+    @Test
+    public void onlyCompletedTurns_arePublished() {
+        Game game = new Game(3, Game.WinDetection.SCANNING);
+        GameSnapshot start = game.getSnapshot();
+
+        // a claimed tile is not a position until the turn has passed
+        game.choose(1, 1);
+        assertSame(start, game.getSnapshot());
+        game.checkWinconditionReached(1, 1);
+        assertSame(start, game.getSnapshot());
+        game.nextMove();
+        GameSnapshot turn = game.getSnapshot();
+        assertEquals(start.getVersion() + 1, turn.getVersion());
+        assertEquals(TileState.PLAYER_ONE, turn.getTile(1, 1));
+
+        // a copy starts out as of the same turn, without publishing
+        assertSame(turn, new Game(game).getSnapshot());
+
+        // a restored game keeps its win detection, and publishes the position as a whole
+        Game restored = turn.toGame();
+        assertEquals(Game.WinDetection.SCANNING, restored.winDetection);
+        assertEquals(1, restored.getSnapshot().getVersion());
+        assertEquals(1, restored.getSnapshot().countTiles(true));
+        assertFalse(restored.getSnapshot().isPlayerOneTurn());
+    }
+
+    @Test
+    public void concurrentReader_onlySeesConsistentPositions() throws InterruptedException {
+        final Game game = new Game(4);
+        final AtomicBoolean done = new AtomicBoolean();
+        final AtomicReference<String> failure = new AtomicReference<>();
+        Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                long lastVersion = -1;
+                while(!done.get() && failure.get() == null) {
+                    GameSnapshot snapshot = game.getSnapshot();
+                    int one = snapshot.countTiles(true);
+                    int two = snapshot.countTiles(false);
+                    int moves = snapshot.getMovesPlayed();
+                    if(snapshot.getVersion() < lastVersion) {
+                        failure.set("went back in time: " + snapshot);
+                    } else if(one - two != 0 && one - two != 1) {
+                        failure.set(one + " against " + two + " tiles in " + snapshot);
+                    } else if(one + two != moves + ((snapshot.getGameOver() == GameState.IN_PROGRESS) ? 0 : 1)) {
+                        // a claimed tile is only published along with the turn passing or the round ending
+                        failure.set((one + two) + " tiles after " + moves + " moves in " + snapshot);
+                    }
+                    lastVersion = snapshot.getVersion();
+                }
+            }
+        });
+        reader.start();
+
+        SplittableRandom random = new SplittableRandom(3);
+        RandomPlayer player = new RandomPlayer(random);
+        for(int round=0;round<2000 && failure.get() == null;round++) {
+            while(game.getGameOver() == GameState.IN_PROGRESS) {
+                int tile = player.chooseMove(game);
+                game.choose(tile / 4, tile % 4);
+                if(game.checkWinconditionReached(tile / 4, tile % 4) == GameState.IN_PROGRESS) {
+                    game.nextMove();
+                }
+            }
+            game.resetBoard();
+        }
+        done.set(true);
+        reader.join();
+        assertNull(failure.get());
+    }
+}
@@ -0,0 +1,142 @@
+package online.madeofmagicandwires.tictac;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that stored games survive reopening the log, and that torn records are dropped.
+ */
+public class MatchHistoryStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void storedGames_areScannedBackAfterReopening() throws IOException {
+        File path = folder.newFile("matches.log");
+        Random random = new Random(17);
+        List<Game> games = new ArrayList<>();
+        // more than a segment, so the file has to grow
+        int amount = (MatchHistoryStore.SEGMENT_BYTES / MatchHistoryStore.RECORD_BYTES) + 10;
+        try(MatchHistoryStore store = new MatchHistoryStore(path)) {
+            for(int i=0;i<amount;i++) {
+                Game game = randomGame(random, (i % 2 == 0) ? Rules.ticTacToe(3) : Rules.connectFour(7, 6));
+                games.add(game);
+                store.append(game, 1000L + i);
+            }
+        }
+
+        try(MatchHistoryStore store = new MatchHistoryStore(path)) {
+            assertEquals(amount, store.size());
+            final List<Game> expected = games;
+            final int[] index = {0};
+            store.scan(new MatchHistoryStore.Visitor() {
+                @Override
+                public void visit(MatchHistoryStore.Record record) {
+                    int i = index[0]++;
+                    Game game = expected.get(i);
+                    assertEquals(1000L + i, record.endedMillis());
+                    assertEquals(game.rules.width, record.width());
+                    assertEquals(game.rules.height, record.height());
+                    assertEquals(game.rules.winLength, record.winLength());
+                    assertEquals(game.rules.gravity, record.gravity());
+                    assertEquals(game.getGameOver(), record.result());
+                    assertEquals(game.getLog().size(), record.moveCount());
+                    for(int m=0;m<record.moveCount();m++) {
+                        assertEquals(MoveLog.tile(game.getLog().get(m)), record.move(m));
+                    }
+                }
+            });
+            assertEquals(amount, index[0]);
+
+            long[] results = store.countResults(Rules.ticTacToe(3));
+            long ticTacToeGames = 0;
+            for(long result : results) {
+                ticTacToeGames += result;
+            }
+            assertEquals((amount + 1) / 2, ticTacToeGames);
+        }
+    }
+
+    @Test
+    public void tornRecord_isDropped_andOverwritten() throws IOException {
+        File path = folder.newFile("matches.log");
+        Random random = new Random(7);
+        try(MatchHistoryStore store = new MatchHistoryStore(path)) {
+            for(int i=0;i<3;i++) {
+                store.append(randomGame(random, Rules.ticTacToe(4)), i);
+            }
+        }
+
+        // tear the last record, as if the process died while writing it
+        try(RandomAccessFile file = new RandomAccessFile(path, "rw")) {
+            file.seek((2 * MatchHistoryStore.RECORD_BYTES) + 30);
+            file.write(0x5A);
+        }
+
+        try(MatchHistoryStore store = new MatchHistoryStore(path)) {
+            assertEquals(2, store.size());
+            store.append(randomGame(random, Rules.ticTacToe(4)), 42);
+        }
+        try(MatchHistoryStore store = new MatchHistoryStore(path)) {
+            assertEquals(3, store.size());
+            final long[] last = new long[1];
+            store.scan(new MatchHistoryStore.Visitor() {
+                @Override
+                public void visit(MatchHistoryStore.Record record) {
+                    last[0] = record.endedMillis();
+                }
+            });
+            assertEquals(42, last[0]);
+        }
+    }
+
+    @Test
+    public void gameWithUnknownMoves_isRefused() {
+        Game game = randomGame(new Random(3), Rules.ticTacToe(3));
+        assertTrue(MatchHistoryStore.canStore(game));
+        assertTrue(MatchHistoryStore.canStore(GameCodec.decode(GameCodec.encode(game))));
+
+        // a board loaded as a whole has tiles no logged move claimed
+        Game loaded = new Game(3);
+        loaded.setBoard(game.getBoard());
+        assertFalse(MatchHistoryStore.canStore(loaded));
+        try {
+            MatchHistoryStore.encode(loaded, 0);
+            fail("stored a game without its moves");
+        } catch (IllegalArgumentException expected) {
+            // the record would not replay to the board
+        }
+    }
+
+    /**
+     * Plays random moves until the game ends.
+     * @param random source of the moves
+     * @param rules the rules to play by
+     * @return the finished game
+     */
+    private static Game randomGame(Random random, Rules rules) {
+        Game game = new Game(rules);
+        while(game.getGameOver() == GameState.IN_PROGRESS) {
+            int tile;
+            do {
+                tile = random.nextInt(rules.tiles());
+            } while(!game.isLegal(tile));
+            game.choose(tile / rules.width, tile % rules.width);
+            if(game.checkWinconditionReached(tile / rules.width, tile % rules.width) == GameState.IN_PROGRESS) {
+                game.nextMove();
+            }
+        }
+        return game;
+    }
+}
@@ -0,0 +1,83 @@
+package online.madeofmagicandwires.tictac;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the {@link MctsPlayer} finds obvious moves, never loses a small board to random
+ * moves and reuses its trees between turns.
+ */
+public class MctsPlayerTest {
+
+    private ForkJoinPool pool;
+
+    @Before
+    public void setUp() {
+        pool = new ForkJoinPool(2);
+    }
+
+    @After
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Test
+    public void search_takesWinningMove() {
+        // Player One owns four of the top row of a 5x5 board
+        Game game = new Game(5);
+        int[] moves = {0, 20, 1, 21, 2, 23, 3, 24};
+        for(int tile : moves) {
+            game.play(tile);
+        }
+        MctsPlayer player = new MctsPlayer(pool, 2, 0, 1 << 14);
+        assertEquals(4, player.search(game, Long.MAX_VALUE, 20000));
+    }
+
+    @Test
+    public void search_neverLosesToRandomMoves() {
+        Random random = new Random(10);
+        MctsPlayer player = new MctsPlayer(pool, 2, 0, 1 << 14);
+        for(int round=0;round<20;round++) {
+            Game game = new Game(3);
+            while(game.getGameOver() == GameState.IN_PROGRESS) {
+                int tile;
+                if(game.getPlayerOneTurn()) {
+                    do {
+                        tile = random.nextInt(9);
+                    } while(!game.isBlank(tile));
+                } else {
+                    tile = player.search(game, Long.MAX_VALUE, 20000);
+                }
+                game.play(tile);
+            }
+            assertNotEquals(GameState.PLAYER_ONE_WIN, game.getGameOver());
+        }
+    }
+
+    @Test
+    public void moveTo_reusesSubtreeOfMovesPlayed() {
+        MctsTree tree = new MctsTree(Rules.ticTacToe(5), 1 << 16, 1);
+        Game game = new Game(5);
+        assertFalse(tree.moveTo(game));
+        for(int i=0;i<5000;i++) {
+            tree.iterate();
+        }
+        int before = tree.size();
+
+        game.play(12);
+        game.play(6);
+        assertTrue(tree.moveTo(game));
+        assertTrue(tree.size() > 1);
+        assertTrue(tree.size() < before);
+
+        // a new round no longer matches the tree
+        assertFalse(tree.moveTo(new Game(5)));
+        assertEquals(1, tree.size());
+    }
+}
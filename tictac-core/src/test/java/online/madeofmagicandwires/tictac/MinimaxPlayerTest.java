@@ -0,0 +1,108 @@
+package online.madeofmagicandwires.tictac;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the {@link MinimaxPlayer} plays 3x3 perfectly, takes and blocks immediate wins
+ * and keeps to its time budget on big boards.
+ */
+public class MinimaxPlayerTest {
+
+    @Test
+    public void chooseMove_neverLosesOnThreeByThree() {
+        MinimaxPlayer player = new MinimaxPlayer(10000);
+        // try every reply of the opponent, with the player moving both first and second
+        assertNeverLoses(player, new Game(3), true);
+        assertNeverLoses(player, new Game(3), false);
+    }
+
+    @Test
+    public void chooseMove_drawsAgainstItself() {
+        Game game = new Game(3);
+        MinimaxPlayer playerOne = new MinimaxPlayer(10000);
+        MinimaxPlayer playerTwo = new MinimaxPlayer(10000);
+        while(game.getGameOver() == GameState.IN_PROGRESS) {
+            MinimaxPlayer player = game.getPlayerOneTurn() ? playerOne : playerTwo;
+            game.play(player.chooseMove(game));
+        }
+        assertEquals(GameState.DRAW, game.getGameOver());
+    }
+
+    @Test
+    public void chooseMove_takesWinningMove() {
+        // Player One owns the two left tiles of the top row and could also block the middle row
+        Game game = new Game(3);
+        int[] moves = {0, 3, 1, 4};
+        for(int tile : moves) {
+            game.play(tile);
+        }
+        assertEquals(2, new MinimaxPlayer(10000).chooseMove(game));
+    }
+
+    @Test
+    public void chooseMove_blocksWinningMove() {
+        // Player One owns four of the top row of a 5x5 board; Player Two has no win of its own
+        Game game = new Game(5);
+        int[] moves = {0, 6, 1, 12, 2, 18, 3};
+        for(int tile : moves) {
+            game.play(tile);
+        }
+        assertEquals(4, new MinimaxPlayer(10000).chooseMove(game));
+
+        // Player Two threatens the middle row of a 3x3 board
+        game = new Game(3);
+        moves = new int[] {0, 4, 8, 3};
+        for(int tile : moves) {
+            game.play(tile);
+        }
+        assertEquals(5, new MinimaxPlayer(10000).chooseMove(game));
+    }
+
+    @Test
+    public void chooseMove_keepsToTimeBudget() {
+        Game game = new Game(9);
+        MinimaxPlayer player = new MinimaxPlayer(50);
+        // the first move sets up the scratch buffers; only time the searches themselves
+        game.play(player.chooseMove(game));
+
+        for(int i=0;i<4;i++) {
+            long start = System.nanoTime();
+            int tile = player.chooseMove(game);
+            long elapsedMillis = (System.nanoTime() - start) / 1000000L;
+
+            assertTrue(game.isBlank(tile));
+            assertTrue("took " + elapsedMillis + "ms", elapsedMillis < 50 + 200);
+            game.play(tile);
+        }
+    }
+
+    /**
+     * Plays out every game in which the player answers each possible move of its opponent,
+     * and fails if the opponent wins any of them.
+     * @param player the player under test
+     * @param game the position to play out; left unchanged
+     * @param playerOne true if the player plays as Player One
+     */
+    private static void assertNeverLoses(MinimaxPlayer player, Game game, boolean playerOne) {
+        if(game.getGameOver() != GameState.IN_PROGRESS) {
+            GameState lost = playerOne ? GameState.PLAYER_TWO_WIN : GameState.PLAYER_ONE_WIN;
+            assertNotEquals(game.toString(), lost, game.getGameOver());
+            return;
+        }
+        if(game.getPlayerOneTurn() == playerOne) {
+            game.play(player.chooseMove(game));
+            assertNeverLoses(player, game, playerOne);
+            game.unplay();
+        } else {
+            for(int tile=0;tile<9;tile++) {
+                if(game.isBlank(tile)) {
+                    game.play(tile);
+                    assertNeverLoses(player, game, playerOne);
+                    game.unplay();
+                }
+            }
+        }
+    }
+}
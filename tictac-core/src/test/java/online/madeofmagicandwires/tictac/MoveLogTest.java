@@ -0,0 +1,127 @@
+package online.madeofmagicandwires.tictac;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.SplittableRandom;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks undoing and redoing the moves of a {@link Game}.
+ */
+public class MoveLogTest {
+
+    @Test
+    public void undoAll_thenRedoAll_restoresEveryPosition() {
+        Random random = new Random(16);
+        Rules[] variants = {Rules.ticTacToe(3), Rules.ticTacToe(6), Rules.connectFour(7, 6)};
+        for(Rules rules : variants) {
+            for(int round=0;round<30;round++) {
+                Game game = new Game(rules);
+                // keep a snapshot of the game before every move, and of the end
+                Game[] positions = new Game[rules.tiles() + 1];
+                int moves = 0;
+                positions[0] = GameCodec.decode(GameCodec.encode(game));
+                while(game.getGameOver() == GameState.IN_PROGRESS) {
+                    int tile;
+                    do {
+                        tile = random.nextInt(rules.tiles());
+                    } while(!game.isLegal(tile));
+                    game.choose(tile / rules.width, tile % rules.width);
+                    if(game.checkWinconditionReached(tile / rules.width, tile % rules.width) == GameState.IN_PROGRESS) {
+                        game.nextMove();
+                    }
+                    positions[++moves] = GameCodec.decode(GameCodec.encode(game));
+                }
+
+                for(int i=moves-1;i>=0;i--) {
+                    assertTrue(game.undo());
+                    assertSamePosition(rules + " undo to " + i, positions[i], game);
+                }
+                assertFalse(game.canUndo());
+                for(int i=1;i<=moves;i++) {
+                    assertTrue(game.redo());
+                    assertSamePosition(rules + " redo to " + i, positions[i], game);
+                }
+                assertFalse(game.canRedo());
+            }
+        }
+    }
+
+    @Test
+    public void playingAnotherMove_forgetsUndoneMoves() {
+        Game game = new Game(3);
+        int[] tiles = {4, 0, 8};
+        for(int tile : tiles) {
+            game.choose(tile / 3, tile % 3);
+            game.checkWinconditionReached(tile / 3, tile % 3);
+            game.nextMove();
+        }
+        game.undo();
+        game.undo();
+        assertTrue(game.canRedo());
+
+        // replaying the move that was undone keeps the one after it
+        game.choose(0, 0);
+        game.checkWinconditionReached(0, 0);
+        game.nextMove();
+        assertTrue(game.canRedo());
+        assertTrue(game.redo());
+        assertEquals(TileState.PLAYER_ONE, game.getTile(2, 2));
+
+        // a different move does not
+        game.undo();
+        game.choose(0, 2);
+        assertFalse(game.canRedo());
+        assertFalse(game.redo());
+    }
+
+    @Test
+    public void searchingAhead_keepsUndoneMoves() {
+        Game game = new Game(4);
+        int[] tiles = {5, 0, 6, 1, 10};
+        for(int tile : tiles) {
+            game.choose(tile / 4, tile % 4);
+            game.checkWinconditionReached(tile / 4, tile % 4);
+            game.nextMove();
+        }
+        game.undo();
+        game.undo();
+        Game before = GameCodec.decode(GameCodec.encode(game));
+        GameSnapshot snapshot = game.getSnapshot();
+
+        // the greedy player tries moves for both players on the live game and takes them back
+        int move = new GreedyPlayer(new SplittableRandom(1)).chooseMove(game);
+        assertTrue(game.isLegal(move));
+        assertSamePosition("after searching", before, game);
+        assertEquals(game.getHash(), before.getHash());
+        assertSame(snapshot, game.getSnapshot());
+        assertTrue(game.redo());
+        assertTrue(game.redo());
+        assertEquals(TileState.PLAYER_ONE, game.getTile(2, 2));
+    }
+
+    /**
+     * Checks that a game is in the same state as a snapshot, including what it derives from its tiles.
+     * @param message identifies the position
+     * @param expected the snapshot
+     * @param actual the game
+     */
+    private static void assertSamePosition(String message, Game expected, Game actual) {
+        assertArrayEquals(message, expected.getBoard(), actual.getBoard());
+        assertEquals(message, expected.getPlayerOneTurn(), actual.getPlayerOneTurn());
+        assertEquals(message, expected.getMovesPlayed(), actual.getMovesPlayed());
+        assertEquals(message, expected.getGameOver(), actual.getGameOver());
+        assertArrayEquals(message, expected.getWins(), actual.getWins());
+        for(int t=0;t<Symmetry.TRANSFORMS;t++) {
+            assertEquals(message, expected.getHash(t), actual.getHash(t));
+        }
+        assertEquals(message, expected.getCounters().tilesPlayed(), actual.getCounters().tilesPlayed());
+        for(int row=0;row<expected.rules.height;row++) {
+            for(int col=0;col<expected.rules.width;col++) {
+                assertEquals(message, expected.isWinningTile(row, col), actual.isWinningTile(row, col));
+            }
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package online.madeofmagicandwires.tictac;
+
+import org.junit.Test;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that scheduled searches hand back their moves, unless cancelled, and that their
+ * latencies are counted.
+ */
+public class MoveSchedulerTest {
+
+    /** runs callbacks on the searching thread **/
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    @Test
+    public void scheduledSearch_handsBackLegalMove() throws InterruptedException {
+        MoveScheduler scheduler = new MoveScheduler(DIRECT);
+        final Game game = new Game(3);
+        game.choose(1, 1);
+        game.checkWinconditionReached(1, 1);
+        game.nextMove();
+        final AtomicInteger chosen = new AtomicInteger(-2);
+        final CountDownLatch done = new CountDownLatch(1);
+        scheduler.schedule(game, new MinimaxPlayer(), new MoveScheduler.OnMoveChosenListener() {
+            @Override
+            public void onMoveChosen(int tile) {
+                chosen.set(tile);
+                done.countDown();
+            }
+        });
+        // the game may change while the search runs on its copy
+        game.resetBoard();
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertTrue(chosen.get() >= 0 && chosen.get() != 4);
+        assertEquals(1, scheduler.getLatencies().count());
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void cancelledSearches_neverHandBackMoves() throws InterruptedException {
+        MoveScheduler scheduler = new MoveScheduler(DIRECT);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        Player blocking = new Player() {
+            @Override
+            public int chooseMove(Game game) {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return 0;
+            }
+        };
+        final AtomicInteger handedBack = new AtomicInteger();
+        MoveScheduler.OnMoveChosenListener listener = new MoveScheduler.OnMoveChosenListener() {
+            @Override
+            public void onMoveChosen(int tile) {
+                handedBack.incrementAndGet();
+            }
+        };
+
+        scheduler.schedule(new Game(3), blocking, listener);
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        // one running, one waiting
+        scheduler.schedule(new Game(3), blocking, listener);
+        scheduler.cancelAll();
+        release.countDown();
+
+        // a search scheduled after the cancellation still gets through
+        final CountDownLatch done = new CountDownLatch(1);
+        scheduler.schedule(new Game(3), new RandomPlayer(new SplittableRandom(1)),
+                new MoveScheduler.OnMoveChosenListener() {
+                    @Override
+                    public void onMoveChosen(int tile) {
+                        done.countDown();
+                    }
+                });
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(0, handedBack.get());
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void fullQueue_refusesNewSearch_andCancelInterruptsRunningOne() throws InterruptedException {
+        MoveScheduler scheduler = new MoveScheduler(1, 1, DIRECT);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        Player blocking = new Player() {
+            @Override
+            public int chooseMove(Game game) {
+                started.countDown();
+                try {
+                    new CountDownLatch(1).await();
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                }
+                return 0;
+            }
+        };
+        final AtomicInteger handedBack = new AtomicInteger();
+        MoveScheduler.OnMoveChosenListener listener = new MoveScheduler.OnMoveChosenListener() {
+            @Override
+            public void onMoveChosen(int tile) {
+                handedBack.incrementAndGet();
+            }
+        };
+
+        assertTrue(scheduler.schedule(new Game(3), blocking, listener));
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        // the waiting search is kept; the one after it is refused
+        assertTrue(scheduler.schedule(new Game(3), blocking, listener));
+        assertFalse(scheduler.schedule(new Game(3), blocking, listener));
+
+        // cancelling drops the waiting search and interrupts the running one, freeing the thread
+        scheduler.cancelAll();
+        assertTrue(interrupted.await(10, TimeUnit.SECONDS));
+        final CountDownLatch done = new CountDownLatch(1);
+        assertTrue(scheduler.schedule(new Game(3), new RandomPlayer(new SplittableRandom(1)),
+                new MoveScheduler.OnMoveChosenListener() {
+                    @Override
+                    public void onMoveChosen(int tile) {
+                        done.countDown();
+                    }
+                }));
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(0, handedBack.get());
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void failingPlayer_stillHandsBackAMove() throws InterruptedException {
+        MoveScheduler scheduler = new MoveScheduler(DIRECT);
+        final AtomicInteger chosen = new AtomicInteger(-2);
+        final CountDownLatch done = new CountDownLatch(1);
+        MoveScheduler.OnMoveChosenListener listener = new MoveScheduler.OnMoveChosenListener() {
+            @Override
+            public void onMoveChosen(int tile) {
+                chosen.set(tile);
+                done.countDown();
+            }
+        };
+        // the solver only plays classic rules
+        assertTrue(scheduler.schedule(new Game(Rules.connectFour(7, 6)), new ParallelSolver(100), listener));
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(-1, chosen.get());
+
+        // and the thread is free for the next search
+        final CountDownLatch next = new CountDownLatch(1);
+        assertTrue(scheduler.schedule(new Game(3), new RandomPlayer(new SplittableRandom(1)),
+                new MoveScheduler.OnMoveChosenListener() {
+                    @Override
+                    public void onMoveChosen(int tile) {
+                        next.countDown();
+                    }
+                }));
+        assertTrue(next.await(10, TimeUnit.SECONDS));
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void searchingPlayers_giveUpOnceInterrupted() {
+        Player[] players = {new MinimaxPlayer(60000), new ParallelSolver(60000), new MctsPlayer(60000)};
+        for(Player player : players) {
+            // as interrupted by cancelAll, long before the time budget runs out
+            Thread.currentThread().interrupt();
+            long start = System.nanoTime();
+            int move;
+            try {
+                move = player.chooseMove(new Game(6));
+            } finally {
+                Thread.interrupted();
+            }
+            assertTrue(player + " kept searching", System.nanoTime() - start < TimeUnit.SECONDS.toNanos(10));
+            assertTrue(move >= 0);
+        }
+    }
+
+    @Test
+    public void percentiles_areWithinABucketOfTheSamples() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for(long ms=1;ms<=100;ms++) {
+            histogram.record(ms * 1000000L);
+        }
+        assertEquals(100, histogram.count());
+        long p50 = histogram.percentile(50);
+        long p99 = histogram.percentile(99);
+        assertTrue(p50 >= 50000000L && p50 <= 50000000L * 9 / 8);
+        assertTrue(p99 >= 99000000L && p99 <= 99000000L * 9 / 8);
+        assertEquals(0, new LatencyHistogram().percentile(50));
+    }
+}
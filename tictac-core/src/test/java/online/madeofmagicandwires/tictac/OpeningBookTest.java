@@ -0,0 +1,106 @@
+package online.madeofmagicandwires.tictac;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.SplittableRandom;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that {@link OpeningBook} finds positions in any orientation and played in any order,
+ * that the bundled 3x3 book plays perfectly and that a book survives being written to a file.
+ */
+public class OpeningBookTest {
+
+    @Test
+    public void bundledBooks_coverEveryBoardSize() throws Exception {
+        for(int size=OpeningBook.MIN_BOARD_SIZE;size<=OpeningBook.MAX_BOARD_SIZE;size++) {
+            OpeningBook book = OpeningBook.forSize(size);
+            assertNotNull(book);
+            assertEquals(size, book.boardSize);
+            assertTrue(book.lookup(new Game(size)) >= 0);
+            // other rules on the same board are not in the book
+            assertEquals(-1, book.lookup(new Game(new Rules(size, size, size - 1, false))));
+        }
+    }
+
+    @Test
+    public void bundledBook_keepsOutcomeOfEveryPosition() throws Exception {
+        OpeningBook book = OpeningBook.forSize(3);
+        assertNotNull(book);
+        assertEquals(9, book.plies);
+        EndgameDatabase database = new EndgameDatabaseGenerator(3).generate();
+
+        // every position of a random game is in the book, and its book move never gives away the outcome
+        SplittableRandom random = new SplittableRandom(25);
+        RandomPlayer player = new RandomPlayer(random);
+        for(int round=0;round<200;round++) {
+            Game game = new Game(3);
+            while(game.getGameOver() == GameState.IN_PROGRESS) {
+                Game position = game.getSnapshot().toGame();
+                int move = book.lookup(position);
+                assertTrue(position.isBlank(move));
+                GameState outcome = database.lookup(position);
+                if(position.play(move) == GameState.IN_PROGRESS) {
+                    assertEquals(outcome, database.lookup(position));
+                } else {
+                    assertEquals(outcome, position.getGameOver());
+                }
+                game.play(player.chooseMove(game));
+            }
+        }
+    }
+
+    @Test
+    public void lookup_findsSymmetricPositions_andSurvivesWriting() throws Exception {
+        OpeningBook built = new OpeningBookGenerator(5, 3, new RandomPlayer(new SplittableRandom(5))).generate();
+        File file = File.createTempFile("opening", ".ttob");
+        OpeningBook book;
+        try {
+            built.writeTo(file);
+            try(InputStream in = new FileInputStream(file)) {
+                book = OpeningBook.read(in);
+            }
+        } finally {
+            assertTrue(file.delete());
+        }
+        assertEquals(built.size(), book.size());
+
+        Symmetry symmetry = Symmetry.forSize(5);
+        SplittableRandom random = new SplittableRandom(7);
+        for(int round=0;round<50;round++) {
+            Game game = new Game(5);
+            int plies = random.nextInt(4);
+            for(int ply=0;ply<plies;ply++) {
+                int tile;
+                do {
+                    tile = random.nextInt(25);
+                } while(!game.isBlank(tile));
+                game.play(tile);
+            }
+            int move = book.lookup(game);
+            assertTrue(game.isBlank(move));
+            Game played = new Game(game);
+            played.play(move);
+
+            // every orientation gets a move leading to the same position, give or take symmetry
+            for(int transform=0;transform<Symmetry.TRANSFORMS;transform++) {
+                Game turned = symmetry.transform(game, transform);
+                int turnedMove = book.lookup(turned);
+                assertTrue(turned.isBlank(turnedMove));
+                turned.play(turnedMove);
+                assertEquals(Symmetry.canonicalHash(played), Symmetry.canonicalHash(turned));
+            }
+        }
+
+        // beyond the book
+        Game game = new Game(5);
+        for(int tile=0;tile<4;tile++) {
+            game.play(tile * 6);
+        }
+        assertEquals(-1, book.lookup(game));
+    }
+}
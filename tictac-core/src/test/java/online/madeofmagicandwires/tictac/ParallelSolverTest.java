@@ -0,0 +1,70 @@
+package online.madeofmagicandwires.tictac;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the {@link ParallelSolver} plays as well as the sequential search it splits up.
+ */
+public class ParallelSolverTest {
+
+    private ForkJoinPool pool;
+
+    @Before
+    public void setUp() {
+        pool = new ForkJoinPool(4);
+    }
+
+    @After
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Test
+    public void solve_drawsAgainstItselfOnThreeByThree() {
+        ParallelSolver solver = new ParallelSolver(pool, 1000);
+        Game game = new Game(3);
+        while(game.getGameOver() == GameState.IN_PROGRESS) {
+            game.play(solver.chooseMove(game));
+        }
+        assertEquals(GameState.DRAW, game.getGameOver());
+    }
+
+    @Test
+    public void solve_neverLosesToRandomMoves() {
+        Random random = new Random(9);
+        ParallelSolver solver = new ParallelSolver(pool, 100);
+        for(int round=0;round<20;round++) {
+            Game game = new Game(3);
+            while(game.getGameOver() == GameState.IN_PROGRESS) {
+                int tile;
+                if(game.getPlayerOneTurn()) {
+                    do {
+                        tile = random.nextInt(9);
+                    } while(!game.isBlank(tile));
+                } else {
+                    tile = solver.chooseMove(game);
+                }
+                game.play(tile);
+            }
+            assertNotEquals(GameState.PLAYER_ONE_WIN, game.getGameOver());
+        }
+    }
+
+    @Test
+    public void solve_returnsMoveOnceDeadlinePasses() {
+        ParallelSolver solver = new ParallelSolver(pool, 50);
+        Game game = new Game(9);
+        long start = System.nanoTime();
+        int tile = solver.chooseMove(game);
+        long millis = (System.nanoTime() - start) / 1000000;
+        assertTrue(game.isBlank(tile));
+        assertTrue("took " + millis + "ms", millis < 1000);
+    }
+}
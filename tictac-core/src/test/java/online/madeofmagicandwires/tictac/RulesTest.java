@@ -0,0 +1,108 @@
+package online.madeofmagicandwires.tictac;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks games played by {@link Rules} other than classic tic-tac-toe: the run scan against a
+ * brute force scan of the whole board, and gravity.
+ */
+public class RulesTest {
+
+    @Test
+    public void runScan_matchesFullBoardScan_onRandomGames() {
+        Random random = new Random(15);
+        Rules[] variants = {Rules.gomoku(15), Rules.connectFour(7, 6), new Rules(9, 5, 4, false), new Rules(4, 4, 3, false)};
+        for(Rules rules : variants) {
+            for(int round=0;round<300;round++) {
+                Game game = new Game(rules);
+                GameState gs = GameState.IN_PROGRESS;
+                while(gs == GameState.IN_PROGRESS) {
+                    int tile;
+                    do {
+                        tile = random.nextInt(rules.tiles());
+                    } while(!game.isLegal(tile));
+                    gs = game.play(tile);
+
+                    GameState expected = fullBoardScan(game.getBoard(), rules);
+                    if(expected == GameState.IN_PROGRESS && game.getCounters().isFull()) {
+                        expected = GameState.DRAW;
+                    }
+                    assertEquals(rules.toString(), expected, gs);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void gravity_onlyAllowsLowestBlankTileOfColumn() {
+        Game game = new Game(Rules.connectFour(7, 6));
+        assertEquals(5, game.dropRow(3));
+        assertEquals(TileState.INVALID, game.choose(0, 3));
+        assertEquals(TileState.PLAYER_ONE, game.choose(5, 3));
+        game.nextMove();
+        assertEquals(4, game.dropRow(3));
+
+        // Player Two stacks up column 0 while Player One stacks up column 3
+        GameState gs = GameState.IN_PROGRESS;
+        while(gs == GameState.IN_PROGRESS) {
+            int col = game.getPlayerOneTurn() ? 3 : 0;
+            int row = game.dropRow(col);
+            game.choose(row, col);
+            gs = game.checkWinconditionReached(row, col);
+            if(gs == GameState.IN_PROGRESS) {
+                game.nextMove();
+            }
+        }
+        assertEquals(GameState.PLAYER_ONE_WIN, gs);
+    }
+
+    @Test
+    public void mctsPlayer_playsLegalMovesWithGravity() {
+        ForkJoinPool pool = new ForkJoinPool(1);
+        try {
+            MctsPlayer player = new MctsPlayer(pool, 1, 0, 1 << 14);
+            Game game = new Game(Rules.connectFour(7, 6));
+            while(game.getGameOver() == GameState.IN_PROGRESS) {
+                int tile = player.search(game, Long.MAX_VALUE, 2000);
+                assertTrue(game.isLegal(tile));
+                game.play(tile);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Looks for a run of winLength tiles anywhere on a board.
+     */
+    private static GameState fullBoardScan(TileState[][] board, Rules rules) {
+        int[][] directions = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+        for(int row=0;row<rules.height;row++) {
+            for(int col=0;col<rules.width;col++) {
+                TileState owner = board[row][col];
+                if(owner != TileState.PLAYER_ONE && owner != TileState.PLAYER_TWO) {
+                    continue;
+                }
+                for(int[] d : directions) {
+                    int length = 0;
+                    int r = row;
+                    int c = col;
+                    while(r >= 0 && r < rules.height && c >= 0 && c < rules.width && board[r][c] == owner) {
+                        length++;
+                        r += d[0];
+                        c += d[1];
+                    }
+                    if(length >= rules.winLength) {
+                        return (owner == TileState.PLAYER_ONE) ? GameState.PLAYER_ONE_WIN : GameState.PLAYER_TWO_WIN;
+                    }
+                }
+            }
+        }
+        return GameState.IN_PROGRESS;
+    }
+}
@@ -0,0 +1,63 @@
+package online.madeofmagicandwires.tictac;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that {@link Symmetry} maps every orientation of random positions onto the same
+ * canonical position, and that tiles can be mapped back.
+ */
+public class SymmetryTest {
+
+    @Test
+    public void canonicalHash_isEqualForEveryOrientation() {
+        Random random = new Random(11);
+        for(int boardSize=3;boardSize<=9;boardSize++) {
+            Symmetry symmetry = Symmetry.forSize(boardSize);
+            for(int round=0;round<200;round++) {
+                Game game = randomPosition(random, boardSize);
+                long canonical = Symmetry.canonicalHash(game);
+
+                for(int t=0;t<Symmetry.TRANSFORMS;t++) {
+                    Game transformed = symmetry.transform(game, t);
+                    assertEquals(game.getHash(t), transformed.getHash());
+                    assertEquals(canonical, Symmetry.canonicalHash(transformed));
+                    assertEquals(game.getHash(),
+                            symmetry.transform(transformed, Symmetry.inverse(t)).getHash());
+                }
+                assertEquals(canonical, symmetry.canonicalize(game).getHash());
+            }
+        }
+    }
+
+    @Test
+    public void untransformTile_undoesTransformTile() {
+        Symmetry symmetry = Symmetry.forSize(4);
+        for(int t=0;t<Symmetry.TRANSFORMS;t++) {
+            for(int tile=0;tile<16;tile++) {
+                assertEquals(tile, symmetry.untransformTile(t, symmetry.transformTile(t, tile)));
+            }
+        }
+        // the top left corner ends up top right after a quarter turn clockwise
+        assertEquals(3, symmetry.transformTile(Symmetry.ROTATE_90, 0));
+    }
+
+    /**
+     * Plays a random amount of random moves on a new game.
+     */
+    private static Game randomPosition(Random random, int boardSize) {
+        Game game = new Game(boardSize);
+        int moves = random.nextInt(boardSize * boardSize);
+        for(int i=0;i<moves && game.getGameOver() == GameState.IN_PROGRESS;i++) {
+            int tile;
+            do {
+                tile = random.nextInt(boardSize * boardSize);
+            } while(!game.isBlank(tile));
+            game.play(tile);
+        }
+        return game;
+    }
+}
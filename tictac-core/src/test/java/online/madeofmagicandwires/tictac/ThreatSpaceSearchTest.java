@@ -0,0 +1,72 @@
+package online.madeofmagicandwires.tictac;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the {@link ThreatSpaceSearch} finds wins by fours and by threes on a gomoku board,
+ * and finds nothing where there is nothing to find.
+ */
+public class ThreatSpaceSearchTest {
+
+    /** Tiles of Player Two far enough away not to matter **/
+    private static final int[] FAR = {80, 78, 62, 72, 8};
+
+    @Test
+    public void search_findsWinByContinuousFours() {
+        // a closed three in row 4 and two in column 4, and a closed three in row 1 whose four fills column 4
+        Game game = play(new int[] {37, 38, 39, 22, 31, 10, 11, 12}, new int[] {36, 4, 9});
+        ThreatSpaceSearch search = new ThreatSpaceSearch(8, false);
+
+        int move = search.findWin(game, Long.MAX_VALUE);
+        assertTrue(move == 13 || move == 40);
+        assertEquals(3, search.getWinDepth());
+        assertEquals(-1, new ThreatSpaceSearch(2, false).findWin(game, Long.MAX_VALUE));
+        assertEquals(-1, search.findWin(game, false, Long.MAX_VALUE));
+    }
+
+    @Test
+    public void search_findsWinByDoubleThree_onlyWithThrees() {
+        // two open twos crossing at row 4, column 4
+        Game game = play(new int[] {38, 39, 22, 31}, new int[0]);
+
+        ThreatSpaceSearch search = new ThreatSpaceSearch();
+        assertEquals(40, search.findWin(game, Long.MAX_VALUE));
+        assertEquals(3, search.getWinDepth());
+        assertEquals(-1, new ThreatSpaceSearch(8, false).findWin(game, Long.MAX_VALUE));
+    }
+
+    @Test
+    public void player_blocksForcedWinOfOpponent() {
+        // the position of the first test, with Player Two to move
+        Game game = play(new int[] {37, 38, 39, 22, 31, 10, 11, 12}, new int[] {36, 4, 9});
+        game.nextMove();
+        Player never = new Player() {
+            @Override
+            public int chooseMove(Game game) {
+                return -1;
+            }
+        };
+        int move = new ThreatSpacePlayer(never, 1000).chooseMove(game);
+        assertTrue(move == 13 || move == 40);
+    }
+
+    /**
+     * Sets up a 9x9 gomoku game, filling Player Two's moves up with tiles far away.
+     * @param one the tiles of Player One
+     * @param two the tiles of Player Two; at most as many as those of Player One
+     * @return the game, with Player One to move
+     */
+    private static Game play(int[] one, int[] two) {
+        Game game = new Game(Rules.gomoku(9));
+        int far = 0;
+        for(int i=0;i<Math.max(one.length, two.length);i++) {
+            if(i < one.length) {
+                game.play(one[i]);
+            }
+            game.play(i < two.length ? two[i] : FAR[far++]);
+        }
+        return game;
+    }
+}
@@ -0,0 +1,85 @@
+package online.madeofmagicandwires.tictac;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the {@link TranspositionTable} packs results losslessly, finds only the positions
+ * it stored and keeps the more deeply searched result when two positions collide.
+ */
+public class TranspositionTableTest {
+
+    @Test
+    public void pack_roundTripsEveryField() {
+        int[] scores = {0, 1, -1, MinimaxPlayer.WIN_SCORE - 7, -MinimaxPlayer.WIN_SCORE, Integer.MIN_VALUE};
+        int[] bounds = {TranspositionTable.EXACT, TranspositionTable.LOWER_BOUND, TranspositionTable.UPPER_BOUND};
+        int[] bestMoves = {-1, 0, 40, 1022};
+        for(int depth=0;depth<=255;depth+=15) {
+            for(int bound : bounds) {
+                for(int score : scores) {
+                    for(int bestMove : bestMoves) {
+                        long entry = TranspositionTable.pack(depth, bound, score, bestMove);
+                        assertNotEquals(0L, entry);
+                        assertEquals(depth, TranspositionTable.depth(entry));
+                        assertEquals(bound, TranspositionTable.bound(entry));
+                        assertEquals(score, TranspositionTable.score(entry));
+                        assertEquals(bestMove, TranspositionTable.bestMove(entry));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void probe_findsOnlyStoredPositions() {
+        TranspositionTable table = new TranspositionTable(1000);
+        assertEquals(512, table.getCapacity());
+
+        long hash = 0x1234567890ABCDEFL;
+        assertEquals(0L, table.probe(hash));
+        table.store(hash, 6, TranspositionTable.LOWER_BOUND, -42, 17);
+
+        long entry = table.probe(hash);
+        assertEquals(6, TranspositionTable.depth(entry));
+        assertEquals(TranspositionTable.LOWER_BOUND, TranspositionTable.bound(entry));
+        assertEquals(-42, TranspositionTable.score(entry));
+        assertEquals(17, TranspositionTable.bestMove(entry));
+        // a different position in the same slot is not mistaken for the stored one
+        assertEquals(0L, table.probe(hash + table.getCapacity()));
+
+        assertEquals(3, table.getProbes());
+        assertEquals(1, table.getHits());
+        assertEquals(1, table.getStores());
+
+        table.clear();
+        assertEquals(0L, table.probe(hash));
+        assertEquals(1, table.getProbes());
+        assertEquals(0, table.getHits());
+    }
+
+    @Test
+    public void store_prefersDeeperResults() {
+        TranspositionTable table = new TranspositionTable(16);
+        long deep = 3;
+        long shallow = deep + table.getCapacity();
+
+        table.store(deep, 5, TranspositionTable.EXACT, 10, 1);
+        // a shallower result of a colliding position does not push out the deeper one
+        table.store(shallow, 4, TranspositionTable.EXACT, 20, 2);
+        assertEquals(0L, table.probe(shallow));
+        assertEquals(10, TranspositionTable.score(table.probe(deep)));
+
+        // a result of equal depth does
+        table.store(shallow, 5, TranspositionTable.EXACT, 20, 2);
+        assertEquals(0L, table.probe(deep));
+        assertEquals(20, TranspositionTable.score(table.probe(shallow)));
+
+        // a new result for the same position always replaces the old one, however shallow
+        table.store(shallow, 1, TranspositionTable.UPPER_BOUND, 30, 3);
+        long entry = table.probe(shallow);
+        assertEquals(1, TranspositionTable.depth(entry));
+        assertEquals(30, TranspositionTable.score(entry));
+        assertEquals(3, table.getStores());
+    }
+}
@@ -0,0 +1,122 @@
+package online.madeofmagicandwires.tictac;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Differential test of {@link Game.WinDetection#INCREMENTAL} against
+ * {@link Game.WinDetection#SCANNING}, playing the same random games on both.
+ */
+public class WinDetectionTest {
+
+    private static final int GAMES_PER_SIZE = 2000;
+
+    @Test
+    public void incremental_matchesScanning_onRandomGames() {
+        Random random = new Random(42);
+        for(int boardSize=3;boardSize<=9;boardSize++) {
+            Game scanning = new Game(boardSize, Game.WinDetection.SCANNING);
+            Game incremental = new Game(boardSize, Game.WinDetection.INCREMENTAL);
+
+            for(int round=0;round<GAMES_PER_SIZE;round++) {
+                playRandomRound(random, scanning, incremental);
+                assertArrayEquals(scanning.getWins(), incremental.getWins());
+                scanning.resetBoard();
+                incremental.resetBoard();
+            }
+        }
+    }
+
+    @Test
+    public void incremental_matchesScanning_afterSetBoard() {
+        Random random = new Random(7);
+        for(int boardSize=3;boardSize<=9;boardSize++) {
+            for(int round=0;round<GAMES_PER_SIZE;round++) {
+                Game source = new Game(boardSize, Game.WinDetection.SCANNING);
+                playRandomMoves(random, source, random.nextInt(boardSize * boardSize));
+
+                Game scanning = new Game(boardSize, Game.WinDetection.SCANNING);
+                Game incremental = new Game(boardSize, Game.WinDetection.INCREMENTAL);
+                for(Game g : new Game[] {scanning, incremental}) {
+                    g.setBoard(source.getBoard());
+                    g.setMovesPlayed(source.getMovesPlayed());
+                    g.setPlayerOneTurn(source.getPlayerOneTurn());
+                }
+                if(source.getGameOver() == GameState.IN_PROGRESS) {
+                    playRandomRound(random, scanning, incremental);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void incremental_detectsDrawOnlyWhenBoardIsFull() {
+        // X O X
+        // X O O
+        // O X X
+        int[][] moves = {{0,0},{0,1},{0,2},{1,1},{1,0},{1,2},{2,1},{2,0},{2,2}};
+        Game game = new Game(3, Game.WinDetection.INCREMENTAL);
+        for(int i=0;i<moves.length;i++) {
+            assertNotEquals(TileState.INVALID, game.choose(moves[i][0], moves[i][1]));
+            GameState state = game.checkWinconditionReached(moves[i][0], moves[i][1]);
+            if(i < moves.length - 1) {
+                assertEquals(GameState.IN_PROGRESS, state);
+                game.nextMove();
+            } else {
+                assertEquals(GameState.DRAW, state);
+            }
+        }
+    }
+
+    /**
+     * Plays the same random moves on every game until the round is over,
+     * asserting that they agree on every move.
+     */
+    private static void playRandomRound(Random random, Game... games) {
+        int boardSize = games[0].boardSize;
+        GameState state = GameState.IN_PROGRESS;
+        while(state == GameState.IN_PROGRESS) {
+            int row = random.nextInt(boardSize);
+            int col = random.nextInt(boardSize);
+
+            TileState expectedTile = games[0].choose(row, col);
+            for(int i=1;i<games.length;i++) {
+                assertEquals(expectedTile, games[i].choose(row, col));
+            }
+            if(expectedTile == TileState.INVALID) {
+                continue;
+            }
+
+            state = games[0].checkWinconditionReached(row, col);
+            for(int i=1;i<games.length;i++) {
+                assertEquals("board of " + boardSize + " after " + games[0].getMovesPlayed() + " moves",
+                        state, games[i].checkWinconditionReached(row, col));
+            }
+            if(state == GameState.IN_PROGRESS) {
+                for(Game g : games) {
+                    g.nextMove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Plays up to the given amount of random moves on a game, stopping early if the round ends.
+     */
+    private static void playRandomMoves(Random random, Game game, int moves) {
+        int boardSize = game.boardSize;
+        while(moves > 0 && game.getGameOver() == GameState.IN_PROGRESS) {
+            int row = random.nextInt(boardSize);
+            int col = random.nextInt(boardSize);
+            if(game.choose(row, col) != TileState.INVALID) {
+                if(game.checkWinconditionReached(row, col) == GameState.IN_PROGRESS) {
+                    game.nextMove();
+                }
+                moves--;
+            }
+        }
+    }
+}
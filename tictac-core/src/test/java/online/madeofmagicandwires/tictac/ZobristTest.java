@@ -0,0 +1,129 @@
+package online.madeofmagicandwires.tictac;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the incrementally updated Zobrist hashes of a game always equal the hashes
+ * recomputed from its board, however the position was reached.
+ */
+public class ZobristTest {
+
+    @Test
+    public void incrementalHash_equalsRecomputedHash_afterPlayAndUnplay() {
+        Random random = new Random(12);
+        Rules[] rules = {Rules.ticTacToe(3), Rules.ticTacToe(5), Rules.ticTacToe(8), Rules.connectFour(7, 6)};
+        for(Rules r : rules) {
+            for(int round=0;round<50;round++) {
+                Game game = new Game(r);
+                int played = 0;
+                for(int step=0;step<4 * r.width * r.height;step++) {
+                    // take moves back now and then, and always once the round is over
+                    if(played > 0 && (game.getGameOver() != GameState.IN_PROGRESS || random.nextInt(4) == 0)) {
+                        game.unplay();
+                        played--;
+                    } else {
+                        int tile = randomMove(random, game);
+                        if(tile < 0) {
+                            break;
+                        }
+                        game.play(tile);
+                        played++;
+                    }
+                    assertHashesRecomputed(game);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void incrementalHash_equalsRecomputedHash_afterUndoAndRedo() {
+        Random random = new Random(13);
+        for(int boardSize=3;boardSize<=7;boardSize++) {
+            Game game = new Game(boardSize);
+            while(game.getGameOver() == GameState.IN_PROGRESS) {
+                int tile = randomMove(random, game);
+                int row = tile / boardSize;
+                int col = tile % boardSize;
+                game.choose(row, col);
+                if(game.checkWinconditionReached(row, col) == GameState.IN_PROGRESS) {
+                    game.nextMove();
+                }
+                assertHashesRecomputed(game);
+            }
+            while(game.undo()) {
+                assertHashesRecomputed(game);
+            }
+            assertEquals(new Game(boardSize).getHash(), game.getHash());
+            while(game.redo()) {
+                assertHashesRecomputed(game);
+            }
+            assertNotEquals(GameState.IN_PROGRESS, game.getGameOver());
+        }
+    }
+
+    @Test
+    public void hash_isEqualForTranspositionsAndDecodedGames() {
+        Game game = new Game(4);
+        int[] moves = {5, 0, 10, 15};
+        for(int tile : moves) {
+            game.play(tile);
+        }
+        // the same position, reached in a different order
+        Game transposed = new Game(4);
+        int[] transposedMoves = {10, 15, 5, 0};
+        for(int tile : transposedMoves) {
+            transposed.play(tile);
+        }
+        assertEquals(game.getHash(), transposed.getHash());
+        assertEquals(game.getHash(), GameCodec.decode(GameCodec.encode(game)).getHash());
+
+        // the same tiles with the other player to move
+        transposed.unplay();
+        transposed.play(3);
+        assertNotEquals(game.getHash(), transposed.getHash());
+    }
+
+    /**
+     * Fails unless the hash of every orientation of a game equals the XOR of the keys of its
+     * claimed tiles, plus the turn key while it is Player Two's turn.
+     */
+    private static void assertHashesRecomputed(Game game) {
+        Zobrist keys = Zobrist.forRules(game.rules);
+        for(int t=0;t<Symmetry.TRANSFORMS;t++) {
+            long hash = game.getPlayerOneTurn() ? 0 : keys.turn();
+            for(int row=0;row<game.rules.height;row++) {
+                for(int col=0;col<game.rules.width;col++) {
+                    int tile = (row * game.boardSize) + col;
+                    TileState state = game.getTile(row, col);
+                    if(state == TileState.PLAYER_ONE) {
+                        hash ^= keys.tile(t, tile, true);
+                    } else if(state == TileState.PLAYER_TWO) {
+                        hash ^= keys.tile(t, tile, false);
+                    }
+                }
+            }
+            assertEquals(hash, game.getHash(t));
+        }
+    }
+
+    /**
+     * Picks a random tile the current player may claim.
+     * @return the tile index, or -1 if the board is full
+     */
+    private static int randomMove(Random random, Game game) {
+        if(game.getCounters().tilesPlayed() == game.rules.width * game.rules.height) {
+            return -1;
+        }
+        int tile;
+        do {
+            int col = random.nextInt(game.rules.width);
+            int row = game.rules.gravity ? game.dropRow(col) : random.nextInt(game.rules.height);
+            tile = (row < 0) ? -1 : (row * game.boardSize) + col;
+        } while(tile < 0 || !game.isBlank(tile));
+        return tile;
+    }
+}
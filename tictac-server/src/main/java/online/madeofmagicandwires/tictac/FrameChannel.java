@@ -0,0 +1,148 @@
+package online.madeofmagicandwires.tictac;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+
+/**
+ * FrameChannel.java
+ * A non-blocking socket carrying frames of {@link ServerProtocol}, for a single selector thread.
+ *
+ * Incoming bytes are gathered until whole frames have arrived, which are then handed out one by
+ * one. Outgoing frames are written into a buffer first, and the buffer is written to the
+ * socket once the selector thread has handled everything it read, so a burst of messages to
+ * the same client goes out in as few writes as possible. Whatever the socket does not take
+ * right away is kept, and written once the selector finds the socket writable.
+ *
+ * @author Joost Bremmer
+ * @version 1.0
+ */
+final class FrameChannel {
+
+    /**
+     * Callback for every whole frame read.
+     */
+    interface FrameHandler {
+        /**
+         * Called for every whole frame read from a channel.
+         * @param channel the channel the frame was read from
+         * @param type the type of the message
+         * @param frame the fields of the message; only valid during the call
+         */
+        void onFrame(FrameChannel channel, byte type, ByteBuffer frame);
+    }
+
+    /** Size the output buffer starts out at **/
+    private static final int INITIAL_OUTPUT = 8192;
+    /** Most bytes kept for a client that does not read them **/
+    private static final int MAX_OUTPUT = 1 << 20;
+
+    /** the socket **/
+    final SocketChannel socket;
+    /** the registration of the socket with the selector **/
+    final SelectionKey key;
+    /** bytes read but not handled yet **/
+    private final ByteBuffer input = ByteBuffer.allocate(ServerProtocol.LENGTH_BYTES + ServerProtocol.MAX_FRAME);
+    /** view of the frame being handled **/
+    private final ByteBuffer frame;
+    /** frames not written yet, in write mode **/
+    private ByteBuffer output = ByteBuffer.allocate(INITIAL_OUTPUT);
+    /** whatever the owner wants to keep about this channel **/
+    Object attachment;
+
+    /**
+     * Constructor. Registers a connected socket with a selector, for reading.
+     * @param socket the socket, in non-blocking mode
+     * @param key the registration of the socket
+     */
+    FrameChannel(SocketChannel socket, SelectionKey key) {
+        this.socket = socket;
+        this.key = key;
+        this.frame = input.duplicate();
+        key.attach(this);
+    }
+
+    /**
+     * Reads whatever has arrived and hands out every whole frame.
+     * @param handler the callback for every frame
+     * @return false if the other end closed the connection or sent a frame that is too long
+     * @throws IOException if the socket can not be read
+     */
+    boolean read(FrameHandler handler) throws IOException {
+        int read = socket.read(input);
+        if(read < 0) {
+            return false;
+        }
+        input.flip();
+        while(input.remaining() >= ServerProtocol.LENGTH_BYTES) {
+            int length = input.getShort(input.position()) & 0xFFFF;
+            if(length == 0 || length > ServerProtocol.MAX_FRAME) {
+                return false;
+            }
+            if(input.remaining() < ServerProtocol.LENGTH_BYTES + length) {
+                break;
+            }
+            int start = input.position() + ServerProtocol.LENGTH_BYTES;
+            frame.limit(start + length).position(start + 1);
+            input.position(start + length);
+            handler.onFrame(this, input.get(start), frame);
+        }
+        input.compact();
+        return true;
+    }
+
+    /**
+     * Gets the buffer to write outgoing frames into, with room for at least some bytes.
+     * @param bytes the size of the frames about to be written
+     * @return the output buffer, in write mode
+     * @throws IOException if the other end has not read so much that it is left behind
+     */
+    ByteBuffer output(int bytes) throws IOException {
+        if(output.remaining() < bytes) {
+            int needed = output.position() + bytes;
+            if(needed > MAX_OUTPUT) {
+                throw new IOException("client is not reading");
+            }
+            ByteBuffer bigger = ByteBuffer.allocate(Math.min(MAX_OUTPUT, Math.max(needed, output.capacity() * 2)));
+            output.flip();
+            bigger.put(output);
+            output = bigger;
+        }
+        return output;
+    }
+
+    /**
+     * Checks whether any output is waiting to be written.
+     * @return true if frames were written since the last flush, or were not taken by the socket
+     */
+    boolean hasOutput() {
+        return output.position() > 0;
+    }
+
+    /**
+     * Writes as much output as the socket takes, and asks the selector to tell when it takes more.
+     * @throws IOException if the socket can not be written
+     */
+    void flush() throws IOException {
+        output.flip();
+        socket.write(output);
+        output.compact();
+        int ops = SelectionKey.OP_READ | (hasOutput() ? SelectionKey.OP_WRITE : 0);
+        if(key.interestOps() != ops) {
+            key.interestOps(ops);
+        }
+    }
+
+    /**
+     * Closes the socket and forgets its registration.
+     */
+    void close() {
+        key.cancel();
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+            // closing anyway
+        }
+    }
+}
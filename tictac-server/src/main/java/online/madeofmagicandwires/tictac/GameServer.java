@@ -0,0 +1,459 @@
+package online.madeofmagicandwires.tictac;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * GameServer.java
+ * Embeddable server hosting any amount of matches between two remote players, speaking
+ * {@link ServerProtocol} over non-blocking sockets.
+ *
+ * There is no lobby: a client joins a match by its id, and the first two clients to join a
+ * match play it, the first as Player One. Every move is checked by the {@link Game} of the
+ * match, with {@link Game#choose(int, int)} and {@link Game#checkWinconditionReached(int, int)},
+ * and the tiles it changed are pushed to both players.
+ *
+ * Everything runs on a single selector thread, so matches need no locking; a match costs
+ * little more than its Game, so thousands fit in memory. Output is gathered per client while
+ * the thread handles what it has read, and written once per pass of the selector.
+ *
+ * Usage: {@code GameServer [port]} runs a server until it is killed.
+ *
+ * @author Joost Bremmer
+ * @version 1.0
+ */
+public class GameServer implements Closeable, FrameChannel.FrameHandler {
+
+    /**
+     * A match between the two clients seated at it.
+     */
+    private static final class Match {
+        /** id the clients know the match by **/
+        final long id;
+        /** the game played **/
+        final Game game;
+        /** the client playing as Player One, or null while the seat is empty **/
+        FrameChannel playerOne;
+        /** the client playing as Player Two, or null while the seat is empty **/
+        FrameChannel playerTwo;
+
+        /**
+         * Constructor.
+         * @param id id the clients know the match by
+         * @param rules the rules to play by
+         */
+        Match(long id, Rules rules) {
+            this.id = id;
+            this.game = new Game(rules);
+        }
+    }
+
+    /** selects the sockets ready to be handled **/
+    private final Selector selector;
+    /** accepts new clients **/
+    private final ServerSocketChannel acceptor;
+    /** every match being played, by id **/
+    private final Map<Long, Match> matches = new HashMap<>();
+    /** the clients written to during the current pass of the selector **/
+    private final List<FrameChannel> written = new ArrayList<>();
+    /** the selector thread, once started **/
+    private Thread thread;
+    /** cleared to stop the selector thread **/
+    private volatile boolean running = true;
+    /** amount of matches in matches, for other threads **/
+    private volatile int matchCount;
+    /** amount of moves played over every match **/
+    private volatile long movesPlayed;
+
+    /**
+     * Constructor. Binds to a local address, but does not handle any client until started.
+     * @param address the address to listen on; port 0 picks any free port
+     * @throws IOException if the address can not be bound
+     */
+    public GameServer(InetSocketAddress address) throws IOException {
+        this.selector = Selector.open();
+        this.acceptor = ServerSocketChannel.open();
+        acceptor.bind(address);
+        acceptor.configureBlocking(false);
+        acceptor.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    /**
+     * Gets the port the server listens on.
+     * @return the local port
+     * @throws IOException if the server is closed
+     */
+    public int getPort() throws IOException {
+        return ((InetSocketAddress) acceptor.getLocalAddress()).getPort();
+    }
+
+    /**
+     * Gets the amount of matches hosted.
+     * @return the amount of matches with at least one player seated
+     */
+    public int getMatchCount() {
+        return matchCount;
+    }
+
+    /**
+     * Gets the amount of moves played.
+     * @return the amount of moves accepted over every match
+     */
+    public long getMovesPlayed() {
+        return movesPlayed;
+    }
+
+    /**
+     * Starts handling clients on a thread of its own.
+     * @return this server
+     */
+    public GameServer start() {
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    serve();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }, "game-server");
+        thread.start();
+        return this;
+    }
+
+    /**
+     * Handles clients until closed.
+     * @throws IOException if the selector fails
+     */
+    private void serve() throws IOException {
+        while(running) {
+            selector.select();
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while(keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                if(!key.isValid()) {
+                    continue;
+                }
+                if(key.isAcceptable()) {
+                    accept();
+                    continue;
+                }
+                FrameChannel client = (FrameChannel) key.attachment();
+                try {
+                    if(key.isReadable() && !client.read(this)) {
+                        disconnect(client);
+                        continue;
+                    }
+                    if(key.isValid() && key.isWritable()) {
+                        client.flush();
+                    }
+                } catch (IOException e) {
+                    disconnect(client);
+                }
+            }
+            flushWritten();
+        }
+        for(SelectionKey key : selector.keys()) {
+            if(key.attachment() instanceof FrameChannel) {
+                ((FrameChannel) key.attachment()).close();
+            }
+        }
+        acceptor.close();
+        selector.close();
+    }
+
+    /**
+     * Accepts every client waiting to connect.
+     * @throws IOException if a client can not be registered
+     */
+    private void accept() throws IOException {
+        SocketChannel socket;
+        while((socket = acceptor.accept()) != null) {
+            socket.configureBlocking(false);
+            socket.socket().setTcpNoDelay(true);
+            new FrameChannel(socket, socket.register(selector, SelectionKey.OP_READ));
+        }
+    }
+
+    /**
+     * Writes out everything written to clients during this pass of the selector.
+     */
+    private void flushWritten() {
+        for(int i=0;i<written.size();i++) {
+            FrameChannel client = written.get(i);
+            if(client.key.isValid()) {
+                try {
+                    client.flush();
+                } catch (IOException e) {
+                    disconnect(client);
+                }
+            }
+        }
+        written.clear();
+    }
+
+    @Override
+    public void onFrame(FrameChannel client, byte type, ByteBuffer frame) {
+        if(!client.key.isValid()) {
+            // dropped by an earlier frame of the same read
+            return;
+        }
+        try {
+            if(frame.remaining() < 8) {
+                throw new IOException("frame too short");
+            }
+            long id = frame.getLong();
+            switch (type) {
+                case ServerProtocol.JOIN:
+                    join(client, id, frame);
+                    break;
+                case ServerProtocol.MOVE:
+                    move(client, id, frame.getInt(), frame.getShort() & 0xFFFF);
+                    break;
+                case ServerProtocol.RESET:
+                    reset(client, id, frame.getInt());
+                    break;
+                default:
+                    throw new IOException("unknown message " + type);
+            }
+        } catch (IOException | RuntimeException e) {
+            // garbled frames or a client left behind; drop the client
+            disconnect(client);
+        }
+    }
+
+    /**
+     * Seats a client at a match, creating the match if needed, and sends it the board.
+     * @param client the client joining
+     * @param id the id of the match
+     * @param frame the rest of the JOIN
+     * @throws IOException if the client is left behind
+     */
+    private void join(FrameChannel client, long id, ByteBuffer frame) throws IOException {
+        Rules rules;
+        try {
+            rules = ServerProtocol.readRules(frame);
+        } catch (IllegalArgumentException e) {
+            rules = null;
+        }
+        Match match = matches.get(id);
+        if(rules == null || rules.tiles() > ServerProtocol.MAX_TILES
+                || (match != null && !match.game.rules.equals(rules))) {
+            ServerProtocol.error(output(client, 32), id, 0, ServerProtocol.BAD_RULES);
+            return;
+        }
+        if(match == null) {
+            match = new Match(id, rules);
+            matches.put(id, match);
+            matchCount = matches.size();
+        }
+        if(match.playerOne == client || match.playerTwo == client
+                || (match.playerOne != null && match.playerTwo != null)) {
+            ServerProtocol.error(output(client, 32), id, 0, ServerProtocol.MATCH_FULL);
+            return;
+        }
+        boolean playerOne = match.playerOne == null;
+        if(playerOne) {
+            match.playerOne = client;
+        } else {
+            match.playerTwo = client;
+        }
+        seats(client).add(match);
+        ByteBuffer out = output(client, 32 + ServerProtocol.maxDeltaBytes(rules));
+        ServerProtocol.joined(out, id, playerOne);
+        ServerProtocol.board(out, id, match.game.getSnapshot());
+    }
+
+    /**
+     * Plays a move for a client, if it is its turn and the move is legal,
+     * and pushes the changed tiles to both players.
+     * @param client the client moving
+     * @param id the id of the match
+     * @param sequence number of the request, to echo
+     * @param tile the tile to claim
+     * @throws IOException if the client is left behind
+     */
+    private void move(FrameChannel client, long id, int sequence, int tile) throws IOException {
+        Match match = matches.get(id);
+        int error = seatError(match, client);
+        Game game = (match != null) ? match.game : null;
+        if(error == 0) {
+            if(game.getGameOver() != GameState.IN_PROGRESS) {
+                error = ServerProtocol.ROUND_OVER;
+            } else if((match.playerOne == client) != game.getPlayerOneTurn()) {
+                error = ServerProtocol.NOT_YOUR_TURN;
+            } else if(tile >= game.rules.tiles()
+                    || game.choose(tile / game.boardSize, tile % game.boardSize) == TileState.INVALID) {
+                error = ServerProtocol.ILLEGAL_MOVE;
+            }
+        }
+        if(error != 0) {
+            ServerProtocol.error(output(client, 32), id, sequence, error);
+            return;
+        }
+
+        if(game.checkWinconditionReached(tile / game.boardSize, tile % game.boardSize) == GameState.IN_PROGRESS) {
+            game.nextMove();
+        }
+        movesPlayed++;
+        pushChanges(match, sequence);
+    }
+
+    /**
+     * Starts a new round of a match and pushes the cleared tiles to both players.
+     * @param client the client asking
+     * @param id the id of the match
+     * @param sequence number of the request, to echo
+     * @throws IOException if the client is left behind
+     */
+    private void reset(FrameChannel client, long id, int sequence) throws IOException {
+        Match match = matches.get(id);
+        int error = seatError(match, client);
+        if(error != 0) {
+            ServerProtocol.error(output(client, 32), id, sequence, error);
+            return;
+        }
+        match.game.resetBoard();
+        pushChanges(match, sequence);
+    }
+
+    /**
+     * Checks whether a client may play in a match.
+     * @param match the match, or null if it does not exist
+     * @param client the client
+     * @return 0 if the client may play, otherwise the error code
+     */
+    private static int seatError(Match match, FrameChannel client) {
+        if(match == null) {
+            return ServerProtocol.NO_SUCH_MATCH;
+        }
+        if(match.playerOne != client && match.playerTwo != client) {
+            return ServerProtocol.NOT_SEATED;
+        }
+        if(match.playerOne == null || match.playerTwo == null) {
+            return ServerProtocol.WAITING_FOR_OPPONENT;
+        }
+        return 0;
+    }
+
+    /**
+     * Sends the changes the game of a match recorded to both its players, and clears them.
+     * @param match the match
+     * @param sequence number of the request that changed the game
+     */
+    private void pushChanges(Match match, int sequence) {
+        FrameChannel playerTwo = match.playerTwo;
+        pushChanges(match.playerOne, match, sequence);
+        pushChanges(playerTwo, match, sequence);
+        match.game.getChanges().clear();
+    }
+
+    /**
+     * Sends the changes the game of a match recorded to one of its players.
+     * A player left behind by the changes it has not read yet is disconnected.
+     * @param player the player to send the changes to
+     * @param match the match
+     * @param sequence number of the request that changed the game
+     */
+    private void pushChanges(FrameChannel player, Match match, int sequence) {
+        try {
+            ServerProtocol.delta(output(player, ServerProtocol.maxDeltaBytes(match.game.rules)),
+                    match.id, sequence, match.game);
+        } catch (IOException e) {
+            disconnect(player);
+        }
+    }
+
+    /**
+     * Gets the output buffer of a client and remembers to flush it after this pass.
+     * @param client the client to write to
+     * @param bytes the most bytes about to be written
+     * @return the output buffer
+     * @throws IOException if the client is left behind
+     */
+    private ByteBuffer output(FrameChannel client, int bytes) throws IOException {
+        if(!client.hasOutput()) {
+            written.add(client);
+        }
+        return client.output(bytes);
+    }
+
+    /**
+     * Gets the matches a client is seated at.
+     * @param client the client
+     * @return the live list of matches
+     */
+    @SuppressWarnings("unchecked")
+    private static List<Match> seats(FrameChannel client) {
+        if(client.attachment == null) {
+            client.attachment = new ArrayList<Match>(1);
+        }
+        return (List<Match>) client.attachment;
+    }
+
+    /**
+     * Closes a client and frees its seats; matches without players are dropped.
+     * @param client the client leaving
+     */
+    private void disconnect(FrameChannel client) {
+        client.close();
+        for(Match match : seats(client)) {
+            if(match.playerOne == client) {
+                match.playerOne = null;
+            }
+            if(match.playerTwo == client) {
+                match.playerTwo = null;
+            }
+            if(match.playerOne == null && match.playerTwo == null) {
+                matches.remove(match.id);
+                matchCount = matches.size();
+            }
+        }
+        seats(client).clear();
+    }
+
+    /**
+     * Stops the server and disconnects every client.
+     * @throws IOException if interrupted while waiting for the selector thread
+     */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        selector.wakeup();
+        if(thread != null) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            }
+        } else {
+            acceptor.close();
+            selector.close();
+        }
+    }
+
+    /**
+     * Runs a server.
+     * @param args the port to listen on; 7777 if left out
+     * @throws IOException if the port can not be bound
+     */
+    public static void main(String[] args) throws IOException {
+        int port = (args.length > 0) ? Integer.parseInt(args[0]) : 7777;
+        GameServer server = new GameServer(new InetSocketAddress(port)).start();
+        System.out.println("Serving matches on port " + server.getPort());
+    }
+}
@@ -0,0 +1,97 @@
+package online.madeofmagicandwires.tictac;
+
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * IdleMatchBenchmark.java
+ * Measures how many idle matches a {@link MatchRunner} holds: starts matches between two
+ * {@link MatchRunner.Mailbox} seats, waits until every one of them is waiting for its first
+ * move, and reports the heap each idle match takes. Then hands Player One of every match a
+ * move at once and reports how long it takes until every match has played it.
+ *
+ * Usage: {@code IdleMatchBenchmark [matches] [virtual|platform]}; 100000 matches on virtual
+ * threads by default. Platform threads need one native stack each, so keep their count low.
+ *
+ * @author Joost Bremmer
+ * @version 1.0
+ */
+public final class IdleMatchBenchmark {
+
+    /** How long an idle match waits for a move; longer than the benchmark runs **/
+    private static final long MOVE_TIMEOUT_MINUTES = 10;
+
+    private IdleMatchBenchmark() {
+    }
+
+    /**
+     * Gets the heap in use after collecting garbage.
+     * @return bytes of heap in use
+     * @throws InterruptedException if interrupted while waiting for the collector
+     */
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for(int i=0;i<3;i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Runs the benchmark.
+     * @param args the amount of matches, and virtual or platform threads
+     * @throws InterruptedException if interrupted while waiting for the matches
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int count = (args.length > 0) ? Integer.parseInt(args[0]) : 100000;
+        boolean virtual = args.length < 2 || args[1].equals("virtual");
+        ThreadFactory threads = virtual ? MatchRunner.virtualThreads() : MatchRunner.platformThreads();
+        if(threads == null) {
+            System.err.println("This JVM has no virtual threads; run on Java 21 or pass \"platform\".");
+            System.exit(1);
+        }
+
+        final CountDownLatch moved = new CountDownLatch(count);
+        MatchRunner.MatchListener listener = new MatchRunner.MatchListener() {
+            @Override
+            public void onMove(MatchRunner.Match match, int tile) {
+                moved.countDown();
+            }
+
+            @Override
+            public void onFinished(MatchRunner.Match match) {
+            }
+        };
+        MatchRunner.Mailbox[] playerOnes = new MatchRunner.Mailbox[count];
+        Rules rules = Rules.ticTacToe(3);
+        long before = usedHeap();
+
+        MatchRunner runner = new MatchRunner(threads, MOVE_TIMEOUT_MINUTES, TimeUnit.MINUTES);
+        long start = System.nanoTime();
+        for(int i=0;i<count;i++) {
+            playerOnes[i] = new MatchRunner.Mailbox();
+            runner.start(i, rules, playerOnes[i], new MatchRunner.Mailbox(), listener);
+        }
+        long startNanos = System.nanoTime() - start;
+        // give every match thread the time to get to its first wait
+        Thread.sleep(1000);
+        long perMatch = (usedHeap() - before) / count;
+
+        start = System.nanoTime();
+        for(int i=0;i<count;i++) {
+            playerOnes[i].offer(4);
+        }
+        moved.await();
+        long wakeNanos = System.nanoTime() - start;
+
+        System.out.println(String.format(Locale.ROOT,
+                "%d idle matches on %s threads: started in %.0fms, %d bytes of heap each; "
+                + "woke all for a move in %.0fms (%.0f moves/s), %d still running",
+                count, virtual ? "virtual" : "platform", startNanos / 1e6, perMatch,
+                wakeNanos / 1e6, count * 1e9 / wakeNanos, runner.getRunningCount()));
+        runner.close();
+    }
+}
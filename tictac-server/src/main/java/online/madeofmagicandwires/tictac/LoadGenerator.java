@@ -0,0 +1,410 @@
+package online.madeofmagicandwires.tictac;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+/**
+ * LoadGenerator.java
+ * Plays many matches against a {@link GameServer} at once and measures how fast it answers.
+ *
+ * The matches are spread over a fixed amount of connection pairs, one connection of a pair
+ * seated as either player of every match it plays, all handled by a single selector thread.
+ * Every match keeps exactly one request in flight: a random move for whoever's turn it is, or
+ * a RESET once the round is over. The time from sending a move to the DELTA answering it is
+ * recorded, and the state the server reports is checked against a copy of the game played on
+ * the client.
+ *
+ * Usage: {@code LoadGenerator [options]}; without a host, a server is started on loopback.
+ *
+ * @author Joost Bremmer
+ * @version 1.0
+ */
+public class LoadGenerator implements FrameChannel.FrameHandler {
+
+    static final String USAGE =
+            "Usage: LoadGenerator [options]\n"
+            + "  --host HOST              server to load (default: start one on loopback)\n"
+            + "  --port N                 port of the server (default 7777)\n"
+            + "  --rules tictactoe|connectfour|gomoku  rules to play by (default tictactoe)\n"
+            + "  --size N                 board size (default 3)\n"
+            + "  --connections N          connection pairs to play over (default 8)\n"
+            + "  --matches N              matches played at once (default 1000)\n"
+            + "  --moves N                moves to play (default 1000000)\n"
+            + "  --seed N                 seed of the random moves (default 1)\n";
+
+    /**
+     * Outcome of a run.
+     */
+    public static final class Report {
+        /** moves answered **/
+        public final long moves;
+        /** duration of the run in nanoseconds **/
+        public final long nanos;
+        /** time from sending a move to the DELTA answering it **/
+        public final LatencyHistogram latencies;
+
+        /**
+         * Constructor.
+         * @param moves moves answered
+         * @param nanos duration of the run in nanoseconds
+         * @param latencies time from sending a move to the DELTA answering it
+         */
+        Report(long moves, long nanos, LatencyHistogram latencies) {
+            this.moves = moves;
+            this.nanos = nanos;
+            this.latencies = latencies;
+        }
+
+        /**
+         * Gets the throughput of the run.
+         * @return moves answered per second
+         */
+        public double movesPerSecond() {
+            return moves * 1e9 / Math.max(nanos, 1);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%d moves in %.2fs: %.0f moves/s, latency p50 %.1fus p99 %.1fus",
+                    moves, nanos / 1e9, movesPerSecond(),
+                    latencies.percentile(50) / 1e3, latencies.percentile(99) / 1e3);
+        }
+    }
+
+    /**
+     * A match as the client sees it.
+     */
+    private static final class ClientMatch {
+        /** id the server knows the match by **/
+        final long id;
+        /** copy of the game played on the server **/
+        final Game game;
+        /** the connection seated as Player One, once joined **/
+        FrameChannel playerOne;
+        /** the connection seated as Player Two, once joined **/
+        FrameChannel playerTwo;
+        /** the connection waiting for an answer, or null if no request is in flight **/
+        FrameChannel waiting;
+        /** number of the request in flight **/
+        int sequence;
+        /** tile claimed by the request in flight, or -1 for a RESET **/
+        int tile;
+        /** when the request in flight was sent **/
+        long sentAt;
+
+        /**
+         * Constructor.
+         * @param id id the server knows the match by
+         * @param rules the rules to play by
+         */
+        ClientMatch(long id, Rules rules) {
+            this.id = id;
+            this.game = new Game(rules);
+        }
+    }
+
+    /** the rules every match is played by **/
+    private final Rules rules;
+    /** amount of connection pairs **/
+    private final int connections;
+    /** amount of matches played at once **/
+    private final int matchCount;
+    /** picks the moves and the ids of the matches **/
+    private final SplittableRandom random;
+    /** picks the moves **/
+    private final RandomPlayer player;
+
+    /** the matches of the current run, by id minus firstMatch **/
+    private ClientMatch[] matches;
+    /** id of the first match of the current run **/
+    private long firstMatch;
+    /** the connections written to during the current pass of the selector **/
+    private final List<FrameChannel> written = new ArrayList<>();
+    /** time from sending a move to the DELTA answering it **/
+    private LatencyHistogram latencies;
+    /** number of the last request sent **/
+    private int lastSequence;
+    /** moves answered so far **/
+    private long moves;
+    /** moves to play in the current run **/
+    private long target;
+    /** why the current run failed, or null **/
+    private String failure;
+
+    /**
+     * Constructor.
+     * @param rules the rules every match is played by; the server must accept them
+     * @param connections amount of connection pairs to play over
+     * @param matches amount of matches played at once
+     * @param seed seed of the random moves
+     */
+    public LoadGenerator(Rules rules, int connections, int matches, long seed) {
+        if(connections < 1 || matches < 1) {
+            throw new IllegalArgumentException("need at least one connection and one match");
+        }
+        this.rules = rules;
+        this.connections = connections;
+        this.matchCount = matches;
+        this.random = new SplittableRandom(seed);
+        this.player = new RandomPlayer(random.split());
+    }
+
+    /**
+     * Plays moves against a server until enough of them were answered.
+     * @param server address of the server
+     * @param moves amount of moves to play
+     * @return the throughput and latencies of the run
+     * @throws IOException if the server can not be reached, refuses a request
+     *                     or answers something other than expected
+     */
+    public Report run(InetSocketAddress server, long moves) throws IOException {
+        this.matches = new ClientMatch[matchCount];
+        this.firstMatch = random.nextLong();
+        this.latencies = new LatencyHistogram();
+        this.lastSequence = 0;
+        this.moves = 0;
+        this.target = moves;
+        this.failure = null;
+
+        Selector selector = Selector.open();
+        FrameChannel[] channels = new FrameChannel[connections * 2];
+        try {
+            for(int i=0;i<channels.length;i++) {
+                SocketChannel socket = SocketChannel.open(server);
+                socket.configureBlocking(false);
+                socket.socket().setTcpNoDelay(true);
+                channels[i] = new FrameChannel(socket, socket.register(selector, SelectionKey.OP_READ));
+            }
+            long start = System.nanoTime();
+            for(int i=0;i<matchCount;i++) {
+                matches[i] = new ClientMatch(firstMatch + i, rules);
+                int pair = i % connections;
+                ServerProtocol.join(output(channels[pair * 2], 32), matches[i].id, rules);
+                ServerProtocol.join(output(channels[pair * 2 + 1], 32), matches[i].id, rules);
+            }
+            flushWritten();
+
+            while(this.moves < target && failure == null) {
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while(keys.hasNext() && failure == null) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    FrameChannel channel = (FrameChannel) key.attachment();
+                    if(key.isReadable() && !channel.read(this)) {
+                        failure = "server closed the connection";
+                    } else if(key.isValid() && key.isWritable()) {
+                        channel.flush();
+                    }
+                }
+                flushWritten();
+            }
+            if(failure != null) {
+                throw new IOException(failure);
+            }
+            return new Report(this.moves, System.nanoTime() - start, latencies);
+        } finally {
+            for(FrameChannel channel : channels) {
+                if(channel != null) {
+                    channel.close();
+                }
+            }
+            selector.close();
+            written.clear();
+        }
+    }
+
+    @Override
+    public void onFrame(FrameChannel channel, byte type, ByteBuffer frame) {
+        if(failure != null) {
+            return;
+        }
+        long id = frame.getLong();
+        long index = id - firstMatch;
+        if(index < 0 || index >= matchCount) {
+            failure = "answer about unknown match " + id;
+            return;
+        }
+        ClientMatch match = matches[(int) index];
+        try {
+            switch (type) {
+                case ServerProtocol.JOINED:
+                    if(frame.get() == 1) {
+                        match.playerOne = channel;
+                    } else {
+                        match.playerTwo = channel;
+                    }
+                    if(match.playerOne != null && match.playerTwo != null) {
+                        request(match);
+                    }
+                    break;
+                case ServerProtocol.DELTA:
+                    delta(channel, match, frame.getInt(), ServerProtocol.STATES[frame.get()]);
+                    break;
+                case ServerProtocol.ERROR:
+                    frame.getInt();
+                    failure = "error " + frame.get() + " in match " + id;
+                    break;
+                default:
+                    failure = "unknown message " + type;
+            }
+        } catch (IOException | RuntimeException e) {
+            failure = e.toString();
+        }
+    }
+
+    /**
+     * Handles a DELTA; only the one answering the request in flight, on the connection that
+     * sent it, is looked at, as the other player gets the same changes.
+     * @param channel the connection the DELTA arrived on
+     * @param match the match it is about
+     * @param sequence the number of the request it answers
+     * @param state the state of the round on the server
+     * @throws IOException if the next request can not be sent
+     */
+    private void delta(FrameChannel channel, ClientMatch match, int sequence, GameState state) throws IOException {
+        if(channel != match.waiting || sequence != match.sequence) {
+            return;
+        }
+        Game game = match.game;
+        int tile = match.tile;
+        if(tile < 0) {
+            game.resetBoard();
+        } else {
+            latencies.record(System.nanoTime() - match.sentAt);
+            moves++;
+            game.choose(tile / game.boardSize, tile % game.boardSize);
+            if(game.checkWinconditionReached(tile / game.boardSize, tile % game.boardSize) == GameState.IN_PROGRESS) {
+                game.nextMove();
+            }
+        }
+        game.getChanges().clear();
+        if(game.getGameOver() != state) {
+            failure = "match " + match.id + " is " + state + " on the server but " + game.getGameOver() + " here";
+            return;
+        }
+        match.waiting = null;
+        if(moves < target) {
+            request(match);
+        }
+    }
+
+    /**
+     * Sends the next request of a match: a random move, or a RESET once the round is over.
+     * @param match the match
+     * @throws IOException if the server is left behind
+     */
+    private void request(ClientMatch match) throws IOException {
+        Game game = match.game;
+        match.sequence = ++lastSequence;
+        if(game.getGameOver() != GameState.IN_PROGRESS) {
+            match.tile = -1;
+            match.waiting = match.playerOne;
+            ServerProtocol.reset(output(match.waiting, 32), match.id, match.sequence);
+        } else {
+            match.tile = player.chooseMove(game);
+            match.waiting = game.getPlayerOneTurn() ? match.playerOne : match.playerTwo;
+            ServerProtocol.move(output(match.waiting, 32), match.id, match.sequence, match.tile);
+        }
+        match.sentAt = System.nanoTime();
+    }
+
+    /**
+     * Gets the output buffer of a connection and remembers to flush it after this pass.
+     * @param channel the connection to write to
+     * @param bytes the most bytes about to be written
+     * @return the output buffer
+     * @throws IOException if the server is left behind
+     */
+    private ByteBuffer output(FrameChannel channel, int bytes) throws IOException {
+        if(!channel.hasOutput()) {
+            written.add(channel);
+        }
+        return channel.output(bytes);
+    }
+
+    /**
+     * Writes out everything written to connections during this pass of the selector.
+     * @throws IOException if a connection can not be written
+     */
+    private void flushWritten() throws IOException {
+        for(int i=0;i<written.size();i++) {
+            written.get(i).flush();
+        }
+        written.clear();
+    }
+
+    /**
+     * Runs a load test and prints its report.
+     * @param args see {@link #USAGE}
+     * @throws IOException if the server can not be reached or misbehaves
+     */
+    public static void main(String[] args) throws IOException {
+        String host = null;
+        int port = 7777;
+        String ruleName = "tictactoe";
+        int size = 3;
+        int connections = 8;
+        int matches = 1000;
+        long moves = 1000000;
+        long seed = 1;
+
+        try {
+            for(int i=0;i<args.length;i++) {
+                String option = args[i];
+                if(option.equals("--help")) {
+                    System.out.print(USAGE);
+                    return;
+                }
+                if(i + 1 >= args.length) {
+                    throw new IllegalArgumentException("missing value of " + option);
+                }
+                String value = args[++i];
+                switch (option) {
+                    case "--host": host = value; break;
+                    case "--port": port = Integer.parseInt(value); break;
+                    case "--rules": ruleName = value; break;
+                    case "--size": size = Integer.parseInt(value); break;
+                    case "--connections": connections = Integer.parseInt(value); break;
+                    case "--matches": matches = Integer.parseInt(value); break;
+                    case "--moves": moves = Long.parseLong(value); break;
+                    case "--seed": seed = Long.parseLong(value); break;
+                    default: throw new IllegalArgumentException("unknown option " + option);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.print(USAGE);
+            System.exit(1);
+        }
+
+        Rules rules = GameSimulator.rules(ruleName, size);
+        GameServer server = null;
+        InetSocketAddress address;
+        if(host == null) {
+            server = new GameServer(new InetSocketAddress("127.0.0.1", 0)).start();
+            address = new InetSocketAddress("127.0.0.1", server.getPort());
+        } else {
+            address = new InetSocketAddress(host, port);
+        }
+        try {
+            LoadGenerator generator = new LoadGenerator(rules, connections, matches, seed);
+            System.out.println(matches + " matches of " + rules + " over " + (connections * 2)
+                    + " connections to " + address);
+            System.out.println(generator.run(address, moves));
+        } finally {
+            if(server != null) {
+                server.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,354 @@
+package online.madeofmagicandwires.tictac;
+
+import java.io.Closeable;
+import java.lang.reflect.Method;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * MatchRunner.java
+ * Runs every match on a thread of its own, as a plain blocking turn loop: wait for the move of
+ * whoever's turn it is, {@link Game#choose(int, int)} it, check for a win and pass the turn.
+ *
+ * On a JVM with virtual threads (Java 21 and up) the matches run on virtual threads, which cost
+ * a few hundred bytes while waiting, so a hundred thousand idle matches fit in one JVM. The
+ * engine is built for Java 8, so they are found by reflection; on older JVMs the matches run on
+ * daemon platform threads with small stacks, which is fine for a few thousand matches.
+ * {@link Mailbox} waits with a {@link java.util.concurrent.locks.ReentrantLock} rather than
+ * a monitor, so a waiting virtual thread never pins its carrier thread.
+ *
+ * Every move has a time limit. A player who does not make a legal move in time forfeits the
+ * match, which ends the round of its game as a win of the opponent; illegal moves are ignored
+ * while the clock keeps running.
+ *
+ * @author Joost Bremmer
+ * @version 1.0
+ */
+public class MatchRunner implements Closeable {
+
+    /** Returned by a seat that got no move in time **/
+    public static final int NO_MOVE = -1;
+    /** Stack size of platform match threads; a turn loop needs very little **/
+    private static final long PLATFORM_STACK_SIZE = 128 * 1024;
+
+    /**
+     * Where the moves of one player of a match come from.
+     */
+    public interface Seat {
+        /**
+         * Waits for the next move of the player sitting here. Called on the match thread only.
+         * @param game the game of the match; must be left untouched
+         * @param timeoutNanos how long to wait at most
+         * @return the tile index (row * boardSize + col) to claim, or {@link #NO_MOVE} if time ran out
+         * @throws InterruptedException if the match is cancelled
+         */
+        int awaitMove(Game game, long timeoutNanos) throws InterruptedException;
+    }
+
+    /**
+     * Callback for what happens in a match; called on the match thread.
+     */
+    public interface MatchListener {
+        /**
+         * Called after every move, once the turn has passed.
+         * @param match the match moved in
+         * @param tile the tile claimed
+         */
+        void onMove(Match match, int tile);
+
+        /**
+         * Called once the match is over, forfeited or cancelled.
+         * @param match the finished match
+         */
+        void onFinished(Match match);
+    }
+
+    /**
+     * A seat fed by another thread, e.g. the one reading the player's connection.
+     */
+    public static final class Mailbox implements Seat {
+        /** the move waiting to be played **/
+        private final ArrayBlockingQueue<Integer> moves = new ArrayBlockingQueue<>(1);
+
+        /**
+         * Hands in a move of the player.
+         * @param tile the tile index to claim
+         * @return false if the previous move has not been picked up yet
+         */
+        public boolean offer(int tile) {
+            return moves.offer(tile);
+        }
+
+        @Override
+        public int awaitMove(Game game, long timeoutNanos) throws InterruptedException {
+            Integer tile = moves.poll(timeoutNanos, TimeUnit.NANOSECONDS);
+            return (tile != null) ? tile : NO_MOVE;
+        }
+    }
+
+    /**
+     * A match being run.
+     */
+    public static final class Match {
+        /** id the match is known by **/
+        public final long id;
+        /** the game played; only touched by the match thread **/
+        private final Game game;
+        /** where the moves of Player One come from **/
+        private final Seat playerOne;
+        /** where the moves of Player Two come from **/
+        private final Seat playerTwo;
+        /** callback, or null **/
+        private final MatchListener listener;
+        /** counted down once the match is over **/
+        private final CountDownLatch finished = new CountDownLatch(1);
+        /** the thread running the match **/
+        private Thread thread;
+        /** outcome once finished, or null while running or when cancelled **/
+        private volatile GameState result;
+        /** true if the loser ran out of time **/
+        private volatile boolean forfeit;
+        /** set once the match is cancelled, in case its thread had not started yet **/
+        private volatile boolean cancelled;
+
+        /**
+         * Constructor.
+         * @param id id the match is known by
+         * @param rules the rules to play by
+         * @param playerOne where the moves of Player One come from
+         * @param playerTwo where the moves of Player Two come from
+         * @param listener callback, or null
+         */
+        Match(long id, Rules rules, Seat playerOne, Seat playerTwo, MatchListener listener) {
+            this.id = id;
+            this.game = new Game(rules);
+            this.playerOne = playerOne;
+            this.playerTwo = playerTwo;
+            this.listener = listener;
+        }
+
+        /**
+         * Gets the position of the match, from any thread.
+         * @return the latest snapshot of the game
+         */
+        public GameSnapshot getSnapshot() {
+            return game.getSnapshot();
+        }
+
+        /**
+         * Gets the outcome of the match.
+         * @return the outcome, or null while the match runs or if it was cancelled
+         */
+        public GameState getResult() {
+            return result;
+        }
+
+        /**
+         * Checks whether the match was lost on time.
+         * @return true if the loser did not make a legal move in time
+         */
+        public boolean isForfeit() {
+            return forfeit;
+        }
+
+        /**
+         * Waits for the match to be over.
+         * @param timeout how long to wait at most
+         * @param unit the unit of timeout
+         * @return true if the match is over
+         * @throws InterruptedException if interrupted while waiting
+         */
+        public boolean awaitFinished(long timeout, TimeUnit unit) throws InterruptedException {
+            return finished.await(timeout, unit);
+        }
+
+        /**
+         * Stops the match without an outcome.
+         */
+        public void cancel() {
+            // interrupting a thread that has not started yet has no effect; the flag is seen once it does
+            cancelled = true;
+            thread.interrupt();
+        }
+    }
+
+    /** creates the match threads **/
+    private final ThreadFactory threads;
+    /** time limit of every move in nanoseconds **/
+    private final long moveTimeoutNanos;
+    /** every match that is not over yet **/
+    private final Set<Match> running = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Most specific constructor
+     * @param threads creates the match threads
+     * @param moveTimeout time limit of every move
+     * @param unit the unit of moveTimeout
+     */
+    public MatchRunner(ThreadFactory threads, long moveTimeout, TimeUnit unit) {
+        this.threads = threads;
+        this.moveTimeoutNanos = unit.toNanos(moveTimeout);
+    }
+
+    /**
+     * Constructor running matches on virtual threads where the JVM has them.
+     * @param moveTimeout time limit of every move
+     * @param unit the unit of moveTimeout
+     */
+    public MatchRunner(long moveTimeout, TimeUnit unit) {
+        this(defaultThreads(), moveTimeout, unit);
+    }
+
+    /**
+     * Gets a factory of virtual threads, if the JVM has them.
+     * @return the factory, or null before Java 21
+     */
+    public static ThreadFactory virtualThreads() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Method name = builderClass.getMethod("name", String.class, long.class);
+            builder = name.invoke(builder, "match-", 0L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Gets a factory of daemon platform threads with small stacks.
+     * @return the factory
+     */
+    public static ThreadFactory platformThreads() {
+        return new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(null, r, "match-" + count.getAndIncrement(), PLATFORM_STACK_SIZE);
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    /**
+     * Gets the factory of virtual threads, or of platform threads where there are none.
+     * @return the factory
+     */
+    public static ThreadFactory defaultThreads() {
+        ThreadFactory virtual = virtualThreads();
+        return (virtual != null) ? virtual : platformThreads();
+    }
+
+    /**
+     * Starts a match on a thread of its own.
+     * @param id id the match is known by
+     * @param rules the rules to play by
+     * @param playerOne where the moves of Player One come from
+     * @param playerTwo where the moves of Player Two come from
+     * @param listener callback, or null
+     * @return the running match
+     */
+    public Match start(long id, Rules rules, Seat playerOne, Seat playerTwo, MatchListener listener) {
+        final Match match = new Match(id, rules, playerOne, playerTwo, listener);
+        match.thread = threads.newThread(new Runnable() {
+            @Override
+            public void run() {
+                play(match);
+            }
+        });
+        running.add(match);
+        match.thread.start();
+        return match;
+    }
+
+    /**
+     * The turn loop of a match.
+     * @param match the match to play
+     */
+    private void play(Match match) {
+        Game game = match.game;
+        try {
+            if(match.cancelled) {
+                return;
+            }
+            while(game.getGameOver() == GameState.IN_PROGRESS) {
+                boolean playerOneTurn = game.getPlayerOneTurn();
+                int tile = awaitLegalMove(game, playerOneTurn ? match.playerOne : match.playerTwo);
+                if(tile == NO_MOVE) {
+                    GameState result = playerOneTurn ? GameState.PLAYER_TWO_WIN : GameState.PLAYER_ONE_WIN;
+                    int[] wins = game.getWins();
+                    // end the round in the game too, so its snapshot no longer shows it in progress
+                    game.restoreState(game.getMovesPlayed(), playerOneTurn, result,
+                            wins[0] + (playerOneTurn ? 0 : 1), wins[1] + (playerOneTurn ? 1 : 0));
+                    match.forfeit = true;
+                    match.result = result;
+                    return;
+                }
+                if(game.checkWinconditionReached(tile / game.boardSize, tile % game.boardSize) == GameState.IN_PROGRESS) {
+                    game.nextMove();
+                }
+                if(match.listener != null) {
+                    match.listener.onMove(match, tile);
+                }
+            }
+            match.result = game.getGameOver();
+        } catch (InterruptedException e) {
+            // cancelled; no outcome
+        } finally {
+            running.remove(match);
+            match.finished.countDown();
+            if(match.listener != null) {
+                match.listener.onFinished(match);
+            }
+        }
+    }
+
+    /**
+     * Waits for a legal move of the current player and claims its tile.
+     * @param game the game of the match
+     * @param seat where the moves of the current player come from
+     * @return the tile claimed, or {@link #NO_MOVE} if time ran out
+     * @throws InterruptedException if the match is cancelled
+     */
+    private int awaitLegalMove(Game game, Seat seat) throws InterruptedException {
+        long deadline = System.nanoTime() + moveTimeoutNanos;
+        long left = moveTimeoutNanos;
+        while(left > 0) {
+            int tile = seat.awaitMove(game, left);
+            if(tile == NO_MOVE) {
+                return NO_MOVE;
+            }
+            if(tile >= 0 && tile < game.rules.tiles()
+                    && game.choose(tile / game.boardSize, tile % game.boardSize) != TileState.INVALID) {
+                return tile;
+            }
+            left = deadline - System.nanoTime();
+        }
+        return NO_MOVE;
+    }
+
+    /**
+     * Gets the amount of matches not over yet.
+     * @return the amount of running matches
+     */
+    public int getRunningCount() {
+        return running.size();
+    }
+
+    /**
+     * Cancels every running match.
+     */
+    @Override
+    public void close() {
+        for(Match match : running) {
+            match.cancel();
+        }
+    }
+}
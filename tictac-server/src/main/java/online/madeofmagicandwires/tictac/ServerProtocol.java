@@ -0,0 +1,273 @@
+package online.madeofmagicandwires.tictac;
+
+import java.nio.ByteBuffer;
+
+/**
+ * ServerProtocol.java
+ * The binary messages exchanged between a {@link GameServer} and its clients.
+ *
+ * Every message is a frame: an unsigned short holding the length of the rest of the frame,
+ * a type byte, and the fields of that type, big-endian. Every message names the match it is
+ * about, so a single connection can play any amount of matches.
+ * <pre>
+ *   client to server
+ *   JOIN    long match, byte width, byte height, byte winLength, byte flags (gravity)
+ *   MOVE    long match, int sequence, short tile
+ *   RESET   long match, int sequence
+ *
+ *   server to client
+ *   JOINED  long match, byte seat (1 for Player One, 2 for Player Two)
+ *   DELTA   long match, int sequence, byte GameState, byte whose turn (1 for Player One),
+ *           short amount of changes, then per change: short tile, byte kind, byte TileState
+ *   ERROR   long match, int sequence, byte error code
+ * </pre>
+ * A DELTA lists the tiles that changed, with the kinds of change of {@link BoardChanges}, and is
+ * pushed to both players of the match; it carries the sequence number of the MOVE or RESET it
+ * answers, or 0 for the whole board sent after a JOIN. An ERROR answers a single request.
+ *
+ * @author Joost Bremmer
+ * @version 1.0
+ */
+final class ServerProtocol {
+
+    /** Longest frame, not counting its length **/
+    static final int MAX_FRAME = 4096;
+    /** Size of the length in front of every frame **/
+    static final int LENGTH_BYTES = 2;
+    /** Bytes of a DELTA besides its changes **/
+    private static final int DELTA_HEADER = 1 + 8 + 4 + 1 + 1 + 2;
+    /** Bytes of every change in a DELTA **/
+    private static final int CHANGE_BYTES = 4;
+    /** Most tiles a board played on a server can have, so a DELTA of every tile fits a frame **/
+    static final int MAX_TILES = (MAX_FRAME - DELTA_HEADER) / CHANGE_BYTES;
+
+    /** Asks for a seat in a match, creating the match if it does not exist **/
+    static final byte JOIN = 1;
+    /** Claims a tile **/
+    static final byte MOVE = 2;
+    /** Starts a new round of a match **/
+    static final byte RESET = 3;
+    /** Tells a client its seat in a match **/
+    static final byte JOINED = 0x11;
+    /** Tells both players what changed **/
+    static final byte DELTA = 0x12;
+    /** Refuses a request **/
+    static final byte ERROR = 0x13;
+
+    /** The match does not exist **/
+    static final int NO_SUCH_MATCH = 1;
+    /** Both seats of the match are taken **/
+    static final int MATCH_FULL = 2;
+    /** The match is played by other rules, or the rules are invalid **/
+    static final int BAD_RULES = 3;
+    /** The client has no seat in the match **/
+    static final int NOT_SEATED = 4;
+    /** The other seat of the match is still empty **/
+    static final int WAITING_FOR_OPPONENT = 5;
+    /** It is the other player's turn **/
+    static final int NOT_YOUR_TURN = 6;
+    /** The tile can not be claimed **/
+    static final int ILLEGAL_MOVE = 7;
+    /** The round is over; reset the match first **/
+    static final int ROUND_OVER = 8;
+
+    /** Flag set for rules with gravity **/
+    private static final int GRAVITY = 1;
+    /** every GameState by ordinal; values() returns a new copy on every call **/
+    static final GameState[] STATES = GameState.values();
+    /** every TileState by ordinal **/
+    static final TileState[] TILES = TileState.values();
+
+    private ServerProtocol() {
+    }
+
+    /**
+     * Starts a frame.
+     * @param out the buffer to write to
+     * @param type the type of the message
+     * @return the position of the frame, to pass to {@link #end(ByteBuffer, int)}
+     */
+    private static int begin(ByteBuffer out, byte type) {
+        int start = out.position();
+        out.putShort((short) 0);
+        out.put(type);
+        return start;
+    }
+
+    /**
+     * Fills in the length of a frame once its fields are written.
+     * @param out the buffer written to
+     * @param start the position of the frame
+     */
+    private static void end(ByteBuffer out, int start) {
+        out.putShort(start, (short) (out.position() - start - LENGTH_BYTES));
+    }
+
+    /**
+     * Writes a JOIN.
+     * @param out the buffer to write to
+     * @param match the id of the match
+     * @param rules the rules to play the match by
+     */
+    static void join(ByteBuffer out, long match, Rules rules) {
+        int start = begin(out, JOIN);
+        out.putLong(match);
+        out.put((byte) rules.width);
+        out.put((byte) rules.height);
+        out.put((byte) rules.winLength);
+        out.put((byte) (rules.gravity ? GRAVITY : 0));
+        end(out, start);
+    }
+
+    /**
+     * Reads the rules of a JOIN, after its match id.
+     * @param in the frame, positioned after the match id
+     * @return the rules asked for
+     * @throws IllegalArgumentException if the rules are invalid
+     */
+    static Rules readRules(ByteBuffer in) {
+        int width = in.get() & 0xFF;
+        int height = in.get() & 0xFF;
+        int winLength = in.get() & 0xFF;
+        boolean gravity = (in.get() & GRAVITY) != 0;
+        return new Rules(width, height, winLength, gravity);
+    }
+
+    /**
+     * Writes a MOVE.
+     * @param out the buffer to write to
+     * @param match the id of the match
+     * @param sequence number echoed in the answer
+     * @param tile the tile index, counting row by row from 0
+     */
+    static void move(ByteBuffer out, long match, int sequence, int tile) {
+        int start = begin(out, MOVE);
+        out.putLong(match);
+        out.putInt(sequence);
+        out.putShort((short) tile);
+        end(out, start);
+    }
+
+    /**
+     * Writes a RESET.
+     * @param out the buffer to write to
+     * @param match the id of the match
+     * @param sequence number echoed in the answer
+     */
+    static void reset(ByteBuffer out, long match, int sequence) {
+        int start = begin(out, RESET);
+        out.putLong(match);
+        out.putInt(sequence);
+        end(out, start);
+    }
+
+    /**
+     * Writes a JOINED.
+     * @param out the buffer to write to
+     * @param match the id of the match
+     * @param playerOne true if the client plays as Player One
+     */
+    static void joined(ByteBuffer out, long match, boolean playerOne) {
+        int start = begin(out, JOINED);
+        out.putLong(match);
+        out.put((byte) (playerOne ? 1 : 2));
+        end(out, start);
+    }
+
+    /**
+     * Writes a DELTA of the changes a game has recorded since they were last cleared.
+     * @param out the buffer to write to
+     * @param match the id of the match
+     * @param sequence number of the request answered
+     * @param game the game of the match
+     */
+    static void delta(ByteBuffer out, long match, int sequence, Game game) {
+        int start = beginDelta(out, match, sequence, game.getGameOver(), game.getPlayerOneTurn());
+        BoardChanges changes = game.getChanges();
+        out.putShort((short) changes.size());
+        for(int i=0;i<changes.size();i++) {
+            int tile = changes.getTile(i);
+            putChange(out, tile, changes.getKind(i), game.getTile(tile / game.boardSize, tile % game.boardSize));
+        }
+        end(out, start);
+    }
+
+    /**
+     * Writes a DELTA claiming every claimed tile of a game, for a client that just joined.
+     * @param out the buffer to write to
+     * @param match the id of the match
+     * @param snapshot the latest snapshot of the game of the match
+     */
+    static void board(ByteBuffer out, long match, GameSnapshot snapshot) {
+        int start = beginDelta(out, match, 0, snapshot.getGameOver(), snapshot.isPlayerOneTurn());
+        Rules rules = snapshot.rules;
+        int count = snapshot.countTiles(true) + snapshot.countTiles(false);
+        out.putShort((short) count);
+        for(int tile=0;tile<rules.tiles();tile++) {
+            TileState state = snapshot.getTile(tile / rules.width, tile % rules.width);
+            if(state != TileState.BLANK) {
+                int kind = BoardChanges.CLAIMED;
+                if(snapshot.isWinningTile(tile / rules.width, tile % rules.width)) {
+                    kind |= BoardChanges.WINNING;
+                }
+                putChange(out, tile, kind, state);
+            }
+        }
+        end(out, start);
+    }
+
+    /**
+     * Writes the fields of a DELTA before its changes.
+     * @param out the buffer to write to
+     * @param match the id of the match
+     * @param sequence number of the request answered
+     * @param state the state of the round
+     * @param playerOneTurn whose turn it is
+     * @return the position of the frame
+     */
+    private static int beginDelta(ByteBuffer out, long match, int sequence, GameState state, boolean playerOneTurn) {
+        int start = begin(out, DELTA);
+        out.putLong(match);
+        out.putInt(sequence);
+        out.put((byte) state.ordinal());
+        out.put((byte) (playerOneTurn ? 1 : 2));
+        return start;
+    }
+
+    /**
+     * Writes a single change of a DELTA.
+     * @param out the buffer to write to
+     * @param tile the tile index, counting row by row from 0
+     * @param kind the kinds of change, as in {@link BoardChanges}
+     * @param state the state of the tile after the change
+     */
+    private static void putChange(ByteBuffer out, int tile, int kind, TileState state) {
+        out.putShort((short) tile);
+        out.put((byte) kind);
+        out.put((byte) state.ordinal());
+    }
+
+    /**
+     * Writes an ERROR.
+     * @param out the buffer to write to
+     * @param match the id of the match
+     * @param sequence number of the request refused, or 0 for a JOIN
+     * @param code why the request was refused
+     */
+    static void error(ByteBuffer out, long match, int sequence, int code) {
+        int start = begin(out, ERROR);
+        out.putLong(match);
+        out.putInt(sequence);
+        out.put((byte) code);
+        end(out, start);
+    }
+
+    /**
+     * Gets the most bytes a DELTA of a board can take, length included.
+     * @param rules the rules of the board
+     * @return the size of a DELTA changing every tile
+     */
+    static int maxDeltaBytes(Rules rules) {
+        return LENGTH_BYTES + DELTA_HEADER + (rules.tiles() * CHANGE_BYTES);
+    }
+}
@@ -0,0 +1,155 @@
+package online.madeofmagicandwires.tictac;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+import static org.junit.Assert.*;
+
+/**
+ * Plays matches against a server over loopback.
+ */
+public class GameServerTest {
+
+    private GameServer server;
+    private InetSocketAddress address;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new GameServer(new InetSocketAddress("127.0.0.1", 0)).start();
+        address = new InetSocketAddress("127.0.0.1", server.getPort());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.close();
+    }
+
+    /**
+     * Blocking client reading one frame at a time.
+     */
+    private static final class Client {
+        final SocketChannel socket;
+
+        Client(InetSocketAddress address) throws IOException {
+            socket = SocketChannel.open(address);
+        }
+
+        void send(ByteBuffer out) throws IOException {
+            out.flip();
+            while(out.hasRemaining()) {
+                socket.write(out);
+            }
+        }
+
+        /** Reads a frame and returns it positioned at its type. **/
+        ByteBuffer receive() throws IOException {
+            ByteBuffer length = ByteBuffer.allocate(2);
+            readFully(length);
+            ByteBuffer frame = ByteBuffer.allocate(length.getShort(0) & 0xFFFF);
+            readFully(frame);
+            frame.flip();
+            return frame;
+        }
+
+        private void readFully(ByteBuffer in) throws IOException {
+            while(in.hasRemaining()) {
+                if(socket.read(in) < 0) {
+                    throw new IOException("closed");
+                }
+            }
+        }
+    }
+
+    @Test
+    public void move_isPushedToBothPlayers_andIllegalMovesAreRefused() throws IOException {
+        Rules rules = Rules.ticTacToe(3);
+        Client one = new Client(address);
+        Client two = new Client(address);
+
+        ByteBuffer out = ByteBuffer.allocate(64);
+        ServerProtocol.join(out, 42, rules);
+        one.send(out);
+        ByteBuffer in = one.receive();
+        assertEquals(ServerProtocol.JOINED, in.get());
+        assertEquals(42, in.getLong());
+        assertEquals(1, in.get());
+        assertEquals(ServerProtocol.DELTA, one.receive().get());
+
+        out.clear();
+        ServerProtocol.join(out, 42, rules);
+        two.send(out);
+        in = two.receive();
+        assertEquals(ServerProtocol.JOINED, in.get());
+        in.getLong();
+        assertEquals(2, in.get());
+        two.receive();
+        assertEquals(1, server.getMatchCount());
+
+        // Player Two may not move first
+        out.clear();
+        ServerProtocol.move(out, 42, 7, 4);
+        two.send(out);
+        in = two.receive();
+        assertEquals(ServerProtocol.ERROR, in.get());
+        in.getLong();
+        assertEquals(7, in.getInt());
+        assertEquals(ServerProtocol.NOT_YOUR_TURN, in.get());
+
+        out.clear();
+        ServerProtocol.move(out, 42, 8, 4);
+        one.send(out);
+        for(Client client : new Client[] {one, two}) {
+            in = client.receive();
+            assertEquals(ServerProtocol.DELTA, in.get());
+            assertEquals(42, in.getLong());
+            assertEquals(8, in.getInt());
+            assertEquals(GameState.IN_PROGRESS, ServerProtocol.STATES[in.get()]);
+            assertEquals(2, in.get());
+            assertEquals(1, in.getShort());
+            assertEquals(4, in.getShort());
+            assertEquals(BoardChanges.CLAIMED, in.get());
+            assertEquals(TileState.PLAYER_ONE, ServerProtocol.TILES[in.get()]);
+        }
+
+        // the tile is taken
+        out.clear();
+        ServerProtocol.move(out, 42, 9, 4);
+        two.send(out);
+        in = two.receive();
+        assertEquals(ServerProtocol.ERROR, in.get());
+        in.getLong();
+        in.getInt();
+        assertEquals(ServerProtocol.ILLEGAL_MOVE, in.get());
+        assertEquals(1, server.getMovesPlayed());
+
+        // rules must match the match
+        Client third = new Client(address);
+        out.clear();
+        ServerProtocol.join(out, 42, Rules.ticTacToe(4));
+        third.send(out);
+        in = third.receive();
+        assertEquals(ServerProtocol.ERROR, in.get());
+        in.getLong();
+        in.getInt();
+        assertEquals(ServerProtocol.BAD_RULES, in.get());
+
+        one.socket.close();
+        two.socket.close();
+        third.socket.close();
+    }
+
+    @Test
+    public void loadGenerator_playsAgainstServer() throws IOException {
+        LoadGenerator generator = new LoadGenerator(Rules.connectFour(7, 6), 2, 50, 5);
+        LoadGenerator.Report report = generator.run(address, 20000);
+        assertTrue(report.moves >= 20000);
+        assertEquals(report.moves, report.latencies.count());
+        assertTrue(server.getMovesPlayed() >= report.moves);
+    }
+}
@@ -0,0 +1,101 @@
+package online.madeofmagicandwires.tictac;
+
+import org.junit.Test;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Plays matches on a MatchRunner through mailboxes.
+ */
+public class MatchRunnerTest {
+
+    @Test
+    public void match_isPlayedToTheEnd_ignoringIllegalMoves() throws InterruptedException {
+        MatchRunner runner = new MatchRunner(10, TimeUnit.SECONDS);
+        MatchRunner.Mailbox one = new MatchRunner.Mailbox();
+        MatchRunner.Mailbox two = new MatchRunner.Mailbox();
+        MatchRunner.Match match = runner.start(1, Rules.ticTacToe(3), one, two, null);
+
+        // Player One takes the top row while Player Two tries a taken tile first
+        assertTrue(one.offer(0));
+        awaitMoves(match, 1);
+        assertTrue(two.offer(0));
+        offer(two, 3);
+        awaitMoves(match, 2);
+        assertTrue(one.offer(1));
+        awaitMoves(match, 3);
+        assertTrue(two.offer(4));
+        awaitMoves(match, 4);
+        assertTrue(one.offer(2));
+
+        assertTrue(match.awaitFinished(5, TimeUnit.SECONDS));
+        assertEquals(GameState.PLAYER_ONE_WIN, match.getResult());
+        assertFalse(match.isForfeit());
+        assertEquals(0, runner.getRunningCount());
+    }
+
+    @Test
+    public void slowPlayer_forfeits_andCancelledMatchHasNoResult() throws InterruptedException {
+        MatchRunner runner = new MatchRunner(50, TimeUnit.MILLISECONDS);
+        MatchRunner.Match match = runner.start(2, Rules.ticTacToe(3),
+                new MatchRunner.Mailbox(), new MatchRunner.Mailbox(), null);
+        assertTrue(match.awaitFinished(5, TimeUnit.SECONDS));
+        assertEquals(GameState.PLAYER_TWO_WIN, match.getResult());
+        assertTrue(match.isForfeit());
+        // the forfeit ends the round of the game as well
+        assertEquals(GameState.PLAYER_TWO_WIN, match.getSnapshot().getGameOver());
+        assertEquals(1, match.getSnapshot().getWins(false));
+
+        MatchRunner patient = new MatchRunner(1, TimeUnit.MINUTES);
+        match = patient.start(3, Rules.ticTacToe(3),
+                new MatchRunner.Mailbox(), new MatchRunner.Mailbox(), null);
+        assertEquals(1, patient.getRunningCount());
+        patient.close();
+        assertTrue(match.awaitFinished(5, TimeUnit.SECONDS));
+        assertNull(match.getResult());
+    }
+
+    @Test
+    public void matchCancelledBeforeItsThreadStarts_hasNoResult() throws InterruptedException {
+        final MatchRunner[] runner = new MatchRunner[1];
+        // closes the runner after the match is published as running, but before its thread starts
+        ThreadFactory closingFirst = new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                return new Thread(r) {
+                    @Override
+                    public synchronized void start() {
+                        runner[0].close();
+                        super.start();
+                    }
+                };
+            }
+        };
+        runner[0] = new MatchRunner(closingFirst, 1, TimeUnit.MINUTES);
+        MatchRunner.Match match = runner[0].start(4, Rules.ticTacToe(3),
+                new MatchRunner.Mailbox(), new MatchRunner.Mailbox(), null);
+        assertTrue(match.awaitFinished(5, TimeUnit.SECONDS));
+        assertNull(match.getResult());
+        assertEquals(0, runner[0].getRunningCount());
+    }
+
+    private static void awaitMoves(MatchRunner.Match match, int moves) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while(match.getSnapshot().getMovesPlayed() < moves) {
+            assertTrue(System.nanoTime() < deadline);
+            Thread.sleep(1);
+        }
+    }
+
+    /** Hands in a move once the match thread has picked up the previous one. **/
+    private static void offer(MatchRunner.Mailbox mailbox, int tile) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while(!mailbox.offer(tile)) {
+            assertTrue(System.nanoTime() < deadline);
+            Thread.sleep(1);
+        }
+    }
+}